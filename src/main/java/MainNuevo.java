@@ -6,6 +6,7 @@ import publicadores.LibroPublicador;
 import publicadores.ArticuloEspecialPublicador;
 import publicadores.PrestamoPublicador;
 import publicadores.AutenticacionPublicador;
+import publicadores.ReportePublicador;
 
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
@@ -23,6 +24,7 @@ public class MainNuevo {
     private static ArticuloEspecialPublicador articuloEspecialWS;
     private static PrestamoPublicador prestamoWS;
     private static AutenticacionPublicador autenticacionWS;
+    private static ReportePublicador reporteWS;
     
     public static void main(String[] args) {
         System.out.println("========================================");
@@ -92,6 +94,7 @@ public class MainNuevo {
         articuloEspecialWS = new ArticuloEspecialPublicador();
         prestamoWS = new PrestamoPublicador();
         autenticacionWS = new AutenticacionPublicador();
+        reporteWS = new ReportePublicador();
         
         // Publicar todos los servicios
         bibliotecarioWS.publicar();
@@ -111,6 +114,9 @@ public class MainNuevo {
         
         autenticacionWS.publicar();
         System.out.println("✅ Servicio Autenticacion iniciado");
+        
+        reporteWS.publicar();
+        System.out.println("✅ Servicio Reporte iniciado");
     }
     
     /**
@@ -141,5 +147,9 @@ public class MainNuevo {
             System.out.println("   - AutenticacionService: " + autenticacionWS.getServiceUrl());
             System.out.println("     WSDL: " + autenticacionWS.getServiceUrl() + "?wsdl");
         }
+        if (reporteWS != null) {
+            System.out.println("   - ReporteService: " + reporteWS.getServiceUrl());
+            System.out.println("     WSDL: " + reporteWS.getServiceUrl() + "?wsdl");
+        }
     }
 }
\ No newline at end of file
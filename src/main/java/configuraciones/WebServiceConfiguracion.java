@@ -3,12 +3,26 @@ package configuraciones;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Configuración para Web Services
  * Lee configuración desde archivo de propiedades externo
+ *
+ * Parámetros reconocidos:
+ *   WS_IP, WS_PORT  dirección donde se publican los servicios
+ *   WS_EJECUTOR     "virtual" (por defecto): un hilo virtual por pedido
+ *                   "pool": WS_HILOS hilos de plataforma
+ *   WS_HILOS        tamaño del pool cuando WS_EJECUTOR=pool (por defecto 2 por procesador, mínimo 8)
+ *   WS_MAX_CONCURRENTES, WS_MAX_POR_SERVICIO[_<NOMBRE>], WS_MAX_EN_COLA, WS_ESPERA_MAXIMA_MS
+ *                   control de admisión (ver publicadores.ServidorServicios)
  */
 public class WebServiceConfiguracion {
+    public static final String EJECUTOR_VIRTUAL = "virtual";
+    public static final String EJECUTOR_POOL = "pool";
+    
     private String path = System.getProperty("user.home") + "/.BibliotecaComunitaria/.properties";
     private HashMap<String, String> configs;
     
@@ -53,4 +67,50 @@ public class WebServiceConfiguracion {
     public String getBaseUrl() {
         return "http://" + getConfigOf("WS_IP") + ":" + getConfigOf("WS_PORT");
     }
+    
+    /**
+     * Crea el ejecutor que atiende los pedidos del servidor de servicios
+     * Sin ejecutor, el servidor HTTP del JDK atiende de a un pedido en su hilo despachador,
+     * así que una consulta lenta a la base de datos demora a todos los demás clientes
+     * @param nombreServicio nombre usado en los hilos (ej: "http")
+     */
+    public ExecutorService crearEjecutor(String nombreServicio) {
+        String tipo = getConfigOf("WS_EJECUTOR");
+        if (EJECUTOR_POOL.equalsIgnoreCase(tipo)) {
+            int hilos = getHilosPool();
+            AtomicInteger numero = new AtomicInteger();
+            return Executors.newFixedThreadPool(hilos, r -> {
+                Thread hilo = new Thread(r, "ws-" + nombreServicio + "-" + numero.getAndIncrement());
+                hilo.setDaemon(true);
+                return hilo;
+            });
+        }
+        
+        if (tipo != null && !EJECUTOR_VIRTUAL.equalsIgnoreCase(tipo)) {
+            System.err.println("WS_EJECUTOR inválido: " + tipo + ". Se usan hilos virtuales");
+        }
+        return Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("ws-" + nombreServicio + "-", 0).factory());
+    }
+    
+    /**
+     * Tamaño del pool de hilos de plataforma (WS_HILOS)
+     */
+    public int getHilosPool() {
+        int porDefecto = Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+        String valor = getConfigOf("WS_HILOS");
+        if (valor == null) {
+            return porDefecto;
+        }
+        try {
+            int hilos = Integer.parseInt(valor);
+            if (hilos > 0) {
+                return hilos;
+            }
+        } catch (NumberFormatException e) {
+            // Se informa abajo y se usa el valor por defecto
+        }
+        System.err.println("WS_HILOS inválido: " + valor + ". Se usan " + porDefecto + " hilos");
+        return porDefecto;
+    }
 }
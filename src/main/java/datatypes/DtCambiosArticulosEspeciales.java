@@ -0,0 +1,71 @@
+package datatypes;
+
+/**
+ * Data Transfer Object con los cambios de artículos especiales posteriores a una versión
+ * Los artículos creados o modificados vienen completos; de los eliminados solo el ID
+ * La versión se pasa en la siguiente consulta; si completo es false quedan cambios por pedir
+ */
+public class DtCambiosArticulosEspeciales {
+
+    private long version;
+    private boolean completo;
+    private DtArticuloEspecial[] modificados;
+    private String[] eliminados;
+
+    // Constructor por defecto
+    public DtCambiosArticulosEspeciales() {
+        this.modificados = new DtArticuloEspecial[0];
+        this.eliminados = new String[0];
+    }
+
+    // Constructor con parámetros
+    public DtCambiosArticulosEspeciales(long version, boolean completo, DtArticuloEspecial[] modificados, String[] eliminados) {
+        this.version = version;
+        this.completo = completo;
+        this.modificados = modificados;
+        this.eliminados = eliminados;
+    }
+
+    // Getters y Setters
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public boolean isCompleto() {
+        return completo;
+    }
+
+    public void setCompleto(boolean completo) {
+        this.completo = completo;
+    }
+
+    public DtArticuloEspecial[] getModificados() {
+        return modificados;
+    }
+
+    public void setModificados(DtArticuloEspecial[] modificados) {
+        this.modificados = modificados;
+    }
+
+    public String[] getEliminados() {
+        return eliminados;
+    }
+
+    public void setEliminados(String[] eliminados) {
+        this.eliminados = eliminados;
+    }
+
+    @Override
+    public String toString() {
+        return "DtCambiosArticulosEspeciales{" +
+                "version=" + version +
+                ", completo=" + completo +
+                ", modificados=" + (modificados != null ? modificados.length : 0) +
+                ", eliminados=" + (eliminados != null ? eliminados.length : 0) +
+                '}';
+    }
+}
@@ -0,0 +1,71 @@
+package datatypes;
+
+/**
+ * Data Transfer Object con los cambios de libros posteriores a una versión
+ * Los libros creados o modificados vienen completos; de los eliminados solo el ID
+ * La versión se pasa en la siguiente consulta; si completo es false quedan cambios por pedir
+ */
+public class DtCambiosLibros {
+
+    private long version;
+    private boolean completo;
+    private DtLibro[] modificados;
+    private String[] eliminados;
+
+    // Constructor por defecto
+    public DtCambiosLibros() {
+        this.modificados = new DtLibro[0];
+        this.eliminados = new String[0];
+    }
+
+    // Constructor con parámetros
+    public DtCambiosLibros(long version, boolean completo, DtLibro[] modificados, String[] eliminados) {
+        this.version = version;
+        this.completo = completo;
+        this.modificados = modificados;
+        this.eliminados = eliminados;
+    }
+
+    // Getters y Setters
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public boolean isCompleto() {
+        return completo;
+    }
+
+    public void setCompleto(boolean completo) {
+        this.completo = completo;
+    }
+
+    public DtLibro[] getModificados() {
+        return modificados;
+    }
+
+    public void setModificados(DtLibro[] modificados) {
+        this.modificados = modificados;
+    }
+
+    public String[] getEliminados() {
+        return eliminados;
+    }
+
+    public void setEliminados(String[] eliminados) {
+        this.eliminados = eliminados;
+    }
+
+    @Override
+    public String toString() {
+        return "DtCambiosLibros{" +
+                "version=" + version +
+                ", completo=" + completo +
+                ", modificados=" + (modificados != null ? modificados.length : 0) +
+                ", eliminados=" + (eliminados != null ? eliminados.length : 0) +
+                '}';
+    }
+}
@@ -0,0 +1,83 @@
+package datatypes;
+
+/**
+ * Data Transfer Object con los filtros de una consulta de préstamos
+ * Los filtros en null no se aplican; las fechas van en formato yyyy-MM-dd
+ */
+public class DtFiltroPrestamos {
+
+    private String lectorId;
+    private String bibliotecarioId;
+    private String zona;
+    private String[] estados;
+    private String fechaDesde;
+    private String fechaHasta;
+
+    // Constructor por defecto
+    public DtFiltroPrestamos() {
+    }
+
+    // Getters y Setters
+    public String getLectorId() {
+        return lectorId;
+    }
+
+    public void setLectorId(String lectorId) {
+        this.lectorId = lectorId;
+    }
+
+    public String getBibliotecarioId() {
+        return bibliotecarioId;
+    }
+
+    public void setBibliotecarioId(String bibliotecarioId) {
+        this.bibliotecarioId = bibliotecarioId;
+    }
+
+    public String getZona() {
+        return zona;
+    }
+
+    public void setZona(String zona) {
+        this.zona = zona;
+    }
+
+    /**
+     * Estados aceptados (cualquiera de ellos); null o vacío para todos
+     */
+    public String[] getEstados() {
+        return estados;
+    }
+
+    public void setEstados(String... estados) {
+        this.estados = estados;
+    }
+
+    public String getFechaDesde() {
+        return fechaDesde;
+    }
+
+    public void setFechaDesde(String fechaDesde) {
+        this.fechaDesde = fechaDesde;
+    }
+
+    public String getFechaHasta() {
+        return fechaHasta;
+    }
+
+    public void setFechaHasta(String fechaHasta) {
+        this.fechaHasta = fechaHasta;
+    }
+
+    @Override
+    public String toString() {
+        return "DtFiltroPrestamos{" +
+                "lectorId='" + lectorId + '\'' +
+                ", bibliotecarioId='" + bibliotecarioId + '\'' +
+                ", zona='" + zona + '\'' +
+                ", estados=" + java.util.Arrays.toString(estados) +
+                ", fechaDesde='" + fechaDesde + '\'' +
+                ", fechaHasta='" + fechaHasta + '\'' +
+                '}';
+    }
+}
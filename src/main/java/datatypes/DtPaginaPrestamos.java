@@ -0,0 +1,51 @@
+package datatypes;
+
+/**
+ * Data Transfer Object para una página de préstamos obtenida por paginación keyset
+ * El token de continuación se pasa tal cual en la siguiente llamada; es null en la última página
+ */
+public class DtPaginaPrestamos {
+
+    private DtPrestamo[] prestamos;
+    private String tokenSiguiente;
+
+    // Constructor por defecto
+    public DtPaginaPrestamos() {
+        this.prestamos = new DtPrestamo[0];
+    }
+
+    // Constructor con parámetros
+    public DtPaginaPrestamos(DtPrestamo[] prestamos, String tokenSiguiente) {
+        this.prestamos = prestamos;
+        this.tokenSiguiente = tokenSiguiente;
+    }
+
+    // Getters y Setters
+    public DtPrestamo[] getPrestamos() {
+        return prestamos;
+    }
+
+    public void setPrestamos(DtPrestamo[] prestamos) {
+        this.prestamos = prestamos;
+    }
+
+    public String getTokenSiguiente() {
+        return tokenSiguiente;
+    }
+
+    public void setTokenSiguiente(String tokenSiguiente) {
+        this.tokenSiguiente = tokenSiguiente;
+    }
+
+    public boolean tieneSiguiente() {
+        return tokenSiguiente != null;
+    }
+
+    @Override
+    public String toString() {
+        return "DtPaginaPrestamos{" +
+                "cantidad=" + (prestamos != null ? prestamos.length : 0) +
+                ", tokenSiguiente='" + tokenSiguiente + '\'' +
+                '}';
+    }
+}
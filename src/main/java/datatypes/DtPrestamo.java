@@ -18,6 +18,7 @@ public class DtPrestamo {
     private String materialId;
     private String materialTipo;
     private String materialDescripcion;
+    private long version;
     
     // Constructor por defecto
     public DtPrestamo() {}
@@ -128,6 +129,14 @@ public class DtPrestamo {
         this.materialDescripcion = materialDescripcion;
     }
     
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    
     @Override
     public String toString() {
         return "DtPrestamo{" +
@@ -0,0 +1,88 @@
+package datatypes;
+
+/**
+ * Data Transfer Object con el resultado de un elemento de una operación por lotes
+ * indice es la posición del elemento en el arreglo enviado; codigo es una de las constantes
+ * de esta clase. Solo las consultas completan prestamo
+ */
+public class DtResultadoLote {
+
+    public static final String OK = "OK";
+    public static final String DATOS_INVALIDOS = "DATOS_INVALIDOS";
+    public static final String NO_EXISTE = "NO_EXISTE";
+    public static final String ESTADO_INVALIDO = "ESTADO_INVALIDO";
+    // Falla de la base de datos: no se guardó ningún elemento del lote
+    public static final String ERROR = "ERROR";
+
+    private int indice;
+    private String id;
+    private String codigo;
+    private String mensaje;
+    private DtPrestamo prestamo;
+
+    // Constructor por defecto
+    public DtResultadoLote() {}
+
+    // Constructor con parámetros
+    public DtResultadoLote(int indice, String id, String codigo, String mensaje) {
+        this.indice = indice;
+        this.id = id;
+        this.codigo = codigo;
+        this.mensaje = mensaje;
+    }
+
+    // Getters y Setters
+    public int getIndice() {
+        return indice;
+    }
+
+    public void setIndice(int indice) {
+        this.indice = indice;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getCodigo() {
+        return codigo;
+    }
+
+    public void setCodigo(String codigo) {
+        this.codigo = codigo;
+    }
+
+    public String getMensaje() {
+        return mensaje;
+    }
+
+    public void setMensaje(String mensaje) {
+        this.mensaje = mensaje;
+    }
+
+    public DtPrestamo getPrestamo() {
+        return prestamo;
+    }
+
+    public void setPrestamo(DtPrestamo prestamo) {
+        this.prestamo = prestamo;
+    }
+
+    public boolean esExitoso() {
+        return OK.equals(codigo);
+    }
+
+    @Override
+    public String toString() {
+        return "DtResultadoLote{" +
+                "indice=" + indice +
+                ", id='" + id + '\'' +
+                ", codigo='" + codigo + '\'' +
+                ", mensaje='" + mensaje + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,79 @@
+package datatypes;
+
+/**
+ * Data Transfer Object con los datos de un préstamo a registrar dentro de un lote
+ * Los campos tienen el mismo formato que los parámetros de registrarPrestamo
+ */
+public class DtSolicitudPrestamo {
+
+    private String lectorId;
+    private String bibliotecarioId;
+    private String materialId;
+    private String fechaSolicitud;
+    private String estado;
+
+    // Constructor por defecto
+    public DtSolicitudPrestamo() {}
+
+    // Constructor con parámetros
+    public DtSolicitudPrestamo(String lectorId, String bibliotecarioId, String materialId,
+                               String fechaSolicitud, String estado) {
+        this.lectorId = lectorId;
+        this.bibliotecarioId = bibliotecarioId;
+        this.materialId = materialId;
+        this.fechaSolicitud = fechaSolicitud;
+        this.estado = estado;
+    }
+
+    // Getters y Setters
+    public String getLectorId() {
+        return lectorId;
+    }
+
+    public void setLectorId(String lectorId) {
+        this.lectorId = lectorId;
+    }
+
+    public String getBibliotecarioId() {
+        return bibliotecarioId;
+    }
+
+    public void setBibliotecarioId(String bibliotecarioId) {
+        this.bibliotecarioId = bibliotecarioId;
+    }
+
+    public String getMaterialId() {
+        return materialId;
+    }
+
+    public void setMaterialId(String materialId) {
+        this.materialId = materialId;
+    }
+
+    public String getFechaSolicitud() {
+        return fechaSolicitud;
+    }
+
+    public void setFechaSolicitud(String fechaSolicitud) {
+        this.fechaSolicitud = fechaSolicitud;
+    }
+
+    public String getEstado() {
+        return estado;
+    }
+
+    public void setEstado(String estado) {
+        this.estado = estado;
+    }
+
+    @Override
+    public String toString() {
+        return "DtSolicitudPrestamo{" +
+                "lectorId='" + lectorId + '\'' +
+                ", bibliotecarioId='" + bibliotecarioId + '\'' +
+                ", materialId='" + materialId + '\'' +
+                ", fechaSolicitud='" + fechaSolicitud + '\'' +
+                ", estado='" + estado + '\'' +
+                '}';
+    }
+}
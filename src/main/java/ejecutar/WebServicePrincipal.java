@@ -5,6 +5,7 @@ import publicadores.LectorPublicador;
 import publicadores.LibroPublicador;
 import publicadores.PrestamoPublicador;
 import publicadores.AutenticacionPublicador;
+import publicadores.ReportePublicador;
 
 /**
  * Punto de entrada principal para los Web Services
@@ -22,6 +23,7 @@ public class WebServicePrincipal {
             LibroPublicador libroWS = new LibroPublicador();
             PrestamoPublicador prestamoWS = new PrestamoPublicador();
             AutenticacionPublicador autenticacionWS = new AutenticacionPublicador();
+            ReportePublicador reporteWS = new ReportePublicador();
             
             // Publicar todos los servicios
             bibliotecarioWS.publicar();
@@ -39,6 +41,9 @@ public class WebServicePrincipal {
             autenticacionWS.publicar();
             System.out.println("✅ Servicio Autenticacion iniciado");
             
+            reporteWS.publicar();
+            System.out.println("✅ Servicio Reporte iniciado");
+            
             System.out.println("\n🚀 Todos los Web Services iniciados correctamente!");
             System.out.println("📋 Servicios disponibles:");
             System.out.println("   - BibliotecarioService: " + bibliotecarioWS.getServiceUrl());
@@ -46,6 +51,7 @@ public class WebServicePrincipal {
             System.out.println("   - LibroService: " + libroWS.getServiceUrl());
             System.out.println("   - PrestamoService: " + prestamoWS.getServiceUrl());
             System.out.println("   - AutenticacionService: " + autenticacionWS.getServiceUrl());
+            System.out.println("   - ReporteService: " + reporteWS.getServiceUrl());
             System.out.println("\n⏹️  Presiona Ctrl+C para detener todos los servicios.");
             
             // Mantener los servicios corriendo
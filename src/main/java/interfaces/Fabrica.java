@@ -6,6 +6,7 @@ import logica.LectorControlador;
 import logica.LibroControlador;
 import logica.PrestamoControlador;
 import logica.MaterialesConPrestamosPendientesControlador;
+import logica.PrestamoReporte;
 import logica.Controlador;
 
 /**
@@ -19,6 +20,7 @@ public class Fabrica {
     private static IArticuloEspecialControlador articuloEspecialControlador = null;
     private static IPrestamoControlador prestamoControlador = null;
     private static IMaterialesConPrestamosPendientesControlador materialesConPrestamosPendientesControlador = null;
+    private static IPrestamoReporte prestamoReporte = null;
     private static IControlador controlador = null;
 
     private Fabrica() {}
@@ -72,6 +74,13 @@ public class Fabrica {
         return materialesConPrestamosPendientesControlador;
     }
     
+    public IPrestamoReporte getIPrestamoReporte() {
+        if (prestamoReporte == null) {
+            prestamoReporte = new PrestamoReporte();
+        }
+        return prestamoReporte;
+    }
+    
     public IControlador getIControlador() {
         if (controlador == null) {
             controlador = Controlador.getInstancia();
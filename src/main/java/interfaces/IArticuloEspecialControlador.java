@@ -1,6 +1,7 @@
 package interfaces;
 
 import datatypes.DtArticuloEspecial;
+import datatypes.DtCambiosArticulosEspeciales;
 import excepciones.ArticuloEspecialRepetidoException;
 import excepciones.ArticuloEspecialNoExisteException;
 import excepciones.DatosInvalidosException;
@@ -21,10 +22,16 @@ public interface IArticuloEspecialControlador {
     
     public String[] listarArticulosEspeciales();
     
+    public DtArticuloEspecial[] listarArticulosEspecialesDto();
+    
     public String[] listarArticulosEspecialesPorPeso(float pesoMin, float pesoMax);
     
     public boolean existeArticuloEspecial(String descripcion);
     
     public void actualizarArticuloEspecial(String id, String descripcion, float pesoKg, String dimensiones)
         throws ArticuloEspecialNoExisteException, DatosInvalidosException;
+    
+    // Sincronización incremental: cambios posteriores a la versión dada (0 para todos)
+    public DtCambiosArticulosEspeciales obtenerCambiosArticulosEspeciales(long desdeVersion)
+        throws DatosInvalidosException;
 }
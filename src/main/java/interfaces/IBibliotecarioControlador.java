@@ -47,6 +47,12 @@ public interface IBibliotecarioControlador {
      */
     String[] listarBibliotecarios();
     
+    /**
+     * Lista todos los bibliotecarios del sistema con sus datos completos
+     * @return Array de bibliotecarios
+     */
+    DtBibliotecario[] listarBibliotecariosDto();
+    
     /**
      * Actualiza los datos de un bibliotecario existente
      * @param id ID del bibliotecario a actualizar
@@ -31,6 +31,11 @@ public interface IControlador {
      */
     String[] listarBibliotecarios();
     
+    /**
+     * Lista todos los bibliotecarios con sus datos completos
+     */
+    DtBibliotecario[] listarBibliotecariosDto();
+    
     /**
      * Registra un nuevo bibliotecario con password
      */
@@ -61,6 +66,11 @@ public interface IControlador {
      */
     String[] listarLectores();
     
+    /**
+     * Lista todos los lectores con sus datos completos
+     */
+    DtLector[] listarLectoresDto();
+    
     /**
      * Lista lectores filtrados por estado
      */
@@ -140,6 +150,11 @@ public interface IControlador {
      */
     String[] listarLibros();
     
+    /**
+     * Lista todos los libros con sus datos completos
+     */
+    DtLibro[] listarLibrosDto();
+    
     // ============= OPERACIONES DE ARTÍCULO ESPECIAL =============
     
     /**
@@ -158,6 +173,19 @@ public interface IControlador {
      */
     String[] listarArticulosEspeciales();
     
+    /**
+     * Lista todos los artículos especiales con sus datos completos
+     */
+    DtArticuloEspecial[] listarArticulosEspecialesDto();
+    
+    // ============= DATOS DE REFERENCIA =============
+    
+    /**
+     * Versión actual de lectores, bibliotecarios, libros y artículos especiales
+     * Cambia con cada alta, modificación o baja; sirve para saber si una copia local sigue vigente
+     */
+    long obtenerVersionDatosReferencia();
+    
     // ============= OPERACIONES DE PRÉSTAMO =============
     
     /**
@@ -192,22 +220,52 @@ public interface IControlador {
     String[] listarPrestamosPorMaterial(String materialId);
     
     /**
-     * Cambia el estado de un préstamo
+     * Lista todos los préstamos con lector, bibliotecario y material resueltos
+     */
+    DtPrestamo[] listarPrestamosDto();
+    
+    /**
+     * Lista como DTOs los préstamos con el estado dado
+     */
+    DtPrestamo[] listarPrestamosDtoPorEstado(String estado) throws DatosInvalidosException;
+    
+    /**
+     * Lista como DTOs los préstamos de un lector
+     */
+    DtPrestamo[] listarPrestamosDtoPorLector(String lectorId) throws DatosInvalidosException;
+    
+    /**
+     * Lista como DTOs los préstamos de un material
+     */
+    DtPrestamo[] listarPrestamosDtoPorMaterial(String materialId) throws DatosInvalidosException;
+    
+    /**
+     * Lista los préstamos de un bibliotecario filtrados por estado y rango de fechas (dd/MM/yyyy)
+     */
+    DtPrestamo[] listarPrestamosPorBibliotecario(String bibliotecarioId, String estado,
+                                                 String fechaDesde, String fechaHasta)
+        throws DatosInvalidosException;
+    
+    // Las pantallas siempre envían la versión del préstamo que mostraron (DtPrestamo.getVersion()):
+    // si otro bibliotecario lo cambió mientras tanto, la operación falla en lugar de pisarlo
+    
+    /**
+     * Cambia el estado de un préstamo si sigue en la versión dada
      */
-    void cambiarEstadoPrestamo(String idPrestamo, String nuevoEstado) 
+    void cambiarEstadoPrestamoConVersion(String idPrestamo, String nuevoEstado, long version) 
         throws PrestamoNoExisteException, DatosInvalidosException;
     
     /**
-     * Registra la devolución de un préstamo
+     * Registra la devolución de un préstamo si sigue en la versión dada
      */
-    void devolverPrestamo(String idPrestamo, String fechaDevolucion) 
+    void devolverPrestamoConVersion(String idPrestamo, String fechaDevolucion, long version) 
         throws PrestamoNoExisteException, DatosInvalidosException;
     
     /**
-     * Modifica la información completa de un préstamo
+     * Modifica la información completa de un préstamo si sigue en la versión dada
      */
-    void modificarPrestamo(String idPrestamo, String lectorId, String bibliotecarioId, 
-                          String materialId, String fechaSolicitud, String estado, 
-                          String fechaDevolucion) 
+    void modificarPrestamoConVersion(String idPrestamo, String lectorId, String bibliotecarioId, 
+                                    String materialId, String fechaSolicitud, String estado, 
+                                    String fechaDevolucion, long version) 
         throws PrestamoNoExisteException, DatosInvalidosException;
 }
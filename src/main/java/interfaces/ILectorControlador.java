@@ -1,5 +1,6 @@
 package interfaces;
 
+import datatypes.DtCambiosLectores;
 import datatypes.DtLector;
 import excepciones.LectorRepetidoException;
 import excepciones.LectorNoExisteException;
@@ -64,6 +65,12 @@ public interface ILectorControlador {
      */
     String[] listarLectores();
     
+    /**
+     * Lista todos los lectores del sistema con sus datos completos
+     * @return Array de lectores
+     */
+    DtLector[] listarLectoresDto();
+    
     /**
      * Lista lectores filtrados por estado
      * @param estado Estado a filtrar (Activo, Suspendido)
@@ -95,10 +102,11 @@ public interface ILectorControlador {
      * @param zona Nueva zona
      * @throws LectorNoExisteException Si no existe el lector
      * @throws DatosInvalidosException Si los datos no son válidos
+     * @throws LectorRepetidoException Si el nuevo email ya lo tiene otro lector
      */
     void actualizarLector(String id, String nombre, String email, String direccion,
                          String estado, String zona)
-        throws LectorNoExisteException, DatosInvalidosException;
+        throws LectorNoExisteException, DatosInvalidosException, LectorRepetidoException;
     
     /**
      * Elimina un lector del sistema
@@ -133,4 +141,12 @@ public interface ILectorControlador {
      * @throws DatosInvalidosException Si la nueva zona es inválida.
      */
     void cambiarZonaLector(String idLector, String nuevaZona) throws LectorNoExisteException, DatosInvalidosException;
+
+    /**
+     * Obtiene los lectores creados, modificados o eliminados después de una versión.
+     * @param desdeVersion Versión devuelta por la consulta anterior (0 para obtener todos).
+     * @return Lectores modificados, IDs eliminados y la versión para la próxima consulta.
+     * @throws DatosInvalidosException Si la versión es negativa.
+     */
+    DtCambiosLectores obtenerCambiosLectores(long desdeVersion) throws DatosInvalidosException;
 }
@@ -1,5 +1,6 @@
 package interfaces;
 
+import datatypes.DtCambiosLibros;
 import datatypes.DtLibro;
 import excepciones.LibroRepetidoException;
 import excepciones.LibroNoExisteException;
@@ -21,10 +22,15 @@ public interface ILibroControlador {
     
     public String[] listarLibros();
     
+    public DtLibro[] listarLibrosDto();
+    
     public String[] listarLibrosPorPaginas(int paginasMin, int paginasMax);
     
     public boolean existeLibro(String titulo);
     
     public void actualizarLibro(String id, String titulo, int cantidadPaginas)
         throws LibroNoExisteException, DatosInvalidosException;
+    
+    // Sincronización incremental: cambios posteriores a la versión dada (0 para todos)
+    public DtCambiosLibros obtenerCambiosLibros(long desdeVersion) throws DatosInvalidosException;
 }
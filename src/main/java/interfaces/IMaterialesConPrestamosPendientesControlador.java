@@ -11,10 +11,17 @@ public interface IMaterialesConPrestamosPendientesControlador {
     /**
      * Obtiene una lista de materiales que tienen más de un préstamo pendiente
      * Solo se consideran préstamos con estado PENDIENTE
-     * @return Lista de Object[] donde cada array contiene [materialId (String), tipo (String), nombre (String), cantidadPrestamos (Integer)]
+     * @return Lista de Object[] donde cada array contiene [materialId (String), nombre (String), tipo (String), cantidadPrestamos (Integer)]
      */
     List<Object[]> obtenerMaterialesConMuchosPrestamos();
 
+    /**
+     * Igual que obtenerMaterialesConMuchosPrestamos pero devolviendo solo los primeros materiales
+     * @param limite Cantidad máxima de materiales (0 o negativo para todos)
+     * @return Lista ordenada por cantidad de préstamos pendientes, de mayor a menor
+     */
+    List<Object[]> obtenerMaterialesConMuchosPrestamos(int limite);
+
     /**
      * Obtiene la cantidad de préstamos pendientes para un material específico
      * @param materialId ID del material
@@ -1,6 +1,10 @@
 package interfaces;
 
+import datatypes.DtCambiosPrestamos;
+import datatypes.DtPaginaPrestamos;
 import datatypes.DtPrestamo;
+import datatypes.DtResultadoLote;
+import datatypes.DtSolicitudPrestamo;
 import excepciones.DatosInvalidosException;
 import excepciones.PrestamoNoExisteException;
 
@@ -56,6 +60,91 @@ public interface IPrestamoControlador {
      */
     String[] listarPrestamosPorMaterial(String materialId);
     
+    /**
+     * Lista todos los préstamos del sistema con lector, bibliotecario y material resueltos
+     * @return Array de préstamos ordenados por fecha de solicitud
+     */
+    DtPrestamo[] listarPrestamosDto();
+    
+    /**
+     * Lista como DTOs los préstamos con el estado dado
+     * @param estado Estado a filtrar
+     * @return Array de préstamos ordenados por fecha de solicitud
+     * @throws DatosInvalidosException Si el estado no es válido
+     */
+    DtPrestamo[] listarPrestamosDtoPorEstado(String estado) throws DatosInvalidosException;
+    
+    /**
+     * Lista como DTOs los préstamos de un lector
+     * @param lectorId ID del lector
+     * @return Array de préstamos ordenados por fecha de solicitud
+     * @throws DatosInvalidosException Si el ID está vacío
+     */
+    DtPrestamo[] listarPrestamosDtoPorLector(String lectorId) throws DatosInvalidosException;
+    
+    /**
+     * Lista como DTOs los préstamos de un material
+     * @param materialId ID del material
+     * @return Array de préstamos ordenados por fecha de solicitud
+     * @throws DatosInvalidosException Si el ID está vacío
+     */
+    DtPrestamo[] listarPrestamosDtoPorMaterial(String materialId) throws DatosInvalidosException;
+    
+    /**
+     * Lista los préstamos gestionados por un bibliotecario, filtrando en la base de datos
+     * @param bibliotecarioId ID del bibliotecario
+     * @param estado Estado a filtrar (null o vacío para todos)
+     * @param fechaDesde Fecha de solicitud mínima en formato dd/MM/yyyy (null o vacía para no filtrar)
+     * @param fechaHasta Fecha de solicitud máxima en formato dd/MM/yyyy (null o vacía para no filtrar)
+     * @return Array de préstamos ordenados del más reciente al más antiguo
+     * @throws DatosInvalidosException Si los filtros no son válidos
+     */
+    DtPrestamo[] listarPrestamosPorBibliotecario(String bibliotecarioId, String estado,
+                                                 String fechaDesde, String fechaHasta)
+        throws DatosInvalidosException;
+    
+    /**
+     * Lista una página de préstamos ordenados por fecha de solicitud e ID (paginación keyset)
+     * @param token Token de continuación devuelto por la página anterior (null o vacío para la primera)
+     * @param tamano Cantidad de préstamos por página (0 para el valor por defecto)
+     * @return Página con los préstamos y el token de la siguiente (null si es la última)
+     * @throws DatosInvalidosException Si el token no es válido
+     */
+    DtPaginaPrestamos listarPrestamosPaginado(String token, int tamano) throws DatosInvalidosException;
+    
+    /**
+     * Lista una página de préstamos filtrados por estado
+     * @param estado Estado a filtrar
+     * @param token Token de continuación (null o vacío para la primera página)
+     * @param tamano Cantidad de préstamos por página (0 para el valor por defecto)
+     * @return Página con los préstamos y el token de la siguiente
+     * @throws DatosInvalidosException Si el estado o el token no son válidos
+     */
+    DtPaginaPrestamos listarPrestamosPorEstadoPaginado(String estado, String token, int tamano)
+        throws DatosInvalidosException;
+    
+    /**
+     * Lista una página de préstamos de un lector específico
+     * @param lectorId ID del lector
+     * @param token Token de continuación (null o vacío para la primera página)
+     * @param tamano Cantidad de préstamos por página (0 para el valor por defecto)
+     * @return Página con los préstamos y el token de la siguiente
+     * @throws DatosInvalidosException Si el ID o el token no son válidos
+     */
+    DtPaginaPrestamos listarPrestamosPorLectorPaginado(String lectorId, String token, int tamano)
+        throws DatosInvalidosException;
+    
+    /**
+     * Lista una página de préstamos de un material específico
+     * @param materialId ID del material
+     * @param token Token de continuación (null o vacío para la primera página)
+     * @param tamano Cantidad de préstamos por página (0 para el valor por defecto)
+     * @return Página con los préstamos y el token de la siguiente
+     * @throws DatosInvalidosException Si el ID o el token no son válidos
+     */
+    DtPaginaPrestamos listarPrestamosPorMaterialPaginado(String materialId, String token, int tamano)
+        throws DatosInvalidosException;
+    
     /**
      * Cambia el estado de un préstamo
      * @param idPrestamo ID del préstamo
@@ -66,6 +155,17 @@ public interface IPrestamoControlador {
     void cambiarEstadoPrestamo(String idPrestamo, String nuevoEstado) 
         throws PrestamoNoExisteException, DatosInvalidosException;
     
+    /**
+     * Cambia el estado de un préstamo solo si no fue modificado desde que se leyó
+     * @param idPrestamo ID del préstamo
+     * @param nuevoEstado Nuevo estado del préstamo
+     * @param version Versión del préstamo leída por el cliente (DtPrestamo.getVersion())
+     * @throws PrestamoNoExisteException Si no existe el préstamo
+     * @throws DatosInvalidosException Si el estado no es válido o el préstamo cambió de versión
+     */
+    void cambiarEstadoPrestamoConVersion(String idPrestamo, String nuevoEstado, long version) 
+        throws PrestamoNoExisteException, DatosInvalidosException;
+    
     /**
      * Registra la devolución de un préstamo
      * @param idPrestamo ID del préstamo
@@ -76,6 +176,17 @@ public interface IPrestamoControlador {
     void devolverPrestamo(String idPrestamo, String fechaDevolucion) 
         throws PrestamoNoExisteException, DatosInvalidosException;
     
+    /**
+     * Registra la devolución de un préstamo solo si no fue modificado desde que se leyó
+     * @param idPrestamo ID del préstamo
+     * @param fechaDevolucion Fecha de devolución en formato dd/MM/yyyy
+     * @param version Versión del préstamo leída por el cliente (DtPrestamo.getVersion())
+     * @throws PrestamoNoExisteException Si no existe el préstamo
+     * @throws DatosInvalidosException Si los datos no son válidos o el préstamo cambió de versión
+     */
+    void devolverPrestamoConVersion(String idPrestamo, String fechaDevolucion, long version) 
+        throws PrestamoNoExisteException, DatosInvalidosException;
+    
     /**
      * Modifica la información completa de un préstamo
      * @param idPrestamo ID del préstamo a modificar
@@ -92,4 +203,62 @@ public interface IPrestamoControlador {
                           String materialId, String fechaSolicitud, String estado, 
                           String fechaDevolucion) 
         throws PrestamoNoExisteException, DatosInvalidosException;
-}
\ No newline at end of file
+    
+    /**
+     * Modifica la información completa de un préstamo solo si no fue modificado desde que se leyó
+     * @param idPrestamo ID del préstamo a modificar
+     * @param lectorId Nuevo ID del lector
+     * @param bibliotecarioId Nuevo ID del bibliotecario
+     * @param materialId Nuevo ID del material
+     * @param fechaSolicitud Nueva fecha de solicitud en formato dd/MM/yyyy
+     * @param estado Nuevo estado del préstamo
+     * @param fechaDevolucion Nueva fecha de devolución en formato dd/MM/yyyy (puede ser null o vacía)
+     * @param version Versión del préstamo leída por el cliente (DtPrestamo.getVersion())
+     * @throws PrestamoNoExisteException Si no existe el préstamo
+     * @throws DatosInvalidosException Si los datos no son válidos o el préstamo cambió de versión
+     */
+    void modificarPrestamoConVersion(String idPrestamo, String lectorId, String bibliotecarioId, 
+                                    String materialId, String fechaSolicitud, String estado, 
+                                    String fechaDevolucion, long version) 
+        throws PrestamoNoExisteException, DatosInvalidosException;
+    
+    /**
+     * Obtiene los préstamos creados, modificados o eliminados después de una versión
+     * @param desdeVersion Versión devuelta por la consulta anterior (0 para obtener todos)
+     * @return Préstamos modificados, IDs eliminados y la versión para la próxima consulta
+     * @throws DatosInvalidosException Si la versión es negativa
+     */
+    DtCambiosPrestamos obtenerCambiosPrestamos(long desdeVersion) throws DatosInvalidosException;
+    
+    // ============= OPERACIONES POR LOTES =============
+    // Cada operación devuelve un resultado por elemento, en el mismo orden en que se enviaron,
+    // con código OK, DATOS_INVALIDOS, NO_EXISTE, ESTADO_INVALIDO o ERROR (ver DtResultadoLote)
+    
+    /**
+     * Registra varios préstamos en una sola transacción
+     * Las solicitudes inválidas se informan y no impiden guardar las demás; si falla la
+     * base de datos no se guarda ninguna y las válidas quedan con código ERROR
+     * @param solicitudes Préstamos a registrar (como máximo 500)
+     * @return Resultado de cada solicitud, con el ID asignado a las registradas
+     * @throws DatosInvalidosException Si el lote es nulo o supera el máximo
+     */
+    DtResultadoLote[] registrarPrestamosLote(DtSolicitudPrestamo[] solicitudes) throws DatosInvalidosException;
+    
+    /**
+     * Obtiene varios préstamos con una sola consulta
+     * @param ids IDs de los préstamos (como máximo 500)
+     * @return Resultado de cada ID, con el préstamo en getPrestamo() si existe
+     * @throws DatosInvalidosException Si el lote es nulo o supera el máximo
+     */
+    DtResultadoLote[] obtenerPrestamosLote(String[] ids) throws DatosInvalidosException;
+    
+    /**
+     * Registra la devolución de varios préstamos en una sola transacción
+     * Solo se devuelven los que están EN_CURSO; los demás quedan con NO_EXISTE o ESTADO_INVALIDO
+     * @param ids IDs de los préstamos (como máximo 500)
+     * @param fechaDevolucion Fecha de devolución de todos, en formato dd/MM/yyyy
+     * @return Resultado de cada ID
+     * @throws DatosInvalidosException Si el lote es nulo, supera el máximo o la fecha no es válida
+     */
+    DtResultadoLote[] devolverPrestamosLote(String[] ids, String fechaDevolucion) throws DatosInvalidosException;
+}
@@ -1,8 +1,14 @@
 package interfaces;
 
+import datatypes.DtFiltroPrestamos;
 import datatypes.DtPrestamo;
 import excepciones.DatosInvalidosException;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.function.Predicate;
+
 /**
  * Interface para generar reportes de préstamos
  * Controlador independiente para análisis y reportes
@@ -28,6 +34,72 @@ public interface IPrestamoReporte {
                                           String fechaDesde, String fechaHasta) 
             throws DatosInvalidosException;
     
+    /**
+     * Columnas por las que se puede ordenar obtenerRangoPrestamos
+     */
+    String ORDEN_ID = "id";
+    String ORDEN_LECTOR = "lector";
+    String ORDEN_BIBLIOTECARIO = "bibliotecario";
+    String ORDEN_MATERIAL = "material";
+    String ORDEN_FECHA_SOLICITUD = "fechaSolicitud";
+    String ORDEN_FECHA_DEVOLUCION = "fechaDevolucion";
+    String ORDEN_ESTADO = "estado";
+    
+    /**
+     * Cuenta los préstamos que cumplen los filtros, agrupados por estado
+     * Con una sola consulta se obtiene el total de filas y el resumen por estado
+     * @param filtro Filtros a aplicar (los campos en null no filtran)
+     * @return Cantidad de préstamos por nombre de estado; los estados sin préstamos no aparecen
+     * @throws DatosInvalidosException si algún filtro es inválido
+     */
+    Map<String, Long> contarPrestamosPorEstado(DtFiltroPrestamos filtro) throws DatosInvalidosException;
+    
+    /**
+     * Obtiene un rango de los préstamos que cumplen los filtros, ordenados en la base de datos
+     * Pensado para tablas que piden las filas de a páginas a medida que se recorren
+     * @param filtro Filtros a aplicar (los campos en null no filtran)
+     * @param ordenarPor Una de las constantes ORDEN_*; null para el orden por defecto (fecha de solicitud descendente)
+     * @param ascendente Dirección del orden
+     * @param primero Posición (desde 0) del primer préstamo del rango
+     * @param cantidad Cantidad máxima de préstamos a devolver
+     * @return Préstamos del rango; vacío si primero supera el total
+     * @throws DatosInvalidosException si algún filtro, el orden o el rango son inválidos
+     */
+    DtPrestamo[] obtenerRangoPrestamos(DtFiltroPrestamos filtro, String ordenarPor, boolean ascendente,
+                                       int primero, int cantidad) throws DatosInvalidosException;
+    
+    /**
+     * Recorre en una sola consulta los préstamos que cumplen los filtros, en el mismo orden que
+     * obtenerRangoPrestamos; las filas se leen con un cursor y se entregan a medida que llegan
+     * Pensado para exportar lo que muestra una tabla paginada sin volver a pedirla de a páginas
+     * @param filtro Filtros a aplicar (los campos en null no filtran)
+     * @param ordenarPor Una de las constantes ORDEN_*; null para el orden por defecto
+     * @param ascendente Dirección del orden
+     * @param destino Recibe cada préstamo; si devuelve false el recorrido se corta
+     * @return Cantidad de préstamos entregados
+     * @throws DatosInvalidosException si algún filtro o el orden son inválidos
+     */
+    long recorrerPrestamos(DtFiltroPrestamos filtro, String ordenarPor, boolean ascendente,
+                           Predicate<DtPrestamo> destino) throws DatosInvalidosException;
+    
+    /**
+     * Exporta en formato CSV (UTF-8, separado por comas) los préstamos que cumplen los filtros
+     * Las filas se leen de la base de datos con un cursor y se escriben a medida que llegan,
+     * por lo que la memoria usada no depende de la cantidad de préstamos
+     * @param zona Zona específica (puede ser null para todas)
+     * @param estado Estado del préstamo (puede ser null para todos)
+     * @param fechaDesde Fecha desde (formato yyyy-MM-dd, puede ser null)
+     * @param fechaHasta Fecha hasta (formato yyyy-MM-dd, puede ser null)
+     * @param comprimir true para escribir el CSV comprimido con gzip
+     * @param salida Flujo donde se escribe el CSV; no se cierra al terminar
+     * @return Cantidad de préstamos exportados
+     * @throws DatosInvalidosException si los filtros son inválidos
+     * @throws IOException si falla la escritura en el flujo de salida
+     */
+    long exportarPrestamosCsv(String zona, String estado, String fechaDesde, String fechaHasta,
+                              boolean comprimir, OutputStream salida)
+            throws DatosInvalidosException, IOException;
+    
     /**
      * Obtiene estadísticas resumidas por zona
      * @return Array de strings con formato "ZONA: X préstamos (Y pendientes, Z en curso, W devueltos)"
@@ -2,9 +2,11 @@ package logica;
 
 import interfaces.IArticuloEspecialControlador;
 import datatypes.DtArticuloEspecial;
+import datatypes.DtCambiosArticulosEspeciales;
 import excepciones.ArticuloEspecialRepetidoException;
 import excepciones.ArticuloEspecialNoExisteException;
 import excepciones.DatosInvalidosException;
+import persistencia.RegistroCambios;
 
 import java.text.SimpleDateFormat;
 import java.util.List;
@@ -133,6 +135,20 @@ public class ArticuloEspecialControlador implements IArticuloEspecialControlador
         return resultado;
     }
     
+    @Override
+    public DtArticuloEspecial[] listarArticulosEspecialesDto() {
+        List<ArticuloEspecial> articulos = manejadorArticuloEspecial.listarArticulosEspeciales();
+        
+        DtArticuloEspecial[] resultado = new DtArticuloEspecial[articulos.size()];
+        for (int i = 0; i < articulos.size(); i++) {
+            ArticuloEspecial a = articulos.get(i);
+            resultado[i] = new DtArticuloEspecial(a.getId(), a.getDescripcion(), a.getPesoKg(),
+                a.getDimensiones(), a.getFechaRegistro());
+        }
+        
+        return resultado;
+    }
+    
     @Override
     public String[] listarArticulosEspecialesPorPeso(float pesoMin, float pesoMax) {
         if (pesoMin < 0 || pesoMax < 0 || pesoMin > pesoMax) {
@@ -223,4 +239,27 @@ public class ArticuloEspecialControlador implements IArticuloEspecialControlador
         // Delegar al manejador
         manejadorArticuloEspecial.actualizarArticuloEspecial(articuloExistente);
     }
+    
+    @Override
+    public DtCambiosArticulosEspeciales obtenerCambiosArticulosEspeciales(long desdeVersion)
+            throws DatosInvalidosException {
+        if (desdeVersion < 0) {
+            throw new DatosInvalidosException("La versión no puede ser negativa");
+        }
+        
+        RegistroCambios.Cambios cambios = RegistroCambios.listarDesde(
+            RegistroCambios.ARTICULO_ESPECIAL, desdeVersion, RegistroCambios.MAXIMO_POR_CONSULTA);
+        List<ArticuloEspecial> articulos =
+            manejadorArticuloEspecial.listarArticulosEspecialesPorIds(cambios.getModificados());
+        
+        DtArticuloEspecial[] modificados = new DtArticuloEspecial[articulos.size()];
+        for (int i = 0; i < articulos.size(); i++) {
+            ArticuloEspecial a = articulos.get(i);
+            modificados[i] = new DtArticuloEspecial(a.getId(), a.getDescripcion(), a.getPesoKg(),
+                a.getDimensiones(), a.getFechaRegistro());
+        }
+        
+        return new DtCambiosArticulosEspeciales(cambios.getVersion(), cambios.isCompleto(), modificados,
+            cambios.getEliminados().toArray(new String[0]));
+    }
 }
@@ -102,8 +102,7 @@ public class AutenticacionControlador implements IAutenticacionControlador {
         }
         
         // Cambiar password
-        lector.setPassword(passwordNuevo);
-        manejadorLector.actualizarLector(lector);
+        manejadorLector.cambiarPasswordLector(lector.getId(), passwordNuevo);
     }
     
     @Override
@@ -164,8 +163,7 @@ public class AutenticacionControlador implements IAutenticacionControlador {
         }
         
         // Restablecer password
-        lector.setPassword(passwordNuevo);
-        manejadorLector.actualizarLector(lector);
+        manejadorLector.cambiarPasswordLector(lector.getId(), passwordNuevo);
     }
     
     @Override
@@ -143,6 +143,19 @@ public class BibliotecarioControlador implements IBibliotecarioControlador {
         return resultado;
     }
     
+    @Override
+    public DtBibliotecario[] listarBibliotecariosDto() {
+        List<Bibliotecario> bibliotecarios = manejadorBibliotecario.listarBibliotecarios();
+        
+        DtBibliotecario[] resultado = new DtBibliotecario[bibliotecarios.size()];
+        for (int i = 0; i < bibliotecarios.size(); i++) {
+            Bibliotecario b = bibliotecarios.get(i);
+            resultado[i] = new DtBibliotecario(b.getId(), b.getNombre(), b.getEmail());
+        }
+        
+        return resultado;
+    }
+    
     @Override
     public void actualizarBibliotecario(String id, String nombre, String email)
             throws BibliotecarioNoExisteException, DatosInvalidosException {
@@ -0,0 +1,92 @@
+package logica;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Índice en memoria con la cantidad de préstamos PENDIENTE de cada material
+ * Se construye al iniciar con una sola consulta agregada y luego se mantiene con los
+ * cambios que registra PrestamoControlador, de modo que las consultas por material son O(1)
+ *
+ * Cada cierto tiempo se reconcilia contra la base de datos para corregir desvíos
+ * (por ejemplo, cambios hechos por otro proceso o directamente en la BD)
+ */
+public class ContadorPrestamosPendientes {
+
+    private static final long INTERVALO_RECONCILIACION_MINUTOS = 5;
+
+    private static ContadorPrestamosPendientes instancia;
+
+    private final ManejadorPrestamo manejadorPrestamo;
+    private final ScheduledExecutorService reconciliador;
+    private volatile Map<String, Integer> pendientesPorMaterial = new ConcurrentHashMap<>();
+
+    private ContadorPrestamosPendientes() {
+        this.manejadorPrestamo = ManejadorPrestamo.getInstancia();
+
+        reconciliar();
+
+        this.reconciliador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "reconciliacion-prestamos-pendientes");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        reconciliador.scheduleWithFixedDelay(this::reconciliar,
+            INTERVALO_RECONCILIACION_MINUTOS, INTERVALO_RECONCILIACION_MINUTOS, TimeUnit.MINUTES);
+    }
+
+    public static synchronized ContadorPrestamosPendientes getInstancia() {
+        if (instancia == null) {
+            instancia = new ContadorPrestamosPendientes();
+        }
+        return instancia;
+    }
+
+    /**
+     * Cantidad de préstamos pendientes del material
+     */
+    public int obtener(String materialId) {
+        if (materialId == null) {
+            return 0;
+        }
+        return pendientesPorMaterial.getOrDefault(materialId, 0);
+    }
+
+    /**
+     * Registra el cambio de un préstamo: lo descuenta del material anterior si estaba pendiente
+     * y lo suma al material nuevo si queda pendiente
+     * Para un alta se pasa null como estado anterior y para una baja null como estado nuevo
+     */
+    public void registrarCambio(String materialAnterior, EstadoPrestamo estadoAnterior,
+                                String materialNuevo, EstadoPrestamo estadoNuevo) {
+        if (estadoAnterior == EstadoPrestamo.PENDIENTE && materialAnterior != null) {
+            sumar(materialAnterior, -1);
+        }
+        if (estadoNuevo == EstadoPrestamo.PENDIENTE && materialNuevo != null) {
+            sumar(materialNuevo, 1);
+        }
+    }
+
+    private void sumar(String materialId, int delta) {
+        pendientesPorMaterial.compute(materialId, (id, actual) -> {
+            int nuevo = (actual != null ? actual : 0) + delta;
+            return nuevo > 0 ? nuevo : null;
+        });
+    }
+
+    /**
+     * Reemplaza los contadores por los valores actuales de la base de datos
+     * Los cambios registrados mientras corre la consulta pueden perderse hasta la próxima reconciliación
+     */
+    public void reconciliar() {
+        try {
+            Map<String, Integer> conteos = manejadorPrestamo.contarPrestamosPorMaterialId(EstadoPrestamo.PENDIENTE);
+            pendientesPorMaterial = new ConcurrentHashMap<>(conteos);
+        } catch (Exception e) {
+            System.err.println("Error al reconciliar préstamos pendientes por material: " + e.getMessage());
+        }
+    }
+}
@@ -65,6 +65,11 @@ public class Controlador implements IControlador {
         return bibliotecarioControlador.listarBibliotecarios();
     }
     
+    @Override
+    public DtBibliotecario[] listarBibliotecariosDto() {
+        return bibliotecarioControlador.listarBibliotecariosDto();
+    }
+    
     @Override
     public void registrarBibliotecarioConPassword(String nombre, String email, String password) 
             throws BibliotecarioRepetidoException, DatosInvalidosException {
@@ -97,6 +102,11 @@ public class Controlador implements IControlador {
         return lectorControlador.listarLectores();
     }
     
+    @Override
+    public DtLector[] listarLectoresDto() {
+        return lectorControlador.listarLectoresDto();
+    }
+    
     @Override
     public String[] listarLectoresPorEstado(String estado) {
         return lectorControlador.listarLectoresPorEstado(estado);
@@ -203,6 +213,11 @@ public class Controlador implements IControlador {
         return libroControlador.listarLibros();
     }
     
+    @Override
+    public DtLibro[] listarLibrosDto() {
+        return libroControlador.listarLibrosDto();
+    }
+    
     // ============= OPERACIONES DE ARTÍCULO ESPECIAL (delegadas) =============
     
     @Override
@@ -223,6 +238,18 @@ public class Controlador implements IControlador {
         return articuloEspecialControlador.listarArticulosEspeciales();
     }
     
+    @Override
+    public DtArticuloEspecial[] listarArticulosEspecialesDto() {
+        return articuloEspecialControlador.listarArticulosEspecialesDto();
+    }
+    
+    // ============= DATOS DE REFERENCIA =============
+    
+    @Override
+    public long obtenerVersionDatosReferencia() {
+        return VersionDatosReferencia.getInstancia().obtener();
+    }
+    
     // ============= OPERACIONES DE PRÉSTAMO (delegadas) =============
     
     @Override
@@ -258,24 +285,51 @@ public class Controlador implements IControlador {
     }
     
     @Override
-    public void cambiarEstadoPrestamo(String idPrestamo, String nuevoEstado) 
+    public DtPrestamo[] listarPrestamosDto() {
+        return prestamoControlador.listarPrestamosDto();
+    }
+    
+    @Override
+    public DtPrestamo[] listarPrestamosDtoPorEstado(String estado) throws DatosInvalidosException {
+        return prestamoControlador.listarPrestamosDtoPorEstado(estado);
+    }
+    
+    @Override
+    public DtPrestamo[] listarPrestamosDtoPorLector(String lectorId) throws DatosInvalidosException {
+        return prestamoControlador.listarPrestamosDtoPorLector(lectorId);
+    }
+    
+    @Override
+    public DtPrestamo[] listarPrestamosDtoPorMaterial(String materialId) throws DatosInvalidosException {
+        return prestamoControlador.listarPrestamosDtoPorMaterial(materialId);
+    }
+    
+    @Override
+    public DtPrestamo[] listarPrestamosPorBibliotecario(String bibliotecarioId, String estado,
+                                                        String fechaDesde, String fechaHasta)
+            throws DatosInvalidosException {
+        return prestamoControlador.listarPrestamosPorBibliotecario(bibliotecarioId, estado, fechaDesde, fechaHasta);
+    }
+    
+    @Override
+    public void cambiarEstadoPrestamoConVersion(String idPrestamo, String nuevoEstado, long version) 
             throws PrestamoNoExisteException, DatosInvalidosException {
-        prestamoControlador.cambiarEstadoPrestamo(idPrestamo, nuevoEstado);
+        prestamoControlador.cambiarEstadoPrestamoConVersion(idPrestamo, nuevoEstado, version);
     }
     
     @Override
-    public void devolverPrestamo(String idPrestamo, String fechaDevolucion) 
+    public void devolverPrestamoConVersion(String idPrestamo, String fechaDevolucion, long version) 
             throws PrestamoNoExisteException, DatosInvalidosException {
-        prestamoControlador.devolverPrestamo(idPrestamo, fechaDevolucion);
+        prestamoControlador.devolverPrestamoConVersion(idPrestamo, fechaDevolucion, version);
     }
     
     @Override
-    public void modificarPrestamo(String idPrestamo, String lectorId, String bibliotecarioId, 
-                                 String materialId, String fechaSolicitud, String estado, 
-                                 String fechaDevolucion) 
+    public void modificarPrestamoConVersion(String idPrestamo, String lectorId, String bibliotecarioId, 
+                                           String materialId, String fechaSolicitud, String estado, 
+                                           String fechaDevolucion, long version) 
             throws PrestamoNoExisteException, DatosInvalidosException {
-        prestamoControlador.modificarPrestamo(idPrestamo, lectorId, bibliotecarioId, 
-                                             materialId, fechaSolicitud, estado, fechaDevolucion);
+        prestamoControlador.modificarPrestamoConVersion(idPrestamo, lectorId, bibliotecarioId, 
+                                                       materialId, fechaSolicitud, estado, fechaDevolucion, version);
     }
     
 }
@@ -0,0 +1,62 @@
+package logica;
+
+import excepciones.DatosInvalidosException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Posición de la paginación keyset sobre préstamos: (fechaSolicitud, id) del último elemento entregado
+ * Se serializa como un token opaco en Base64 URL-safe para viajar por SOAP
+ */
+class CursorPrestamo {
+
+    private final Date fechaSolicitud;
+    private final String id;
+
+    CursorPrestamo(Date fechaSolicitud, String id) {
+        this.fechaSolicitud = fechaSolicitud;
+        this.id = id;
+    }
+
+    Date getFechaSolicitud() {
+        return fechaSolicitud;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    /**
+     * Construye el cursor que apunta justo después del préstamo dado
+     */
+    static CursorPrestamo despuesDe(Prestamo prestamo) {
+        return new CursorPrestamo(prestamo.getFechaSolicitud(), prestamo.getId());
+    }
+
+    String aToken() {
+        String plano = fechaSolicitud.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plano.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica un token de continuación; null o vacío significa "desde el principio"
+     */
+    static CursorPrestamo desdeToken(String token) throws DatosInvalidosException {
+        if (token == null || token.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            String plano = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.UTF_8);
+            int separador = plano.indexOf(':');
+            if (separador <= 0 || separador == plano.length() - 1) {
+                throw new IllegalArgumentException("Formato de token inválido");
+            }
+            long millis = Long.parseLong(plano.substring(0, separador));
+            return new CursorPrestamo(new Date(millis), plano.substring(separador + 1));
+        } catch (IllegalArgumentException e) {
+            throw new DatosInvalidosException("Token de paginación inválido");
+        }
+    }
+}
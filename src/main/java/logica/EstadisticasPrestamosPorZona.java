@@ -0,0 +1,140 @@
+package logica;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Agregado en memoria con la cantidad de préstamos por zona del lector y estado
+ * Se carga al iniciar con una sola consulta agrupada y después se mantiene con los eventos
+ * de préstamos (alta, cambio de estado, devolución, reasignación, baja) y con los cambios
+ * de zona de los lectores, así que leer las estadísticas no consulta la base de datos
+ *
+ * Cada celda es un LongAdder: los hilos que registran cambios no se bloquean entre sí
+ * Cada cierto tiempo se compara contra la base de datos y se corrigen las diferencias
+ */
+public class EstadisticasPrestamosPorZona {
+
+    private static final long INTERVALO_VERIFICACION_MINUTOS = 10;
+
+    private static EstadisticasPrestamosPorZona instancia;
+
+    private final ManejadorPrestamo manejadorPrestamo;
+    private final Map<Zona, Map<EstadoPrestamo, LongAdder>> contadores;
+    private final ScheduledExecutorService verificador;
+
+    private EstadisticasPrestamosPorZona() {
+        this.manejadorPrestamo = ManejadorPrestamo.getInstancia();
+
+        // Todas las celdas se crean de antemano; después la estructura no cambia
+        Map<Zona, Map<EstadoPrestamo, LongAdder>> celdas = new EnumMap<>(Zona.class);
+        for (Zona zona : Zona.values()) {
+            Map<EstadoPrestamo, LongAdder> porEstado = new EnumMap<>(EstadoPrestamo.class);
+            for (EstadoPrestamo estado : EstadoPrestamo.values()) {
+                porEstado.put(estado, new LongAdder());
+            }
+            celdas.put(zona, Collections.unmodifiableMap(porEstado));
+        }
+        this.contadores = Collections.unmodifiableMap(celdas);
+
+        verificar();
+
+        this.verificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "verificacion-estadisticas-zona");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        verificador.scheduleWithFixedDelay(this::verificar,
+            INTERVALO_VERIFICACION_MINUTOS, INTERVALO_VERIFICACION_MINUTOS, TimeUnit.MINUTES);
+    }
+
+    public static synchronized EstadisticasPrestamosPorZona getInstancia() {
+        if (instancia == null) {
+            instancia = new EstadisticasPrestamosPorZona();
+        }
+        return instancia;
+    }
+
+    /**
+     * Cantidad de préstamos de la zona en el estado dado
+     */
+    public long obtener(Zona zona, EstadoPrestamo estado) {
+        if (zona == null || estado == null) {
+            return 0;
+        }
+        return Math.max(0, contadores.get(zona).get(estado).sum());
+    }
+
+    /**
+     * Registra el cambio de un préstamo: lo descuenta de la celda anterior y lo suma a la nueva
+     * Para un alta se pasa null como estado anterior y para una baja null como estado nuevo
+     */
+    public void registrarCambio(Zona zonaAnterior, EstadoPrestamo estadoAnterior,
+                                Zona zonaNueva, EstadoPrestamo estadoNuevo) {
+        if (zonaAnterior == zonaNueva && estadoAnterior == estadoNuevo) {
+            return;
+        }
+        if (zonaAnterior != null && estadoAnterior != null) {
+            contadores.get(zonaAnterior).get(estadoAnterior).decrement();
+        }
+        if (zonaNueva != null && estadoNuevo != null) {
+            contadores.get(zonaNueva).get(estadoNuevo).increment();
+        }
+    }
+
+    /**
+     * Mueve todos los préstamos de un lector a su nueva zona
+     * Se llama después de persistir el cambio de zona del lector
+     */
+    public void registrarCambioDeZona(String lectorId, Zona zonaAnterior, Zona zonaNueva) {
+        if (lectorId == null || zonaAnterior == zonaNueva) {
+            return;
+        }
+        try {
+            Map<EstadoPrestamo, Long> prestamos = manejadorPrestamo.contarPrestamosPorEstadoDeLector(lectorId);
+            for (Map.Entry<EstadoPrestamo, Long> entrada : prestamos.entrySet()) {
+                if (zonaAnterior != null) {
+                    contadores.get(zonaAnterior).get(entrada.getKey()).add(-entrada.getValue());
+                }
+                if (zonaNueva != null) {
+                    contadores.get(zonaNueva).get(entrada.getKey()).add(entrada.getValue());
+                }
+            }
+        } catch (Exception e) {
+            // La próxima verificación corrige las celdas afectadas
+            System.err.println("Error al mover las estadísticas del lector " + lectorId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Compara los contadores con la base de datos y corrige las diferencias
+     * Se suma la diferencia en lugar de reemplazar el valor, para no perder los cambios
+     * registrados mientras corre la consulta (si los hubo, se ajustan en la siguiente verificación)
+     */
+    public void verificar() {
+        try {
+            Map<Zona, Map<EstadoPrestamo, Long>> reales = manejadorPrestamo.contarPrestamosPorZonaYEstado();
+            int corregidas = 0;
+            for (Zona zona : Zona.values()) {
+                Map<EstadoPrestamo, Long> realesZona = reales.getOrDefault(zona, Collections.emptyMap());
+                for (EstadoPrestamo estado : EstadoPrestamo.values()) {
+                    LongAdder contador = contadores.get(zona).get(estado);
+                    long diferencia = realesZona.getOrDefault(estado, 0L) - contador.sum();
+                    if (diferencia != 0) {
+                        contador.add(diferencia);
+                        corregidas++;
+                    }
+                }
+            }
+            if (corregidas > 0 && instancia != null) {
+                System.out.println("Estadísticas por zona corregidas en " + corregidas + " celdas");
+            }
+        } catch (Exception e) {
+            System.err.println("Error al verificar estadísticas de préstamos por zona: " + e.getMessage());
+        }
+    }
+}
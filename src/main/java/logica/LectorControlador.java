@@ -1,10 +1,12 @@
 package logica;
 
 import interfaces.ILectorControlador;
+import datatypes.DtCambiosLectores;
 import datatypes.DtLector;
 import excepciones.LectorRepetidoException;
 import excepciones.LectorNoExisteException;
 import excepciones.DatosInvalidosException;
+import persistencia.RegistroCambios;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -239,6 +241,18 @@ public class LectorControlador implements ILectorControlador {
         return resultado;
     }
     
+    @Override
+    public DtLector[] listarLectoresDto() {
+        List<Lector> lectores = manejadorLector.listarLectores();
+        
+        DtLector[] resultado = new DtLector[lectores.size()];
+        for (int i = 0; i < lectores.size(); i++) {
+            resultado[i] = convertirADto(lectores.get(i));
+        }
+        
+        return resultado;
+    }
+    
     @Override
     public String[] listarLectoresPorEstado(String estado) {
         if (estado == null || estado.trim().isEmpty()) {
@@ -301,8 +315,7 @@ public class LectorControlador implements ILectorControlador {
             throw new LectorNoExisteException("No se encontró el lector con ID: " + idLector);
         }
         EstadoLector estadoLector = parseEstado(nuevoEstado);
-        lector.setEstado(estadoLector);
-        manejadorLector.actualizarLector(lector);
+        manejadorLector.cambiarEstadoLector(lector.getId(), estadoLector);
     }
 
     @Override
@@ -318,14 +331,13 @@ public class LectorControlador implements ILectorControlador {
             throw new LectorNoExisteException("No se encontró el lector con ID: " + idLector);
         }
         Zona zonaLector = parseZona(nuevaZona);
-        lector.setZona(zonaLector);
-        manejadorLector.actualizarLector(lector);
+        manejadorLector.cambiarZonaLector(lector.getId(), zonaLector);
     }
 
     @Override
     public void actualizarLector(String id, String nombre, String email, String direccion,
                                 String estado, String zona)
-            throws LectorNoExisteException, DatosInvalidosException {
+            throws LectorNoExisteException, DatosInvalidosException, LectorRepetidoException {
         
         // Verificar que existe
         Lector lector = manejadorLector.obtenerLector(id);
@@ -347,28 +359,24 @@ public class LectorControlador implements ILectorControlador {
         EstadoLector estadoLector = parseEstado(estado);
         Zona zonaLector = parseZona(zona);
         
-        // Actualizar datos
-        lector.setNombre(nombre.trim());
-        lector.setEmail(email.trim());
-        lector.setDireccion(direccion.trim());
-        lector.setEstado(estadoLector);
-        lector.setZona(zonaLector);
-        
-        // Validaciones adicionales
-        if (!lector.tieneNombreValido()) {
+        // Validaciones adicionales sobre una copia, sin tocar el lector compartido
+        Lector datosNuevos = new Lector(nombre.trim(), email.trim(), direccion.trim(),
+                                        lector.getFechaRegistro(), estadoLector, zonaLector);
+        if (!datosNuevos.tieneNombreValido()) {
             throw new DatosInvalidosException("Nombre inválido");
         }
         
-        if (!lector.tieneEmailValido()) {
+        if (!datosNuevos.tieneEmailValido()) {
             throw new DatosInvalidosException("Email inválido");
         }
         
-        if (!lector.tieneDireccionValida()) {
+        if (!datosNuevos.tieneDireccionValida()) {
             throw new DatosInvalidosException("Dirección inválida");
         }
         
-        // Delegar al manejador para actualizar en BD
-        manejadorLector.actualizarLector(lector);
+        // Delegar al manejador para actualizar en memoria y BD de forma atómica
+        manejadorLector.modificarLector(lector.getId(), nombre.trim(), email.trim(), direccion.trim(),
+                                        estadoLector, zonaLector);
     }
     
     @Override
@@ -414,6 +422,25 @@ public class LectorControlador implements ILectorControlador {
         }
     }
     
+    @Override
+    public DtCambiosLectores obtenerCambiosLectores(long desdeVersion) throws DatosInvalidosException {
+        if (desdeVersion < 0) {
+            throw new DatosInvalidosException("La versión no puede ser negativa");
+        }
+        
+        RegistroCambios.Cambios cambios = RegistroCambios.listarDesde(
+            RegistroCambios.LECTOR, desdeVersion, RegistroCambios.MAXIMO_POR_CONSULTA);
+        List<Lector> lectores = manejadorLector.listarLectoresPorIds(cambios.getModificados());
+        
+        DtLector[] modificados = new DtLector[lectores.size()];
+        for (int i = 0; i < lectores.size(); i++) {
+            modificados[i] = convertirADto(lectores.get(i));
+        }
+        
+        return new DtCambiosLectores(cambios.getVersion(), cambios.isCompleto(), modificados,
+            cambios.getEliminados().toArray(new String[0]));
+    }
+    
     private DtLector convertirADto(Lector lector) {
         return new DtLector(
             lector.getId(),
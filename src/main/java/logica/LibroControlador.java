@@ -1,10 +1,12 @@
 package logica;
 
 import interfaces.ILibroControlador;
+import datatypes.DtCambiosLibros;
 import datatypes.DtLibro;
 import excepciones.LibroRepetidoException;
 import excepciones.LibroNoExisteException;
 import excepciones.DatosInvalidosException;
+import persistencia.RegistroCambios;
 
 import java.text.SimpleDateFormat;
 import java.util.List;
@@ -119,6 +121,19 @@ public class LibroControlador implements ILibroControlador {
         return resultado;
     }
     
+    @Override
+    public DtLibro[] listarLibrosDto() {
+        List<Libro> libros = manejadorLibro.listarLibros();
+        
+        DtLibro[] resultado = new DtLibro[libros.size()];
+        for (int i = 0; i < libros.size(); i++) {
+            Libro l = libros.get(i);
+            resultado[i] = new DtLibro(l.getId(), l.getTitulo(), l.getCantidadPaginas(), l.getFechaRegistro());
+        }
+        
+        return resultado;
+    }
+    
     @Override
     public String[] listarLibrosPorPaginas(int paginasMin, int paginasMax) {
         if (paginasMin < 0 || paginasMax < 0 || paginasMin > paginasMax) {
@@ -196,4 +211,24 @@ public class LibroControlador implements ILibroControlador {
         // Delegar al manejador
         manejadorLibro.actualizarLibro(libroExistente);
     }
+    
+    @Override
+    public DtCambiosLibros obtenerCambiosLibros(long desdeVersion) throws DatosInvalidosException {
+        if (desdeVersion < 0) {
+            throw new DatosInvalidosException("La versión no puede ser negativa");
+        }
+        
+        RegistroCambios.Cambios cambios = RegistroCambios.listarDesde(
+            RegistroCambios.LIBRO, desdeVersion, RegistroCambios.MAXIMO_POR_CONSULTA);
+        List<Libro> libros = manejadorLibro.listarLibrosPorIds(cambios.getModificados());
+        
+        DtLibro[] modificados = new DtLibro[libros.size()];
+        for (int i = 0; i < libros.size(); i++) {
+            Libro l = libros.get(i);
+            modificados[i] = new DtLibro(l.getId(), l.getTitulo(), l.getCantidadPaginas(), l.getFechaRegistro());
+        }
+        
+        return new DtCambiosLibros(cambios.getVersion(), cambios.isCompleto(), modificados,
+            cambios.getEliminados().toArray(new String[0]));
+    }
 }
@@ -1,6 +1,7 @@
 package logica;
 
-import persistencia.HibernateUtil;
+import persistencia.RegistroCambios;
+import persistencia.UnidadDeTrabajo;
 import excepciones.ArticuloEspecialRepetidoException;
 import excepciones.ArticuloEspecialNoExisteException;
 import excepciones.DatosInvalidosException;
@@ -8,6 +9,8 @@ import excepciones.DatosInvalidosException;
 import org.hibernate.Session;
 import org.hibernate.Transaction;
 import org.hibernate.query.Query;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Date;
 import java.util.Calendar;
@@ -42,8 +45,8 @@ public class ManejadorArticuloEspecial {
         Transaction transaction = null;
         
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
+            session = UnidadDeTrabajo.abrirSesion();
+            transaction = UnidadDeTrabajo.iniciarTransaccion(session);
             
             // Verificar idempotencia "suave" - buscar duplicados en ventana de ±1 día
             if (existeArticuloSimilar(session, descripcion, pesoKg, dimensiones)) {
@@ -57,13 +60,14 @@ public class ManejadorArticuloEspecial {
             ArticuloEspecial articulo = new ArticuloEspecial(descripcion, pesoKg, dimensiones);
             
             session.save(articulo);
-            transaction.commit();
+            RegistroCambios.registrar(session, RegistroCambios.ARTICULO_ESPECIAL, articulo.getId(), false);
+            UnidadDeTrabajo.confirmarTransaccion(transaction);
             
             System.out.println("Artículo especial registrado exitosamente: " + articulo.getId());
             
         } catch (Exception e) {
             if (transaction != null) {
-                transaction.rollback();
+                UnidadDeTrabajo.deshacerTransaccion(transaction);
             }
             if (e instanceof ArticuloEspecialRepetidoException || e instanceof DatosInvalidosException) {
                 throw e;
@@ -71,7 +75,7 @@ public class ManejadorArticuloEspecial {
             throw new RuntimeException("Error al registrar artículo especial: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -147,11 +151,11 @@ public class ManejadorArticuloEspecial {
     public ArticuloEspecial obtenerArticuloEspecial(String id) {
         Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = UnidadDeTrabajo.abrirSesion();
             return session.get(ArticuloEspecial.class, id);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -162,7 +166,7 @@ public class ManejadorArticuloEspecial {
     public List<ArticuloEspecial> listarArticulosEspeciales() {
         Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = UnidadDeTrabajo.abrirSesion();
             Query<ArticuloEspecial> query = session.createQuery(
                 "SELECT a FROM ArticuloEspecial a ORDER BY a.fechaIngreso DESC", 
                 ArticuloEspecial.class
@@ -170,7 +174,30 @@ public class ManejadorArticuloEspecial {
             return query.getResultList();
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
+            }
+        }
+    }
+    
+    /**
+     * Lista los artículos especiales con los IDs dados (los que no existen se omiten)
+     */
+    public List<ArticuloEspecial> listarArticulosEspecialesPorIds(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Session session = null;
+        try {
+            session = UnidadDeTrabajo.abrirSesion();
+            Query<ArticuloEspecial> query = session.createQuery(
+                "SELECT a FROM ArticuloEspecial a WHERE a.id IN :ids", 
+                ArticuloEspecial.class
+            );
+            query.setParameter("ids", ids);
+            return query.getResultList();
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -181,7 +208,7 @@ public class ManejadorArticuloEspecial {
     public ArticuloEspecial obtenerArticuloEspecialPorDescripcion(String descripcion) throws ArticuloEspecialNoExisteException {
         Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = UnidadDeTrabajo.abrirSesion();
             Query<ArticuloEspecial> query = session.createQuery(
                 "SELECT a FROM ArticuloEspecial a WHERE a.descripcion = :descripcion", 
                 ArticuloEspecial.class
@@ -194,7 +221,7 @@ public class ManejadorArticuloEspecial {
             return articulo;
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -205,7 +232,7 @@ public class ManejadorArticuloEspecial {
     public List<ArticuloEspecial> listarArticulosEspecialesPorPeso(float pesoMin, float pesoMax) {
         Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = UnidadDeTrabajo.abrirSesion();
             Query<ArticuloEspecial> query = session.createQuery(
                 "SELECT a FROM ArticuloEspecial a WHERE a.pesoKg BETWEEN :min AND :max ORDER BY a.pesoKg ASC", 
                 ArticuloEspecial.class
@@ -215,7 +242,7 @@ public class ManejadorArticuloEspecial {
             return query.getResultList();
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -226,7 +253,7 @@ public class ManejadorArticuloEspecial {
     public boolean existeArticuloEspecialConDescripcion(String descripcion) {
         Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = UnidadDeTrabajo.abrirSesion();
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(a) FROM ArticuloEspecial a WHERE a.descripcion = :descripcion", 
                 Long.class
@@ -235,7 +262,7 @@ public class ManejadorArticuloEspecial {
             return query.getSingleResult() > 0;
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -248,8 +275,8 @@ public class ManejadorArticuloEspecial {
         Transaction transaction = null;
         
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
+            session = UnidadDeTrabajo.abrirSesion();
+            transaction = UnidadDeTrabajo.iniciarTransaccion(session);
             
             // Verificar que el artículo existe
             ArticuloEspecial articuloExistente = session.get(ArticuloEspecial.class, articulo.getId());
@@ -258,11 +285,12 @@ public class ManejadorArticuloEspecial {
             }
             
             session.update(articulo);
-            transaction.commit();
+            RegistroCambios.registrar(session, RegistroCambios.ARTICULO_ESPECIAL, articulo.getId(), false);
+            UnidadDeTrabajo.confirmarTransaccion(transaction);
             
         } catch (Exception e) {
             if (transaction != null) {
-                transaction.rollback();
+                UnidadDeTrabajo.deshacerTransaccion(transaction);
             }
             if (e instanceof ArticuloEspecialNoExisteException) {
                 throw e;
@@ -270,7 +298,7 @@ public class ManejadorArticuloEspecial {
             throw new RuntimeException("Error al actualizar artículo especial: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
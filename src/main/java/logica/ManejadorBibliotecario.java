@@ -1,29 +1,40 @@
 package logica;
 
 import persistencia.HibernateUtil;
+import persistencia.RegistroCambios;
+import persistencia.SecuenciaPorBloques;
+import persistencia.UnidadDeTrabajo;
 import excepciones.BibliotecarioRepetidoException;
 import excepciones.BibliotecarioNoExisteException;
 
 import org.hibernate.Session;
 import org.hibernate.Transaction;
+import org.hibernate.query.NativeQuery;
 import org.hibernate.query.Query;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Manejador Singleton para operaciones CRUD de Bibliotecario
  */
 public class ManejadorBibliotecario {
     private static ManejadorBibliotecario instancia = null;
-    private static AtomicInteger contadorId = new AtomicInteger(1);
-    private static AtomicInteger contadorEmpleado = new AtomicInteger(1000);
+    
+    // Tamaño del bloque de números reservado por cada acceso a las secuencias
+    private static final int TAMANO_BLOQUE_IDS = 20;
+    
+    private final SecuenciaPorBloques secuenciaIds = new SecuenciaPorBloques(
+        "seq_bibliotecario_id",
+        "SELECT MAX(CAST(SUBSTRING(id FROM 2) AS BIGINT)) FROM usuarios WHERE id ~ '^B[0-9]+$'",
+        1, TAMANO_BLOQUE_IDS);
+    private final SecuenciaPorBloques secuenciaEmpleados = new SecuenciaPorBloques(
+        "seq_numero_empleado",
+        "SELECT MAX(CAST(numeroEmpleado AS BIGINT)) FROM bibliotecarios WHERE numeroEmpleado ~ '^[0-9]+$'",
+        1000, TAMANO_BLOQUE_IDS);
     
     private ManejadorBibliotecario() {
-        // Inicializar contadores con los últimos números usados
-        inicializarContadores();
     }
     
-    public static ManejadorBibliotecario getInstancia() {
+    public static synchronized ManejadorBibliotecario getInstancia() {
         if (instancia == null) {
             instancia = new ManejadorBibliotecario();
         }
@@ -32,121 +43,17 @@ public class ManejadorBibliotecario {
     
     /**
      * Genera un ID único secuencial para bibliotecario (B1, B2, B3...)
+     * Los números salen de una secuencia de la BD reservada por bloques
      */
-    private synchronized String generarIdBibliotecario() {
-        // Verificar cuál es el último ID en la BD para evitar duplicados
-        int ultimoNumero = obtenerUltimoNumeroBibliotecario();
-        if (ultimoNumero >= contadorId.get()) {
-            contadorId.set(ultimoNumero + 1);
-        }
-        return "B" + contadorId.getAndIncrement();
+    private String generarIdBibliotecario(Session session) {
+        return "B" + secuenciaIds.siguienteValor(session);
     }
     
     /**
      * Genera un número de empleado único secuencial (1000, 1001, 1002...)
      */
-    private synchronized String generarNumeroEmpleado() {
-        // Verificar cuál es el último número en la BD para evitar duplicados
-        int ultimoNumero = obtenerUltimoNumeroEmpleado();
-        if (ultimoNumero >= contadorEmpleado.get()) {
-            contadorEmpleado.set(ultimoNumero + 1);
-        }
-        return String.valueOf(contadorEmpleado.getAndIncrement());
-    }
-    
-    /**
-     * Obtiene el último número de bibliotecario de la base de datos
-     */
-    private int obtenerUltimoNumeroBibliotecario() {
-        Session session = null;
-        try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            
-            // Consultar todos los IDs que empiecen con 'B' y extraer el número más alto
-            Query<String> query = session.createQuery(
-                "SELECT u.id FROM Usuario u WHERE u.id LIKE 'B%'", String.class);
-            List<String> ids = query.list();
-            
-            int maxNumero = 0;
-            for (String id : ids) {
-                if (id != null && id.length() > 1) {
-                    try {
-                        String numeroStr = id.substring(1); // Quitar 'B'
-                        int numero = Integer.parseInt(numeroStr);
-                        if (numero > maxNumero) {
-                            maxNumero = numero;
-                        }
-                    } catch (NumberFormatException e) {
-                        // Ignorar IDs con formato inválido
-                    }
-                }
-            }
-            
-            return maxNumero;
-            
-        } catch (Exception e) {
-            // En caso de error, retornar 0 para usar contador por defecto
-            System.err.println("Error al obtener último número de bibliotecario: " + e.getMessage());
-            return 0;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
-        }
-    }
-    
-    /**
-     * Obtiene el último número de empleado de la base de datos
-     */
-    private int obtenerUltimoNumeroEmpleado() {
-        Session session = null;
-        try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            
-            // Consultar todos los números de empleado y obtener el más alto
-            Query<String> query = session.createQuery(
-                "SELECT b.numeroEmpleado FROM Bibliotecario b", String.class);
-            List<String> numeros = query.list();
-            
-            int maxNumero = 999; // Empezar en 999 para que el primer número sea 1000
-            for (String numero : numeros) {
-                if (numero != null) {
-                    try {
-                        int num = Integer.parseInt(numero);
-                        if (num > maxNumero) {
-                            maxNumero = num;
-                        }
-                    } catch (NumberFormatException e) {
-                        // Ignorar números con formato inválido
-                    }
-                }
-            }
-            
-            return maxNumero;
-            
-        } catch (Exception e) {
-            // En caso de error, retornar 999 para usar contador por defecto (1000)
-            System.err.println("Error al obtener último número de empleado: " + e.getMessage());
-            return 999;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
-        }
-    }
-    
-    /**
-     * Inicializa los contadores con base en los bibliotecarios existentes
-     */
-    private void inicializarContadores() {
-        int ultimoId = obtenerUltimoNumeroBibliotecario();
-        int ultimoEmpleado = obtenerUltimoNumeroEmpleado();
-        
-        contadorId.set(ultimoId + 1);
-        contadorEmpleado.set(ultimoEmpleado + 1);
-        
-        System.out.println("Contador de bibliotecarios inicializado en: B" + contadorId.get());
-        System.out.println("Contador de empleados inicializado en: " + contadorEmpleado.get());
+    private String generarNumeroEmpleado(Session session) {
+        return String.valueOf(secuenciaEmpleados.siguienteValor(session));
     }
     
     public void agregarBibliotecario(Bibliotecario bibliotecario) throws BibliotecarioRepetidoException {
@@ -154,17 +61,17 @@ public class ManejadorBibliotecario {
         Transaction transaction = null;
         
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
+            session = UnidadDeTrabajo.abrirSesion();
+            transaction = UnidadDeTrabajo.iniciarTransaccion(session);
             
             // Generar ID automáticamente si no tiene
             if (bibliotecario.getId() == null || bibliotecario.getId().trim().isEmpty()) {
-                bibliotecario.setId(generarIdBibliotecario());
+                bibliotecario.setId(generarIdBibliotecario(session));
             }
             
             // Generar número de empleado automáticamente si no tiene
             if (bibliotecario.getNumeroEmpleado() == null || bibliotecario.getNumeroEmpleado().trim().isEmpty()) {
-                bibliotecario.setNumeroEmpleado(generarNumeroEmpleado());
+                bibliotecario.setNumeroEmpleado(generarNumeroEmpleado(session));
             }
             
             // Verificar si ya existe por ID
@@ -174,11 +81,12 @@ public class ManejadorBibliotecario {
             }
             
             session.save(bibliotecario);
-            transaction.commit();
+            RegistroCambios.registrar(session, RegistroCambios.BIBLIOTECARIO, bibliotecario.getId(), false);
+            UnidadDeTrabajo.confirmarTransaccion(transaction);
             
         } catch (Exception e) {
             if (transaction != null) {
-                transaction.rollback();
+                UnidadDeTrabajo.deshacerTransaccion(transaction);
             }
             if (e instanceof BibliotecarioRepetidoException) {
                 throw e;
@@ -186,7 +94,7 @@ public class ManejadorBibliotecario {
             throw new RuntimeException("Error al agregar bibliotecario: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -195,7 +103,7 @@ public class ManejadorBibliotecario {
         Session session = null;
         
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = UnidadDeTrabajo.abrirSesion();
             Bibliotecario bibliotecario = session.get(Bibliotecario.class, id);
             if (bibliotecario == null) {
                 throw new BibliotecarioNoExisteException("No existe un bibliotecario con el ID: " + id);
@@ -209,7 +117,7 @@ public class ManejadorBibliotecario {
             throw new RuntimeException("Error al obtener bibliotecario: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -218,7 +126,7 @@ public class ManejadorBibliotecario {
         Session session = null;
         
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = UnidadDeTrabajo.abrirSesion();
             Query<Bibliotecario> query = session.createQuery("SELECT b FROM Bibliotecario b ORDER BY b.nombre", Bibliotecario.class);
             return query.getResultList();
             
@@ -226,7 +134,7 @@ public class ManejadorBibliotecario {
             throw new RuntimeException("Error al listar bibliotecarios: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -238,7 +146,7 @@ public class ManejadorBibliotecario {
         Session session = null;
         
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = UnidadDeTrabajo.abrirSesion();
             
             // Buscar por email
             Query<Bibliotecario> query = session.createQuery(
@@ -251,7 +159,7 @@ public class ManejadorBibliotecario {
             return null;
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -263,7 +171,7 @@ public class ManejadorBibliotecario {
         Session session = null;
         
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = UnidadDeTrabajo.abrirSesion();
             
             // Buscar por nombre
             Query<Bibliotecario> query = session.createQuery(
@@ -276,7 +184,7 @@ public class ManejadorBibliotecario {
             return null;
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -288,7 +196,7 @@ public class ManejadorBibliotecario {
         Session session = null;
         
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = UnidadDeTrabajo.abrirSesion();
             
             // Buscar por número de empleado
             Query<Bibliotecario> query = session.createQuery(
@@ -301,7 +209,7 @@ public class ManejadorBibliotecario {
             return null;
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -315,8 +223,8 @@ public class ManejadorBibliotecario {
         
         try {
             System.out.println("DEBUG: Iniciando actualización de bibliotecario " + bibliotecario.getId() + " con password: " + bibliotecario.getPassword());
-            session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
+            session = UnidadDeTrabajo.abrirSesion();
+            transaction = UnidadDeTrabajo.iniciarTransaccion(session);
             
             // Verificar que el bibliotecario existe
             Bibliotecario bibliotecarioExistente = session.get(Bibliotecario.class, bibliotecario.getId());
@@ -327,19 +235,25 @@ public class ManejadorBibliotecario {
             System.out.println("DEBUG: Bibliotecario encontrado en BD. Password actual: " + bibliotecarioExistente.getPassword());
             
             // Usar consulta SQL nativa para actualizar el password
-            Query<?> updateQuery = session.createNativeQuery(
+            NativeQuery<?> updateQuery = session.createNativeQuery(
                 "UPDATE usuarios SET password = :password WHERE id = :id");
+            // Limitar la invalidación de caché a la región de usuarios
+            updateQuery.addSynchronizedEntityClass(Bibliotecario.class);
             updateQuery.setParameter("password", bibliotecario.getPassword());
             updateQuery.setParameter("id", bibliotecario.getId());
             int rowsUpdated = updateQuery.executeUpdate();
             System.out.println("DEBUG: Consulta SQL nativa ejecutada. Filas actualizadas: " + rowsUpdated);
-            transaction.commit();
+            RegistroCambios.registrar(session, RegistroCambios.BIBLIOTECARIO, bibliotecario.getId(), false);
+            UnidadDeTrabajo.confirmarTransaccion(transaction);
             System.out.println("DEBUG: Transacción commitada");
             
+            // El UPDATE nativo no pasa por la Session: invalidar la entrada cacheada
+            HibernateUtil.invalidarCache(Bibliotecario.class, bibliotecario.getId());
+            
         } catch (Exception e) {
             System.out.println("DEBUG: Error en actualizarBibliotecario: " + e.getMessage());
             if (transaction != null) {
-                transaction.rollback();
+                UnidadDeTrabajo.deshacerTransaccion(transaction);
                 System.out.println("DEBUG: Transacción rollback");
             }
             if (e instanceof BibliotecarioNoExisteException) {
@@ -348,7 +262,7 @@ public class ManejadorBibliotecario {
             throw new RuntimeException("Error al actualizar bibliotecario: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
                 System.out.println("DEBUG: Sesión cerrada");
             }
         }
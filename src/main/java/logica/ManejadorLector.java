@@ -2,32 +2,71 @@ package logica;
 
 import persistencia.HibernateUtil;
 import persistencia.LectorDAO;
+import persistencia.SecuenciaPorBloques;
 import excepciones.LectorNoExisteException;
+import excepciones.LectorRepetidoException;
+import org.hibernate.exception.ConstraintViolationException;
 
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
-import org.hibernate.Session;
-import org.hibernate.query.Query;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Manejador para operaciones relacionadas con lectores
  * Ahora con persistencia real en PostgreSQL
+ * 
+ * Es seguro para uso concurrente (los publicadores SOAP atienden desde varios hilos):
+ * el cache y los índices son estructuras concurrentes y cada modificación de un lector
+ * se hace bajo el candado de su franja sobre una copia, que se persiste y recién entonces
+ * reemplaza al lector del mapa y de los índices. Los lectores del mapa nunca se modifican,
+ * así las lecturas sin candado ven un lector completo y ya guardado.
  */
 public class ManejadorLector {
     
-    private Map<String, Lector> lectores = new HashMap<>();
-    private AtomicInteger contadorId = new AtomicInteger(1);
-    private LectorDAO lectorDAO;
+    // Cantidad de franjas de candados; los lectores se reparten por hash de ID
+    private static final int CANTIDAD_FRANJAS = 32;
+    
+    private final Map<String, Lector> lectores = new ConcurrentHashMap<>();
+    
+    // Índices secundarios sobre el mapa de lectores (guardan IDs)
+    private final Map<String, Set<String>> indicePorEmail = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> indicePorNombre = new ConcurrentHashMap<>();
+    // Los EnumMap se llenan en el constructor y no cambian de estructura después
+    private final Map<Zona, Set<String>> indicePorZona = new EnumMap<>(Zona.class);
+    private final Map<EstadoLector, Set<String>> indicePorEstado = new EnumMap<>(EstadoLector.class);
+    // Claves con las que quedó indexado cada lector
+    private final Map<String, InstantaneaLector> instantaneas = new ConcurrentHashMap<>();
+    private final ReentrantLock[] franjas = new ReentrantLock[CANTIDAD_FRANJAS];
+    // Emails (normalizados) de altas y modificaciones en curso: se reservan antes de guardar y
+    // se liberan después de indexar, así en todo momento un email está reservado, indexado o libre
+    private final Set<String> emailsEnAlta = ConcurrentHashMap.newKeySet();
+    // Tamaño del bloque de IDs reservado por cada acceso a la secuencia
+    private static final int TAMANO_BLOQUE_IDS = 20;
+    // Índice único de emails de lectores (MigradorEsquema, versión 6)
+    private static final String RESTRICCION_EMAIL_UNICO = "ux_usuarios_email_lector";
+    
+    private final LectorDAO lectorDAO;
+    private final SecuenciaPorBloques secuenciaIds = new SecuenciaPorBloques(
+        "seq_lector_id",
+        "SELECT MAX(CAST(SUBSTRING(id FROM 2) AS BIGINT)) FROM usuarios WHERE id ~ '^L[0-9]+$'",
+        1, TAMANO_BLOQUE_IDS);
     
     public ManejadorLector() {
+        for (Zona zona : Zona.values()) {
+            indicePorZona.put(zona, ConcurrentHashMap.newKeySet());
+        }
+        for (EstadoLector estado : EstadoLector.values()) {
+            indicePorEstado.put(estado, ConcurrentHashMap.newKeySet());
+        }
+        for (int i = 0; i < CANTIDAD_FRANJAS; i++) {
+            franjas[i] = new ReentrantLock();
+        }
+        
         // Inicializar DAO con SessionFactory de Hibernate
         this.lectorDAO = new LectorDAO(HibernateUtil.getSessionFactory());
         
         // Cargar lectores existentes de la base de datos
         cargarLectoresDesdeBaseDatos();
-        
-        // Inicializar contador con el último número usado
-        inicializarContador();
     }
     
     /**
@@ -38,6 +77,7 @@ public class ManejadorLector {
             List<Lector> lectoresDB = lectorDAO.listarTodos();
             for (Lector lector : lectoresDB) {
                 lectores.put(lector.getId(), lector);
+                indexar(lector);
             }
             System.out.println("Cargados " + lectoresDB.size() + " lectores desde la base de datos");
         } catch (Exception e) {
@@ -46,93 +86,92 @@ public class ManejadorLector {
     }
     
     /**
-     * Obtiene el último número de lector de la base de datos
+     * Genera un ID único secuencial para lector (L1, L2, L3...)
+     * Los números salen de una secuencia de la BD reservada por bloques
+     * 
+     * El prefijo "L" no es solo de presentación: usuarios guarda lectores y bibliotecarios
+     * juntos, y el índice único ux_usuarios_email_lector (MigradorEsquema, versión 6) filtra
+     * los lectores con id LIKE 'L%'. Cambiar el formato obliga a migrar ese índice
      */
-    private int obtenerUltimoNumeroLector() {
-        Session session = null;
+    private String generarIdLector() {
+        return "L" + secuenciaIds.siguienteValor();
+    }
+    
+    /**
+     * Agrega un nuevo lector al sistema
+     * El email se reserva antes de guardar, de modo que dos altas simultáneas con el mismo
+     * email no pasan ambas; el lector se vuelve visible en memoria solo después de guardarlo
+     * @throws LectorRepetidoException si ya existe (o se está dando de alta) un lector con ese email
+     */
+    public void agregarLector(Lector lector) throws LectorRepetidoException {
+        if (lector == null) {
+            throw new IllegalArgumentException("El lector no puede ser null");
+        }
+        
+        String email = normalizar(lector.getEmail());
+        if (email != null && !reservarEmail(email)) {
+            throw new LectorRepetidoException("Ya existe un lector con el email: " + lector.getEmail());
+        }
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            
-            // Consultar todos los IDs que empiecen con 'L' y extraer el número más alto
-            Query<String> query = session.createQuery(
-                "SELECT u.id FROM Usuario u WHERE u.id LIKE 'L%'", String.class);
-            List<String> ids = query.list();
+            if (lector.getId() == null || lector.getId().trim().isEmpty()) {
+                // Generar ID automático secuencial si no tiene uno
+                lector.setId(generarIdLector());
+            }
             
-            int maxNumero = 0;
-            for (String id : ids) {
-                if (id != null && id.length() > 1) {
-                    try {
-                        String numeroStr = id.substring(1); // Quitar 'L'
-                        int numero = Integer.parseInt(numeroStr);
-                        if (numero > maxNumero) {
-                            maxNumero = numero;
-                        }
-                    } catch (NumberFormatException e) {
-                        // Ignorar IDs con formato inválido
+            ReentrantLock candado = candadoDe(lector.getId());
+            candado.lock();
+            try {
+                if (lectores.containsKey(lector.getId())) {
+                    throw new IllegalArgumentException("Ya existe un lector con ID: " + lector.getId());
+                }
+                
+                try {
+                    lectorDAO.guardar(lector);
+                    System.out.println("Lector guardado exitosamente en BD: " + lector.getId());
+                } catch (Exception e) {
+                    // El índice único de la BD detecta el email repetido por otro proceso
+                    if (violaRestriccion(e, RESTRICCION_EMAIL_UNICO)) {
+                        throw new LectorRepetidoException("Ya existe un lector con el email: " + lector.getEmail(), e);
                     }
+                    throw new RuntimeException("Error al guardar lector en base de datos: " + e.getMessage(), e);
                 }
+                
+                lectores.put(lector.getId(), lector);
+                indexar(lector);
+            } finally {
+                candado.unlock();
             }
-            
-            return maxNumero;
-            
-        } catch (Exception e) {
-            // En caso de error, retornar 0 para usar contador por defecto
-            System.err.println("Error al obtener último número de lector: " + e.getMessage());
-            return 0;
         } finally {
-            if (session != null) {
-                session.close();
+            if (email != null) {
+                emailsEnAlta.remove(email);
             }
         }
     }
     
     /**
-     * Inicializa el contador con base en los lectores existentes
-     */
-    private void inicializarContador() {
-        int ultimoNumero = obtenerUltimoNumeroLector();
-        contadorId.set(ultimoNumero + 1);
-        System.out.println("Contador de lectores inicializado en: L" + contadorId.get());
-    }
-    
-    /**
-     * Genera un ID único secuencial para lector (L1, L2, L3...)
+     * Reserva un email para un alta o una modificación: falla si ya está indexado
+     * o si otra operación en curso lo reservó
      */
-    private synchronized String generarIdLector() {
-        // Verificar cuál es el último ID en la BD para evitar duplicados
-        int ultimoNumero = obtenerUltimoNumeroLector();
-        if (ultimoNumero >= contadorId.get()) {
-            contadorId.set(ultimoNumero + 1);
+    private boolean reservarEmail(String emailNormalizado) {
+        if (!emailsEnAlta.add(emailNormalizado)) {
+            return false;
+        }
+        Set<String> ids = indicePorEmail.get(emailNormalizado);
+        if (ids != null && !ids.isEmpty()) {
+            emailsEnAlta.remove(emailNormalizado);
+            return false;
         }
-        return "L" + contadorId.getAndIncrement();
+        return true;
     }
     
-    /**
-     * Agrega un nuevo lector al sistema
-     * Ahora persiste en la base de datos
-     */
-    public void agregarLector(Lector lector) {
-        if (lector == null) {
-            throw new IllegalArgumentException("El lector no puede ser null");
-        }
-        
-        if (lector.getId() == null || lector.getId().trim().isEmpty()) {
-            // Generar ID automático secuencial si no tiene uno
-            lector.setId(generarIdLector());
-        }
-        
-        // Guardar en memoria
-        lectores.put(lector.getId(), lector);
-        
-        // NUEVO: Persistir en base de datos
-        try {
-            lectorDAO.guardar(lector);
-            System.out.println("Lector guardado exitosamente en BD: " + lector.getId());
-        } catch (Exception e) {
-            // Si falla la BD, remover de memoria también
-            lectores.remove(lector.getId());
-            throw new RuntimeException("Error al guardar lector en base de datos: " + e.getMessage(), e);
+    private static boolean violaRestriccion(Throwable error, String restriccion) {
+        for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+            if (causa instanceof ConstraintViolationException
+                    && restriccion.equalsIgnoreCase(((ConstraintViolationException) causa).getConstraintName())) {
+                return true;
+            }
         }
+        return false;
     }
     
     /**
@@ -159,14 +198,8 @@ public class ManejadorLector {
             return false;
         }
         
-        String emailBusqueda = email.trim().toLowerCase();
-        for (Lector lector : lectores.values()) {
-            if (lector.getEmail() != null && 
-                lector.getEmail().trim().toLowerCase().equals(emailBusqueda)) {
-                return true;
-            }
-        }
-        return false;
+        Set<String> ids = indicePorEmail.get(normalizar(email));
+        return ids != null && !ids.isEmpty();
     }
     
     /**
@@ -184,13 +217,7 @@ public class ManejadorLector {
             return new ArrayList<>();
         }
         
-        List<Lector> resultado = new ArrayList<>();
-        for (Lector lector : lectores.values()) {
-            if (estado.equals(lector.getEstado())) {
-                resultado.add(lector);
-            }
-        }
-        return resultado;
+        return resolverIds(indicePorEstado.get(estado));
     }
     
     /**
@@ -201,36 +228,55 @@ public class ManejadorLector {
             return new ArrayList<>();
         }
         
-        List<Lector> resultado = new ArrayList<>();
-        for (Lector lector : lectores.values()) {
-            if (zona.equals(lector.getZona())) {
-                resultado.add(lector);
-            }
-        }
-        return resultado;
+        return resolverIds(indicePorZona.get(zona));
     }
     
     /**
-     * Actualiza un lector existente
+     * Actualiza un lector existente con los datos del lector dado
+     * Se guarda una copia: el objeto recibido no pasa a formar parte del cache
+     * @throws LectorRepetidoException si el email nuevo ya lo tiene otro lector
      */
-    public void actualizarLector(Lector lector) {
+    public void actualizarLector(Lector lector) throws LectorRepetidoException {
         if (lector == null || lector.getId() == null) {
             throw new IllegalArgumentException("Lector o ID inválido");
         }
         
-        if (!lectores.containsKey(lector.getId())) {
-            throw new IllegalArgumentException("No existe un lector con ID: " + lector.getId());
+        ReentrantLock candado = candadoDe(lector.getId());
+        candado.lock();
+        try {
+            if (!lectores.containsKey(lector.getId())) {
+                throw new IllegalArgumentException("No existe un lector con ID: " + lector.getId());
+            }
+            reemplazarConEmail(copiar(lector), "Error al actualizar lector en base de datos: ");
+        } finally {
+            candado.unlock();
+        }
+    }
+    
+    /**
+     * Modifica los datos de un lector de forma atómica: se persiste una copia con los
+     * valores nuevos y solo si la base de datos la acepta reemplaza al lector en memoria
+     * @throws LectorRepetidoException si el email nuevo ya lo tiene otro lector
+     */
+    public void modificarLector(String id, String nombre, String email, String direccion,
+                                EstadoLector estado, Zona zona)
+            throws LectorNoExisteException, LectorRepetidoException {
+        if (id == null || id.trim().isEmpty()) {
+            throw new LectorNoExisteException("ID de lector inválido");
         }
         
-        // Actualizar en memoria
-        lectores.put(lector.getId(), lector);
-        
-        // NUEVO: Actualizar en base de datos
+        ReentrantLock candado = candadoDe(id.trim());
+        candado.lock();
         try {
-            lectorDAO.actualizar(lector);
-            System.out.println("Lector actualizado exitosamente en BD: " + lector.getId());
-        } catch (Exception e) {
-            throw new RuntimeException("Error al actualizar lector en base de datos: " + e.getMessage(), e);
+            Lector nuevo = copiar(obtenerLector(id.trim()));
+            nuevo.setNombre(nombre);
+            nuevo.setEmail(email);
+            nuevo.setDireccion(direccion);
+            nuevo.setEstado(estado);
+            nuevo.setZona(zona);
+            reemplazarConEmail(nuevo, "Error al actualizar lector en base de datos: ");
+        } finally {
+            candado.unlock();
         }
     }
     
@@ -242,19 +288,27 @@ public class ManejadorLector {
             throw new LectorNoExisteException("ID de lector inválido");
         }
         
-        Lector lector = obtenerLector(id); // Verifica que existe
-        
-        // Eliminar de memoria
-        lectores.remove(id.trim());
-        
-        // NUEVO: Eliminar de base de datos
+        ReentrantLock candado = candadoDe(id.trim());
+        candado.lock();
         try {
-            lectorDAO.eliminar(id.trim());
-            System.out.println("Lector eliminado exitosamente de BD: " + id);
-        } catch (Exception e) {
-            // Si falla la BD, restaurar en memoria
-            lectores.put(id.trim(), lector);
-            throw new RuntimeException("Error al eliminar lector de base de datos: " + e.getMessage(), e);
+            Lector lector = obtenerLector(id); // Verifica que existe
+            
+            // Eliminar de memoria
+            desindexar(id.trim());
+            lectores.remove(id.trim());
+            
+            // NUEVO: Eliminar de base de datos
+            try {
+                lectorDAO.eliminar(id.trim());
+                System.out.println("Lector eliminado exitosamente de BD: " + id);
+            } catch (Exception e) {
+                // Si falla la BD, restaurar en memoria
+                lectores.put(id.trim(), lector);
+                indexar(lector);
+                throw new RuntimeException("Error al eliminar lector de base de datos: " + e.getMessage(), e);
+            }
+        } finally {
+            candado.unlock();
         }
     }
     
@@ -268,14 +322,15 @@ public class ManejadorLector {
     /**
      * Método estático para obtener instancia (patrón Singleton)
      * Para compatibilidad con el código existente
+     * La clase contenedora garantiza que se construya una sola vez aunque
+     * varios hilos la pidan al mismo tiempo
      */
-    private static ManejadorLector instancia;
+    private static class Contenedor {
+        private static final ManejadorLector INSTANCIA = new ManejadorLector();
+    }
     
     public static ManejadorLector getInstancia() {
-        if (instancia == null) {
-            instancia = new ManejadorLector();
-        }
-        return instancia;
+        return Contenedor.INSTANCIA;
     }
     
     /**
@@ -297,13 +352,15 @@ public class ManejadorLector {
         if (nombre == null || nombre.trim().isEmpty() || email == null || email.trim().isEmpty()) {
             return null;
         }
-        String nombreBusqueda = nombre.trim().toLowerCase();
-        String emailBusqueda = email.trim().toLowerCase();
-        for (Lector lector : lectores.values()) {
-            if (lector.getNombre() != null && lector.getEmail() != null &&
-                lector.getNombre().trim().toLowerCase().equals(nombreBusqueda) &&
-                lector.getEmail().trim().toLowerCase().equals(emailBusqueda)) {
-                return lector;
+        Set<String> ids = indicePorEmail.get(normalizar(email));
+        if (ids == null) {
+            return null;
+        }
+        String nombreBusqueda = normalizar(nombre);
+        for (String id : ids) {
+            InstantaneaLector claves = instantaneas.get(id);
+            if (claves != null && nombreBusqueda.equals(claves.nombreNormalizado)) {
+                return lectores.get(id);
             }
         }
         return null;
@@ -316,10 +373,13 @@ public class ManejadorLector {
         if (nombre == null || nombre.trim().isEmpty()) {
             return null;
         }
-        String nombreBusqueda = nombre.trim().toLowerCase();
-        for (Lector lector : lectores.values()) {
-            if (lector.getNombre() != null &&
-                lector.getNombre().trim().toLowerCase().equals(nombreBusqueda)) {
+        Set<String> ids = indicePorNombre.get(normalizar(nombre));
+        if (ids == null) {
+            return null;
+        }
+        for (String id : ids) {
+            Lector lector = lectores.get(id);
+            if (lector != null) {
                 return lector;
             }
         }
@@ -334,6 +394,17 @@ public class ManejadorLector {
         return listarTodosLosLectores();
     }
     
+    /**
+     * Lista los lectores con los IDs dados leyéndolos de la base de datos y no de la memoria,
+     * así incluye los que haya creado o modificado otro proceso (los que no existen se omiten)
+     */
+    public List<Lector> listarLectoresPorIds(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return lectorDAO.listarPorIds(ids);
+    }
+    
     /**
      * Cambia el estado de un lector
      */
@@ -348,15 +419,15 @@ public class ManejadorLector {
             throw new IllegalArgumentException("Nuevo estado inválido");
         }
         
-        Lector lector = obtenerLector(idLector.trim());
-        lector.setEstado(nuevoEstado);
-        
-        // Actualizar en base de datos
+        ReentrantLock candado = candadoDe(idLector.trim());
+        candado.lock();
         try {
-            lectorDAO.actualizar(lector);
+            Lector nuevo = copiar(obtenerLector(idLector.trim()));
+            nuevo.setEstado(nuevoEstado);
+            reemplazar(nuevo, "Error al actualizar estado en base de datos: ");
             System.out.println("Estado del lector " + idLector + " cambiado a: " + nuevoEstado);
-        } catch (Exception e) {
-            throw new RuntimeException("Error al actualizar estado en base de datos: " + e.getMessage(), e);
+        } finally {
+            candado.unlock();
         }
     }
     
@@ -374,15 +445,229 @@ public class ManejadorLector {
             throw new IllegalArgumentException("Nueva zona inválida");
         }
         
-        Lector lector = obtenerLector(idLector.trim());
-        lector.setZona(nuevaZona);
-        
-        // Actualizar en base de datos
+        ReentrantLock candado = candadoDe(idLector.trim());
+        candado.lock();
         try {
-            lectorDAO.actualizar(lector);
+            Lector nuevo = copiar(obtenerLector(idLector.trim()));
+            nuevo.setZona(nuevaZona);
+            reemplazar(nuevo, "Error al actualizar zona en base de datos: ");
             System.out.println("Zona del lector " + idLector + " cambiada a: " + nuevaZona);
+        } finally {
+            candado.unlock();
+        }
+    }
+    
+    /**
+     * Cambia el password de un lector
+     */
+    public void cambiarPasswordLector(String idLector, String nuevoPassword)
+            throws LectorNoExisteException {
+        
+        if (idLector == null || idLector.trim().isEmpty()) {
+            throw new IllegalArgumentException("ID de lector inválido");
+        }
+        
+        ReentrantLock candado = candadoDe(idLector.trim());
+        candado.lock();
+        try {
+            Lector nuevo = copiar(obtenerLector(idLector.trim()));
+            nuevo.setPassword(nuevoPassword);
+            reemplazar(nuevo, "Error al actualizar password en base de datos: ");
+        } finally {
+            candado.unlock();
+        }
+    }
+    
+    /**
+     * Persiste la copia modificada de un lector y, si la base de datos la acepta,
+     * la publica en el mapa y los índices en lugar del lector anterior
+     * Para cambios que no tocan el email; debe llamarse con el candado del lector tomado
+     */
+    private void reemplazar(Lector nuevo, String mensajeError) {
+        try {
+            lectorDAO.actualizar(nuevo);
         } catch (Exception e) {
-            throw new RuntimeException("Error al actualizar zona en base de datos: " + e.getMessage(), e);
+            throw new RuntimeException(mensajeError + e.getMessage(), e);
+        }
+        publicar(nuevo);
+    }
+    
+    /**
+     * Igual que reemplazar, pero si el email cambia lo reserva antes de guardar, de modo que
+     * ni otra modificación ni un alta simultánea puedan dejar dos lectores con el mismo email
+     * Debe llamarse con el candado del lector tomado
+     */
+    private void reemplazarConEmail(Lector nuevo, String mensajeError) throws LectorRepetidoException {
+        InstantaneaLector anterior = instantaneas.get(nuevo.getId());
+        String email = normalizar(nuevo.getEmail());
+        boolean reservado = email != null && (anterior == null || !email.equals(anterior.emailNormalizado));
+        if (reservado && !reservarEmail(email)) {
+            throw new LectorRepetidoException("Ya existe un lector con el email: " + nuevo.getEmail());
+        }
+        try {
+            try {
+                lectorDAO.actualizar(nuevo);
+                System.out.println("Lector actualizado exitosamente en BD: " + nuevo.getId());
+            } catch (Exception e) {
+                // El índice único de la BD detecta el email repetido por otro proceso
+                if (violaRestriccion(e, RESTRICCION_EMAIL_UNICO)) {
+                    throw new LectorRepetidoException("Ya existe un lector con el email: " + nuevo.getEmail(), e);
+                }
+                throw new RuntimeException(mensajeError + e.getMessage(), e);
+            }
+            publicar(nuevo);
+        } finally {
+            if (reservado) {
+                emailsEnAlta.remove(email);
+            }
+        }
+    }
+    
+    /**
+     * Reemplaza al lector en el mapa y en los índices por su versión ya persistida
+     */
+    private void publicar(Lector nuevo) {
+        InstantaneaLector anterior = instantaneas.get(nuevo.getId());
+        lectores.put(nuevo.getId(), nuevo);
+        reindexar(nuevo);
+        registrarCambioDeZona(nuevo, anterior);
+    }
+    
+    /**
+     * Copia de un lector para modificarla sin tocar la instancia compartida del cache
+     */
+    private static Lector copiar(Lector lector) {
+        Lector copia = new Lector(lector.getNombre(), lector.getEmail(), lector.getDireccion(),
+                                  lector.getPassword(), lector.getFechaRegistro(),
+                                  lector.getEstado(), lector.getZona());
+        copia.setId(lector.getId());
+        return copia;
+    }
+    
+    /**
+     * Traslada los préstamos del lector en las estadísticas por zona si su zona cambió
+     */
+    private void registrarCambioDeZona(Lector lector, InstantaneaLector anterior) {
+        if (anterior != null && anterior.zona != lector.getZona()) {
+            EstadisticasPrestamosPorZona.getInstancia()
+                .registrarCambioDeZona(lector.getId(), anterior.zona, lector.getZona());
+        }
+    }
+    
+    // ==================== ÍNDICES SECUNDARIOS ====================
+    
+    /**
+     * Claves normalizadas con las que quedó indexado un lector
+     */
+    private static final class InstantaneaLector {
+        private final Zona zona;
+        private final EstadoLector estado;
+        private final String emailNormalizado;
+        private final String nombreNormalizado;
+        
+        private InstantaneaLector(Lector lector) {
+            this.zona = lector.getZona();
+            this.estado = lector.getEstado();
+            this.emailNormalizado = normalizar(lector.getEmail());
+            this.nombreNormalizado = normalizar(lector.getNombre());
+        }
+    }
+    
+    /**
+     * Candado de la franja que protege las modificaciones del lector con el ID dado
+     */
+    private ReentrantLock candadoDe(String id) {
+        return franjas[Math.floorMod(id.hashCode(), CANTIDAD_FRANJAS)];
+    }
+    
+    /**
+     * Normaliza un texto para usarlo como clave de índice (null si está vacío)
+     */
+    private static String normalizar(String texto) {
+        if (texto == null || texto.trim().isEmpty()) {
+            return null;
+        }
+        return texto.trim().toLowerCase();
+    }
+    
+    /**
+     * Registra un lector en todos los índices secundarios
+     */
+    private void indexar(Lector lector) {
+        InstantaneaLector claves = new InstantaneaLector(lector);
+        String id = lector.getId();
+        agregarAIndice(indicePorEmail, claves.emailNormalizado, id);
+        agregarAIndice(indicePorNombre, claves.nombreNormalizado, id);
+        if (claves.zona != null) {
+            indicePorZona.get(claves.zona).add(id);
+        }
+        if (claves.estado != null) {
+            indicePorEstado.get(claves.estado).add(id);
+        }
+        instantaneas.put(id, claves);
+    }
+    
+    /**
+     * Quita un lector de los índices usando las claves con las que fue indexado
+     */
+    private void desindexar(String id) {
+        InstantaneaLector claves = instantaneas.remove(id);
+        if (claves == null) {
+            return;
+        }
+        quitarDeIndice(indicePorEmail, claves.emailNormalizado, id);
+        quitarDeIndice(indicePorNombre, claves.nombreNormalizado, id);
+        if (claves.zona != null) {
+            indicePorZona.get(claves.zona).remove(id);
+        }
+        if (claves.estado != null) {
+            indicePorEstado.get(claves.estado).remove(id);
+        }
+    }
+    
+    /**
+     * Vuelve a indexar un lector tras modificar sus datos
+     */
+    private void reindexar(Lector lector) {
+        desindexar(lector.getId());
+        indexar(lector);
+    }
+    
+    // Las altas y bajas se hacen dentro de compute para que sean atómicas por clave
+    
+    private static void agregarAIndice(Map<String, Set<String>> indice, String clave, String id) {
+        if (clave != null) {
+            indice.compute(clave, (k, ids) -> {
+                Set<String> resultado = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                resultado.add(id);
+                return resultado;
+            });
+        }
+    }
+    
+    private static void quitarDeIndice(Map<String, Set<String>> indice, String clave, String id) {
+        if (clave != null) {
+            indice.computeIfPresent(clave, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+    
+    /**
+     * Convierte un conjunto de IDs del índice en la lista de lectores correspondiente
+     */
+    private List<Lector> resolverIds(Set<String> ids) {
+        if (ids == null) {
+            return new ArrayList<>();
+        }
+        List<Lector> resultado = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Lector lector = lectores.get(id);
+            if (lector != null) {
+                resultado.add(lector);
+            }
         }
+        return resultado;
     }
-}
\ No newline at end of file
+}
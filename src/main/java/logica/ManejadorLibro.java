@@ -1,6 +1,7 @@
 package logica;
 
-import persistencia.HibernateUtil;
+import persistencia.RegistroCambios;
+import persistencia.UnidadDeTrabajo;
 import excepciones.LibroRepetidoException;
 import excepciones.LibroNoExisteException;
 import excepciones.DatosInvalidosException;
@@ -8,6 +9,8 @@ import excepciones.DatosInvalidosException;
 import org.hibernate.Session;
 import org.hibernate.Transaction;
 import org.hibernate.query.Query;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Date;
 import java.util.Calendar;
@@ -40,8 +43,8 @@ public class ManejadorLibro {
         Transaction transaction = null;
         
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
+            session = UnidadDeTrabajo.abrirSesion();
+            transaction = UnidadDeTrabajo.iniciarTransaccion(session);
             
             // Verificar si existe libro similar
             if (existeLibroSimilar(session, titulo, cantidadPaginas)) {
@@ -55,13 +58,14 @@ public class ManejadorLibro {
             Libro libro = new Libro(titulo, cantidadPaginas);
             
             session.save(libro);
-            transaction.commit();
+            RegistroCambios.registrar(session, RegistroCambios.LIBRO, libro.getId(), false);
+            UnidadDeTrabajo.confirmarTransaccion(transaction);
             
             System.out.println("Libro registrado exitosamente: " + libro.getId());
             
         } catch (Exception e) {
             if (transaction != null) {
-                transaction.rollback();
+                UnidadDeTrabajo.deshacerTransaccion(transaction);
             }
             if (e instanceof LibroRepetidoException || e instanceof DatosInvalidosException) {
                 throw e;
@@ -69,7 +73,7 @@ public class ManejadorLibro {
             throw new RuntimeException("Error al registrar libro: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -131,11 +135,11 @@ public class ManejadorLibro {
     public Libro obtenerLibro(String id) {
         Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = UnidadDeTrabajo.abrirSesion();
             return session.get(Libro.class, id);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -146,7 +150,7 @@ public class ManejadorLibro {
     public List<Libro> listarLibros() {
         Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = UnidadDeTrabajo.abrirSesion();
             Query<Libro> query = session.createQuery(
                 "SELECT l FROM Libro l ORDER BY l.fechaIngreso DESC", 
                 Libro.class
@@ -154,7 +158,30 @@ public class ManejadorLibro {
             return query.getResultList();
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
+            }
+        }
+    }
+    
+    /**
+     * Lista los libros con los IDs dados (los que no existen se omiten)
+     */
+    public List<Libro> listarLibrosPorIds(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Session session = null;
+        try {
+            session = UnidadDeTrabajo.abrirSesion();
+            Query<Libro> query = session.createQuery(
+                "SELECT l FROM Libro l WHERE l.id IN :ids", 
+                Libro.class
+            );
+            query.setParameter("ids", ids);
+            return query.getResultList();
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -165,7 +192,7 @@ public class ManejadorLibro {
     public Libro obtenerLibroPorTitulo(String titulo) throws LibroNoExisteException {
         Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = UnidadDeTrabajo.abrirSesion();
             Query<Libro> query = session.createQuery(
                 "SELECT l FROM Libro l WHERE l.titulo = :titulo", 
                 Libro.class
@@ -178,7 +205,7 @@ public class ManejadorLibro {
             return libro;
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -189,7 +216,7 @@ public class ManejadorLibro {
     public List<Libro> listarLibrosPorPaginas(int paginasMin, int paginasMax) {
         Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = UnidadDeTrabajo.abrirSesion();
             Query<Libro> query = session.createQuery(
                 "SELECT l FROM Libro l WHERE l.cantidadPaginas BETWEEN :min AND :max ORDER BY l.cantidadPaginas ASC", 
                 Libro.class
@@ -199,7 +226,7 @@ public class ManejadorLibro {
             return query.getResultList();
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -210,7 +237,7 @@ public class ManejadorLibro {
     public boolean existeLibroConTitulo(String titulo) {
         Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = UnidadDeTrabajo.abrirSesion();
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(l) FROM Libro l WHERE l.titulo = :titulo", 
                 Long.class
@@ -219,7 +246,7 @@ public class ManejadorLibro {
             return query.getSingleResult() > 0;
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -232,8 +259,8 @@ public class ManejadorLibro {
         Transaction transaction = null;
         
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
+            session = UnidadDeTrabajo.abrirSesion();
+            transaction = UnidadDeTrabajo.iniciarTransaccion(session);
             
             // Verificar que el libro existe
             Libro libroExistente = session.get(Libro.class, libro.getId());
@@ -242,11 +269,12 @@ public class ManejadorLibro {
             }
             
             session.update(libro);
-            transaction.commit();
+            RegistroCambios.registrar(session, RegistroCambios.LIBRO, libro.getId(), false);
+            UnidadDeTrabajo.confirmarTransaccion(transaction);
             
         } catch (Exception e) {
             if (transaction != null) {
-                transaction.rollback();
+                UnidadDeTrabajo.deshacerTransaccion(transaction);
             }
             if (e instanceof LibroNoExisteException) {
                 throw e;
@@ -254,7 +282,7 @@ public class ManejadorLibro {
             throw new RuntimeException("Error al actualizar libro: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
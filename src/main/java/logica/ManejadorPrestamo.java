@@ -2,11 +2,13 @@ package logica;
 
 import persistencia.HibernateUtil;
 import persistencia.PrestamoDAO;
+import persistencia.UnidadDeTrabajo;
+import excepciones.DatosInvalidosException;
 import excepciones.PrestamoNoExisteException;
+import datatypes.DtPaginaPrestamos;
 import datatypes.DtPrestamo;
 
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
 import org.hibernate.Session;
 import org.hibernate.query.Query;
 
@@ -17,32 +19,14 @@ import org.hibernate.query.Query;
  */
 public class ManejadorPrestamo {
     
-    private AtomicInteger contadorId = new AtomicInteger(1);
+    public static final int TAMANO_PAGINA_POR_DEFECTO = 50;
+    public static final int TAMANO_PAGINA_MAXIMO = 500;
+    
     private PrestamoDAO prestamoDAO;
     
     public ManejadorPrestamo() {
         // Inicializar DAO con SessionFactory de Hibernate
         this.prestamoDAO = new PrestamoDAO(HibernateUtil.getSessionFactory());
-        
-        // Inicializar contador con el último número usado
-        inicializarContador();
-    }
-    
-
-    
-    /**
-     * Obtiene el último número de préstamo de la base de datos
-     * para inicializar correctamente el contador
-     */
-    private void inicializarContador() {
-        try {
-            // Consultar el conteo actual en la BD
-            long totalPrestamos = prestamoDAO.contarTotal();
-            contadorId.set((int) totalPrestamos + 1);
-        } catch (Exception e) {
-            System.err.println("Error al inicializar contador: " + e.getMessage());
-            contadorId.set(1);
-        }
     }
     
     /**
@@ -54,9 +38,8 @@ public class ManejadorPrestamo {
         }
         
         if (prestamo.getId() == null || prestamo.getId().trim().isEmpty()) {
-            // Generar ID automático si no tiene uno
-            String nuevoId = "P" + contadorId.getAndIncrement();
-            prestamo.setId(nuevoId);
+            // Generar ID automático si no tiene uno (secuencia de la BD, sin colisiones entre procesos)
+            prestamo.setId(prestamoDAO.generarIdPrestamo());
         }
         
         // Persistir directamente en base de datos
@@ -68,6 +51,21 @@ public class ManejadorPrestamo {
         }
     }
     
+    /**
+     * Agrega varios préstamos nuevos en una sola transacción: se guardan todos o ninguno
+     */
+    public void agregarPrestamosLote(List<Prestamo> prestamos) {
+        if (prestamos.isEmpty()) {
+            return;
+        }
+        try {
+            prestamoDAO.guardarLote(prestamos);
+            System.out.println("Lote de " + prestamos.size() + " préstamos guardado exitosamente en BD");
+        } catch (Exception e) {
+            throw new RuntimeException("Error al guardar lote de préstamos en base de datos: " + e.getMessage(), e);
+        }
+    }
+    
     /**
      * Obtiene un préstamo por su ID
      */
@@ -89,6 +87,18 @@ public class ManejadorPrestamo {
         }
     }
     
+    /**
+     * Obtiene un préstamo bloqueando su fila hasta el fin de la UnidadDeTrabajo en curso
+     * Se usa antes de modificarlo para comparar la versión que vio el cliente con la actual
+     */
+    public Prestamo obtenerPrestamoParaModificar(String id) throws PrestamoNoExisteException {
+        Prestamo prestamo = prestamoDAO.buscarPorIdParaActualizar(id.trim());
+        if (prestamo == null) {
+            throw new PrestamoNoExisteException("No existe un préstamo con ID: " + id);
+        }
+        return prestamo;
+    }
+    
     /**
      * Obtiene un préstamo como DtPrestamo con todas las relaciones cargadas
      * Este método evita problemas de lazy loading al cargar todo dentro de una sesión activa
@@ -100,7 +110,7 @@ public class ManejadorPrestamo {
         
         Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = UnidadDeTrabajo.abrirSesion();
             
             // Query que carga eagerly todas las relaciones necesarias
             Query<Prestamo> query = session.createQuery(
@@ -117,28 +127,7 @@ public class ManejadorPrestamo {
             }
             
             // Convertir a DTO dentro de la sesión activa
-            String materialTipo = prestamo.getMaterial() instanceof Libro ? "Libro" : "Artículo Especial";
-            String materialDescripcion;
-            
-            if (prestamo.getMaterial() instanceof Libro) {
-                materialDescripcion = ((Libro) prestamo.getMaterial()).getTitulo();
-            } else {
-                materialDescripcion = ((ArticuloEspecial) prestamo.getMaterial()).getDescripcion();
-            }
-            
-            return new DtPrestamo(
-                prestamo.getId(),
-                prestamo.getFechaSolicitud(),
-                prestamo.getFechaDevolucion(),
-                prestamo.getEstado().name(),
-                prestamo.getLector().getId(),
-                prestamo.getLector().getNombre(),
-                prestamo.getBibliotecario().getId(),
-                prestamo.getBibliotecario().getNombre(),
-                prestamo.getMaterial().getId(),
-                materialTipo,
-                materialDescripcion
-            );
+            return convertirADto(prestamo);
             
         } catch (Exception e) {
             if (e instanceof PrestamoNoExisteException) {
@@ -147,11 +136,41 @@ public class ManejadorPrestamo {
             throw new RuntimeException("Error al obtener préstamo: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
     
+    /**
+     * Convierte un préstamo con lector, bibliotecario y material ya inicializados a DtPrestamo
+     */
+    private DtPrestamo convertirADto(Prestamo prestamo) {
+        String materialTipo = prestamo.getMaterial() instanceof Libro ? "Libro" : "Artículo Especial";
+        String materialDescripcion;
+        
+        if (prestamo.getMaterial() instanceof Libro) {
+            materialDescripcion = ((Libro) prestamo.getMaterial()).getTitulo();
+        } else {
+            materialDescripcion = ((ArticuloEspecial) prestamo.getMaterial()).getDescripcion();
+        }
+        
+        DtPrestamo dto = new DtPrestamo(
+            prestamo.getId(),
+            prestamo.getFechaSolicitud(),
+            prestamo.getFechaDevolucion(),
+            prestamo.getEstado().name(),
+            prestamo.getLector().getId(),
+            prestamo.getLector().getNombre(),
+            prestamo.getBibliotecario().getId(),
+            prestamo.getBibliotecario().getNombre(),
+            prestamo.getMaterial().getId(),
+            materialTipo,
+            materialDescripcion
+        );
+        dto.setVersion(prestamo.getVersion());
+        return dto;
+    }
+    
     /**
      * Lista todos los préstamos desde la base de datos
      */
@@ -212,6 +231,151 @@ public class ManejadorPrestamo {
         }
     }
     
+    /**
+     * Lista como DTOs los préstamos de un bibliotecario filtrados en la base de datos
+     * Una sola consulta en lugar de listar todo y pedir cada préstamo por separado
+     */
+    public List<DtPrestamo> listarPrestamosDtoPorBibliotecario(String bibliotecarioId, EstadoPrestamo estado,
+                                                               Date fechaDesde, Date fechaHasta) {
+        List<Prestamo> prestamos = prestamoDAO.listarPorBibliotecarioFiltrado(
+            bibliotecarioId.trim(), estado, fechaDesde, fechaHasta);
+        
+        List<DtPrestamo> resultado = new ArrayList<>(prestamos.size());
+        for (Prestamo prestamo : prestamos) {
+            resultado.add(convertirADto(prestamo));
+        }
+        return resultado;
+    }
+    
+    /**
+     * Lista como DTOs todos los préstamos, con sus relaciones cargadas en la misma consulta
+     */
+    public List<DtPrestamo> listarPrestamosDto() {
+        return convertirADtos(prestamoDAO.listarConDetalle());
+    }
+    
+    /**
+     * Lista como DTOs los préstamos con el estado dado
+     */
+    public List<DtPrestamo> listarPrestamosDtoPorEstado(EstadoPrestamo estado) {
+        return convertirADtos(prestamoDAO.listarConDetallePorEstado(estado));
+    }
+    
+    /**
+     * Lista como DTOs los préstamos de un lector
+     */
+    public List<DtPrestamo> listarPrestamosDtoPorLector(String lectorId) {
+        return convertirADtos(prestamoDAO.listarConDetallePorLector(lectorId));
+    }
+    
+    /**
+     * Lista como DTOs los préstamos de un material
+     */
+    public List<DtPrestamo> listarPrestamosDtoPorMaterial(String materialId) {
+        return convertirADtos(prestamoDAO.listarConDetallePorMaterial(materialId));
+    }
+    
+    /**
+     * Lista como DTOs los préstamos con los IDs dados (los que no existen se omiten)
+     */
+    public List<DtPrestamo> listarPrestamosDtoPorIds(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return convertirADtos(prestamoDAO.listarConDetallePorIds(ids));
+    }
+    
+    private List<DtPrestamo> convertirADtos(List<Prestamo> prestamos) {
+        List<DtPrestamo> resultado = new ArrayList<>(prestamos.size());
+        for (Prestamo prestamo : prestamos) {
+            resultado.add(convertirADto(prestamo));
+        }
+        return resultado;
+    }
+    
+    /**
+     * Obtiene una página de todos los préstamos ordenados por (fechaSolicitud, id)
+     * @param token token de continuación de la página anterior (null para la primera)
+     * @param tamano cantidad de préstamos por página (se ajusta a [1, TAMANO_PAGINA_MAXIMO])
+     */
+    public DtPaginaPrestamos listarPaginaPrestamos(String token, int tamano) throws DatosInvalidosException {
+        CursorPrestamo cursor = CursorPrestamo.desdeToken(token);
+        int limite = normalizarTamanoPagina(tamano);
+        List<Prestamo> filas = prestamoDAO.listarPagina(
+            cursor != null ? cursor.getFechaSolicitud() : null,
+            cursor != null ? cursor.getId() : null,
+            limite + 1);
+        return armarPagina(filas, limite);
+    }
+    
+    /**
+     * Obtiene una página de préstamos con el estado dado
+     */
+    public DtPaginaPrestamos listarPaginaPrestamosPorEstado(EstadoPrestamo estado, String token, int tamano)
+            throws DatosInvalidosException {
+        CursorPrestamo cursor = CursorPrestamo.desdeToken(token);
+        int limite = normalizarTamanoPagina(tamano);
+        List<Prestamo> filas = prestamoDAO.listarPaginaPorEstado(estado,
+            cursor != null ? cursor.getFechaSolicitud() : null,
+            cursor != null ? cursor.getId() : null,
+            limite + 1);
+        return armarPagina(filas, limite);
+    }
+    
+    /**
+     * Obtiene una página de préstamos de un lector
+     */
+    public DtPaginaPrestamos listarPaginaPrestamosPorLector(String lectorId, String token, int tamano)
+            throws DatosInvalidosException {
+        CursorPrestamo cursor = CursorPrestamo.desdeToken(token);
+        int limite = normalizarTamanoPagina(tamano);
+        List<Prestamo> filas = prestamoDAO.listarPaginaPorLector(lectorId.trim(),
+            cursor != null ? cursor.getFechaSolicitud() : null,
+            cursor != null ? cursor.getId() : null,
+            limite + 1);
+        return armarPagina(filas, limite);
+    }
+    
+    /**
+     * Obtiene una página de préstamos de un material
+     */
+    public DtPaginaPrestamos listarPaginaPrestamosPorMaterial(String materialId, String token, int tamano)
+            throws DatosInvalidosException {
+        CursorPrestamo cursor = CursorPrestamo.desdeToken(token);
+        int limite = normalizarTamanoPagina(tamano);
+        List<Prestamo> filas = prestamoDAO.listarPaginaPorMaterial(materialId.trim(),
+            cursor != null ? cursor.getFechaSolicitud() : null,
+            cursor != null ? cursor.getId() : null,
+            limite + 1);
+        return armarPagina(filas, limite);
+    }
+    
+    private int normalizarTamanoPagina(int tamano) {
+        if (tamano <= 0) {
+            return TAMANO_PAGINA_POR_DEFECTO;
+        }
+        return Math.min(tamano, TAMANO_PAGINA_MAXIMO);
+    }
+    
+    /**
+     * Arma la página a partir de hasta limite+1 filas: la fila extra solo indica que hay más
+     */
+    private DtPaginaPrestamos armarPagina(List<Prestamo> filas, int limite) {
+        boolean hayMas = filas.size() > limite;
+        List<Prestamo> pagina = hayMas ? filas.subList(0, limite) : filas;
+        
+        DtPrestamo[] dtos = new DtPrestamo[pagina.size()];
+        for (int i = 0; i < pagina.size(); i++) {
+            dtos[i] = convertirADto(pagina.get(i));
+        }
+        
+        String tokenSiguiente = null;
+        if (hayMas && !pagina.isEmpty()) {
+            tokenSiguiente = CursorPrestamo.despuesDe(pagina.get(pagina.size() - 1)).aToken();
+        }
+        return new DtPaginaPrestamos(dtos, tokenSiguiente);
+    }
+    
     /**
      * Actualiza un préstamo existente
      */
@@ -232,6 +396,65 @@ public class ManejadorPrestamo {
         }
     }
     
+    /**
+     * Cambia el estado de un préstamo con una única sentencia UPDATE condicional
+     * @param estadoRequerido estado que debe tener el préstamo (null para cualquiera)
+     * @param versionEsperada versión que debe tener el préstamo (null para no verificar)
+     * @return [estadoAnterior (EstadoPrestamo), materialId (String), nuevaVersion (Long), lectorId (String)],
+     *         o null si el préstamo no existe o no cumple las condiciones
+     */
+    public Object[] transicionarEstado(String id, EstadoPrestamo nuevoEstado, Date fechaDevolucion,
+                                       EstadoPrestamo estadoRequerido, Long versionEsperada) {
+        Object[] fila = prestamoDAO.transicionarEstado(id.trim(), nuevoEstado, fechaDevolucion,
+                                                      estadoRequerido, versionEsperada);
+        if (fila == null) {
+            return null;
+        }
+        return new Object[] {
+            EstadoPrestamo.valueOf((String) fila[0]),
+            fila[1],
+            ((Number) fila[2]).longValue(),
+            fila[3]
+        };
+    }
+    
+    /**
+     * Cambia el estado de varios préstamos con una única sentencia UPDATE condicional
+     * @return Por cada préstamo modificado, [id (String), estadoAnterior (EstadoPrestamo),
+     *         materialId (String), nuevaVersion (Long), lectorId (String)]
+     */
+    public List<Object[]> transicionarEstadoLote(Collection<String> ids, EstadoPrestamo nuevoEstado,
+                                                 Date fechaDevolucion, EstadoPrestamo estadoRequerido) {
+        List<Object[]> resultado = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return resultado;
+        }
+        for (Object[] fila : prestamoDAO.transicionarEstadoLote(ids, nuevoEstado, fechaDevolucion, estadoRequerido)) {
+            resultado.add(new Object[] {
+                fila[0],
+                EstadoPrestamo.valueOf((String) fila[1]),
+                fila[2],
+                ((Number) fila[3]).longValue(),
+                fila[4]
+            });
+        }
+        return resultado;
+    }
+    
+    /**
+     * Estado actual de cada préstamo con los IDs dados; los que no existen no aparecen
+     */
+    public Map<String, EstadoPrestamo> obtenerEstados(Collection<String> ids) {
+        Map<String, EstadoPrestamo> resultado = new HashMap<>();
+        if (ids.isEmpty()) {
+            return resultado;
+        }
+        for (Object[] fila : prestamoDAO.obtenerEstados(ids)) {
+            resultado.put((String) fila[0], (EstadoPrestamo) fila[1]);
+        }
+        return resultado;
+    }
+    
     /**
      * Elimina un préstamo del sistema
      */
@@ -242,11 +465,20 @@ public class ManejadorPrestamo {
         
         try {
             // Verificar que existe antes de eliminar
-            obtenerPrestamo(id.trim());
+            Prestamo prestamo = obtenerPrestamo(id.trim());
             
             // Eliminar de base de datos
             prestamoDAO.eliminar(id.trim());
             System.out.println("Préstamo eliminado exitosamente: " + id);
+            
+            String materialId = prestamo.getMaterial() != null ? prestamo.getMaterial().getId() : null;
+            ContadorPrestamosPendientes.getInstancia().registrarCambio(materialId, prestamo.getEstado(), null, null);
+            
+            String lectorId = prestamo.getLector() != null ? prestamo.getLector().getId() : null;
+            if (lectorId != null) {
+                Zona zona = ManejadorLector.getInstancia().obtenerLector(lectorId).getZona();
+                EstadisticasPrestamosPorZona.getInstancia().registrarCambio(zona, prestamo.getEstado(), null, null);
+            }
         } catch (PrestamoNoExisteException e) {
             throw e;
         } catch (Exception e) {
@@ -254,6 +486,52 @@ public class ManejadorPrestamo {
         }
     }
     
+    /**
+     * Materiales con al menos minimoPrestamos préstamos en el estado dado, agregados en la BD
+     * @return Lista de Object[] con [materialId, nombre, tipo, cantidad (Long)]
+     */
+    public List<Object[]> contarPrestamosPorMaterial(EstadoPrestamo estado, long minimoPrestamos, int limite) {
+        return prestamoDAO.contarPorMaterial(estado, minimoPrestamos, limite);
+    }
+    
+    /**
+     * Cantidad de préstamos por material en el estado dado, en una sola consulta agregada
+     */
+    public Map<String, Integer> contarPrestamosPorMaterialId(EstadoPrestamo estado) {
+        Map<String, Integer> resultado = new HashMap<>();
+        for (Object[] fila : prestamoDAO.contarPorMaterialId(estado)) {
+            resultado.put((String) fila[0], ((Number) fila[1]).intValue());
+        }
+        return resultado;
+    }
+    
+    /**
+     * Cantidad de préstamos por zona del lector y estado, en una sola consulta agregada
+     * Los préstamos de lectores sin zona no se incluyen
+     */
+    public Map<Zona, Map<EstadoPrestamo, Long>> contarPrestamosPorZonaYEstado() {
+        Map<Zona, Map<EstadoPrestamo, Long>> resultado = new EnumMap<>(Zona.class);
+        for (Object[] fila : prestamoDAO.contarPorZonaYEstado()) {
+            if (fila[0] == null) {
+                continue;
+            }
+            resultado.computeIfAbsent((Zona) fila[0], z -> new EnumMap<>(EstadoPrestamo.class))
+                     .put((EstadoPrestamo) fila[1], ((Number) fila[2]).longValue());
+        }
+        return resultado;
+    }
+    
+    /**
+     * Cantidad de préstamos de un lector en cada estado
+     */
+    public Map<EstadoPrestamo, Long> contarPrestamosPorEstadoDeLector(String lectorId) {
+        Map<EstadoPrestamo, Long> resultado = new EnumMap<>(EstadoPrestamo.class);
+        for (Object[] fila : prestamoDAO.contarPorEstadoDeLector(lectorId)) {
+            resultado.put((EstadoPrestamo) fila[0], ((Number) fila[1]).longValue());
+        }
+        return resultado;
+    }
+    
     /**
      * Obtiene la cantidad total de préstamos
      */
@@ -272,7 +550,7 @@ public class ManejadorPrestamo {
      */
     private static ManejadorPrestamo instancia;
     
-    public static ManejadorPrestamo getInstancia() {
+    public static synchronized ManejadorPrestamo getInstancia() {
         if (instancia == null) {
             instancia = new ManejadorPrestamo();
         }
@@ -1,5 +1,6 @@
 package logica;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Inheritance;
@@ -7,14 +8,19 @@ import jakarta.persistence.InheritanceType;
 import jakarta.persistence.Table;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.util.Date;
 import java.util.UUID;
 
 /**
  * Clase abstracta que representa un material base en el sistema
  * Según el modelo de dominio: Material (abstracto) con id y fechaIngreso
+ * Cacheada en segundo nivel (región "materiales", compartida por Libro y ArticuloEspecial)
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "materiales")
 @Inheritance(strategy = InheritanceType.JOINED)
 @Table(name = "materiales")
 public abstract class Material {
@@ -4,64 +4,43 @@ import interfaces.IMaterialesConPrestamosPendientesControlador;
 
 import java.util.List;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Comparator;
-
-import datatypes.DtArticuloEspecial;
-import datatypes.DtLibro;
-import excepciones.ArticuloEspecialNoExisteException;
-import excepciones.LibroNoExisteException;
 
 // Importar Hibernate para manejar sesiones correctamente
 import org.hibernate.Session;
 import org.hibernate.query.Query;
-import persistencia.HibernateUtil;
+import persistencia.UnidadDeTrabajo;
 
 public class MaterialesConPrestamosPendientesControlador implements IMaterialesConPrestamosPendientesControlador {
 
     private ManejadorPrestamo manejadorPrestamo;
-    private ManejadorLibro manejadorLibro;
-    private ManejadorArticuloEspecial manejadorArticuloEspecial;
+    private ResolvedorMateriales resolvedorMateriales;
+    private ContadorPrestamosPendientes contadorPendientes;
 
     public MaterialesConPrestamosPendientesControlador() {
         this.manejadorPrestamo = ManejadorPrestamo.getInstancia();
-        this.manejadorLibro = ManejadorLibro.getInstancia();
-        this.manejadorArticuloEspecial = ManejadorArticuloEspecial.getInstancia();
+        this.resolvedorMateriales = ResolvedorMateriales.getInstancia();
+        this.contadorPendientes = ContadorPrestamosPendientes.getInstancia();
     }
 
     @Override
     public List<Object[]> obtenerMaterialesConMuchosPrestamos() {
-        List<Object[]> resultado = new ArrayList<>();
-
-        // Obtener solo los préstamos con estado PENDIENTE
-        List<Prestamo> prestamosPendientes = manejadorPrestamo.listarPrestamosPorEstado(EstadoPrestamo.PENDIENTE);
-
-        // Usar directamente la lista de préstamos pendientes
-        List<Prestamo> todosLosPendientes = prestamosPendientes;
-
-        // Contar préstamos por material
-        Map<String, Integer> contadorPorMaterial = new HashMap<>();
-
-        for (Prestamo prestamo : todosLosPendientes) {
-            String materialId = prestamo.getMaterial().getId();
-            contadorPorMaterial.put(materialId, contadorPorMaterial.getOrDefault(materialId, 0) + 1);
-        }
+        return obtenerMaterialesConMuchosPrestamos(0);
+    }
 
-        // Filtrar materiales con más de 1 préstamo pendiente y ordenar
-        List<Map.Entry<String, Integer>> listaOrdenada = new ArrayList<>(contadorPorMaterial.entrySet());
-        listaOrdenada.sort(Map.Entry.comparingByValue(Comparator.reverseOrder())); // Orden descendente
+    @Override
+    public List<Object[]> obtenerMaterialesConMuchosPrestamos(int limite) {
+        List<Object[]> resultado = new ArrayList<>();
 
-        for (Map.Entry<String, Integer> entry : listaOrdenada) {
-            String materialId = entry.getKey();
-            Integer cantidad = entry.getValue();
+        // Conteo, nombre y tipo salen agrupados de la BD; "muchos" significa "mas de 1"
+        List<Object[]> filas = manejadorPrestamo.contarPrestamosPorMaterial(EstadoPrestamo.PENDIENTE, 2, limite);
 
-            if (cantidad > 1) { // "muchos" significa "mas de 1"
-                Object[] datosMaterial = obtenerDatosMaterialParaTabla(materialId, cantidad);
-                if (datosMaterial != null) {
-                    resultado.add(datosMaterial);
-                }
-            }
+        for (Object[] fila : filas) {
+            resultado.add(new Object[] {
+                fila[0],                               // materialId (invisible en la tabla)
+                fila[1],                               // nombre
+                fila[2],                               // tipo
+                ((Number) fila[3]).intValue()          // cantidad de préstamos pendientes
+            });
         }
 
         return resultado;
@@ -73,18 +52,8 @@ public class MaterialesConPrestamosPendientesControlador implements IMaterialesC
             return 0;
         }
 
-        int contador = 0;
-        String idBusqueda = materialId.trim();
-
-        // Contar solo préstamos con estado PENDIENTE
-        List<Prestamo> prestamosPendientes = manejadorPrestamo.listarPrestamosPorEstado(EstadoPrestamo.PENDIENTE);
-        for (Prestamo prestamo : prestamosPendientes) {
-            if (idBusqueda.equals(prestamo.getMaterial().getId())) {
-                contador++;
-            }
-        }
-
-        return contador;
+        // Contar solo préstamos con estado PENDIENTE (índice en memoria)
+        return contadorPendientes.obtener(materialId.trim());
     }
 
     @Override
@@ -100,35 +69,28 @@ public class MaterialesConPrestamosPendientesControlador implements IMaterialesC
 
         String idBusqueda = materialId.trim();
 
-        try {
-            // Intentar obtener como Libro
-            Libro libro = manejadorLibro.obtenerLibro(idBusqueda);
-            if (libro != null) {
-                return new String[] {
-                    "Tipo: Libro",
-                    "Título: " + libro.getTitulo(),
-                    "Cantidad de páginas: " + libro.getCantidadPaginas(),
-                    "Préstamos pendientes: " + contarPrestamosPendientesPorMaterial(idBusqueda)
-                };
-            }
-        } catch (Exception e) {
-            // No es un libro, continuar
+        // Una sola búsqueda polimórfica en lugar de probar libro y luego artículo
+        Material material = resolvedorMateriales.obtenerMaterial(idBusqueda);
+
+        if (material instanceof Libro) {
+            Libro libro = (Libro) material;
+            return new String[] {
+                "Tipo: Libro",
+                "Título: " + libro.getTitulo(),
+                "Cantidad de páginas: " + libro.getCantidadPaginas(),
+                "Préstamos pendientes: " + contarPrestamosPendientesPorMaterial(idBusqueda)
+            };
         }
 
-        try {
-            // Intentar obtener como Artículo Especial
-            ArticuloEspecial articulo = manejadorArticuloEspecial.obtenerArticuloEspecial(idBusqueda);
-            if (articulo != null) {
-                return new String[] {
-                    "Tipo: Artículo Especial",
-                    "Descripción: " + articulo.getDescripcion(),
-                    "Peso (kg): " + articulo.getPesoKg(),
-                    "Dimensiones: " + articulo.getDimensiones(),
-                    "Préstamos pendientes: " + contarPrestamosPendientesPorMaterial(idBusqueda)
-                };
-            }
-        } catch (Exception e) {
-            // No es un artículo especial
+        if (material instanceof ArticuloEspecial) {
+            ArticuloEspecial articulo = (ArticuloEspecial) material;
+            return new String[] {
+                "Tipo: Artículo Especial",
+                "Descripción: " + articulo.getDescripcion(),
+                "Peso (kg): " + articulo.getPesoKg(),
+                "Dimensiones: " + articulo.getDimensiones(),
+                "Préstamos pendientes: " + contarPrestamosPendientesPorMaterial(idBusqueda)
+            };
         }
 
         return new String[] {
@@ -148,7 +110,7 @@ public class MaterialesConPrestamosPendientesControlador implements IMaterialesC
         Session session = null;
 
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = UnidadDeTrabajo.abrirSesion();
             
             // Query HQL que carga eagerly todas las relaciones necesarias
             Query<Prestamo> query = session.createQuery(
@@ -180,7 +142,7 @@ public class MaterialesConPrestamosPendientesControlador implements IMaterialesC
             System.err.println("Error al obtener préstamos pendientes: " + e.getMessage());
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
 
@@ -202,44 +164,4 @@ public class MaterialesConPrestamosPendientesControlador implements IMaterialesC
             return "Error en fecha";
         }
     }
-
-    /**
-     * Obtiene los datos del material en formato para la tabla
-     * @param materialId ID del material
-     * @param cantidadPrestamos Cantidad de préstamos pendientes
-     * @return Object[] con [materialId, nombre, tipo, cantidadPrestamos] o null si no se encuentra
-     */
-    private Object[] obtenerDatosMaterialParaTabla(String materialId, Integer cantidadPrestamos) {
-        try {
-            // Intentar obtener como Libro
-            Libro libro = manejadorLibro.obtenerLibro(materialId);
-            if (libro != null) {
-                return new Object[] {
-                    materialId,                    // materialId (invisible en la tabla)
-                    libro.getTitulo(),             // nombre
-                    "Libro",                       // tipo
-                    cantidadPrestamos              // cantidad de préstamos pendientes
-                };
-            }
-        } catch (Exception e) {
-            // No es un libro, continuar
-        }
-
-        try {
-            // Intentar obtener como Artículo Especial
-            ArticuloEspecial articulo = manejadorArticuloEspecial.obtenerArticuloEspecial(materialId);
-            if (articulo != null) {
-                return new Object[] {
-                    materialId,                    // materialId (invisible en la tabla)
-                    articulo.getDescripcion(),     // nombre
-                    "Artículo Especial",           // tipo
-                    cantidadPrestamos              // cantidad de préstamos pendientes
-                };
-            }
-        } catch (Exception e) {
-            // No es un artículo especial
-        }
-
-        return null;
-    }
 }
@@ -1,6 +1,7 @@
 package logica;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 import java.util.Date;
 
 /**
@@ -40,6 +41,12 @@ public class Prestamo {
     @JoinColumn(name = "material_id", nullable = false)
     private Material material;
     
+    // Versión para bloqueo optimista (las filas existentes arrancan en 0)
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
+    
     // Constructor por defecto requerido por JPA
     public Prestamo() {}
     
@@ -112,6 +119,10 @@ public class Prestamo {
         this.material = material;
     }
     
+    public long getVersion() {
+        return version;
+    }
+    
     // Métodos de validación
     public boolean tieneFechaSolicitudValida() {
         return fechaSolicitud != null && !fechaSolicitud.after(new Date());
@@ -1,15 +1,23 @@
 package logica;
 
+import datatypes.DtCambiosPrestamos;
+import datatypes.DtPaginaPrestamos;
 import datatypes.DtPrestamo;
+import datatypes.DtResultadoLote;
+import datatypes.DtSolicitudPrestamo;
 import excepciones.DatosInvalidosException;
 import excepciones.PrestamoNoExisteException;
 import interfaces.IPrestamoControlador;
+import persistencia.RegistroCambios;
+import persistencia.UnidadDeTrabajo;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Controlador para operaciones relacionadas con préstamos
@@ -17,24 +25,94 @@ import java.util.List;
  */
 public class PrestamoControlador implements IPrestamoControlador {
     
+    // Elementos admitidos por llamada en las operaciones por lotes
+    private static final int TAMANO_MAXIMO_LOTE = 500;
+    
     private ManejadorPrestamo manejadorPrestamo;
     private ManejadorLector manejadorLector;
     private ManejadorBibliotecario manejadorBibliotecario;
-    private ManejadorLibro manejadorLibro;
-    private ManejadorArticuloEspecial manejadorArticuloEspecial;
+    private ContadorPrestamosPendientes contadorPendientes;
+    private EstadisticasPrestamosPorZona estadisticasPorZona;
+    private ResolvedorMateriales resolvedorMateriales;
     
     public PrestamoControlador() {
         this.manejadorPrestamo = ManejadorPrestamo.getInstancia();
         this.manejadorLector = ManejadorLector.getInstancia();
         this.manejadorBibliotecario = ManejadorBibliotecario.getInstancia();
-        this.manejadorLibro = ManejadorLibro.getInstancia();
-        this.manejadorArticuloEspecial = ManejadorArticuloEspecial.getInstancia();
+        this.contadorPendientes = ContadorPrestamosPendientes.getInstancia();
+        this.estadisticasPorZona = EstadisticasPrestamosPorZona.getInstancia();
+        this.resolvedorMateriales = ResolvedorMateriales.getInstancia();
     }
     
     @Override
     public void registrarPrestamo(String lectorId, String bibliotecarioId, String materialId, 
                                  String fechaSolicitud, String estado) throws DatosInvalidosException {
         
+        // Todas las lecturas y la escritura comparten una Session y una transacción
+        UnidadDeTrabajo unidad = UnidadDeTrabajo.iniciar();
+        try {
+            Prestamo prestamo = crearPrestamo(lectorId, bibliotecarioId, materialId, fechaSolicitud, estado);
+            
+            // Delegar al manejador
+            manejadorPrestamo.agregarPrestamo(prestamo);
+            
+            unidad.confirmar();
+            registrarAlta(prestamo);
+        } finally {
+            unidad.cerrar();
+        }
+    }
+    
+    @Override
+    public DtResultadoLote[] registrarPrestamosLote(DtSolicitudPrestamo[] solicitudes) throws DatosInvalidosException {
+        validarTamanoLote(solicitudes);
+        DtResultadoLote[] resultados = new DtResultadoLote[solicitudes.length];
+        List<Prestamo> validos = new ArrayList<>();
+        List<Integer> posiciones = new ArrayList<>();
+        
+        // Las solicitudes inválidas se informan y se omiten; las válidas se guardan juntas
+        UnidadDeTrabajo unidad = UnidadDeTrabajo.iniciar();
+        try {
+            for (int i = 0; i < solicitudes.length; i++) {
+                DtSolicitudPrestamo solicitud = solicitudes[i];
+                if (solicitud == null) {
+                    resultados[i] = new DtResultadoLote(i, null, DtResultadoLote.DATOS_INVALIDOS, "Solicitud vacía");
+                    continue;
+                }
+                try {
+                    validos.add(crearPrestamo(solicitud.getLectorId(), solicitud.getBibliotecarioId(),
+                        solicitud.getMaterialId(), solicitud.getFechaSolicitud(), solicitud.getEstado()));
+                    posiciones.add(i);
+                } catch (DatosInvalidosException e) {
+                    resultados[i] = new DtResultadoLote(i, null, DtResultadoLote.DATOS_INVALIDOS, e.getMessage());
+                }
+            }
+            
+            manejadorPrestamo.agregarPrestamosLote(validos);
+            unidad.confirmar();
+        } catch (RuntimeException e) {
+            System.err.println("Error al registrar lote de préstamos: " + e.getMessage());
+            completarConError(resultados, "No se registró ningún préstamo del lote: " + e.getMessage());
+            return resultados;
+        } finally {
+            unidad.cerrar();
+        }
+        
+        for (int k = 0; k < validos.size(); k++) {
+            Prestamo prestamo = validos.get(k);
+            int i = posiciones.get(k);
+            resultados[i] = new DtResultadoLote(i, prestamo.getId(), DtResultadoLote.OK, null);
+            registrarAlta(prestamo);
+        }
+        return resultados;
+    }
+    
+    /**
+     * Valida los datos y arma el préstamo, sin guardarlo
+     * Debe llamarse dentro de una UnidadDeTrabajo, que comparte las lecturas con el guardado
+     */
+    private Prestamo crearPrestamo(String lectorId, String bibliotecarioId, String materialId,
+                                   String fechaSolicitud, String estado) throws DatosInvalidosException {
         // Validaciones de entrada
         if (lectorId == null || lectorId.trim().isEmpty()) {
             throw new DatosInvalidosException("ID de lector es obligatorio");
@@ -73,11 +151,8 @@ public class PrestamoControlador implements IPrestamoControlador {
             throw new DatosInvalidosException("No existe un bibliotecario con ID: " + bibliotecarioId);
         }
         
-        // Buscar material en libros y artículos especiales
-        material = manejadorLibro.obtenerLibro(materialId.trim());
-        if (material == null) {
-            material = manejadorArticuloEspecial.obtenerArticuloEspecial(materialId.trim());
-        }
+        // Buscar el material (libro o artículo especial) con una sola consulta
+        material = resolvedorMateriales.obtenerMaterial(materialId.trim());
         
         if (material == null) {
             throw new DatosInvalidosException("No existe un material con ID: " + materialId);
@@ -110,8 +185,15 @@ public class PrestamoControlador implements IPrestamoControlador {
             throw new DatosInvalidosException("La fecha de solicitud debe ser anterior o igual a la fecha actual");
         }
         
-        // Delegar al manejador
-        manejadorPrestamo.agregarPrestamo(prestamo);
+        return prestamo;
+    }
+    
+    /**
+     * Actualiza los contadores en memoria con un préstamo nuevo ya confirmado
+     */
+    private void registrarAlta(Prestamo prestamo) {
+        contadorPendientes.registrarCambio(null, null, prestamo.getMaterial().getId(), prestamo.getEstado());
+        estadisticasPorZona.registrarCambio(null, null, prestamo.getLector().getZona(), prestamo.getEstado());
     }
     
     @Override
@@ -207,9 +289,246 @@ public class PrestamoControlador implements IPrestamoControlador {
         return convertirAArray(prestamos);
     }
     
+    @Override
+    public DtPrestamo[] listarPrestamosDto() {
+        return manejadorPrestamo.listarPrestamosDto().toArray(new DtPrestamo[0]);
+    }
+    
+    @Override
+    public DtCambiosPrestamos obtenerCambiosPrestamos(long desdeVersion) throws DatosInvalidosException {
+        if (desdeVersion < 0) {
+            throw new DatosInvalidosException("La versión no puede ser negativa");
+        }
+        
+        RegistroCambios.Cambios cambios = RegistroCambios.listarDesde(
+            RegistroCambios.PRESTAMO, desdeVersion, RegistroCambios.MAXIMO_POR_CONSULTA);
+        List<DtPrestamo> modificados = manejadorPrestamo.listarPrestamosDtoPorIds(cambios.getModificados());
+        
+        return new DtCambiosPrestamos(cambios.getVersion(), cambios.isCompleto(),
+            modificados.toArray(new DtPrestamo[0]), cambios.getEliminados().toArray(new String[0]));
+    }
+    
+    @Override
+    public DtResultadoLote[] obtenerPrestamosLote(String[] ids) throws DatosInvalidosException {
+        validarTamanoLote(ids);
+        DtResultadoLote[] resultados = new DtResultadoLote[ids.length];
+        Map<String, List<Integer>> posiciones = new LinkedHashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == null || ids[i].trim().isEmpty()) {
+                resultados[i] = new DtResultadoLote(i, ids[i], DtResultadoLote.DATOS_INVALIDOS,
+                    "ID de préstamo es obligatorio");
+            } else {
+                posiciones.computeIfAbsent(ids[i].trim(), id -> new ArrayList<>()).add(i);
+            }
+        }
+        
+        // Una sola consulta para todo el lote; un ID repetido recibe el mismo préstamo
+        for (DtPrestamo prestamo : manejadorPrestamo.listarPrestamosDtoPorIds(posiciones.keySet())) {
+            for (int i : posiciones.remove(prestamo.getId())) {
+                resultados[i] = new DtResultadoLote(i, prestamo.getId(), DtResultadoLote.OK, null);
+                resultados[i].setPrestamo(prestamo);
+            }
+        }
+        for (Map.Entry<String, List<Integer>> faltante : posiciones.entrySet()) {
+            for (int i : faltante.getValue()) {
+                resultados[i] = new DtResultadoLote(i, faltante.getKey(), DtResultadoLote.NO_EXISTE,
+                    "No existe un préstamo con ID: " + faltante.getKey());
+            }
+        }
+        return resultados;
+    }
+    
+    @Override
+    public DtPrestamo[] listarPrestamosDtoPorEstado(String estado) throws DatosInvalidosException {
+        if (estado == null || estado.trim().isEmpty()) {
+            throw new DatosInvalidosException("Estado es obligatorio");
+        }
+        
+        EstadoPrestamo estadoPrestamo = parseEstado(estado.trim());
+        return manejadorPrestamo.listarPrestamosDtoPorEstado(estadoPrestamo).toArray(new DtPrestamo[0]);
+    }
+    
+    @Override
+    public DtPrestamo[] listarPrestamosDtoPorLector(String lectorId) throws DatosInvalidosException {
+        if (lectorId == null || lectorId.trim().isEmpty()) {
+            throw new DatosInvalidosException("ID de lector es obligatorio");
+        }
+        
+        return manejadorPrestamo.listarPrestamosDtoPorLector(lectorId.trim()).toArray(new DtPrestamo[0]);
+    }
+    
+    @Override
+    public DtPrestamo[] listarPrestamosDtoPorMaterial(String materialId) throws DatosInvalidosException {
+        if (materialId == null || materialId.trim().isEmpty()) {
+            throw new DatosInvalidosException("ID de material es obligatorio");
+        }
+        
+        return manejadorPrestamo.listarPrestamosDtoPorMaterial(materialId.trim()).toArray(new DtPrestamo[0]);
+    }
+    
+    @Override
+    public DtPrestamo[] listarPrestamosPorBibliotecario(String bibliotecarioId, String estado,
+                                                        String fechaDesde, String fechaHasta)
+            throws DatosInvalidosException {
+        if (bibliotecarioId == null || bibliotecarioId.trim().isEmpty()) {
+            throw new DatosInvalidosException("ID de bibliotecario es obligatorio");
+        }
+        
+        EstadoPrestamo estadoPrestamo = null;
+        if (estado != null && !estado.trim().isEmpty()) {
+            estadoPrestamo = parseEstado(estado.trim());
+        }
+        
+        Date desde = null;
+        Date hasta = null;
+        try {
+            SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
+            if (fechaDesde != null && !fechaDesde.trim().isEmpty()) {
+                desde = sdf.parse(fechaDesde.trim());
+            }
+            if (fechaHasta != null && !fechaHasta.trim().isEmpty()) {
+                hasta = sdf.parse(fechaHasta.trim());
+            }
+        } catch (ParseException e) {
+            throw new DatosInvalidosException("Formato de fecha inválido. Use dd/MM/yyyy");
+        }
+        
+        if (desde != null && hasta != null && desde.after(hasta)) {
+            throw new DatosInvalidosException("La fecha desde no puede ser posterior a la fecha hasta");
+        }
+        
+        List<DtPrestamo> prestamos = manejadorPrestamo.listarPrestamosDtoPorBibliotecario(
+            bibliotecarioId.trim(), estadoPrestamo, desde, hasta);
+        return prestamos.toArray(new DtPrestamo[0]);
+    }
+    
+    @Override
+    public DtPaginaPrestamos listarPrestamosPaginado(String token, int tamano) throws DatosInvalidosException {
+        return manejadorPrestamo.listarPaginaPrestamos(token, tamano);
+    }
+    
+    @Override
+    public DtPaginaPrestamos listarPrestamosPorEstadoPaginado(String estado, String token, int tamano)
+            throws DatosInvalidosException {
+        if (estado == null || estado.trim().isEmpty()) {
+            throw new DatosInvalidosException("Estado es obligatorio");
+        }
+        
+        EstadoPrestamo estadoPrestamo = parseEstado(estado.trim());
+        return manejadorPrestamo.listarPaginaPrestamosPorEstado(estadoPrestamo, token, tamano);
+    }
+    
+    @Override
+    public DtPaginaPrestamos listarPrestamosPorLectorPaginado(String lectorId, String token, int tamano)
+            throws DatosInvalidosException {
+        if (lectorId == null || lectorId.trim().isEmpty()) {
+            throw new DatosInvalidosException("ID de lector es obligatorio");
+        }
+        
+        return manejadorPrestamo.listarPaginaPrestamosPorLector(lectorId.trim(), token, tamano);
+    }
+    
+    @Override
+    public DtPaginaPrestamos listarPrestamosPorMaterialPaginado(String materialId, String token, int tamano)
+            throws DatosInvalidosException {
+        if (materialId == null || materialId.trim().isEmpty()) {
+            throw new DatosInvalidosException("ID de material es obligatorio");
+        }
+        
+        return manejadorPrestamo.listarPaginaPrestamosPorMaterial(materialId.trim(), token, tamano);
+    }
+    
     @Override
     public void cambiarEstadoPrestamo(String idPrestamo, String nuevoEstado) 
             throws PrestamoNoExisteException, DatosInvalidosException {
+        cambiarEstado(idPrestamo, nuevoEstado, null);
+    }
+    
+    @Override
+    public void cambiarEstadoPrestamoConVersion(String idPrestamo, String nuevoEstado, long version) 
+            throws PrestamoNoExisteException, DatosInvalidosException {
+        cambiarEstado(idPrestamo, nuevoEstado, version);
+    }
+    
+    @Override
+    public void devolverPrestamo(String idPrestamo, String fechaDevolucion) 
+            throws PrestamoNoExisteException, DatosInvalidosException {
+        devolver(idPrestamo, fechaDevolucion, null);
+    }
+    
+    @Override
+    public void devolverPrestamoConVersion(String idPrestamo, String fechaDevolucion, long version) 
+            throws PrestamoNoExisteException, DatosInvalidosException {
+        devolver(idPrestamo, fechaDevolucion, version);
+    }
+    
+    @Override
+    public DtResultadoLote[] devolverPrestamosLote(String[] ids, String fechaDevolucion) throws DatosInvalidosException {
+        validarTamanoLote(ids);
+        if (fechaDevolucion == null || fechaDevolucion.trim().isEmpty()) {
+            throw new DatosInvalidosException("Fecha de devolución es obligatoria");
+        }
+        
+        Date fecha;
+        try {
+            SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
+            fecha = sdf.parse(fechaDevolucion.trim());
+        } catch (ParseException e) {
+            throw new DatosInvalidosException("Formato de fecha inválido. Use dd/MM/yyyy");
+        }
+        
+        DtResultadoLote[] resultados = new DtResultadoLote[ids.length];
+        Map<String, Integer> posiciones = new LinkedHashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == null || ids[i].trim().isEmpty()) {
+                resultados[i] = new DtResultadoLote(i, ids[i], DtResultadoLote.DATOS_INVALIDOS,
+                    "ID de préstamo es obligatorio");
+            } else if (posiciones.putIfAbsent(ids[i].trim(), i) != null) {
+                resultados[i] = new DtResultadoLote(i, ids[i].trim(), DtResultadoLote.DATOS_INVALIDOS,
+                    "El préstamo " + ids[i].trim() + " ya figura antes en el lote");
+            }
+        }
+        
+        // Un único UPDATE para todo el lote; igual que en devolverPrestamo, solo se devuelven los EN_CURSO
+        List<Object[]> devueltos;
+        try {
+            devueltos = manejadorPrestamo.transicionarEstadoLote(
+                posiciones.keySet(), EstadoPrestamo.DEVUELTO, fecha, EstadoPrestamo.EN_CURSO);
+        } catch (RuntimeException e) {
+            System.err.println("Error al devolver lote de préstamos: " + e.getMessage());
+            completarConError(resultados, "No se devolvió ningún préstamo del lote: " + e.getMessage());
+            return resultados;
+        }
+        
+        for (Object[] devuelto : devueltos) {
+            String id = (String) devuelto[0];
+            int i = posiciones.remove(id);
+            resultados[i] = new DtResultadoLote(i, id, DtResultadoLote.OK, null);
+            
+            EstadoPrestamo estadoAnterior = (EstadoPrestamo) devuelto[1];
+            String materialId = (String) devuelto[2];
+            contadorPendientes.registrarCambio(materialId, estadoAnterior, materialId, EstadoPrestamo.DEVUELTO);
+            Zona zona = zonaDeLector((String) devuelto[4]);
+            estadisticasPorZona.registrarCambio(zona, estadoAnterior, zona, EstadoPrestamo.DEVUELTO);
+        }
+        
+        // Los que no cambiaron no existen o no estaban EN_CURSO
+        Map<String, EstadoPrestamo> estados = posiciones.isEmpty()
+            ? Map.of() : manejadorPrestamo.obtenerEstados(posiciones.keySet());
+        for (Map.Entry<String, Integer> pendiente : posiciones.entrySet()) {
+            String id = pendiente.getKey();
+            int i = pendiente.getValue();
+            EstadoPrestamo actual = estados.get(id);
+            resultados[i] = actual == null
+                ? new DtResultadoLote(i, id, DtResultadoLote.NO_EXISTE, "No existe un préstamo con ID: " + id)
+                : new DtResultadoLote(i, id, DtResultadoLote.ESTADO_INVALIDO,
+                    "El préstamo no puede ser devuelto en su estado actual: " + actual);
+        }
+        return resultados;
+    }
+    
+    private void cambiarEstado(String idPrestamo, String nuevoEstado, Long version) 
+            throws PrestamoNoExisteException, DatosInvalidosException {
         if (idPrestamo == null || idPrestamo.trim().isEmpty()) {
             throw new DatosInvalidosException("ID de préstamo es obligatorio");
         }
@@ -218,21 +537,14 @@ public class PrestamoControlador implements IPrestamoControlador {
             throw new DatosInvalidosException("El nuevo estado es obligatorio");
         }
         
-        // Obtener préstamo
-        Prestamo prestamo = manejadorPrestamo.obtenerPrestamo(idPrestamo.trim());
-        
         // Parsear nuevo estado
         EstadoPrestamo estadoPrestamo = parseEstado(nuevoEstado.trim());
         
-        // Cambiar estado
-        prestamo.setEstado(estadoPrestamo);
-        
-        // Actualizar en el manejador (esto persistirá en BD)
-        manejadorPrestamo.actualizarPrestamo(prestamo);
+        // Un único UPDATE condicional (sin cargar el préstamo antes)
+        aplicarTransicion(idPrestamo.trim(), estadoPrestamo, null, null, version);
     }
     
-    @Override
-    public void devolverPrestamo(String idPrestamo, String fechaDevolucion) 
+    private void devolver(String idPrestamo, String fechaDevolucion, Long version) 
             throws PrestamoNoExisteException, DatosInvalidosException {
         if (idPrestamo == null || idPrestamo.trim().isEmpty()) {
             throw new DatosInvalidosException("ID de préstamo es obligatorio");
@@ -242,14 +554,6 @@ public class PrestamoControlador implements IPrestamoControlador {
             throw new DatosInvalidosException("Fecha de devolución es obligatoria");
         }
         
-        // Obtener préstamo
-        Prestamo prestamo = manejadorPrestamo.obtenerPrestamo(idPrestamo.trim());
-        
-        // Verificar que puede ser devuelto
-        if (!prestamo.puedeSerDevuelto()) {
-            throw new DatosInvalidosException("El préstamo no puede ser devuelto en su estado actual: " + prestamo.getEstado());
-        }
-        
         // Parsear fecha de devolución
         Date fecha;
         try {
@@ -259,12 +563,36 @@ public class PrestamoControlador implements IPrestamoControlador {
             throw new DatosInvalidosException("Formato de fecha inválido. Use dd/MM/yyyy");
         }
         
-        // Actualizar préstamo
-        prestamo.setFechaDevolucion(fecha);
-        prestamo.setEstado(EstadoPrestamo.DEVUELTO);
+        // Solo se puede devolver un préstamo EN_CURSO; la condición va en el mismo UPDATE
+        aplicarTransicion(idPrestamo.trim(), EstadoPrestamo.DEVUELTO, fecha, EstadoPrestamo.EN_CURSO, version);
+    }
+    
+    /**
+     * Ejecuta la transición de estado y, si no afectó ninguna fila, determina el motivo
+     * (préstamo inexistente, estado no permitido o modificación concurrente)
+     */
+    private void aplicarTransicion(String idPrestamo, EstadoPrestamo nuevoEstado, Date fechaDevolucion,
+                                   EstadoPrestamo estadoRequerido, Long version) 
+            throws PrestamoNoExisteException, DatosInvalidosException {
+        Object[] anterior = manejadorPrestamo.transicionarEstado(
+            idPrestamo, nuevoEstado, fechaDevolucion, estadoRequerido, version);
+        
+        if (anterior == null) {
+            Prestamo actual = manejadorPrestamo.obtenerPrestamo(idPrestamo);
+            if (estadoRequerido != null && actual.getEstado() != estadoRequerido) {
+                throw new DatosInvalidosException("El préstamo no puede ser devuelto en su estado actual: " + actual.getEstado());
+            }
+            if (version != null && actual.getVersion() != version) {
+                throw new DatosInvalidosException("El préstamo " + idPrestamo + " fue modificado por otro usuario " +
+                    "(versión actual " + actual.getVersion() + ", se esperaba " + version + "). Vuelva a cargarlo");
+            }
+            throw new DatosInvalidosException("El préstamo " + idPrestamo + " fue modificado por otro usuario. Vuelva a cargarlo");
+        }
         
-        // Actualizar en el manejador (esto persistirá en BD)
-        manejadorPrestamo.actualizarPrestamo(prestamo);
+        String materialId = (String) anterior[1];
+        contadorPendientes.registrarCambio(materialId, (EstadoPrestamo) anterior[0], materialId, nuevoEstado);
+        Zona zona = zonaDeLector((String) anterior[3]);
+        estadisticasPorZona.registrarCambio(zona, (EstadoPrestamo) anterior[0], zona, nuevoEstado);
     }
     
     @Override
@@ -272,6 +600,21 @@ public class PrestamoControlador implements IPrestamoControlador {
                                  String materialId, String fechaSolicitud, String estado, 
                                  String fechaDevolucion) 
             throws PrestamoNoExisteException, DatosInvalidosException {
+        modificar(idPrestamo, lectorId, bibliotecarioId, materialId, fechaSolicitud, estado, fechaDevolucion, null);
+    }
+    
+    @Override
+    public void modificarPrestamoConVersion(String idPrestamo, String lectorId, String bibliotecarioId, 
+                                           String materialId, String fechaSolicitud, String estado, 
+                                           String fechaDevolucion, long version) 
+            throws PrestamoNoExisteException, DatosInvalidosException {
+        modificar(idPrestamo, lectorId, bibliotecarioId, materialId, fechaSolicitud, estado, fechaDevolucion, version);
+    }
+    
+    private void modificar(String idPrestamo, String lectorId, String bibliotecarioId, 
+                           String materialId, String fechaSolicitud, String estado, 
+                           String fechaDevolucion, Long version) 
+            throws PrestamoNoExisteException, DatosInvalidosException {
         
         // Validaciones de entrada
         if (idPrestamo == null || idPrestamo.trim().isEmpty()) {
@@ -298,78 +641,134 @@ public class PrestamoControlador implements IPrestamoControlador {
             throw new DatosInvalidosException("Estado es obligatorio");
         }
         
-        // Obtener préstamo existente
-        Prestamo prestamo = manejadorPrestamo.obtenerPrestamo(idPrestamo.trim());
-        
-        // Verificar que existen las nuevas entidades
-        Lector lector;
-        Bibliotecario bibliotecario;
-        Material material;
-        
-        try {
-            lector = manejadorLector.obtenerLector(lectorId.trim());
-        } catch (Exception e) {
-            throw new DatosInvalidosException("No existe un lector con ID: " + lectorId);
-        }
-        
-        try {
-            bibliotecario = manejadorBibliotecario.obtenerBibliotecario(bibliotecarioId.trim());
-        } catch (Exception e) {
-            throw new DatosInvalidosException("No existe un bibliotecario con ID: " + bibliotecarioId);
-        }
-        
-        // Buscar material en libros y artículos especiales
-        material = manejadorLibro.obtenerLibro(materialId.trim());
-        if (material == null) {
-            material = manejadorArticuloEspecial.obtenerArticuloEspecial(materialId.trim());
-        }
-        
-        if (material == null) {
-            throw new DatosInvalidosException("No existe un material con ID: " + materialId);
-        }
-        
-        // Parsear fecha de solicitud
-        Date fechaSol;
+        // Todas las lecturas y la escritura comparten una Session y una transacción
+        UnidadDeTrabajo unidad = UnidadDeTrabajo.iniciar();
         try {
-            SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
-            fechaSol = sdf.parse(fechaSolicitud.trim());
-        } catch (ParseException e) {
-            throw new DatosInvalidosException("Formato de fecha de solicitud inválido. Use dd/MM/yyyy");
-        }
-        
-        // Parsear estado
-        EstadoPrestamo estadoPrestamo = parseEstado(estado.trim());
-        
-        // Parsear fecha de devolución (opcional)
-        Date fechaDev = null;
-        if (fechaDevolucion != null && !fechaDevolucion.trim().isEmpty()) {
+            // Obtener préstamo existente, con la fila bloqueada hasta confirmar
+            Prestamo prestamo = manejadorPrestamo.obtenerPrestamoParaModificar(idPrestamo.trim());
+            if (version != null && prestamo.getVersion() != version) {
+                throw new DatosInvalidosException("El préstamo " + idPrestamo.trim() +
+                    " fue modificado por otro usuario (versión actual " + prestamo.getVersion() + ", se esperaba " + version + "). Vuelva a cargarlo");
+            }
+            
+            // Verificar que existen las nuevas entidades
+            Lector lector;
+            Bibliotecario bibliotecario;
+            Material material;
+            
+            try {
+                lector = manejadorLector.obtenerLector(lectorId.trim());
+            } catch (Exception e) {
+                throw new DatosInvalidosException("No existe un lector con ID: " + lectorId);
+            }
+            
+            try {
+                bibliotecario = manejadorBibliotecario.obtenerBibliotecario(bibliotecarioId.trim());
+            } catch (Exception e) {
+                throw new DatosInvalidosException("No existe un bibliotecario con ID: " + bibliotecarioId);
+            }
+            
+            // Buscar el material (libro o artículo especial) con una sola consulta
+            material = resolvedorMateriales.obtenerMaterial(materialId.trim());
+            
+            if (material == null) {
+                throw new DatosInvalidosException("No existe un material con ID: " + materialId);
+            }
+            
+            // Parsear fecha de solicitud
+            Date fechaSol;
             try {
                 SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
-                fechaDev = sdf.parse(fechaDevolucion.trim());
+                fechaSol = sdf.parse(fechaSolicitud.trim());
             } catch (ParseException e) {
-                throw new DatosInvalidosException("Formato de fecha de devolución inválido. Use dd/MM/yyyy");
+                throw new DatosInvalidosException("Formato de fecha de solicitud inválido. Use dd/MM/yyyy");
             }
+            
+            // Parsear estado
+            EstadoPrestamo estadoPrestamo = parseEstado(estado.trim());
+            
+            // Parsear fecha de devolución (opcional)
+            Date fechaDev = null;
+            if (fechaDevolucion != null && !fechaDevolucion.trim().isEmpty()) {
+                try {
+                    SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
+                    fechaDev = sdf.parse(fechaDevolucion.trim());
+                } catch (ParseException e) {
+                    throw new DatosInvalidosException("Formato de fecha de devolución inválido. Use dd/MM/yyyy");
+                }
+            }
+            
+            // Validar que si es DEVUELTO, debe tener fecha de devolución
+            if (estadoPrestamo == EstadoPrestamo.DEVUELTO && fechaDev == null) {
+                throw new DatosInvalidosException("Si el estado es DEVUELTO, debe proporcionar fecha de devolución");
+            }
+            
+            // Actualizar todos los campos del préstamo
+            String materialAnterior = idMaterial(prestamo);
+            EstadoPrestamo estadoAnterior = prestamo.getEstado();
+            Zona zonaAnterior = zonaDeLector(prestamo.getLector() != null ? prestamo.getLector().getId() : null);
+            prestamo.setLector(lector);
+            prestamo.setBibliotecario(bibliotecario);
+            prestamo.setMaterial(material);
+            prestamo.setFechaSolicitud(fechaSol);
+            prestamo.setEstado(estadoPrestamo);
+            prestamo.setFechaDevolucion(fechaDev);
+            
+            // Actualizar en el manejador (esto persistirá en BD)
+            manejadorPrestamo.actualizarPrestamo(prestamo);
+            
+            unidad.confirmar();
+            contadorPendientes.registrarCambio(materialAnterior, estadoAnterior, material.getId(), estadoPrestamo);
+            estadisticasPorZona.registrarCambio(zonaAnterior, estadoAnterior, lector.getZona(), estadoPrestamo);
+        } finally {
+            unidad.cerrar();
         }
-        
-        // Validar que si es DEVUELTO, debe tener fecha de devolución
-        if (estadoPrestamo == EstadoPrestamo.DEVUELTO && fechaDev == null) {
-            throw new DatosInvalidosException("Si el estado es DEVUELTO, debe proporcionar fecha de devolución");
-        }
-        
-        // Actualizar todos los campos del préstamo
-        prestamo.setLector(lector);
-        prestamo.setBibliotecario(bibliotecario);
-        prestamo.setMaterial(material);
-        prestamo.setFechaSolicitud(fechaSol);
-        prestamo.setEstado(estadoPrestamo);
-        prestamo.setFechaDevolucion(fechaDev);
-        
-        // Actualizar en el manejador (esto persistirá en BD)
-        manejadorPrestamo.actualizarPrestamo(prestamo);
     }
     
     // Métodos auxiliares privados
     
+    private String idMaterial(Prestamo prestamo) {
+        return prestamo.getMaterial() != null ? prestamo.getMaterial().getId() : null;
+    }
+    
+    /**
+     * Rechaza un lote nulo o con más de TAMANO_MAXIMO_LOTE elementos
+     */
+    private void validarTamanoLote(Object[] lote) throws DatosInvalidosException {
+        if (lote == null) {
+            throw new DatosInvalidosException("El lote es obligatorio");
+        }
+        if (lote.length > TAMANO_MAXIMO_LOTE) {
+            throw new DatosInvalidosException("El lote admite como máximo " + TAMANO_MAXIMO_LOTE
+                + " elementos (se recibieron " + lote.length + ")");
+        }
+    }
+    
+    /**
+     * Marca con ERROR los elementos del lote que todavía no tienen resultado
+     */
+    private void completarConError(DtResultadoLote[] resultados, String mensaje) {
+        for (int i = 0; i < resultados.length; i++) {
+            if (resultados[i] == null) {
+                resultados[i] = new DtResultadoLote(i, null, DtResultadoLote.ERROR, mensaje);
+            }
+        }
+    }
+    
+    /**
+     * Zona del lector tomada del cache de ManejadorLector (null si no se encuentra)
+     */
+    private Zona zonaDeLector(String lectorId) {
+        if (lectorId == null) {
+            return null;
+        }
+        try {
+            return manejadorLector.obtenerLector(lectorId).getZona();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+    
     private EstadoPrestamo parseEstado(String estado) throws DatosInvalidosException {
         try {
             return EstadoPrestamo.valueOf(estado.toUpperCase());
@@ -1,15 +1,29 @@
 package logica;
 
+import datatypes.DtFiltroPrestamos;
 import datatypes.DtPrestamo;
 import excepciones.DatosInvalidosException;
 import interfaces.IPrestamoReporte;
-import persistencia.HibernateUtil;
+import persistencia.UnidadDeTrabajo;
 
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.query.Query;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
 import java.util.*;
+import java.util.function.Predicate;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Controlador independiente para generar reportes de préstamos
@@ -17,32 +31,65 @@ import java.util.*;
  */
 public class PrestamoReporte implements IPrestamoReporte {
     
-    private SimpleDateFormat dateFormat;
+    // Proyección con solo las columnas que necesita DtPrestamo; el tipo y la descripción
+    // del material se resuelven en SQL uniendo las tablas de Libro y ArticuloEspecial
+    private static final String SELECT_PROYECCION =
+        "SELECT p.id, p.fechaSolicitud, p.fechaDevolucion, p.estado, " +
+        "l.id, l.nombre, l.zona, b.id, b.nombre, p.material.id, " +
+        "CASE WHEN lib.id IS NOT NULL THEN 'Libro' " +
+        "WHEN art.id IS NOT NULL THEN 'Artículo Especial' ELSE 'Material' END, " +
+        "COALESCE(lib.titulo, art.descripcion, 'Descripción no disponible'), p.version " +
+        "FROM Prestamo p " +
+        "JOIN p.lector l " +
+        "JOIN p.bibliotecario b " +
+        "LEFT JOIN Libro lib ON lib.id = p.material.id " +
+        "LEFT JOIN ArticuloEspecial art ON art.id = p.material.id ";
     
-    public PrestamoReporte() {
-        this.dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+    // Exportación CSV: filas pedidas al driver por cada viaje y tamaño de los buffers de escritura
+    private static final int FILAS_POR_TANDA_EXPORTACION = 500;
+    private static final int TAMANO_BUFFER_EXPORTACION = 64 * 1024;
+    
+    // Máximo de filas que devuelve obtenerRangoPrestamos en una llamada
+    private static final int MAXIMO_FILAS_POR_RANGO = 500;
+    
+    // Expresión HQL de cada columna por la que se puede ordenar un rango de préstamos
+    private static final Map<String, String> COLUMNAS_ORDEN;
+    static {
+        Map<String, String> columnas = new LinkedHashMap<>();
+        columnas.put(ORDEN_ID, "p.id");
+        columnas.put(ORDEN_LECTOR, "l.nombre");
+        columnas.put(ORDEN_BIBLIOTECARIO, "b.nombre");
+        columnas.put(ORDEN_MATERIAL, "COALESCE(lib.titulo, art.descripcion)");
+        columnas.put(ORDEN_FECHA_SOLICITUD, "p.fechaSolicitud");
+        columnas.put(ORDEN_FECHA_DEVOLUCION, "p.fechaDevolucion");
+        columnas.put(ORDEN_ESTADO, "p.estado");
+        COLUMNAS_ORDEN = Collections.unmodifiableMap(columnas);
     }
     
+    private static final String ENCABEZADO_CSV =
+        "id,fechaSolicitud,fechaDevolucion,estado,lectorId,lectorNombre,zona," +
+        "bibliotecarioId,bibliotecarioNombre,materialId,materialTipo,materialDescripcion,version";
+    
+    // Inmutable y seguro entre hilos: Fabrica comparte una sola instancia entre la GUI y /reporte
+    private static final DateTimeFormatter FORMATO_FECHA =
+        DateTimeFormatter.ofPattern("uuuu-MM-dd").withResolverStyle(ResolverStyle.STRICT);
+    
     @Override
     public DtPrestamo[] obtenerReportePorZona() {
         Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = UnidadDeTrabajo.abrirSesion();
             
-            // Query que carga todas las relaciones y ordena por zona del lector
-            Query<Prestamo> query = session.createQuery(
-                "SELECT p FROM Prestamo p " +
-                "JOIN FETCH p.lector l " +
-                "JOIN FETCH p.bibliotecario " +
-                "JOIN FETCH p.material " +
-                "ORDER BY l.zona, p.fechaSolicitud DESC", Prestamo.class);
+            // Proyección ordenada por zona del lector (sin cargar entidades)
+            Query<Object[]> query = session.createQuery(
+                SELECT_PROYECCION +
+                "ORDER BY l.zona, p.fechaSolicitud DESC", Object[].class);
             
-            List<Prestamo> prestamos = query.getResultList();
+            List<Object[]> filas = query.getResultList();
             
-            // Convertir a DTOs dentro de la sesión activa
-            List<DtPrestamo> dtos = new ArrayList<>();
-            for (Prestamo prestamo : prestamos) {
-                dtos.add(convertirADto(prestamo));
+            List<DtPrestamo> dtos = new ArrayList<>(filas.size());
+            for (Object[] fila : filas) {
+                dtos.add(convertirADto(fila));
             }
             
             return dtos.toArray(new DtPrestamo[0]);
@@ -53,7 +100,7 @@ public class PrestamoReporte implements IPrestamoReporte {
             return new DtPrestamo[0];
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -63,155 +110,219 @@ public class PrestamoReporte implements IPrestamoReporte {
                                                  String fechaDesde, String fechaHasta) 
             throws DatosInvalidosException {
         
-        // Validar y parsear fechas si se proporcionan
-        Date fechaDesdeDate = null;
-        Date fechaHastaDate = null;
+        ConsultaFiltrada consulta = prepararConsultaFiltrada(zona, estado, fechaDesde, fechaHasta);
         
-        if (fechaDesde != null && !fechaDesde.trim().isEmpty()) {
-            try {
-                fechaDesdeDate = dateFormat.parse(fechaDesde.trim());
-            } catch (ParseException e) {
-                throw new DatosInvalidosException("Formato de fecha desde inválido. Use yyyy-MM-dd");
+        Session session = null;
+        try {
+            session = UnidadDeTrabajo.abrirSesion();
+            
+            Query<Object[]> query = consulta.crear(session);
+            
+            List<Object[]> filas = query.getResultList();
+            
+            List<DtPrestamo> dtos = new ArrayList<>(filas.size());
+            for (Object[] fila : filas) {
+                dtos.add(convertirADto(fila));
             }
-        }
-        
-        if (fechaHasta != null && !fechaHasta.trim().isEmpty()) {
-            try {
-                fechaHastaDate = dateFormat.parse(fechaHasta.trim());
-            } catch (ParseException e) {
-                throw new DatosInvalidosException("Formato de fecha hasta inválido. Use yyyy-MM-dd");
+            
+            return dtos.toArray(new DtPrestamo[0]);
+            
+        } catch (Exception e) {
+            System.err.println("Error al obtener préstamos filtrados: " + e.getMessage());
+            e.printStackTrace();
+            return new DtPrestamo[0];
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
+    }
+    
+    @Override
+    public long exportarPrestamosCsv(String zona, String estado, String fechaDesde, String fechaHasta,
+                                     boolean comprimir, OutputStream salida)
+            throws DatosInvalidosException, IOException {
         
-        // Validar rango de fechas
-        if (fechaDesdeDate != null && fechaHastaDate != null && 
-            fechaDesdeDate.after(fechaHastaDate)) {
-            throw new DatosInvalidosException("La fecha desde no puede ser posterior a la fecha hasta");
+        if (salida == null) {
+            throw new DatosInvalidosException("El flujo de salida es obligatorio");
         }
         
-        // Validar zona si se proporciona
-        Zona zonaEnum = null;
-        if (zona != null && !zona.trim().isEmpty()) {
-            try {
-                zonaEnum = Zona.valueOf(zona.trim().toUpperCase().replace(" ", "_"));
-            } catch (IllegalArgumentException e) {
-                throw new DatosInvalidosException("Zona inválida: " + zona + 
-                    ". Zonas válidas: " + Arrays.toString(Zona.values()));
-            }
-        }
+        ConsultaFiltrada consulta = prepararConsultaFiltrada(zona, estado, fechaDesde, fechaHasta);
         
-        // Validar estado si se proporciona
-        EstadoPrestamo estadoEnum = null;
-        if (estado != null && !estado.trim().isEmpty()) {
-            try {
-                estadoEnum = EstadoPrestamo.valueOf(estado.trim().toUpperCase());
-            } catch (IllegalArgumentException e) {
-                throw new DatosInvalidosException("Estado inválido: " + estado + 
-                    ". Estados válidos: " + Arrays.toString(EstadoPrestamo.values()));
-            }
-        }
+        GZIPOutputStream gzip = comprimir ? new GZIPOutputStream(salida, TAMANO_BUFFER_EXPORTACION) : null;
+        Writer escritor = new BufferedWriter(new OutputStreamWriter(
+            gzip != null ? gzip : salida, StandardCharsets.UTF_8), TAMANO_BUFFER_EXPORTACION);
         
+        long cantidad = 0;
         Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = UnidadDeTrabajo.abrirSesion();
             
-            // Construir query dinámico basado en filtros
-            StringBuilder hql = new StringBuilder(
-                "SELECT p FROM Prestamo p " +
-                "JOIN FETCH p.lector l " +
-                "JOIN FETCH p.bibliotecario " +
-                "JOIN FETCH p.material " +
-                "WHERE 1=1 ");
+            // Proyección escalar y de solo lectura: no se cargan entidades en la Session,
+            // y el fetch size hace que el driver traiga las filas por tandas con un cursor
+            Query<Object[]> query = consulta.crear(session);
+            query.setReadOnly(true);
+            query.setFetchSize(FILAS_POR_TANDA_EXPORTACION);
             
-            Map<String, Object> parametros = new HashMap<>();
-            
-            if (zonaEnum != null) {
-                hql.append("AND l.zona = :zona ");
-                parametros.put("zona", zonaEnum);
-            }
+            escritor.write(ENCABEZADO_CSV);
+            escritor.write("\r\n");
             
-            if (estadoEnum != null) {
-                hql.append("AND p.estado = :estado ");
-                parametros.put("estado", estadoEnum);
+            try (ScrollableResults<Object[]> filas = query.scroll(ScrollMode.FORWARD_ONLY)) {
+                while (filas.next()) {
+                    escribirFilaCsv(escritor, filas.get());
+                    cantidad++;
+                }
             }
             
-            if (fechaDesdeDate != null) {
-                hql.append("AND p.fechaSolicitud >= :fechaDesde ");
-                parametros.put("fechaDesde", fechaDesdeDate);
+            escritor.flush();
+            if (gzip != null) {
+                gzip.finish();
             }
+            return cantidad;
             
-            if (fechaHastaDate != null) {
-                hql.append("AND p.fechaSolicitud <= :fechaHasta ");
-                parametros.put("fechaHasta", fechaHastaDate);
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
             }
+        }
+    }
+    
+    @Override
+    public Map<String, Long> contarPrestamosPorEstado(DtFiltroPrestamos filtro) throws DatosInvalidosException {
+        Map<String, Object> parametros = new HashMap<>();
+        String condiciones = armarCondiciones(filtro, parametros);
+        
+        Session session = null;
+        try {
+            session = UnidadDeTrabajo.abrirSesion();
             
-            hql.append("ORDER BY l.zona, p.fechaSolicitud DESC");
+            // Solo hacen falta los joins que usan los filtros; los del material quedan afuera
+            ConsultaFiltrada consulta = new ConsultaFiltrada(
+                "SELECT p.estado, COUNT(p) FROM Prestamo p " +
+                "JOIN p.lector l " +
+                "JOIN p.bibliotecario b " +
+                condiciones +
+                "GROUP BY p.estado", parametros);
             
-            Query<Prestamo> query = session.createQuery(hql.toString(), Prestamo.class);
+            Map<String, Long> conteos = new LinkedHashMap<>();
+            for (Object[] fila : consulta.crear(session).getResultList()) {
+                conteos.put(((EstadoPrestamo) fila[0]).name(), ((Number) fila[1]).longValue());
+            }
+            return conteos;
             
-            // Establecer parámetros
-            for (Map.Entry<String, Object> entry : parametros.entrySet()) {
-                query.setParameter(entry.getKey(), entry.getValue());
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
             }
+        }
+    }
+    
+    @Override
+    public DtPrestamo[] obtenerRangoPrestamos(DtFiltroPrestamos filtro, String ordenarPor, boolean ascendente,
+                                              int primero, int cantidad) throws DatosInvalidosException {
+        if (primero < 0) {
+            throw new DatosInvalidosException("La posición inicial no puede ser negativa");
+        }
+        if (cantidad <= 0) {
+            return new DtPrestamo[0];
+        }
+        
+        String orden = armarOrden(ordenarPor, ascendente);
+        Map<String, Object> parametros = new HashMap<>();
+        String condiciones = armarCondiciones(filtro, parametros);
+        
+        Session session = null;
+        try {
+            session = UnidadDeTrabajo.abrirSesion();
             
-            List<Prestamo> prestamos = query.getResultList();
+            Query<Object[]> query = new ConsultaFiltrada(
+                SELECT_PROYECCION + condiciones + orden, parametros).crear(session);
+            query.setReadOnly(true);
+            query.setFirstResult(primero);
+            query.setMaxResults(Math.min(cantidad, MAXIMO_FILAS_POR_RANGO));
             
-            // Convertir a DTOs dentro de la sesión activa
-            List<DtPrestamo> dtos = new ArrayList<>();
-            for (Prestamo prestamo : prestamos) {
-                dtos.add(convertirADto(prestamo));
-            }
+            List<Object[]> filas = query.getResultList();
             
-            return dtos.toArray(new DtPrestamo[0]);
+            DtPrestamo[] dtos = new DtPrestamo[filas.size()];
+            for (int i = 0; i < dtos.length; i++) {
+                dtos[i] = convertirADto(filas.get(i));
+            }
+            return dtos;
             
-        } catch (Exception e) {
-            System.err.println("Error al obtener préstamos filtrados: " + e.getMessage());
-            e.printStackTrace();
-            return new DtPrestamo[0];
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
     
     @Override
-    public String[] obtenerEstadisticasPorZona() {
+    public long recorrerPrestamos(DtFiltroPrestamos filtro, String ordenarPor, boolean ascendente,
+                                  Predicate<DtPrestamo> destino) throws DatosInvalidosException {
+        String orden = armarOrden(ordenarPor, ascendente);
+        Map<String, Object> parametros = new HashMap<>();
+        String condiciones = armarCondiciones(filtro, parametros);
+        
+        long cantidad = 0;
         Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            
-            // Query para obtener estadísticas agrupadas por zona
-            Query<Object[]> query = session.createQuery(
-                "SELECT l.zona, p.estado, COUNT(p) FROM Prestamo p " +
-                "JOIN p.lector l " +
-                "GROUP BY l.zona, p.estado " +
-                "ORDER BY l.zona, p.estado", Object[].class);
+            session = UnidadDeTrabajo.abrirSesion();
             
-            List<Object[]> resultados = query.getResultList();
+            // Una sola consulta con cursor, como exportarPrestamosCsv: ni OFFSET por página
+            // ni filas repetidas o salteadas si cambian préstamos durante el recorrido
+            Query<Object[]> query = new ConsultaFiltrada(
+                SELECT_PROYECCION + condiciones + orden, parametros).crear(session);
+            query.setReadOnly(true);
+            query.setFetchSize(FILAS_POR_TANDA_EXPORTACION);
             
-            // Procesar resultados y agrupar por zona
-            Map<Zona, Map<EstadoPrestamo, Long>> estadisticasPorZona = new HashMap<>();
+            try (ScrollableResults<Object[]> filas = query.scroll(ScrollMode.FORWARD_ONLY)) {
+                while (filas.next()) {
+                    cantidad++;
+                    if (!destino.test(convertirADto(filas.get()))) {
+                        break;
+                    }
+                }
+            }
+            return cantidad;
             
-            for (Object[] resultado : resultados) {
-                Zona zona = (Zona) resultado[0];
-                EstadoPrestamo estado = (EstadoPrestamo) resultado[1];
-                Long cantidad = (Long) resultado[2];
-                
-                estadisticasPorZona.computeIfAbsent(zona, k -> new HashMap<>())
-                                 .put(estado, cantidad);
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
             }
+        }
+    }
+    
+    /**
+     * Arma el ORDER BY de una de las constantes ORDEN_* (null para el orden por defecto)
+     * El id desempata para que el orden sea total y las páginas no se solapen
+     */
+    private String armarOrden(String ordenarPor, boolean ascendente) throws DatosInvalidosException {
+        if (ordenarPor == null) {
+            return "ORDER BY p.fechaSolicitud DESC, p.id DESC";
+        }
+        String columnaOrden = COLUMNAS_ORDEN.get(ordenarPor);
+        if (columnaOrden == null) {
+            throw new DatosInvalidosException("No se puede ordenar por: " + ordenarPor +
+                ". Columnas válidas: " + COLUMNAS_ORDEN.keySet());
+        }
+        String direccion = ascendente ? " ASC" : " DESC";
+        return "ORDER BY " + columnaOrden + direccion + ", p.id" + direccion;
+    }
+    
+    @Override
+    public String[] obtenerEstadisticasPorZona() {
+        try {
+            // Contadores en memoria mantenidos con cada evento de préstamo: no consulta la BD
+            EstadisticasPrestamosPorZona estadisticasPorZona = EstadisticasPrestamosPorZona.getInstancia();
             
             // Generar strings de estadísticas
             List<String> estadisticas = new ArrayList<>();
             
             // Asegurar que todas las zonas aparezcan, incluso sin préstamos
             for (Zona zona : Zona.values()) {
-                Map<EstadoPrestamo, Long> estadosPorZona = estadisticasPorZona.getOrDefault(zona, new HashMap<>());
-                
-                long pendientes = estadosPorZona.getOrDefault(EstadoPrestamo.PENDIENTE, 0L);
-                long enCurso = estadosPorZona.getOrDefault(EstadoPrestamo.EN_CURSO, 0L);
-                long devueltos = estadosPorZona.getOrDefault(EstadoPrestamo.DEVUELTO, 0L);
+                long pendientes = estadisticasPorZona.obtener(zona, EstadoPrestamo.PENDIENTE);
+                long enCurso = estadisticasPorZona.obtener(zona, EstadoPrestamo.EN_CURSO);
+                long devueltos = estadisticasPorZona.obtener(zona, EstadoPrestamo.DEVUELTO);
                 long total = pendientes + enCurso + devueltos;
                 
                 String estadistica = String.format("%s: %d préstamos (%d pendientes, %d en curso, %d devueltos)",
@@ -226,10 +337,6 @@ public class PrestamoReporte implements IPrestamoReporte {
             System.err.println("Error al obtener estadísticas por zona: " + e.getMessage());
             e.printStackTrace();
             return new String[]{"Error al cargar estadísticas"};
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -243,39 +350,212 @@ public class PrestamoReporte implements IPrestamoReporte {
     }
     
     /**
-     * Método auxiliar para convertir Prestamo a DtPrestamo
-     * Debe llamarse dentro de una sesión de Hibernate activa
+     * Consulta sobre SELECT_PROYECCION con los filtros ya validados
+     */
+    private static final class ConsultaFiltrada {
+        private final String hql;
+        private final Map<String, Object> parametros;
+        
+        private ConsultaFiltrada(String hql, Map<String, Object> parametros) {
+            this.hql = hql;
+            this.parametros = parametros;
+        }
+        
+        private Query<Object[]> crear(Session session) {
+            Query<Object[]> query = session.createQuery(hql, Object[].class);
+            for (Map.Entry<String, Object> entry : parametros.entrySet()) {
+                query.setParameter(entry.getKey(), entry.getValue());
+            }
+            return query;
+        }
+    }
+    
+    /**
+     * Valida los filtros del reporte y arma la consulta dinámica correspondiente
      */
-    private DtPrestamo convertirADto(Prestamo prestamo) {
-        // Determinar tipo y descripción del material
-        String materialTipo;
-        String materialDescripcion;
+    private ConsultaFiltrada prepararConsultaFiltrada(String zona, String estado,
+                                                      String fechaDesde, String fechaHasta)
+            throws DatosInvalidosException {
         
-        if (prestamo.getMaterial() instanceof Libro) {
-            materialTipo = "Libro";
-            materialDescripcion = ((Libro) prestamo.getMaterial()).getTitulo();
-        } else if (prestamo.getMaterial() instanceof ArticuloEspecial) {
-            materialTipo = "Artículo Especial";
-            materialDescripcion = ((ArticuloEspecial) prestamo.getMaterial()).getDescripcion();
-        } else {
-            materialTipo = "Material";
-            materialDescripcion = "Descripción no disponible";
+        DtFiltroPrestamos filtro = new DtFiltroPrestamos();
+        filtro.setZona(zona);
+        if (estado != null && !estado.trim().isEmpty()) {
+            filtro.setEstados(estado);
         }
+        filtro.setFechaDesde(fechaDesde);
+        filtro.setFechaHasta(fechaHasta);
+        
+        Map<String, Object> parametros = new HashMap<>();
+        String condiciones = armarCondiciones(filtro, parametros);
+        
+        return new ConsultaFiltrada(
+            SELECT_PROYECCION + condiciones + "ORDER BY l.zona, p.fechaSolicitud DESC", parametros);
+    }
+    
+    /**
+     * Valida los filtros y arma la cláusula WHERE sobre los alias p (préstamo), l (lector)
+     * y b (bibliotecario), dejando los valores en parametros
+     */
+    private String armarCondiciones(DtFiltroPrestamos filtro, Map<String, Object> parametros)
+            throws DatosInvalidosException {
+        
+        StringBuilder hql = new StringBuilder("WHERE 1=1 ");
+        if (filtro == null) {
+            return hql.toString();
+        }
+        
+        // Validar y parsear fechas si se proporcionan
+        Date fechaDesdeDate = parsearFecha(filtro.getFechaDesde(), "desde");
+        Date fechaHastaDate = parsearFecha(filtro.getFechaHasta(), "hasta");
+        
+        // Validar rango de fechas
+        if (fechaDesdeDate != null && fechaHastaDate != null && 
+            fechaDesdeDate.after(fechaHastaDate)) {
+            throw new DatosInvalidosException("La fecha desde no puede ser posterior a la fecha hasta");
+        }
+        
+        // Validar zona si se proporciona
+        String zona = filtro.getZona();
+        if (zona != null && !zona.trim().isEmpty()) {
+            try {
+                Zona zonaEnum = Zona.valueOf(zona.trim().toUpperCase().replace(" ", "_"));
+                hql.append("AND l.zona = :zona ");
+                parametros.put("zona", zonaEnum);
+            } catch (IllegalArgumentException e) {
+                throw new DatosInvalidosException("Zona inválida: " + zona + 
+                    ". Zonas válidas: " + Arrays.toString(Zona.values()));
+            }
+        }
+        
+        // Validar estados si se proporcionan
+        if (filtro.getEstados() != null && filtro.getEstados().length > 0) {
+            Set<EstadoPrestamo> estados = EnumSet.noneOf(EstadoPrestamo.class);
+            for (String estado : filtro.getEstados()) {
+                try {
+                    estados.add(EstadoPrestamo.valueOf(estado.trim().toUpperCase()));
+                } catch (IllegalArgumentException | NullPointerException e) {
+                    throw new DatosInvalidosException("Estado inválido: " + estado + 
+                        ". Estados válidos: " + Arrays.toString(EstadoPrestamo.values()));
+                }
+            }
+            hql.append("AND p.estado IN :estados ");
+            parametros.put("estados", estados);
+        }
+        
+        if (filtro.getLectorId() != null && !filtro.getLectorId().trim().isEmpty()) {
+            hql.append("AND l.id = :lectorId ");
+            parametros.put("lectorId", filtro.getLectorId().trim());
+        }
+        
+        if (filtro.getBibliotecarioId() != null && !filtro.getBibliotecarioId().trim().isEmpty()) {
+            hql.append("AND b.id = :bibliotecarioId ");
+            parametros.put("bibliotecarioId", filtro.getBibliotecarioId().trim());
+        }
+        
+        if (fechaDesdeDate != null) {
+            hql.append("AND p.fechaSolicitud >= :fechaDesde ");
+            parametros.put("fechaDesde", fechaDesdeDate);
+        }
+        
+        if (fechaHastaDate != null) {
+            hql.append("AND p.fechaSolicitud <= :fechaHasta ");
+            parametros.put("fechaHasta", fechaHastaDate);
+        }
+        
+        return hql.toString();
+    }
+    
+    private Date parsearFecha(String fecha, String campo) throws DatosInvalidosException {
+        if (fecha == null || fecha.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            LocalDate dia = LocalDate.parse(fecha.trim(), FORMATO_FECHA);
+            return Date.from(dia.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        } catch (DateTimeParseException e) {
+            throw new DatosInvalidosException("Formato de fecha " + campo + " inválido. Use yyyy-MM-dd");
+        }
+    }
+    
+    private static String formatearFecha(Date fecha) {
+        if (fecha == null) {
+            return null;
+        }
+        // java.sql.Date (columnas date) no admite toInstant()
+        LocalDate dia = fecha instanceof java.sql.Date
+            ? ((java.sql.Date) fecha).toLocalDate()
+            : fecha.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+        return dia.format(FORMATO_FECHA);
+    }
+    
+    /**
+     * Escribe una fila de SELECT_PROYECCION en formato CSV, en el mismo orden que ENCABEZADO_CSV
+     */
+    private void escribirFilaCsv(Writer escritor, Object[] fila) throws IOException {
+        Zona zona = (Zona) fila[6];
+        Object[] valores = {
+            fila[0],
+            formatearFecha((Date) fila[1]),
+            formatearFecha((Date) fila[2]),
+            ((EstadoPrestamo) fila[3]).name(),
+            fila[4],
+            fila[5],
+            zona != null ? zona.getDescripcion() : null,
+            fila[7],
+            fila[8],
+            fila[9],
+            fila[10],
+            fila[11],
+            fila[12]
+        };
+        for (int i = 0; i < valores.length; i++) {
+            if (i > 0) {
+                escritor.write(',');
+            }
+            escribirCampoCsv(escritor, valores[i]);
+        }
+        escritor.write("\r\n");
+    }
+    
+    /**
+     * Escribe un campo CSV entre comillas solo si contiene separadores, comillas o saltos de línea
+     */
+    private static void escribirCampoCsv(Writer escritor, Object valor) throws IOException {
+        if (valor == null) {
+            return;
+        }
+        String texto = valor.toString();
+        if (texto.indexOf(',') < 0 && texto.indexOf('"') < 0
+                && texto.indexOf('\n') < 0 && texto.indexOf('\r') < 0) {
+            escritor.write(texto);
+            return;
+        }
+        escritor.write('"');
+        escritor.write(texto.replace("\"", "\"\""));
+        escritor.write('"');
+    }
+    
+    /**
+     * Método auxiliar para convertir una fila de SELECT_PROYECCION a DtPrestamo
+     */
+    private DtPrestamo convertirADto(Object[] fila) {
+        Zona zona = (Zona) fila[6];
         
         // Crear DTO con información adicional de la zona
         DtPrestamo dto = new DtPrestamo(
-            prestamo.getId(),
-            prestamo.getFechaSolicitud(),
-            prestamo.getFechaDevolucion(),
-            prestamo.getEstado().name(),
-            prestamo.getLector().getId(),
-            prestamo.getLector().getNombre() + " [" + prestamo.getLector().getZona().getDescripcion() + "]",
-            prestamo.getBibliotecario().getId(),
-            prestamo.getBibliotecario().getNombre(),
-            prestamo.getMaterial().getId(),
-            materialTipo,
-            materialDescripcion
+            (String) fila[0],
+            (Date) fila[1],
+            (Date) fila[2],
+            ((EstadoPrestamo) fila[3]).name(),
+            (String) fila[4],
+            fila[5] + " [" + (zona != null ? zona.getDescripcion() : "Sin zona") + "]",
+            (String) fila[7],
+            (String) fila[8],
+            (String) fila[9],
+            (String) fila[10],
+            (String) fila[11]
         );
+        dto.setVersion(((Number) fila[12]).longValue());
         
         return dto;
     }
@@ -0,0 +1,46 @@
+package logica;
+
+import org.hibernate.Session;
+import persistencia.UnidadDeTrabajo;
+
+/**
+ * Resuelve un material por ID sin saber de antemano si es Libro o ArticuloEspecial
+ * Reemplaza la doble búsqueda (primero libro, luego artículo) por una sola consulta polimórfica
+ *
+ * No guarda nada propio: Material está en la caché de segundo nivel (región "materiales"),
+ * así que las búsquedas repetidas de un mismo ID ya no llegan a la base de datos, y los
+ * nombres que muestran los reportes salen de las consultas agrupadas de préstamos
+ */
+public class ResolvedorMateriales {
+
+    private static ResolvedorMateriales instancia;
+
+    private ResolvedorMateriales() {}
+
+    public static synchronized ResolvedorMateriales getInstancia() {
+        if (instancia == null) {
+            instancia = new ResolvedorMateriales();
+        }
+        return instancia;
+    }
+
+    /**
+     * Obtiene un material por ID con una sola búsqueda
+     * @return el Libro o ArticuloEspecial correspondiente, o null si no existe
+     */
+    public Material obtenerMaterial(String id) {
+        if (id == null || id.trim().isEmpty()) {
+            return null;
+        }
+
+        Session session = null;
+        try {
+            session = UnidadDeTrabajo.abrirSesion();
+            return session.get(Material.class, id.trim());
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
+            }
+        }
+    }
+}
@@ -1,16 +1,22 @@
 package logica;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Inheritance;
 import jakarta.persistence.InheritanceType;
 import jakarta.persistence.Table;
 import jakarta.persistence.Column;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * Clase abstracta que representa un usuario base en el sistema
+ * Cacheada en segundo nivel (región "usuarios", compartida por Bibliotecario y Lector)
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "usuarios")
 @Inheritance(strategy = InheritanceType.JOINED)
 @Table(name = "usuarios")
 public abstract class Usuario {
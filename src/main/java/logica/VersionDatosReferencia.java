@@ -0,0 +1,37 @@
+package logica;
+
+import persistencia.RegistroCambios;
+
+/**
+ * Versión de los datos de referencia: lectores, bibliotecarios, libros y artículos especiales
+ * Un cliente que guardó esas listas sabe si siguen vigentes comparando un número, sin consultar
+ * la base de datos
+ *
+ * Cuenta los cambios confirmados en este proceso (RegistroCambios los cuenta al confirmarse la
+ * transacción); la interfaz Swing y los servicios web corren en la misma JVM (MainNuevo), así
+ * que incluye lo modificado desde ambos. Lo cambiado por otro proceso o directamente en la base
+ * de datos lo cubre la edad máxima de CacheDatosReferencia
+ *
+ * Arranca en la hora de inicio del proceso para que una versión obtenida antes de un
+ * reinicio nunca coincida con la nueva
+ */
+public class VersionDatosReferencia {
+
+    private static final VersionDatosReferencia INSTANCIA = new VersionDatosReferencia();
+
+    private final long inicio = System.currentTimeMillis();
+
+    private VersionDatosReferencia() {}
+
+    public static VersionDatosReferencia getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Versión actual; aumenta con cada cambio confirmado en alguna de las listas
+     */
+    public long obtener() {
+        return inicio + RegistroCambios.confirmadosEnEsteProceso(RegistroCambios.LECTOR,
+            RegistroCambios.BIBLIOTECARIO, RegistroCambios.LIBRO, RegistroCambios.ARTICULO_ESPECIAL);
+    }
+}
@@ -0,0 +1,53 @@
+package persistencia;
+
+/**
+ * Foto inmutable del estado del pool de conexiones en un instante dado
+ */
+public class EstadisticasPool {
+
+    private final int conexionesActivas;
+    private final int conexionesInactivas;
+    private final int conexionesTotales;
+    private final int hilosEsperando;
+    private final int tamanoMaximo;
+
+    public EstadisticasPool(int conexionesActivas, int conexionesInactivas, int conexionesTotales,
+                            int hilosEsperando, int tamanoMaximo) {
+        this.conexionesActivas = conexionesActivas;
+        this.conexionesInactivas = conexionesInactivas;
+        this.conexionesTotales = conexionesTotales;
+        this.hilosEsperando = hilosEsperando;
+        this.tamanoMaximo = tamanoMaximo;
+    }
+
+    public int getConexionesActivas() {
+        return conexionesActivas;
+    }
+
+    public int getConexionesInactivas() {
+        return conexionesInactivas;
+    }
+
+    public int getConexionesTotales() {
+        return conexionesTotales;
+    }
+
+    public int getHilosEsperando() {
+        return hilosEsperando;
+    }
+
+    public int getTamanoMaximo() {
+        return tamanoMaximo;
+    }
+
+    @Override
+    public String toString() {
+        return "EstadisticasPool{" +
+                "activas=" + conexionesActivas +
+                ", inactivas=" + conexionesInactivas +
+                ", totales=" + conexionesTotales +
+                ", esperando=" + hilosEsperando +
+                ", maximo=" + tamanoMaximo +
+                '}';
+    }
+}
@@ -2,6 +2,8 @@ package persistencia;
 
 import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import logica.Lector;
 import logica.Usuario;
 import logica.Bibliotecario;
@@ -11,11 +13,20 @@ import logica.Material;
 import logica.ArticuloEspecial;
 import logica.Libro;
 
+import java.io.InputStream;
+import java.util.Properties;
+
 /**
  * Utilidad para configurar y obtener SessionFactory de Hibernate
  */
 public class HibernateUtil {
     
+    private static final String ARCHIVO_PROPIEDADES = "database-postgresql.properties";
+    
+    // Claves de configuración del esquema
+    private static final String ESQUEMA_MIGRACIONES = "db.esquema.migraciones";
+    private static final String ESQUEMA_HBM2DDL = "db.esquema.hbm2ddl";
+    
     private static SessionFactory sessionFactory;
     
     private HibernateUtil() {}
@@ -27,7 +38,24 @@ public class HibernateUtil {
         if (sessionFactory == null) {
             try {
                 // Cargar configuración desde hibernate.cfg.xml
-                sessionFactory = new Configuration().configure("hibernate.cfg.xml").buildSessionFactory();
+                Configuration configuracion = new Configuration().configure("hibernate.cfg.xml");
+                
+                // Aplicar migraciones versionadas (tablas, columnas e índices) antes de validar o usar el esquema
+                Properties esquema = cargarPropiedades("db.esquema.");
+                if (Boolean.parseBoolean(esquema.getProperty(ESQUEMA_MIGRACIONES, "true"))) {
+                    MigradorEsquema.migrar(configuracion.getProperties());
+                }
+                String hbm2ddl = esquema.getProperty(ESQUEMA_HBM2DDL);
+                if (hbm2ddl != null && !hbm2ddl.trim().isEmpty()) {
+                    configuracion.setProperty("hibernate.hbm2ddl.auto", hbm2ddl.trim());
+                }
+                
+                // Usar el pool de conexiones de producción con los parámetros db.pool.*
+                configuracion.addProperties(cargarPropiedades("db.pool."));
+                configuracion.setProperty("hibernate.connection.provider_class",
+                    PoolConexionesProvider.class.getName());
+                
+                sessionFactory = configuracion.buildSessionFactory();
                 System.out.println("Hibernate SessionFactory construida correctamente desde hibernate.cfg.xml.");
             } catch (Exception e) {
                 System.err.println("Error al configurar Hibernate desde hibernate.cfg.xml: " + e.getMessage());
@@ -37,6 +65,52 @@ public class HibernateUtil {
         return sessionFactory;
     }
     
+    /**
+     * Lee desde database-postgresql.properties las propiedades que empiezan con el prefijo dado
+     */
+    private static Properties cargarPropiedades(String prefijo) {
+        Properties propiedades = new Properties();
+        try (InputStream entrada = HibernateUtil.class.getClassLoader().getResourceAsStream(ARCHIVO_PROPIEDADES)) {
+            if (entrada == null) {
+                System.out.println("No se encontró " + ARCHIVO_PROPIEDADES + ", usando valores por defecto para " + prefijo + "*");
+                return propiedades;
+            }
+            Properties todas = new Properties();
+            todas.load(entrada);
+            for (String clave : todas.stringPropertyNames()) {
+                if (clave.startsWith(prefijo)) {
+                    propiedades.setProperty(clave, todas.getProperty(clave));
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error al leer " + ARCHIVO_PROPIEDADES + ": " + e.getMessage());
+        }
+        return propiedades;
+    }
+    
+    /**
+     * Obtiene las estadísticas actuales del pool de conexiones
+     */
+    public static EstadisticasPool getEstadisticasPool() {
+        ConnectionProvider provider = ((SessionFactoryImplementor) getSessionFactory())
+            .getServiceRegistry().getService(ConnectionProvider.class);
+        if (provider != null && provider.isUnwrappableAs(PoolConexionesProvider.class)) {
+            return provider.unwrap(PoolConexionesProvider.class).obtenerEstadisticas();
+        }
+        return new EstadisticasPool(0, 0, 0, 0, 0);
+    }
+    
+    /**
+     * Invalida la entrada de caché de segundo nivel de una entidad
+     * Solo para escrituras que no pasan por la Session (SQL nativo); tras
+     * session.update/merge Hibernate ya mantiene la caché sincronizada
+     */
+    public static void invalidarCache(Class<?> entidad, Object id) {
+        if (id != null) {
+            getSessionFactory().getCache().evictEntityData(entidad, id);
+        }
+    }
+    
     /**
      * Cierra la SessionFactory
      */
@@ -8,6 +8,7 @@ import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.query.Query;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Date;
 
@@ -31,8 +32,8 @@ public class LectorDAO {
         Transaction transaction = null;
         
         try {
-            session = sessionFactory.openSession();
-            transaction = session.beginTransaction();
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
+            transaction = UnidadDeTrabajo.iniciarTransaccion(session);
             
             // Generar ID si no tiene uno
             if (lector.getId() == null || lector.getId().trim().isEmpty()) {
@@ -40,16 +41,17 @@ public class LectorDAO {
             }
             
             session.save(lector);
-            transaction.commit();
+            RegistroCambios.registrar(session, RegistroCambios.LECTOR, lector.getId(), false);
+            UnidadDeTrabajo.confirmarTransaccion(transaction);
             
         } catch (Exception e) {
             if (transaction != null) {
-                transaction.rollback();
+                UnidadDeTrabajo.deshacerTransaccion(transaction);
             }
             throw new RuntimeException("Error al guardar el lector: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -62,20 +64,21 @@ public class LectorDAO {
         Transaction transaction = null;
         
         try {
-            session = sessionFactory.openSession();
-            transaction = session.beginTransaction();
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
+            transaction = UnidadDeTrabajo.iniciarTransaccion(session);
             
             session.update(lector);
-            transaction.commit();
+            RegistroCambios.registrar(session, RegistroCambios.LECTOR, lector.getId(), false);
+            UnidadDeTrabajo.confirmarTransaccion(transaction);
             
         } catch (Exception e) {
             if (transaction != null) {
-                transaction.rollback();
+                UnidadDeTrabajo.deshacerTransaccion(transaction);
             }
             throw new RuntimeException("Error al actualizar el lector: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -88,24 +91,25 @@ public class LectorDAO {
         Transaction transaction = null;
         
         try {
-            session = sessionFactory.openSession();
-            transaction = session.beginTransaction();
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
+            transaction = UnidadDeTrabajo.iniciarTransaccion(session);
             
             Lector lector = session.get(Lector.class, id);
             if (lector != null) {
                 session.delete(lector);
+                RegistroCambios.registrar(session, RegistroCambios.LECTOR, id, true);
             }
             
-            transaction.commit();
+            UnidadDeTrabajo.confirmarTransaccion(transaction);
             
         } catch (Exception e) {
             if (transaction != null) {
-                transaction.rollback();
+                UnidadDeTrabajo.deshacerTransaccion(transaction);
             }
             throw new RuntimeException("Error al eliminar el lector: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -117,14 +121,14 @@ public class LectorDAO {
         Session session = null;
         
         try {
-            session = sessionFactory.openSession();
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
             return session.get(Lector.class, id);
             
         } catch (Exception e) {
             throw new RuntimeException("Error al buscar el lector por ID: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -136,7 +140,7 @@ public class LectorDAO {
         Session session = null;
         
         try {
-            session = sessionFactory.openSession();
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
             
             Query<Lector> query = session.createQuery(
                 "FROM Lector l WHERE l.email = :email", Lector.class);
@@ -148,7 +152,7 @@ public class LectorDAO {
             throw new RuntimeException("Error al buscar el lector por email: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -160,7 +164,7 @@ public class LectorDAO {
         Session session = null;
         
         try {
-            session = sessionFactory.openSession();
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
             
             Query<Lector> query = session.createQuery("FROM Lector", Lector.class);
             return query.list();
@@ -169,7 +173,30 @@ public class LectorDAO {
             throw new RuntimeException("Error al listar los lectores: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
+            }
+        }
+    }
+    
+    /**
+     * Lista los lectores con los IDs dados (los que no existen se omiten)
+     */
+    public List<Lector> listarPorIds(Collection<String> ids) {
+        Session session = null;
+        
+        try {
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
+            
+            Query<Lector> query = session.createQuery(
+                "FROM Lector l WHERE l.id IN :ids", Lector.class);
+            query.setParameter("ids", ids);
+            return query.list();
+            
+        } catch (Exception e) {
+            throw new RuntimeException("Error al listar lectores por ID: " + e.getMessage(), e);
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -181,7 +208,7 @@ public class LectorDAO {
         Session session = null;
         
         try {
-            session = sessionFactory.openSession();
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
             
             Query<Lector> query = session.createQuery(
                 "FROM Lector l WHERE l.estado = :estado", Lector.class);
@@ -193,7 +220,7 @@ public class LectorDAO {
             throw new RuntimeException("Error al listar lectores por estado: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -205,7 +232,7 @@ public class LectorDAO {
         Session session = null;
         
         try {
-            session = sessionFactory.openSession();
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
             
             Query<Lector> query = session.createQuery(
                 "FROM Lector l WHERE l.zona = :zona", Lector.class);
@@ -217,7 +244,7 @@ public class LectorDAO {
             throw new RuntimeException("Error al listar lectores por zona: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -236,7 +263,7 @@ public class LectorDAO {
         Session session = null;
         
         try {
-            session = sessionFactory.openSession();
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
             
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(l) FROM Lector l", Long.class);
@@ -247,7 +274,7 @@ public class LectorDAO {
             throw new RuntimeException("Error al contar lectores: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
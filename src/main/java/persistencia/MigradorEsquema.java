@@ -0,0 +1,261 @@
+package persistencia;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Migraciones versionadas del esquema de la base de datos
+ * Se ejecutan al iniciar HibernateUtil, antes de construir la SessionFactory, y cada versión
+ * aplicada queda registrada en la tabla schema_migraciones para no repetirla
+ *
+ * Para cambiar el esquema se agrega una migración nueva al final de MIGRACIONES;
+ * nunca se modifica una que ya fue aplicada
+ */
+public class MigradorEsquema {
+
+    private static final String TABLA_MIGRACIONES = "schema_migraciones";
+
+    // Clave del advisory lock que serializa las migraciones entre procesos (Swing y servicios web)
+    private static final long CLAVE_BLOQUEO = 7_240_316_001L;
+
+    // Los lectores comparten la tabla usuarios con los bibliotecarios: el índice solo cubre
+    // los IDs de lector (prefijo "L", ver ManejadorLector.generarIdLector). ManejadorLector
+    // depende de él para rechazar emails repetidos por otro proceso, así que si los datos ya
+    // tienen repetidos la migración falla con la lista de emails en lugar de seguir sin índice
+    private static final String CREAR_EMAIL_UNICO_LECTORES =
+        "DO $$ DECLARE repetidos text; BEGIN "
+            + "SELECT string_agg(email, ', ') INTO repetidos FROM ("
+            + "SELECT lower(email) AS email FROM usuarios WHERE id LIKE 'L%' AND email IS NOT NULL "
+            + "GROUP BY lower(email) HAVING COUNT(*) > 1 ORDER BY 1 LIMIT 20) r; "
+            + "IF repetidos IS NOT NULL THEN "
+            + "RAISE EXCEPTION 'Hay lectores con email repetido: %', repetidos "
+            + "USING HINT = 'Corregir los emails de esos lectores y volver a iniciar: "
+            + "ux_usuarios_email_lector es obligatorio'; "
+            + "END IF; "
+            + "CREATE UNIQUE INDEX IF NOT EXISTS ux_usuarios_email_lector ON usuarios (lower(email)) "
+            + "WHERE id LIKE 'L%'; "
+            + "END $$";
+
+    private static final List<Migracion> MIGRACIONES = Collections.unmodifiableList(Arrays.asList(
+        new Migracion(1, "Esquema base de usuarios, materiales y préstamos",
+            "CREATE TABLE IF NOT EXISTS usuarios ("
+                + "id varchar(255) NOT NULL PRIMARY KEY, "
+                + "nombre varchar(255), "
+                + "email varchar(255), "
+                + "password varchar(255))",
+            "CREATE TABLE IF NOT EXISTS lectores ("
+                + "id varchar(255) NOT NULL PRIMARY KEY REFERENCES usuarios(id), "
+                + "direccion varchar(255), "
+                + "fecharegistro date, "
+                + "estado varchar(255), "
+                + "zona varchar(255))",
+            "CREATE TABLE IF NOT EXISTS bibliotecarios ("
+                + "id varchar(255) NOT NULL PRIMARY KEY REFERENCES usuarios(id), "
+                + "numeroempleado varchar(255))",
+            "CREATE TABLE IF NOT EXISTS materiales ("
+                + "id varchar(255) NOT NULL PRIMARY KEY, "
+                + "fechaingreso timestamp(6))",
+            "CREATE TABLE IF NOT EXISTS libros ("
+                + "id varchar(255) NOT NULL PRIMARY KEY REFERENCES materiales(id), "
+                + "titulo varchar(255) NOT NULL, "
+                + "cantidadpaginas integer NOT NULL, "
+                + "fecharegistro timestamp(6) NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS articulos_especiales ("
+                + "id varchar(255) NOT NULL PRIMARY KEY REFERENCES materiales(id), "
+                + "descripcion varchar(500) NOT NULL, "
+                + "pesokg real NOT NULL, "
+                + "dimensiones varchar(100) NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS prestamos ("
+                + "id varchar(255) NOT NULL PRIMARY KEY, "
+                + "fecha_solicitud date NOT NULL, "
+                + "fecha_devolucion date, "
+                + "estado varchar(255) NOT NULL, "
+                + "lector_id varchar(255) NOT NULL REFERENCES lectores(id), "
+                + "bibliotecario_id varchar(255) NOT NULL REFERENCES bibliotecarios(id), "
+                + "material_id varchar(255) NOT NULL REFERENCES materiales(id))"),
+
+        new Migracion(2, "Columna de versión para el bloqueo optimista de préstamos",
+            "ALTER TABLE prestamos ADD COLUMN IF NOT EXISTS version bigint DEFAULT 0 NOT NULL"),
+
+        new Migracion(3, "Índices para los filtros de préstamos, usuarios y catálogo",
+            // Historial por lector y por bibliotecario, y préstamos de un material
+            "CREATE INDEX IF NOT EXISTS idx_prestamos_lector ON prestamos (lector_id)",
+            "CREATE INDEX IF NOT EXISTS idx_prestamos_bibliotecario ON prestamos (bibliotecario_id, fecha_solicitud)",
+            "CREATE INDEX IF NOT EXISTS idx_prestamos_material ON prestamos (material_id)",
+            // Filtros por estado y rango de fechas de los listados y reportes
+            "CREATE INDEX IF NOT EXISTS idx_prestamos_estado_fecha ON prestamos (estado, fecha_solicitud)",
+            // Conteo de pendientes por material: índice parcial, solo con las filas que interesan
+            "CREATE INDEX IF NOT EXISTS idx_prestamos_pendientes_material ON prestamos (material_id) "
+                + "WHERE estado = 'PENDIENTE'",
+            // Búsquedas por email (exacta en lectores, sin distinguir mayúsculas en bibliotecarios)
+            "CREATE INDEX IF NOT EXISTS idx_usuarios_email ON usuarios (email)",
+            "CREATE INDEX IF NOT EXISTS idx_usuarios_email_lower ON usuarios (lower(email))",
+            "CREATE INDEX IF NOT EXISTS idx_lectores_zona ON lectores (zona)",
+            // Detección de libros duplicados y listados por fecha de ingreso
+            "CREATE INDEX IF NOT EXISTS idx_libros_titulo ON libros (titulo)",
+            "CREATE INDEX IF NOT EXISTS idx_materiales_fechaingreso ON materiales (fechaingreso)"),
+
+        new Migracion(4, "Registro de cambios para la sincronización incremental",
+            "CREATE SEQUENCE IF NOT EXISTS seq_registro_cambios",
+            // Una fila por entidad con la versión de su último cambio; las bajas quedan marcadas
+            "CREATE TABLE IF NOT EXISTS registro_cambios ("
+                + "entidad varchar(30) NOT NULL, "
+                + "entidad_id varchar(255) NOT NULL, "
+                + "eliminado boolean NOT NULL DEFAULT false, "
+                + "version bigint NOT NULL, "
+                + "PRIMARY KEY (entidad, entidad_id))",
+            "CREATE INDEX IF NOT EXISTS idx_registro_cambios_version ON registro_cambios (entidad, version)",
+            // Los datos existentes entran como cambios, así un cliente nuevo se sincroniza desde la versión 0
+            "INSERT INTO registro_cambios (entidad, entidad_id, version) "
+                + "SELECT 'LECTOR', id, nextval('seq_registro_cambios') FROM lectores ON CONFLICT DO NOTHING",
+            "INSERT INTO registro_cambios (entidad, entidad_id, version) "
+                + "SELECT 'LIBRO', id, nextval('seq_registro_cambios') FROM libros ON CONFLICT DO NOTHING",
+            "INSERT INTO registro_cambios (entidad, entidad_id, version) "
+                + "SELECT 'ARTICULO_ESPECIAL', id, nextval('seq_registro_cambios') FROM articulos_especiales "
+                + "ON CONFLICT DO NOTHING",
+            "INSERT INTO registro_cambios (entidad, entidad_id, version) "
+                + "SELECT 'PRESTAMO', id, nextval('seq_registro_cambios') FROM prestamos ON CONFLICT DO NOTHING"),
+
+        new Migracion(5, "Versiones del registro de cambios asignadas al sellar",
+            // Quien escribe deja la versión en NULL y RegistroCambios.sellarPendientes la asigna
+            "ALTER TABLE registro_cambios ALTER COLUMN version DROP NOT NULL",
+            "CREATE INDEX IF NOT EXISTS idx_registro_cambios_pendientes ON registro_cambios (entidad, entidad_id) "
+                + "WHERE version IS NULL"),
+
+        new Migracion(6, "Email único (sin distinguir mayúsculas) entre los lectores",
+            CREAR_EMAIL_UNICO_LECTORES),
+
+        // Una versión anterior de la migración 6 solo avisaba si había emails repetidos y quedaba
+        // registrada sin crear el índice; esta lo crea en esas bases (en las demás no hace nada)
+        new Migracion(7, "Email único entre los lectores en bases donde la versión 6 no lo creó",
+            CREAR_EMAIL_UNICO_LECTORES)
+    ));
+
+    /**
+     * Una versión del esquema: sentencias DDL que se aplican juntas en una transacción
+     */
+    private static final class Migracion {
+        private final int version;
+        private final String descripcion;
+        private final String[] sentencias;
+
+        private Migracion(int version, String descripcion, String... sentencias) {
+            this.version = version;
+            this.descripcion = descripcion;
+            this.sentencias = sentencias;
+        }
+    }
+
+    private MigradorEsquema() {}
+
+    /**
+     * Aplica las migraciones pendientes usando los datos de conexión de Hibernate
+     * @param propiedades propiedades de la configuración (hibernate.connection.*)
+     * @return cantidad de migraciones aplicadas
+     */
+    public static int migrar(Properties propiedades) {
+        String url = propiedades.getProperty("hibernate.connection.url");
+        String usuario = propiedades.getProperty("hibernate.connection.username");
+        String password = propiedades.getProperty("hibernate.connection.password");
+
+        try (Connection conexion = DriverManager.getConnection(url, usuario, password)) {
+            return migrar(conexion);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error al migrar el esquema de la base de datos: " + e.getMessage(), e);
+        }
+    }
+
+    private static int migrar(Connection conexion) throws SQLException {
+        conexion.setAutoCommit(true);
+        try (Statement st = conexion.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS " + TABLA_MIGRACIONES + " ("
+                + "version integer NOT NULL PRIMARY KEY, "
+                + "descripcion varchar(255) NOT NULL, "
+                + "aplicada_en timestamp NOT NULL DEFAULT now())");
+            st.execute("SELECT pg_advisory_lock(" + CLAVE_BLOQUEO + ")");
+        }
+
+        try {
+            Set<Integer> aplicadas = versionesAplicadas(conexion);
+            List<Migracion> pendientes = new ArrayList<>();
+            for (Migracion migracion : MIGRACIONES) {
+                if (!aplicadas.contains(migracion.version)) {
+                    pendientes.add(migracion);
+                }
+            }
+
+            for (Migracion migracion : pendientes) {
+                aplicar(conexion, migracion);
+            }
+
+            if (pendientes.isEmpty()) {
+                System.out.println("Esquema de base de datos al día (versión " + versionActual() + ")");
+            }
+            return pendientes.size();
+        } finally {
+            try (Statement st = conexion.createStatement()) {
+                st.execute("SELECT pg_advisory_unlock(" + CLAVE_BLOQUEO + ")");
+            }
+        }
+    }
+
+    private static Set<Integer> versionesAplicadas(Connection conexion) throws SQLException {
+        Set<Integer> versiones = new HashSet<>();
+        try (Statement st = conexion.createStatement();
+             ResultSet rs = st.executeQuery("SELECT version FROM " + TABLA_MIGRACIONES)) {
+            while (rs.next()) {
+                versiones.add(rs.getInt(1));
+            }
+        }
+        return versiones;
+    }
+
+    private static void aplicar(Connection conexion, Migracion migracion) throws SQLException {
+        conexion.setAutoCommit(false);
+        try {
+            try (Statement st = conexion.createStatement()) {
+                for (String sentencia : migracion.sentencias) {
+                    st.execute(sentencia);
+                    // Los RAISE WARNING de las migraciones llegan como SQLWarning
+                    for (SQLWarning aviso = st.getWarnings(); aviso != null; aviso = aviso.getNextWarning()) {
+                        System.err.println("Aviso de la migración " + migracion.version + ": " + aviso.getMessage());
+                    }
+                    st.clearWarnings();
+                }
+            }
+            try (PreparedStatement ps = conexion.prepareStatement(
+                    "INSERT INTO " + TABLA_MIGRACIONES + " (version, descripcion) VALUES (?, ?)")) {
+                ps.setInt(1, migracion.version);
+                ps.setString(2, migracion.descripcion);
+                ps.executeUpdate();
+            }
+            conexion.commit();
+            System.out.println("Migración " + migracion.version + " aplicada: " + migracion.descripcion);
+        } catch (SQLException e) {
+            conexion.rollback();
+            throw new SQLException("Falló la migración " + migracion.version
+                + " (" + migracion.descripcion + "): " + e.getMessage(), e);
+        } finally {
+            conexion.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Última versión definida en el código
+     */
+    public static int versionActual() {
+        return MIGRACIONES.get(MIGRACIONES.size() - 1).version;
+    }
+}
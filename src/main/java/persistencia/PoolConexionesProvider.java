@@ -0,0 +1,200 @@
+package persistencia;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.service.UnknownUnwrapTypeException;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.Stoppable;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+/**
+ * ConnectionProvider de Hibernate respaldado por un pool HikariCP
+ * Reemplaza el pool interno de Hibernate (pensado solo para desarrollo)
+ * Los parámetros del pool se leen de las propiedades db.pool.* de database-postgresql.properties
+ */
+public class PoolConexionesProvider implements ConnectionProvider, Configurable, Stoppable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Claves de configuración del pool
+    public static final String POOL_TAMANO_MAXIMO = "db.pool.tamanoMaximo";
+    public static final String POOL_MINIMO_INACTIVAS = "db.pool.minimoInactivas";
+    public static final String POOL_TIMEOUT_CONEXION_MS = "db.pool.timeoutConexionMs";
+    public static final String POOL_TIMEOUT_VALIDACION_MS = "db.pool.timeoutValidacionMs";
+    public static final String POOL_TIMEOUT_INACTIVIDAD_MS = "db.pool.timeoutInactividadMs";
+    public static final String POOL_VIDA_MAXIMA_MS = "db.pool.vidaMaximaMs";
+    public static final String POOL_UMBRAL_FUGAS_MS = "db.pool.umbralDeteccionFugasMs";
+    public static final String POOL_CACHE_SENTENCIAS = "db.pool.cacheSentencias";
+    public static final String POOL_CACHE_SENTENCIAS_MIB = "db.pool.cacheSentenciasMiB";
+    public static final String POOL_UMBRAL_PREPARACION = "db.pool.umbralPreparacion";
+    public static final String POOL_CONEXIONES_CALENTAMIENTO = "db.pool.conexionesCalentamiento";
+
+    private static final String NOMBRE_POOL = "BibliotecaPool";
+
+    private HikariDataSource dataSource;
+
+    @Override
+    public void configure(Map<String, Object> propiedades) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(NOMBRE_POOL);
+
+        // Datos de conexión tomados de hibernate.cfg.xml
+        config.setJdbcUrl(texto(propiedades, "hibernate.connection.url", null));
+        config.setUsername(texto(propiedades, "hibernate.connection.username", null));
+        config.setPassword(texto(propiedades, "hibernate.connection.password", null));
+        String driver = texto(propiedades, "hibernate.connection.driver_class", null);
+        if (driver != null) {
+            config.setDriverClassName(driver);
+        }
+
+        // Hibernate gestiona las transacciones (provider_disables_autocommit=true)
+        config.setAutoCommit(false);
+        config.setTransactionIsolation("TRANSACTION_READ_COMMITTED");
+
+        // Tamaño, timeouts y ciclo de vida
+        config.setMaximumPoolSize(entero(propiedades, POOL_TAMANO_MAXIMO, 10));
+        config.setMinimumIdle(entero(propiedades, POOL_MINIMO_INACTIVAS, 2));
+        config.setConnectionTimeout(largo(propiedades, POOL_TIMEOUT_CONEXION_MS, 10000L));
+        config.setValidationTimeout(largo(propiedades, POOL_TIMEOUT_VALIDACION_MS, 3000L));
+        config.setIdleTimeout(largo(propiedades, POOL_TIMEOUT_INACTIVIDAD_MS, 300000L));
+        config.setMaxLifetime(largo(propiedades, POOL_VIDA_MAXIMA_MS, 1800000L));
+        config.setLeakDetectionThreshold(largo(propiedades, POOL_UMBRAL_FUGAS_MS, 0L));
+
+        // Cache de sentencias preparadas del driver PostgreSQL
+        config.addDataSourceProperty("preparedStatementCacheQueries",
+            String.valueOf(entero(propiedades, POOL_CACHE_SENTENCIAS, 256)));
+        config.addDataSourceProperty("preparedStatementCacheSizeMiB",
+            String.valueOf(entero(propiedades, POOL_CACHE_SENTENCIAS_MIB, 5)));
+        config.addDataSourceProperty("prepareThreshold",
+            String.valueOf(entero(propiedades, POOL_UMBRAL_PREPARACION, 3)));
+
+        dataSource = new HikariDataSource(config);
+        System.out.println("Pool de conexiones " + NOMBRE_POOL + " iniciado (máximo "
+            + config.getMaximumPoolSize() + " conexiones)");
+
+        calentarPool(entero(propiedades, POOL_CONEXIONES_CALENTAMIENTO, config.getMinimumIdle()));
+    }
+
+    /**
+     * Abre y devuelve de inmediato la cantidad indicada de conexiones
+     * para que las primeras solicitudes no paguen el costo de conectarse
+     */
+    private void calentarPool(int cantidad) {
+        int limite = Math.min(cantidad, dataSource.getMaximumPoolSize());
+        List<Connection> conexiones = new ArrayList<>();
+        try {
+            for (int i = 0; i < limite; i++) {
+                conexiones.add(dataSource.getConnection());
+            }
+        } catch (SQLException e) {
+            System.err.println("Error al precalentar el pool de conexiones: " + e.getMessage());
+        } finally {
+            for (Connection conexion : conexiones) {
+                try {
+                    conexion.close();
+                } catch (SQLException e) {
+                    // Ignorar: la conexión vuelve al pool o se descarta
+                }
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return dataSource.getConnection();
+    }
+
+    @Override
+    public void closeConnection(Connection conexion) throws SQLException {
+        conexion.close();
+    }
+
+    @Override
+    public boolean supportsAggressiveRelease() {
+        return false;
+    }
+
+    /**
+     * Obtiene una foto de las estadísticas actuales del pool
+     */
+    public EstadisticasPool obtenerEstadisticas() {
+        HikariPoolMXBean pool = dataSource != null ? dataSource.getHikariPoolMXBean() : null;
+        if (pool == null) {
+            return new EstadisticasPool(0, 0, 0, 0, 0);
+        }
+        return new EstadisticasPool(
+            pool.getActiveConnections(),
+            pool.getIdleConnections(),
+            pool.getTotalConnections(),
+            pool.getThreadsAwaitingConnection(),
+            dataSource.getMaximumPoolSize()
+        );
+    }
+
+    @Override
+    public boolean isUnwrappableAs(Class<?> tipo) {
+        return ConnectionProvider.class.equals(tipo)
+            || PoolConexionesProvider.class.isAssignableFrom(tipo)
+            || DataSource.class.isAssignableFrom(tipo);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> tipo) {
+        if (ConnectionProvider.class.equals(tipo) || PoolConexionesProvider.class.isAssignableFrom(tipo)) {
+            return (T) this;
+        }
+        if (DataSource.class.isAssignableFrom(tipo)) {
+            return (T) dataSource;
+        }
+        throw new UnknownUnwrapTypeException(tipo);
+    }
+
+    @Override
+    public void stop() {
+        if (dataSource != null && !dataSource.isClosed()) {
+            dataSource.close();
+            System.out.println("Pool de conexiones " + NOMBRE_POOL + " cerrado");
+        }
+    }
+
+    // Métodos auxiliares para leer propiedades
+
+    private static String texto(Map<String, Object> propiedades, String clave, String porDefecto) {
+        Object valor = propiedades.get(clave);
+        if (valor == null || valor.toString().trim().isEmpty()) {
+            return porDefecto;
+        }
+        return valor.toString().trim();
+    }
+
+    private static int entero(Map<String, Object> propiedades, String clave, int porDefecto) {
+        try {
+            String valor = texto(propiedades, clave, null);
+            return valor != null ? Integer.parseInt(valor) : porDefecto;
+        } catch (NumberFormatException e) {
+            System.err.println("Valor inválido para " + clave + ", usando " + porDefecto);
+            return porDefecto;
+        }
+    }
+
+    private static long largo(Map<String, Object> propiedades, String clave, long porDefecto) {
+        try {
+            String valor = texto(propiedades, clave, null);
+            return valor != null ? Long.parseLong(valor) : porDefecto;
+        } catch (NumberFormatException e) {
+            System.err.println("Valor inválido para " + clave + ", usando " + porDefecto);
+            return porDefecto;
+        }
+    }
+}
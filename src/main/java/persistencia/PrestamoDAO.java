@@ -2,11 +2,16 @@ package persistencia;
 
 import logica.Prestamo;
 import logica.EstadoPrestamo;
+import org.hibernate.LockMode;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
+import org.hibernate.query.NativeQuery;
 import org.hibernate.query.Query;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -15,6 +20,15 @@ import java.util.List;
  */
 public class PrestamoDAO {
     
+    // Tamaño del bloque de IDs reservado por cada acceso a la secuencia
+    private static final int TAMANO_BLOQUE_IDS = 50;
+    
+    // Compartida por todas las instancias del DAO dentro del proceso
+    private static final SecuenciaPorBloques SECUENCIA_IDS = new SecuenciaPorBloques(
+        "seq_prestamo_id",
+        "SELECT MAX(CAST(SUBSTRING(id FROM 2) AS BIGINT)) FROM prestamos WHERE id ~ '^P[0-9]+$'",
+        1, TAMANO_BLOQUE_IDS);
+    
     private final SessionFactory sessionFactory;
     
     public PrestamoDAO(SessionFactory sessionFactory) {
@@ -29,25 +43,61 @@ public class PrestamoDAO {
         Transaction transaction = null;
         
         try {
-            session = sessionFactory.openSession();
-            transaction = session.beginTransaction();
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
+            transaction = UnidadDeTrabajo.iniciarTransaccion(session);
             
             // Generar ID si no tiene uno
             if (prestamo.getId() == null || prestamo.getId().trim().isEmpty()) {
-                prestamo.setId(generarIdPrestamo());
+                prestamo.setId("P" + SECUENCIA_IDS.siguienteValor(session));
             }
             
             session.save(prestamo);
-            transaction.commit();
+            RegistroCambios.registrar(session, RegistroCambios.PRESTAMO, prestamo.getId(), false);
+            UnidadDeTrabajo.confirmarTransaccion(transaction);
             
         } catch (Exception e) {
             if (transaction != null) {
-                transaction.rollback();
+                UnidadDeTrabajo.deshacerTransaccion(transaction);
             }
             throw new RuntimeException("Error al guardar el préstamo: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
+            }
+        }
+    }
+    
+    /**
+     * Guarda varios préstamos nuevos en una sola transacción
+     * Los INSERT se envían al confirmar, agrupados de a hibernate.jdbc.batch_size por sentencia JDBC
+     */
+    public void guardarLote(List<Prestamo> prestamos) {
+        Session session = null;
+        Transaction transaction = null;
+        
+        try {
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
+            transaction = UnidadDeTrabajo.iniciarTransaccion(session);
+            
+            List<String> ids = new ArrayList<>(prestamos.size());
+            for (Prestamo prestamo : prestamos) {
+                if (prestamo.getId() == null || prestamo.getId().trim().isEmpty()) {
+                    prestamo.setId("P" + SECUENCIA_IDS.siguienteValor(session));
+                }
+                session.save(prestamo);
+                ids.add(prestamo.getId());
+            }
+            RegistroCambios.registrar(session, RegistroCambios.PRESTAMO, ids, false);
+            UnidadDeTrabajo.confirmarTransaccion(transaction);
+            
+        } catch (Exception e) {
+            if (transaction != null) {
+                UnidadDeTrabajo.deshacerTransaccion(transaction);
+            }
+            throw new RuntimeException("Error al guardar el lote de préstamos: " + e.getMessage(), e);
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -60,20 +110,154 @@ public class PrestamoDAO {
         Transaction transaction = null;
         
         try {
-            session = sessionFactory.openSession();
-            transaction = session.beginTransaction();
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
+            transaction = UnidadDeTrabajo.iniciarTransaccion(session);
             
             session.update(prestamo);
-            transaction.commit();
+            RegistroCambios.registrar(session, RegistroCambios.PRESTAMO, prestamo.getId(), false);
+            UnidadDeTrabajo.confirmarTransaccion(transaction);
             
         } catch (Exception e) {
             if (transaction != null) {
-                transaction.rollback();
+                UnidadDeTrabajo.deshacerTransaccion(transaction);
             }
             throw new RuntimeException("Error al actualizar el préstamo: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
+            }
+        }
+    }
+    
+    /**
+     * Cambia el estado de un préstamo en un solo viaje a la base de datos
+     * El UPDATE solo afecta la fila si sigue en el estado y la versión esperados, así dos
+     * bibliotecarios que modifican el mismo préstamo no se pisan: el segundo no actualiza nada
+     * @param estadoRequerido estado que debe tener el préstamo (null para cualquiera)
+     * @param versionEsperada versión que debe tener el préstamo (null para no verificar)
+     * @param fechaDevolucion fecha de devolución a guardar (null para no modificarla)
+     * @return Object[] con [estadoAnterior (String), materialId (String), nuevaVersion (Number), lectorId (String)],
+     *         o null si ninguna fila cumplió las condiciones
+     */
+    public Object[] transicionarEstado(String id, EstadoPrestamo nuevoEstado, Date fechaDevolucion,
+                                       EstadoPrestamo estadoRequerido, Long versionEsperada) {
+        Session session = null;
+        Transaction transaction = null;
+        
+        try {
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
+            transaction = UnidadDeTrabajo.iniciarTransaccion(session);
+            
+            // La CTE bloquea la fila y conserva el estado anterior para devolverlo
+            StringBuilder sql = new StringBuilder(
+                "WITH anterior AS (" +
+                "SELECT id, estado, material_id, lector_id FROM prestamos WHERE id = :id ");
+            if (estadoRequerido != null) {
+                sql.append("AND estado = :estadoRequerido ");
+            }
+            if (versionEsperada != null) {
+                sql.append("AND version = :version ");
+            }
+            sql.append("FOR UPDATE) " +
+                "UPDATE prestamos p SET estado = :nuevoEstado, version = p.version + 1");
+            if (fechaDevolucion != null) {
+                sql.append(", fecha_devolucion = :fechaDevolucion");
+            }
+            sql.append(" FROM anterior WHERE p.id = anterior.id " +
+                "RETURNING anterior.estado, anterior.material_id, p.version, anterior.lector_id");
+            
+            NativeQuery<Object[]> query = session.createNativeQuery(sql.toString(), Object[].class);
+            query.addSynchronizedEntityClass(Prestamo.class);
+            query.setParameter("id", id);
+            query.setParameter("nuevoEstado", nuevoEstado.name());
+            if (estadoRequerido != null) {
+                query.setParameter("estadoRequerido", estadoRequerido.name());
+            }
+            if (versionEsperada != null) {
+                query.setParameter("version", versionEsperada);
+            }
+            if (fechaDevolucion != null) {
+                query.setParameter("fechaDevolucion", new java.sql.Date(fechaDevolucion.getTime()));
+            }
+            
+            List<Object[]> filas = query.list();
+            if (!filas.isEmpty()) {
+                RegistroCambios.registrar(session, RegistroCambios.PRESTAMO, id, false);
+            }
+            UnidadDeTrabajo.confirmarTransaccion(transaction);
+            
+            return filas.isEmpty() ? null : filas.get(0);
+            
+        } catch (Exception e) {
+            if (transaction != null) {
+                UnidadDeTrabajo.deshacerTransaccion(transaction);
+            }
+            throw new RuntimeException("Error al cambiar el estado del préstamo: " + e.getMessage(), e);
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
+            }
+        }
+    }
+    
+    /**
+     * Cambia el estado de varios préstamos con una única sentencia UPDATE condicional
+     * Los que no existen o no están en estadoRequerido no se modifican ni se devuelven
+     * @return Lista de Object[] con [id, estadoAnterior, materialId, nuevaVersion, lectorId]
+     */
+    public List<Object[]> transicionarEstadoLote(Collection<String> ids, EstadoPrestamo nuevoEstado,
+                                                 Date fechaDevolucion, EstadoPrestamo estadoRequerido) {
+        Session session = null;
+        Transaction transaction = null;
+        
+        try {
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
+            transaction = UnidadDeTrabajo.iniciarTransaccion(session);
+            
+            StringBuilder sql = new StringBuilder(
+                "WITH anterior AS (" +
+                "SELECT id, estado, material_id, lector_id FROM prestamos WHERE id IN (:ids) ");
+            if (estadoRequerido != null) {
+                sql.append("AND estado = :estadoRequerido ");
+            }
+            // Orden fijo de bloqueo para no entrar en deadlock con otro lote que comparta préstamos
+            sql.append("ORDER BY id FOR UPDATE) " +
+                "UPDATE prestamos p SET estado = :nuevoEstado, version = p.version + 1");
+            if (fechaDevolucion != null) {
+                sql.append(", fecha_devolucion = :fechaDevolucion");
+            }
+            sql.append(" FROM anterior WHERE p.id = anterior.id " +
+                "RETURNING p.id, anterior.estado, anterior.material_id, p.version, anterior.lector_id");
+            
+            NativeQuery<Object[]> query = session.createNativeQuery(sql.toString(), Object[].class);
+            query.addSynchronizedEntityClass(Prestamo.class);
+            query.setParameterList("ids", ids);
+            query.setParameter("nuevoEstado", nuevoEstado.name());
+            if (estadoRequerido != null) {
+                query.setParameter("estadoRequerido", estadoRequerido.name());
+            }
+            if (fechaDevolucion != null) {
+                query.setParameter("fechaDevolucion", new java.sql.Date(fechaDevolucion.getTime()));
+            }
+            
+            List<Object[]> filas = query.list();
+            List<String> modificados = new ArrayList<>(filas.size());
+            for (Object[] fila : filas) {
+                modificados.add((String) fila[0]);
+            }
+            RegistroCambios.registrar(session, RegistroCambios.PRESTAMO, modificados, false);
+            UnidadDeTrabajo.confirmarTransaccion(transaction);
+            
+            return filas;
+            
+        } catch (Exception e) {
+            if (transaction != null) {
+                UnidadDeTrabajo.deshacerTransaccion(transaction);
+            }
+            throw new RuntimeException("Error al cambiar el estado del lote de préstamos: " + e.getMessage(), e);
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -86,24 +270,25 @@ public class PrestamoDAO {
         Transaction transaction = null;
         
         try {
-            session = sessionFactory.openSession();
-            transaction = session.beginTransaction();
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
+            transaction = UnidadDeTrabajo.iniciarTransaccion(session);
             
             Prestamo prestamo = session.get(Prestamo.class, id);
             if (prestamo != null) {
                 session.delete(prestamo);
+                RegistroCambios.registrar(session, RegistroCambios.PRESTAMO, id, true);
             }
             
-            transaction.commit();
+            UnidadDeTrabajo.confirmarTransaccion(transaction);
             
         } catch (Exception e) {
             if (transaction != null) {
-                transaction.rollback();
+                UnidadDeTrabajo.deshacerTransaccion(transaction);
             }
             throw new RuntimeException("Error al eliminar el préstamo: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -115,14 +300,35 @@ public class PrestamoDAO {
         Session session = null;
         
         try {
-            session = sessionFactory.openSession();
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
             return session.get(Prestamo.class, id);
             
         } catch (Exception e) {
             throw new RuntimeException("Error al buscar el préstamo por ID: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
+            }
+        }
+    }
+    
+    /**
+     * Busca un préstamo por su ID leyéndolo de la base de datos con SELECT ... FOR UPDATE
+     * Dentro de una UnidadDeTrabajo la fila queda bloqueada hasta confirmar, así la versión
+     * leída no puede cambiar antes de la actualización
+     */
+    public Prestamo buscarPorIdParaActualizar(String id) {
+        Session session = null;
+        
+        try {
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
+            return session.get(Prestamo.class, id, LockMode.PESSIMISTIC_WRITE);
+            
+        } catch (Exception e) {
+            throw new RuntimeException("Error al bloquear el préstamo por ID: " + e.getMessage(), e);
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -134,7 +340,7 @@ public class PrestamoDAO {
         Session session = null;
         
         try {
-            session = sessionFactory.openSession();
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
             
             Query<Prestamo> query = session.createQuery("FROM Prestamo", Prestamo.class);
             return query.list();
@@ -143,7 +349,7 @@ public class PrestamoDAO {
             throw new RuntimeException("Error al listar los préstamos: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -155,7 +361,7 @@ public class PrestamoDAO {
         Session session = null;
         
         try {
-            session = sessionFactory.openSession();
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
             
             Query<Prestamo> query = session.createQuery(
                 "FROM Prestamo p WHERE p.estado = :estado", Prestamo.class);
@@ -167,7 +373,7 @@ public class PrestamoDAO {
             throw new RuntimeException("Error al listar préstamos por estado: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -179,7 +385,7 @@ public class PrestamoDAO {
         Session session = null;
         
         try {
-            session = sessionFactory.openSession();
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
             
             Query<Prestamo> query = session.createQuery(
                 "FROM Prestamo p WHERE p.lector.id = :lectorId", Prestamo.class);
@@ -191,7 +397,7 @@ public class PrestamoDAO {
             throw new RuntimeException("Error al listar préstamos por lector: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -203,7 +409,7 @@ public class PrestamoDAO {
         Session session = null;
         
         try {
-            session = sessionFactory.openSession();
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
             
             Query<Prestamo> query = session.createQuery(
                 "FROM Prestamo p WHERE p.material.id = :materialId", Prestamo.class);
@@ -215,7 +421,322 @@ public class PrestamoDAO {
             throw new RuntimeException("Error al listar préstamos por material: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
+            }
+        }
+    }
+    
+    /**
+     * Lista los préstamos gestionados por un bibliotecario aplicando los filtros en SQL
+     * Carga lector y material en la misma consulta para poder armar los DTOs sin consultas extra
+     * @param bibliotecarioId ID del bibliotecario (obligatorio)
+     * @param estado estado a filtrar (null para todos)
+     * @param fechaDesde fecha de solicitud mínima, inclusive (null para no filtrar)
+     * @param fechaHasta fecha de solicitud máxima, inclusive (null para no filtrar)
+     */
+    public List<Prestamo> listarPorBibliotecarioFiltrado(String bibliotecarioId, EstadoPrestamo estado,
+                                                         Date fechaDesde, Date fechaHasta) {
+        Session session = null;
+        
+        try {
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
+            
+            StringBuilder hql = new StringBuilder(
+                "SELECT p FROM Prestamo p " +
+                "JOIN FETCH p.lector " +
+                "JOIN FETCH p.bibliotecario b " +
+                "JOIN FETCH p.material " +
+                "WHERE b.id = :bibliotecarioId ");
+            
+            if (estado != null) {
+                hql.append("AND p.estado = :estado ");
+            }
+            if (fechaDesde != null) {
+                hql.append("AND p.fechaSolicitud >= :fechaDesde ");
+            }
+            if (fechaHasta != null) {
+                hql.append("AND p.fechaSolicitud <= :fechaHasta ");
+            }
+            hql.append("ORDER BY p.fechaSolicitud DESC, p.id ASC");
+            
+            Query<Prestamo> query = session.createQuery(hql.toString(), Prestamo.class);
+            query.setParameter("bibliotecarioId", bibliotecarioId);
+            if (estado != null) {
+                query.setParameter("estado", estado);
+            }
+            if (fechaDesde != null) {
+                query.setParameter("fechaDesde", fechaDesde);
+            }
+            if (fechaHasta != null) {
+                query.setParameter("fechaHasta", fechaHasta);
+            }
+            
+            return query.list();
+            
+        } catch (Exception e) {
+            throw new RuntimeException("Error al listar préstamos por bibliotecario: " + e.getMessage(), e);
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
+            }
+        }
+    }
+    
+    /**
+     * Lista una página de préstamos ordenada por (fechaSolicitud, id) usando paginación keyset
+     * @param ultimaFecha fecha de solicitud del último préstamo de la página anterior (null para la primera)
+     * @param ultimoId ID del último préstamo de la página anterior (null para la primera)
+     * @param limite cantidad máxima de filas a devolver
+     */
+    public List<Prestamo> listarPagina(Date ultimaFecha, String ultimoId, int limite) {
+        return listarPaginaFiltrada(null, null, null, ultimaFecha, ultimoId, limite);
+    }
+    
+    /**
+     * Lista una página de préstamos con el estado dado (paginación keyset)
+     */
+    public List<Prestamo> listarPaginaPorEstado(EstadoPrestamo estado, Date ultimaFecha, String ultimoId, int limite) {
+        return listarPaginaFiltrada("p.estado = :filtro", "filtro", estado, ultimaFecha, ultimoId, limite);
+    }
+    
+    /**
+     * Lista una página de préstamos de un lector (paginación keyset)
+     */
+    public List<Prestamo> listarPaginaPorLector(String lectorId, Date ultimaFecha, String ultimoId, int limite) {
+        return listarPaginaFiltrada("p.lector.id = :filtro", "filtro", lectorId, ultimaFecha, ultimoId, limite);
+    }
+    
+    /**
+     * Lista una página de préstamos de un material (paginación keyset)
+     */
+    public List<Prestamo> listarPaginaPorMaterial(String materialId, Date ultimaFecha, String ultimoId, int limite) {
+        return listarPaginaFiltrada("p.material.id = :filtro", "filtro", materialId, ultimaFecha, ultimoId, limite);
+    }
+    
+    /**
+     * Lista todos los préstamos con lector, bibliotecario y material ya cargados
+     * (la misma consulta que las páginas keyset, sin límite)
+     */
+    public List<Prestamo> listarConDetalle() {
+        return listarPaginaFiltrada(null, null, null, null, null, 0);
+    }
+    
+    /**
+     * Lista con detalle los préstamos con el estado dado
+     */
+    public List<Prestamo> listarConDetallePorEstado(EstadoPrestamo estado) {
+        return listarPaginaFiltrada("p.estado = :filtro", "filtro", estado, null, null, 0);
+    }
+    
+    /**
+     * Lista con detalle los préstamos de un lector
+     */
+    public List<Prestamo> listarConDetallePorLector(String lectorId) {
+        return listarPaginaFiltrada("p.lector.id = :filtro", "filtro", lectorId, null, null, 0);
+    }
+    
+    /**
+     * Lista con detalle los préstamos de un material
+     */
+    public List<Prestamo> listarConDetallePorMaterial(String materialId) {
+        return listarPaginaFiltrada("p.material.id = :filtro", "filtro", materialId, null, null, 0);
+    }
+    
+    /**
+     * Lista con detalle los préstamos con los IDs dados (los que no existen se omiten)
+     */
+    public List<Prestamo> listarConDetallePorIds(Collection<String> ids) {
+        return listarPaginaFiltrada("p.id IN :filtro", "filtro", ids, null, null, 0);
+    }
+    
+    /**
+     * Consulta keyset común: carga las relaciones necesarias para armar DtPrestamo
+     * y continúa estrictamente después de (ultimaFecha, ultimoId)
+     * Un límite de 0 o negativo devuelve todas las filas
+     */
+    private List<Prestamo> listarPaginaFiltrada(String condicion, String parametro, Object valor,
+                                                Date ultimaFecha, String ultimoId, int limite) {
+        Session session = null;
+        
+        try {
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
+            
+            StringBuilder hql = new StringBuilder(
+                "SELECT p FROM Prestamo p " +
+                "JOIN FETCH p.lector " +
+                "JOIN FETCH p.bibliotecario " +
+                "JOIN FETCH p.material " +
+                "WHERE 1=1 ");
+            
+            if (condicion != null) {
+                hql.append("AND ").append(condicion).append(" ");
+            }
+            
+            boolean continuar = ultimaFecha != null && ultimoId != null;
+            if (continuar) {
+                hql.append("AND (p.fechaSolicitud > :ultimaFecha " +
+                           "OR (p.fechaSolicitud = :ultimaFecha AND p.id > :ultimoId)) ");
+            }
+            
+            hql.append("ORDER BY p.fechaSolicitud ASC, p.id ASC");
+            
+            Query<Prestamo> query = session.createQuery(hql.toString(), Prestamo.class);
+            if (condicion != null) {
+                query.setParameter(parametro, valor);
+            }
+            if (continuar) {
+                query.setParameter("ultimaFecha", ultimaFecha);
+                query.setParameter("ultimoId", ultimoId);
+            }
+            if (limite > 0) {
+                query.setMaxResults(limite);
+            }
+            
+            return query.list();
+            
+        } catch (Exception e) {
+            throw new RuntimeException("Error al listar página de préstamos: " + e.getMessage(), e);
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
+            }
+        }
+    }
+    
+    /**
+     * Agrupa los préstamos de un estado por material en una sola consulta
+     * Une los subtipos de material para devolver el nombre y el tipo sin consultas adicionales
+     * @param estado estado de los préstamos a contar
+     * @param minimoPrestamos cantidad mínima de préstamos para incluir un material
+     * @param limite cantidad máxima de materiales a devolver (0 o negativo para todos)
+     * @return Lista de Object[] con [materialId, nombre, tipo, cantidad (Long)] ordenada por cantidad descendente
+     */
+    public List<Object[]> contarPorMaterial(EstadoPrestamo estado, long minimoPrestamos, int limite) {
+        Session session = null;
+        
+        try {
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
+            
+            Query<Object[]> query = session.createQuery(
+                "SELECT m.id, COALESCE(l.titulo, a.descripcion), " +
+                "CASE WHEN l.id IS NOT NULL THEN 'Libro' ELSE 'Artículo Especial' END, " +
+                "COUNT(p) " +
+                "FROM Prestamo p " +
+                "JOIN p.material m " +
+                "LEFT JOIN Libro l ON l.id = m.id " +
+                "LEFT JOIN ArticuloEspecial a ON a.id = m.id " +
+                "WHERE p.estado = :estado AND (l.id IS NOT NULL OR a.id IS NOT NULL) " +
+                "GROUP BY m.id, l.id, l.titulo, a.descripcion " +
+                "HAVING COUNT(p) >= :minimo " +
+                "ORDER BY COUNT(p) DESC, m.id ASC", Object[].class);
+            query.setParameter("estado", estado);
+            query.setParameter("minimo", minimoPrestamos);
+            if (limite > 0) {
+                query.setMaxResults(limite);
+            }
+            
+            return query.list();
+            
+        } catch (Exception e) {
+            throw new RuntimeException("Error al contar préstamos por material: " + e.getMessage(), e);
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
+            }
+        }
+    }
+    
+    /**
+     * Cuenta los préstamos de un estado agrupados por ID de material
+     * @return Lista de Object[] con [materialId (String), cantidad (Long)]
+     */
+    public List<Object[]> contarPorMaterialId(EstadoPrestamo estado) {
+        Session session = null;
+        
+        try {
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
+            Query<Object[]> query = session.createQuery(
+                "SELECT p.material.id, COUNT(p) FROM Prestamo p " +
+                "WHERE p.estado = :estado GROUP BY p.material.id", Object[].class);
+            query.setParameter("estado", estado);
+            return query.list();
+            
+        } catch (Exception e) {
+            throw new RuntimeException("Error al contar préstamos por material: " + e.getMessage(), e);
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
+            }
+        }
+    }
+    
+    /**
+     * Cuenta los préstamos agrupados por zona del lector y estado
+     * @return Lista de Object[] con [zona (Zona), estado (EstadoPrestamo), cantidad (Long)]
+     */
+    public List<Object[]> contarPorZonaYEstado() {
+        Session session = null;
+        
+        try {
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
+            Query<Object[]> query = session.createQuery(
+                "SELECT l.zona, p.estado, COUNT(p) FROM Prestamo p " +
+                "JOIN p.lector l " +
+                "GROUP BY l.zona, p.estado", Object[].class);
+            return query.list();
+            
+        } catch (Exception e) {
+            throw new RuntimeException("Error al contar préstamos por zona y estado: " + e.getMessage(), e);
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
+            }
+        }
+    }
+    
+    /**
+     * Cuenta los préstamos de un lector agrupados por estado
+     * @return Lista de Object[] con [estado (EstadoPrestamo), cantidad (Long)]
+     */
+    public List<Object[]> contarPorEstadoDeLector(String lectorId) {
+        Session session = null;
+        
+        try {
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
+            Query<Object[]> query = session.createQuery(
+                "SELECT p.estado, COUNT(p) FROM Prestamo p " +
+                "WHERE p.lector.id = :lectorId GROUP BY p.estado", Object[].class);
+            query.setParameter("lectorId", lectorId);
+            return query.list();
+            
+        } catch (Exception e) {
+            throw new RuntimeException("Error al contar préstamos del lector: " + e.getMessage(), e);
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
+            }
+        }
+    }
+    
+    /**
+     * Estado actual de los préstamos con los IDs dados (los que no existen se omiten)
+     * @return Lista de Object[] con [id, estado (EstadoPrestamo)]
+     */
+    public List<Object[]> obtenerEstados(Collection<String> ids) {
+        Session session = null;
+        
+        try {
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
+            Query<Object[]> query = session.createQuery(
+                "SELECT p.id, p.estado FROM Prestamo p WHERE p.id IN :ids", Object[].class);
+            query.setParameterList("ids", ids);
+            return query.list();
+            
+        } catch (Exception e) {
+            throw new RuntimeException("Error al obtener el estado de los préstamos: " + e.getMessage(), e);
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
@@ -227,7 +748,7 @@ public class PrestamoDAO {
         Session session = null;
         
         try {
-            session = sessionFactory.openSession();
+            session = UnidadDeTrabajo.abrirSesion(sessionFactory);
             
             Query<Long> query = session.createQuery(
                 "SELECT COUNT(p) FROM Prestamo p", Long.class);
@@ -238,15 +759,16 @@ public class PrestamoDAO {
             throw new RuntimeException("Error al contar préstamos: " + e.getMessage(), e);
         } finally {
             if (session != null) {
-                session.close();
+                UnidadDeTrabajo.cerrarSesion(session);
             }
         }
     }
     
     /**
-     * Genera un ID único para el préstamo
+     * Genera un ID único para el préstamo (P1, P2, P3...)
+     * Los números salen de una secuencia de la BD reservada por bloques
      */
-    private String generarIdPrestamo() {
-        return "P" + System.currentTimeMillis();
+    public String generarIdPrestamo() {
+        return "P" + SECUENCIA_IDS.siguienteValor();
     }
 }
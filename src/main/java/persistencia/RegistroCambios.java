@@ -0,0 +1,281 @@
+package persistencia;
+
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registro de cambios para la sincronización incremental de clientes remotos
+ * Cada alta, modificación o baja deja en la tabla registro_cambios una fila por entidad
+ *
+ * Se registra con la misma Session (y transacción) que hizo el cambio, así un cambio deshecho
+ * no queda registrado. Quien escribe no toma la versión: deja la fila pendiente (version NULL)
+ * y no espera a nadie. Las versiones las asigna sellarPendientes, de a un sellado por vez y solo
+ * a filas ya confirmadas, tomándolas de la secuencia seq_registro_cambios; así los números
+ * siguen el orden en que los cambios se hicieron visibles y un cliente que ya leyó la versión N
+ * nunca encuentra después un cambio con versión menor
+ *
+ * La tabla y la carga inicial con los datos existentes las crea MigradorEsquema (versiones 4 y 5)
+ */
+public final class RegistroCambios {
+
+    public static final String LECTOR = "LECTOR";
+    public static final String LIBRO = "LIBRO";
+    public static final String ARTICULO_ESPECIAL = "ARTICULO_ESPECIAL";
+    public static final String PRESTAMO = "PRESTAMO";
+    // Sin sincronización propia; se registra para la versión de datos de referencia
+    public static final String BIBLIOTECARIO = "BIBLIOTECARIO";
+
+    // Cambios devueltos como máximo por consulta; el resto se pide desde la versión devuelta
+    public static final int MAXIMO_POR_CONSULTA = 500;
+
+    // Clave del advisory lock que permite un solo sellado a la vez entre procesos (Swing y
+    // servicios web); solo lo toman los sellados, nunca quien registra un cambio
+    private static final long CLAVE_SELLADO = 7_240_316_002L;
+
+    // Transacciones confirmadas en este proceso que registraron cambios, por entidad
+    private static final Map<String, AtomicLong> CONFIRMADOS = new ConcurrentHashMap<>();
+
+    private RegistroCambios() {}
+
+    /**
+     * Cambios de una entidad posteriores a una versión
+     * Si completo es false quedaron cambios sin devolver: se piden de nuevo desde version
+     */
+    public static final class Cambios {
+        private final long version;
+        private final boolean completo;
+        private final List<String> modificados;
+        private final List<String> eliminados;
+
+        private Cambios(long version, boolean completo, List<String> modificados, List<String> eliminados) {
+            this.version = version;
+            this.completo = completo;
+            this.modificados = Collections.unmodifiableList(modificados);
+            this.eliminados = Collections.unmodifiableList(eliminados);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public boolean isCompleto() {
+            return completo;
+        }
+
+        /**
+         * IDs creados o modificados, en el orden en que cambiaron
+         */
+        public List<String> getModificados() {
+            return modificados;
+        }
+
+        public List<String> getEliminados() {
+            return eliminados;
+        }
+    }
+
+    /**
+     * Registra el alta o modificación (o la baja si eliminado es true) de una entidad
+     */
+    public static void registrar(Session session, String entidad, String id, boolean eliminado) {
+        registrar(session, entidad, Collections.singletonList(id), eliminado);
+    }
+
+    /**
+     * Registra el cambio de varias entidades del mismo tipo en un solo lote JDBC
+     */
+    public static void registrar(Session session, String entidad, Collection<String> ids, boolean eliminado) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        session.doWork(conexion -> {
+            try (PreparedStatement ps = conexion.prepareStatement(
+                    "INSERT INTO registro_cambios (entidad, entidad_id, eliminado, version) " +
+                    "VALUES (?, ?, ?, NULL) " +
+                    "ON CONFLICT (entidad, entidad_id) DO UPDATE " +
+                    "SET eliminado = EXCLUDED.eliminado, version = NULL")) {
+                for (String id : ids) {
+                    ps.setString(1, entidad);
+                    ps.setString(2, id);
+                    ps.setBoolean(3, eliminado);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        });
+        // Se cuenta cuando la transacción (quizás la de una unidad de trabajo) se confirma
+        session.getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {}
+
+            @Override
+            public void afterCompletion(int estado) {
+                if (estado == Status.STATUS_COMMITTED) {
+                    CONFIRMADOS.computeIfAbsent(entidad, e -> new AtomicLong()).incrementAndGet();
+                }
+            }
+        });
+    }
+
+    /**
+     * Cantidad de transacciones confirmadas en este proceso con cambios de las entidades dadas
+     * Solo lee memoria: sirve para saber si algo cambió sin consultar la base de datos
+     */
+    public static long confirmadosEnEsteProceso(String... entidades) {
+        long total = 0;
+        for (String entidad : entidades) {
+            AtomicLong contador = CONFIRMADOS.get(entidad);
+            if (contador != null) {
+                total += contador.get();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Asigna versión a los cambios ya confirmados que todavía no la tienen
+     *
+     * Se confirma antes de devolver: las versiones que ve un cliente siempre están confirmadas.
+     * Si otro sellado está en curso no se espera (él asignará versiones mayores a todas las ya
+     * confirmadas), y las filas que una transacción está modificando se saltean con SKIP LOCKED:
+     * se sellan en una próxima llamada, así el sellado nunca espera a quien escribe
+     */
+    public static void sellarPendientes() {
+        Session session = null;
+        Transaction transaction = null;
+        try {
+            session = UnidadDeTrabajo.abrirSesion();
+            transaction = UnidadDeTrabajo.iniciarTransaccion(session);
+            session.doWork(conexion -> {
+                try (Statement st = conexion.createStatement()) {
+                    boolean bloqueado;
+                    try (ResultSet rs = st.executeQuery("SELECT pg_try_advisory_xact_lock(" + CLAVE_SELLADO + ")")) {
+                        rs.next();
+                        bloqueado = rs.getBoolean(1);
+                    }
+                    if (!bloqueado) {
+                        return;
+                    }
+                    st.executeUpdate(
+                        "UPDATE registro_cambios r SET version = nextval('seq_registro_cambios') " +
+                        "FROM (SELECT entidad, entidad_id FROM registro_cambios WHERE version IS NULL " +
+                        "ORDER BY entidad, entidad_id FOR UPDATE SKIP LOCKED) p " +
+                        "WHERE r.entidad = p.entidad AND r.entidad_id = p.entidad_id");
+                }
+            });
+            UnidadDeTrabajo.confirmarTransaccion(transaction);
+        } catch (Exception e) {
+            if (transaction != null) {
+                UnidadDeTrabajo.deshacerTransaccion(transaction);
+            }
+            throw new RuntimeException("Error al sellar cambios pendientes: " + e.getMessage(), e);
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
+            }
+        }
+    }
+
+    /**
+     * Indica si la entidad tiene cambios confirmados sin versión
+     * Es una lectura sobre el índice parcial de pendientes (MigradorEsquema, versión 5)
+     */
+    private static boolean hayPendientes(String entidad) {
+        Session session = null;
+        try {
+            session = UnidadDeTrabajo.abrirSesion();
+            return session.doReturningWork(conexion -> {
+                try (PreparedStatement ps = conexion.prepareStatement(
+                        "SELECT EXISTS (SELECT 1 FROM registro_cambios WHERE entidad = ? AND version IS NULL)")) {
+                    ps.setString(1, entidad);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        return rs.getBoolean(1);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            throw new RuntimeException("Error al buscar cambios pendientes de " + entidad + ": " + e.getMessage(), e);
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
+            }
+        }
+    }
+
+    /**
+     * Lista los cambios de una entidad con versión mayor a desdeVersion, como máximo limite
+     * La versión devuelta es la que el cliente debe pasar en la próxima consulta
+     * Solo sella (y abre una transacción de escritura) si la entidad tiene cambios pendientes
+     */
+    public static Cambios listarDesde(String entidad, long desdeVersion, int limite) {
+        if (hayPendientes(entidad)) {
+            sellarPendientes();
+        }
+        Session session = null;
+        try {
+            session = UnidadDeTrabajo.abrirSesion();
+            Cambios[] resultado = new Cambios[1];
+            session.doWork(conexion -> {
+                // Se fija primero el tope: todo sellado posterior recibe versiones mayores,
+                // así alcanza con el de la entidad (se lee del final de su índice)
+                long hasta;
+                try (PreparedStatement ps = conexion.prepareStatement(
+                        "SELECT COALESCE(MAX(version), 0) FROM registro_cambios WHERE entidad = ?")) {
+                    ps.setString(1, entidad);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        hasta = Math.max(rs.getLong(1), desdeVersion);
+                    }
+                }
+
+                List<String> modificados = new ArrayList<>();
+                List<String> eliminados = new ArrayList<>();
+                long ultima = hasta;
+                boolean completo = true;
+                try (PreparedStatement ps = conexion.prepareStatement(
+                        "SELECT entidad_id, eliminado, version FROM registro_cambios " +
+                        "WHERE entidad = ? AND version > ? AND version <= ? " +
+                        "ORDER BY version LIMIT ?")) {
+                    ps.setString(1, entidad);
+                    ps.setLong(2, desdeVersion);
+                    ps.setLong(3, hasta);
+                    ps.setInt(4, limite + 1);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        int leidas = 0;
+                        while (rs.next()) {
+                            if (leidas == limite) {
+                                completo = false;
+                                break;
+                            }
+                            (rs.getBoolean(2) ? eliminados : modificados).add(rs.getString(1));
+                            ultima = rs.getLong(3);
+                            leidas++;
+                        }
+                    }
+                }
+                resultado[0] = new Cambios(completo ? hasta : ultima, completo, modificados, eliminados);
+            });
+            return resultado[0];
+        } catch (Exception e) {
+            throw new RuntimeException("Error al listar cambios de " + entidad + ": " + e.getMessage(), e);
+        } finally {
+            if (session != null) {
+                UnidadDeTrabajo.cerrarSesion(session);
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package persistencia;
+
+import org.hibernate.Session;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Asignador de números correlativos respaldado por una secuencia de PostgreSQL (estrategia pooled)
+ * Cada nextval reserva un bloque de tamanoBloque números para este proceso, así que la base de datos
+ * solo se consulta una vez por bloque y dos procesos (Swing y servicios web) nunca reciben el mismo número
+ *
+ * El nextval se pide con la conexión de quien necesita el número (la de su UnidadDeTrabajo), así
+ * reponer un bloque no toma una segunda conexión del pool; como nextval no es transaccional, deshacer
+ * esa transacción no devuelve números repetidos. El monitor solo protege el bloque en memoria y nunca
+ * se retiene mientras se espera a la base de datos
+ *
+ * La secuencia se crea la primera vez que se usa, arrancando después del máximo ya existente en la tabla.
+ * Esa preparación, una sola vez por proceso, usa una conexión propia porque ejecuta DDL en autocommit
+ */
+public class SecuenciaPorBloques {
+
+    private final String nombreSecuencia;
+    private final String consultaMaximo;
+    private final long valorMinimo;
+    private final int tamanoBloque;
+
+    private final Object candadoPreparacion = new Object();
+    private volatile boolean preparada = false;
+    private long siguiente = 0;
+    private long limite = -1;
+
+    /**
+     * @param nombreSecuencia nombre de la secuencia en la base de datos
+     * @param consultaMaximo consulta SQL que devuelve el mayor número ya usado (o NULL si no hay)
+     * @param valorMinimo primer número a entregar cuando la tabla está vacía
+     * @param tamanoBloque cantidad de números reservados por cada acceso a la secuencia
+     */
+    public SecuenciaPorBloques(String nombreSecuencia, String consultaMaximo, long valorMinimo, int tamanoBloque) {
+        if (tamanoBloque < 1) {
+            throw new IllegalArgumentException("El tamaño de bloque debe ser al menos 1");
+        }
+        this.nombreSecuencia = nombreSecuencia;
+        this.consultaMaximo = consultaMaximo;
+        this.valorMinimo = valorMinimo;
+        this.tamanoBloque = tamanoBloque;
+    }
+
+    /**
+     * Entrega el siguiente número; si hay que reponer el bloque usa la Session de la
+     * UnidadDeTrabajo activa (o una propia si no hay unidad)
+     */
+    public long siguienteValor() {
+        Long valor = tomarDelBloque();
+        if (valor != null) {
+            return valor;
+        }
+        Session session = UnidadDeTrabajo.abrirSesion();
+        try {
+            return siguienteValor(session);
+        } finally {
+            UnidadDeTrabajo.cerrarSesion(session);
+        }
+    }
+
+    /**
+     * Entrega el siguiente número; si hay que reponer el bloque lo pide con la conexión de session
+     */
+    public long siguienteValor(Session session) {
+        Long valor = tomarDelBloque();
+        if (valor != null) {
+            return valor;
+        }
+
+        asegurarPreparada();
+        long inicio;
+        try {
+            inicio = session.doReturningWork(this::siguienteDeSecuencia);
+        } catch (Exception e) {
+            throw new RuntimeException("Error al reservar números de la secuencia " + nombreSecuencia + ": " + e.getMessage(), e);
+        }
+
+        synchronized (this) {
+            // Si otro hilo repuso el bloque mientras tanto se conserva el suyo y del reservado
+            // aquí solo se usa el primer número (la secuencia admite huecos)
+            if (siguiente > limite) {
+                siguiente = inicio + 1;
+                limite = inicio + tamanoBloque - 1;
+            }
+        }
+        return inicio;
+    }
+
+    /**
+     * Siguiente número del bloque actual, o null si está agotado
+     */
+    private synchronized Long tomarDelBloque() {
+        return siguiente <= limite ? siguiente++ : null;
+    }
+
+    private void asegurarPreparada() {
+        if (preparada) {
+            return;
+        }
+        synchronized (candadoPreparacion) {
+            if (preparada) {
+                return;
+            }
+            Session session = null;
+            try {
+                session = HibernateUtil.getSessionFactory().openSession();
+                session.doWork(conexion -> {
+                    boolean autoCommitOriginal = conexion.getAutoCommit();
+                    conexion.setAutoCommit(true);
+                    try {
+                        preparar(conexion);
+                    } finally {
+                        conexion.setAutoCommit(autoCommitOriginal);
+                    }
+                });
+            } catch (Exception e) {
+                throw new RuntimeException("Error al preparar la secuencia " + nombreSecuencia + ": " + e.getMessage(), e);
+            } finally {
+                if (session != null) {
+                    session.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Crea la secuencia si no existe y la adelanta si la tabla ya tiene números mayores
+     * (por ejemplo, datos cargados antes de que existiera la secuencia)
+     */
+    private void preparar(Connection conexion) throws SQLException {
+        long inicioSeguro = Math.max(maximoExistente(conexion) + 1, valorMinimo);
+
+        try (Statement st = conexion.createStatement()) {
+            st.execute("CREATE SEQUENCE IF NOT EXISTS " + nombreSecuencia
+                + " START WITH " + inicioSeguro + " INCREMENT BY " + tamanoBloque);
+            st.execute("ALTER SEQUENCE " + nombreSecuencia + " INCREMENT BY " + tamanoBloque);
+        } catch (SQLException e) {
+            // Otro proceso pudo crearla al mismo tiempo; si existe, se sigue normalmente
+            System.err.println("Aviso al crear la secuencia " + nombreSecuencia + ": " + e.getMessage());
+        }
+
+        // Solo se adelanta la secuencia cuando está por detrás de los datos; nunca se retrocede
+        try (Statement st = conexion.createStatement();
+             ResultSet rs = st.executeQuery("SELECT last_value, is_called FROM " + nombreSecuencia)) {
+            if (rs.next()) {
+                long ultimo = rs.getLong(1);
+                long proximo = rs.getBoolean(2) ? ultimo + tamanoBloque : ultimo;
+                if (proximo < inicioSeguro) {
+                    st.execute("SELECT setval('" + nombreSecuencia + "', " + inicioSeguro + ", false)");
+                    System.out.println("Secuencia " + nombreSecuencia + " adelantada a " + inicioSeguro);
+                }
+            }
+        }
+
+        preparada = true;
+    }
+
+    private long maximoExistente(Connection conexion) throws SQLException {
+        try (Statement st = conexion.createStatement();
+             ResultSet rs = st.executeQuery(consultaMaximo)) {
+            if (rs.next()) {
+                long maximo = rs.getLong(1);
+                return rs.wasNull() ? valorMinimo - 1 : maximo;
+            }
+            return valorMinimo - 1;
+        }
+    }
+
+    private long siguienteDeSecuencia(Connection conexion) throws SQLException {
+        try (Statement st = conexion.createStatement();
+             ResultSet rs = st.executeQuery("SELECT nextval('" + nombreSecuencia + "')")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package persistencia;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+/**
+ * Unidad de trabajo: asocia una única Session y transacción de Hibernate al hilo actual
+ * durante una operación de controlador, para que todos los manejadores y DAOs la compartan
+ *
+ * Uso:
+ *   UnidadDeTrabajo unidad = UnidadDeTrabajo.iniciar();
+ *   try {
+ *       ... llamadas a manejadores ...
+ *       unidad.confirmar();
+ *   } finally {
+ *       unidad.cerrar();
+ *   }
+ *
+ * La Session se abre recién cuando algún DAO la pide. Si ya hay una unidad activa en el hilo,
+ * iniciar() se une a ella y solo la unidad más externa confirma o deshace.
+ * Sin unidad activa, abrirSesion() y las demás utilidades se comportan como antes
+ * (una Session y una transacción por llamada).
+ */
+public final class UnidadDeTrabajo {
+
+    private static final ThreadLocal<Estado> ACTUAL = new ThreadLocal<>();
+
+    /**
+     * Session y transacción compartidas por la unidad activa del hilo
+     */
+    private static final class Estado {
+        private Session session;
+        private Transaction transaccion;
+        private boolean soloDeshacer;
+    }
+
+    private final Estado estado;
+    private final boolean propietaria;
+    private boolean confirmada = false;
+
+    private UnidadDeTrabajo(Estado estado, boolean propietaria) {
+        this.estado = estado;
+        this.propietaria = propietaria;
+    }
+
+    /**
+     * Inicia una unidad de trabajo en el hilo actual, o se une a la que ya esté activa
+     */
+    public static UnidadDeTrabajo iniciar() {
+        Estado actual = ACTUAL.get();
+        if (actual != null) {
+            return new UnidadDeTrabajo(actual, false);
+        }
+        Estado nuevo = new Estado();
+        ACTUAL.set(nuevo);
+        return new UnidadDeTrabajo(nuevo, true);
+    }
+
+    /**
+     * Confirma la transacción compartida (solo la unidad más externa lo hace)
+     * @throws RuntimeException si la unidad fue marcada para deshacer o falla el commit
+     */
+    public void confirmar() {
+        confirmada = true;
+        if (!propietaria || estado.session == null) {
+            return;
+        }
+        if (estado.soloDeshacer) {
+            estado.transaccion.rollback();
+            throw new RuntimeException("La operación fue deshecha porque uno de sus pasos falló");
+        }
+        estado.transaccion.commit();
+    }
+
+    /**
+     * Libera la unidad: si no se confirmó, deshace la transacción; la unidad externa además cierra la Session
+     * Debe llamarse siempre en un bloque finally
+     */
+    public void cerrar() {
+        if (!propietaria) {
+            if (!confirmada) {
+                estado.soloDeshacer = true;
+            }
+            return;
+        }
+        try {
+            if (estado.session != null) {
+                if (!confirmada && estado.transaccion.isActive()) {
+                    estado.transaccion.rollback();
+                }
+                estado.session.close();
+            }
+        } finally {
+            ACTUAL.remove();
+        }
+    }
+
+    // ==================== UTILIDADES PARA MANEJADORES Y DAOS ====================
+
+    /**
+     * Obtiene la Session de la unidad activa o abre una nueva si no hay unidad
+     */
+    public static Session abrirSesion() {
+        return abrirSesion(HibernateUtil.getSessionFactory());
+    }
+
+    /**
+     * Igual que abrirSesion() pero con la SessionFactory indicada (la inyectada en los DAOs)
+     */
+    public static Session abrirSesion(SessionFactory sessionFactory) {
+        Estado actual = ACTUAL.get();
+        if (actual == null) {
+            return sessionFactory.openSession();
+        }
+        if (actual.session == null) {
+            actual.session = sessionFactory.openSession();
+            actual.transaccion = actual.session.beginTransaction();
+        }
+        return actual.session;
+    }
+
+    /**
+     * Cierra la Session salvo que pertenezca a la unidad activa (la cerrará la unidad)
+     */
+    public static void cerrarSesion(Session session) {
+        if (!esDeUnidadActiva(session)) {
+            session.close();
+        }
+    }
+
+    /**
+     * Inicia una transacción propia, o devuelve la de la unidad activa si la Session es compartida
+     */
+    public static Transaction iniciarTransaccion(Session session) {
+        if (esDeUnidadActiva(session)) {
+            return ACTUAL.get().transaccion;
+        }
+        return session.beginTransaction();
+    }
+
+    /**
+     * Confirma la transacción; si es la de la unidad activa no hace nada (confirma la unidad)
+     */
+    public static void confirmarTransaccion(Transaction transaccion) {
+        if (!esTransaccionDeUnidadActiva(transaccion)) {
+            transaccion.commit();
+        }
+    }
+
+    /**
+     * Deshace la transacción; si es la de la unidad activa la marca para deshacer al final
+     */
+    public static void deshacerTransaccion(Transaction transaccion) {
+        if (esTransaccionDeUnidadActiva(transaccion)) {
+            ACTUAL.get().soloDeshacer = true;
+        } else {
+            transaccion.rollback();
+        }
+    }
+
+    private static boolean esDeUnidadActiva(Session session) {
+        Estado actual = ACTUAL.get();
+        return actual != null && actual.session == session;
+    }
+
+    private static boolean esTransaccionDeUnidadActiva(Transaction transaccion) {
+        Estado actual = ACTUAL.get();
+        return actual != null && actual.transaccion == transaccion;
+    }
+}
@@ -0,0 +1,128 @@
+package presentacion;
+
+import datatypes.DtArticuloEspecial;
+import datatypes.DtBibliotecario;
+import datatypes.DtLector;
+import datatypes.DtLibro;
+import interfaces.IControlador;
+
+/**
+ * Copia local de las listas que usan los formularios de préstamos: lectores, bibliotecarios,
+ * libros y artículos especiales
+ *
+ * Uso (fuera del EDT, por ejemplo dentro de una tarea de CargadorEnSegundoPlano):
+ *   CacheDatosReferencia.Datos datos = CacheDatosReferencia.getInstancia().obtener(controlador, avance);
+ *
+ * Junto con las listas se guarda la versión de datos de referencia que informa el controlador
+ * (un contador en memoria de los cambios confirmados, incluye lo modificado desde los servicios
+ * web); mientras no cambie, abrir un formulario no consulta la base de datos. Las listas además
+ * se recargan al superar EDAD_MAXIMA_MS, por si algún dato se cambió desde otro proceso o
+ * directamente en la base de datos
+ *
+ * Los arreglos se comparten entre pantallas y no deben modificarse
+ */
+public class CacheDatosReferencia {
+
+    private static final long EDAD_MAXIMA_MS = 5 * 60 * 1000L;
+
+    private static CacheDatosReferencia instancia;
+
+    /**
+     * Listas cargadas juntas con la versión vigente en el momento de la carga
+     */
+    public static final class Datos {
+        private final long version;
+        private final DtLector[] lectores;
+        private final DtBibliotecario[] bibliotecarios;
+        private final DtLibro[] libros;
+        private final DtArticuloEspecial[] articulos;
+
+        private Datos(long version, DtLector[] lectores, DtBibliotecario[] bibliotecarios,
+                      DtLibro[] libros, DtArticuloEspecial[] articulos) {
+            this.version = version;
+            this.lectores = lectores;
+            this.bibliotecarios = bibliotecarios;
+            this.libros = libros;
+            this.articulos = articulos;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public DtLector[] getLectores() {
+            return lectores;
+        }
+
+        public DtBibliotecario[] getBibliotecarios() {
+            return bibliotecarios;
+        }
+
+        public DtLibro[] getLibros() {
+            return libros;
+        }
+
+        public DtArticuloEspecial[] getArticulos() {
+            return articulos;
+        }
+    }
+
+    private Datos actuales;
+    private long cargadosEn;
+    // Aumenta con cada invalidar; una carga iniciada antes no se guarda
+    private long invalidaciones;
+
+    private CacheDatosReferencia() {}
+
+    public static synchronized CacheDatosReferencia getInstancia() {
+        if (instancia == null) {
+            instancia = new CacheDatosReferencia();
+        }
+        return instancia;
+    }
+
+    /**
+     * Devuelve las listas guardadas si siguen vigentes o las vuelve a consultar
+     * Las consultas se hacen sin tomar el monitor, así una carga lenta no bloquea a las demás
+     * pantallas; si dos cargan a la vez se guarda la de versión más nueva
+     */
+    public Datos obtener(IControlador controlador, CargadorEnSegundoPlano.Avance avance) {
+        // La versión se lee antes de cargar: un cambio hecho durante la carga fuerza la próxima
+        long version = controlador.obtenerVersionDatosReferencia();
+        long invalidacionesAlEmpezar;
+        synchronized (this) {
+            if (actuales != null && actuales.version == version
+                    && System.currentTimeMillis() - cargadosEn < EDAD_MAXIMA_MS) {
+                return actuales;
+            }
+            invalidacionesAlEmpezar = invalidaciones;
+        }
+
+        avance.informar("Cargando lectores...");
+        DtLector[] lectores = controlador.listarLectoresDto();
+        avance.informar("Cargando bibliotecarios...");
+        DtBibliotecario[] bibliotecarios = controlador.listarBibliotecariosDto();
+        avance.informar("Cargando libros...");
+        DtLibro[] libros = controlador.listarLibrosDto();
+        avance.informar("Cargando artículos especiales...");
+        DtArticuloEspecial[] articulos = controlador.listarArticulosEspecialesDto();
+
+        Datos nuevos = new Datos(version, lectores, bibliotecarios, libros, articulos);
+        synchronized (this) {
+            if (invalidaciones == invalidacionesAlEmpezar
+                    && (actuales == null || actuales.version <= version)) {
+                actuales = nuevos;
+                cargadosEn = System.currentTimeMillis();
+            }
+        }
+        return nuevos;
+    }
+
+    /**
+     * Descarta las listas guardadas; la próxima llamada a obtener las vuelve a consultar
+     */
+    public synchronized void invalidar() {
+        actuales = null;
+        invalidaciones++;
+    }
+}
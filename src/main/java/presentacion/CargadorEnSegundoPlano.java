@@ -0,0 +1,264 @@
+package presentacion;
+
+import javax.swing.JInternalFrame;
+import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+import javax.swing.event.InternalFrameAdapter;
+import javax.swing.event.InternalFrameEvent;
+import java.awt.Cursor;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Ejecuta las consultas de una pantalla fuera del hilo de eventos de Swing (EDT)
+ *
+ * Uso:
+ *   cargador.cargar("Cargando préstamos...",
+ *       avance -> controlador.listarPrestamos(),      // en segundo plano
+ *       prestamos -> actualizarTabla(prestamos));     // en el EDT
+ *
+ * Cada pantalla tiene su propio cargador. Iniciar una carga cancela la anterior que siga
+ * en curso, así un resultado viejo nunca pisa uno nuevo; cerrar la ventana cancela todo.
+ * Mientras hay una carga se muestra el cursor de espera y el texto de avance en el título.
+ *
+ * Las escrituras (guardar, registrar) van por escribir: no se cancelan nunca, porque
+ * interrumpir el hilo dentro de Hibernate/JDBC deja sin saber si el cambio se confirmó.
+ */
+public class CargadorEnSegundoPlano {
+
+    /**
+     * Trabajo que se ejecuta en segundo plano; no debe tocar componentes Swing
+     */
+    public interface Tarea<T> {
+        T ejecutar(Avance avance) throws Exception;
+    }
+
+    /**
+     * Permite a la tarea informar su avance y consultar si fue cancelada
+     */
+    public interface Avance {
+        void informar(String mensaje);
+
+        boolean cancelada();
+    }
+
+    private final JInternalFrame pantalla;
+    private final String tituloOriginal;
+    private Trabajo<?> actual;
+    // Escrituras en curso y descripción de la última, para el título mientras no hay cargas
+    private int escriturasEnCurso;
+    private String estadoEscritura;
+
+    public CargadorEnSegundoPlano(JInternalFrame pantalla) {
+        this.pantalla = pantalla;
+        this.tituloOriginal = pantalla.getTitle();
+        pantalla.addInternalFrameListener(new InternalFrameAdapter() {
+            @Override
+            public void internalFrameClosed(InternalFrameEvent e) {
+                cancelar();
+            }
+        });
+    }
+
+    /**
+     * Inicia una carga; los errores se informan con un mensaje en la pantalla
+     * Debe llamarse desde el EDT
+     */
+    public <T> void cargar(String descripcion, Tarea<T> tarea, Consumer<T> alTerminar) {
+        cargar(descripcion, tarea, alTerminar, error ->
+            JOptionPane.showMessageDialog(pantalla, descripcion + " falló: " + error.getMessage(),
+                "Error", JOptionPane.ERROR_MESSAGE));
+    }
+
+    /**
+     * Inicia una carga cancelando la que esté en curso
+     * alTerminar y alFallar se ejecutan en el EDT; si la carga se cancela no se llama a ninguno
+     */
+    public <T> void cargar(String descripcion, Tarea<T> tarea, Consumer<T> alTerminar,
+                           Consumer<Throwable> alFallar) {
+        cancelar();
+        Trabajo<T> trabajo = new Trabajo<>(tarea, alTerminar, alFallar);
+        actual = trabajo;
+        pantalla.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        mostrarEstado(descripcion);
+        trabajo.execute();
+    }
+
+    /**
+     * Cancela la carga en curso, si hay una
+     */
+    public void cancelar() {
+        if (actual != null) {
+            actual.cancel(true);
+            terminar(actual);
+        }
+    }
+
+    /**
+     * Ejecuta una escritura en segundo plano sin cancelar la carga en curso
+     * Ni otra carga ni cerrar la ventana la interrumpen, y su resultado siempre se informa:
+     * alTerminar o alFallar en el EDT, o un mensaje aparte si la ventana ya se cerró
+     * Debe llamarse desde el EDT
+     */
+    public <T> void escribir(String descripcion, Tarea<T> tarea, Consumer<T> alTerminar,
+                             Consumer<Throwable> alFallar) {
+        escriturasEnCurso++;
+        estadoEscritura = descripcion;
+        pantalla.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        if (actual == null) {
+            mostrarEstado(descripcion);
+        }
+        new Escritura<>(descripcion, tarea, alTerminar, alFallar).execute();
+    }
+
+    private void terminar(Trabajo<?> trabajo) {
+        if (actual == trabajo) {
+            actual = null;
+            restaurarEstado();
+        }
+    }
+
+    private void restaurarEstado() {
+        if (actual != null) {
+            return;
+        }
+        if (escriturasEnCurso > 0) {
+            mostrarEstado(estadoEscritura);
+        } else {
+            pantalla.setCursor(Cursor.getDefaultCursor());
+            mostrarEstado(null);
+        }
+    }
+
+    /**
+     * El avance se muestra en el título de la ventana; null restaura el título original
+     */
+    private void mostrarEstado(String mensaje) {
+        pantalla.setTitle(mensaje == null ? tituloOriginal : tituloOriginal + " - " + mensaje);
+    }
+
+    /**
+     * SwingWorker de una carga: publica el avance y entrega el resultado en el EDT
+     */
+    private final class Trabajo<T> extends SwingWorker<T, String> implements Avance {
+        private final Tarea<T> tarea;
+        private final Consumer<T> alTerminar;
+        private final Consumer<Throwable> alFallar;
+
+        private Trabajo(Tarea<T> tarea, Consumer<T> alTerminar, Consumer<Throwable> alFallar) {
+            this.tarea = tarea;
+            this.alTerminar = alTerminar;
+            this.alFallar = alFallar;
+        }
+
+        @Override
+        protected T doInBackground() throws Exception {
+            return tarea.ejecutar(this);
+        }
+
+        @Override
+        public void informar(String mensaje) {
+            publish(mensaje);
+        }
+
+        @Override
+        public boolean cancelada() {
+            return isCancelled();
+        }
+
+        @Override
+        protected void process(List<String> mensajes) {
+            if (actual == this && !mensajes.isEmpty()) {
+                mostrarEstado(mensajes.get(mensajes.size() - 1));
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled() || actual != this) {
+                return;
+            }
+            terminar(this);
+            T resultado;
+            try {
+                resultado = get();
+            } catch (CancellationException | InterruptedException e) {
+                return;
+            } catch (ExecutionException e) {
+                Throwable causa = e.getCause() != null ? e.getCause() : e;
+                System.err.println("Error en carga en segundo plano: " + causa.getMessage());
+                alFallar.accept(causa);
+                return;
+            }
+            alTerminar.accept(resultado);
+        }
+    }
+
+    /**
+     * SwingWorker de una escritura: nadie la cancela y siempre informa cómo terminó
+     */
+    private final class Escritura<T> extends SwingWorker<T, String> implements Avance {
+        private final String descripcion;
+        private final Tarea<T> tarea;
+        private final Consumer<T> alTerminar;
+        private final Consumer<Throwable> alFallar;
+
+        private Escritura(String descripcion, Tarea<T> tarea, Consumer<T> alTerminar,
+                          Consumer<Throwable> alFallar) {
+            this.descripcion = descripcion;
+            this.tarea = tarea;
+            this.alTerminar = alTerminar;
+            this.alFallar = alFallar;
+        }
+
+        @Override
+        protected T doInBackground() throws Exception {
+            return tarea.ejecutar(this);
+        }
+
+        @Override
+        public void informar(String mensaje) {
+            publish(mensaje);
+        }
+
+        @Override
+        public boolean cancelada() {
+            return false;
+        }
+
+        @Override
+        protected void process(List<String> mensajes) {
+            if (actual == null && !mensajes.isEmpty()) {
+                mostrarEstado(mensajes.get(mensajes.size() - 1));
+            }
+        }
+
+        @Override
+        protected void done() {
+            escriturasEnCurso--;
+            restaurarEstado();
+            T resultado;
+            try {
+                resultado = get();
+            } catch (InterruptedException | ExecutionException e) {
+                Throwable causa = e.getCause() != null ? e.getCause() : e;
+                System.err.println("Error en escritura en segundo plano: " + causa.getMessage());
+                if (pantalla.isClosed()) {
+                    JOptionPane.showMessageDialog(null, tituloOriginal + " - " + descripcion
+                        + " falló: " + causa.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                } else {
+                    alFallar.accept(causa);
+                }
+                return;
+            }
+            if (pantalla.isClosed()) {
+                JOptionPane.showMessageDialog(null, tituloOriginal + " - " + descripcion + " terminó correctamente",
+                    tituloOriginal, JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                alTerminar.accept(resultado);
+            }
+        }
+    }
+}
@@ -2,20 +2,23 @@ package presentacion;
 
 import interfaces.Fabrica;
 import interfaces.IControlador;
+import datatypes.DtArticuloEspecial;
+import datatypes.DtLibro;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.util.Calendar;
 import java.util.Date;
 import java.text.SimpleDateFormat;
 import java.text.ParseException;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Arrays;
 
 public class ConsultarDonaciones extends JInternalFrame {
 
     private IControlador controlador;
+    private CargadorEnSegundoPlano cargador;
 
     private DefaultTableModel modeloTabla;
     private JTable tablaDonaciones;
@@ -27,6 +30,7 @@ public class ConsultarDonaciones extends JInternalFrame {
     public ConsultarDonaciones() {
         super("Consultar Donaciones", true, true, true, true);
         this.controlador = Fabrica.getInstancia().getIControlador();
+        this.cargador = new CargadorEnSegundoPlano(this);
         inicializarComponentes();
         cargarTodasLasDonaciones();
     }
@@ -79,61 +83,10 @@ public class ConsultarDonaciones extends JInternalFrame {
     }
 
     private void cargarTodasLasDonaciones() {
-        modeloTabla.setRowCount(0); // Limpiar tabla
-        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
-
-        // Obtener libros
-        String[] librosStr = controlador.listarLibros();
-        System.out.println("Libros devueltos por listarLibros(): " + Arrays.toString(librosStr));
-        if (librosStr != null) {
-            for (String libroStr : librosStr) {
-                // Asumo que el formato de libroStr es ID - Título - Páginas - FechaRegistro
-                // Necesitamos parsear esto para obtener el ID, Título y FechaRegistro
-                String[] partes = libroStr.split("[|]");
-                System.out.println("Partes del libro: " + Arrays.toString(partes));
-                if (partes.length >= 4) {
-                    String id = partes[0];
-                    String titulo = partes[1];
-                    String fechaStr = partes[3];
-                    try {
-                        Date fechaDonacion = sdf.parse(fechaStr);
-                        System.out.println("Fecha de donación parseada (libro): " + fechaDonacion);
-                        modeloTabla.addRow(new Object[]{id, titulo, sdf.format(fechaDonacion)});
-                    } catch (ParseException e) {
-                        System.err.println("Error al parsear fecha de libro: " + fechaStr + " - " + e.getMessage());
-                    }
-                }
-            }
-        }
-
-        // Obtener artículos especiales
-        String[] articulosStr = controlador.listarArticulosEspeciales();
-        System.out.println("Artículos devueltos por listarArticulosEspeciales(): " + Arrays.toString(articulosStr));
-        if (articulosStr != null) {
-            for (String articuloStr : articulosStr) {
-                // Asumo que el formato de articuloStr es ID - Descripción - Peso - Dimensiones - FechaRegistro
-                // Necesitamos parsear esto para obtener el ID, Descripción y FechaRegistro
-                String[] partes = articuloStr.split("[|]");
-                System.out.println("Partes del artículo: " + Arrays.toString(partes));
-                if (partes.length >= 5) { // Suponiendo que FechaRegistro es el quinto elemento
-                    String id = partes[0];
-                    String descripcion = partes[1];
-                    String fechaStr = partes[4]; // FechaRegistro es el quinto elemento
-                    try {
-                        Date fechaDonacion = sdf.parse(fechaStr);
-                        System.out.println("Fecha de donación parseada (artículo): " + fechaDonacion);
-                        modeloTabla.addRow(new Object[]{id, descripcion, sdf.format(fechaDonacion)});
-                    } catch (ParseException e) {
-                        System.err.println("Error al parsear fecha de artículo: " + fechaStr + " - " + e.getMessage());
-                    }
-                }
-            }
-        }
+        cargarDonaciones(null, null);
     }
 
-
     private void filtrarDonaciones() {
-        modeloTabla.setRowCount(0); // Limpiar tabla para nuevos resultados
         SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
         Date fechaDesde = null;
         Date fechaHasta = null;
@@ -150,62 +103,85 @@ public class ConsultarDonaciones extends JInternalFrame {
             return;
         }
 
-        List<Object[]> donacionesFiltradas = new ArrayList<>();
+        cargarDonaciones(fechaDesde, fechaHasta);
+    }
 
-        // Obtener libros y filtrar
-        String[] librosStr = controlador.listarLibros();
-        System.out.println("Libros devueltos por listarLibros() para filtrar: " + Arrays.toString(librosStr));
-        if (librosStr != null) {
-            for (String libroStr : librosStr) {
-                String[] partes = libroStr.split("[|]");
-                System.out.println("Partes del libro (filtrar): " + Arrays.toString(partes));
-                if (partes.length >= 4) {
-                    String id = partes[0];
-                    String titulo = partes[1];
-                    String fechaStr = partes[3];
-                    try {
-                        Date fechaDonacion = sdf.parse(fechaStr);
-                        System.out.println("Fecha de donación parseada (libro, filtrar): " + fechaDonacion);
-                        if ( (fechaDesde == null || !fechaDonacion.before(fechaDesde)) &&
-                             (fechaHasta == null || !fechaDonacion.after(fechaHasta)) ) {
-                            donacionesFiltradas.add(new Object[]{id, titulo, sdf.format(fechaDonacion)});
-                        }
-                    } catch (ParseException e) {
-                        System.err.println("Error al parsear fecha de libro: " + fechaStr + " - " + e.getMessage());
-                    }
+    /**
+     * Consulta libros y artículos en segundo plano y muestra en la tabla los donados en el rango
+     * (null en cualquiera de las fechas para no limitar ese extremo)
+     */
+    private void cargarDonaciones(Date fechaDesde, Date fechaHasta) {
+        modeloTabla.setRowCount(0); // Limpiar tabla para nuevos resultados
+        btnConsultar.setEnabled(false);
+        btnLimpiar.setEnabled(false);
+
+        cargador.cargar("Consultando donaciones...",
+            avance -> consultarDonaciones(fechaDesde, fechaHasta, avance),
+            donaciones -> {
+                // Añadir las donaciones a la tabla
+                for (Object[] rowData : donaciones) {
+                    modeloTabla.addRow(rowData);
                 }
+                btnConsultar.setEnabled(true);
+                btnLimpiar.setEnabled(true);
+            },
+            error -> {
+                btnConsultar.setEnabled(true);
+                btnLimpiar.setEnabled(true);
+                JOptionPane.showMessageDialog(this, "Error al consultar donaciones: " + error.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            });
+    }
+
+    /**
+     * Arma las filas de la tabla; se ejecuta fuera del EDT
+     */
+    private List<Object[]> consultarDonaciones(Date fechaDesde, Date fechaHasta,
+                                               CargadorEnSegundoPlano.Avance avance) {
+        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
+        List<Object[]> donacionesFiltradas = new ArrayList<>();
+
+        // Obtener libros
+        avance.informar("Consultando libros...");
+        DtLibro[] libros = controlador.listarLibrosDto();
+        for (DtLibro libro : libros) {
+            if (estaEnRango(libro.getFechaRegistro(), fechaDesde, fechaHasta)) {
+                donacionesFiltradas.add(new Object[]{libro.getId(), libro.getTitulo(), sdf.format(libro.getFechaRegistro())});
             }
         }
 
-        // Obtener artículos especiales y filtrar
-        String[] articulosStr = controlador.listarArticulosEspeciales();
-        System.out.println("Artículos devueltos por listarArticulosEspeciales() para filtrar: " + Arrays.toString(articulosStr));
-        if (articulosStr != null) {
-            for (String articuloStr : articulosStr) {
-                String[] partes = articuloStr.split("[|]");
-                System.out.println("Partes del artículo (filtrar): " + Arrays.toString(partes));
-                if (partes.length >= 5) {
-                    String id = partes[0];
-                    String descripcion = partes[1];
-                    String fechaStr = partes[4];
-                    try {
-                        Date fechaDonacion = sdf.parse(fechaStr);
-                        System.out.println("Fecha de donación parseada (artículo, filtrar): " + fechaDonacion);
-                        if ( (fechaDesde == null || !fechaDonacion.before(fechaDesde)) &&
-                             (fechaHasta == null || !fechaDonacion.after(fechaHasta)) ) {
-                            donacionesFiltradas.add(new Object[]{id, descripcion, sdf.format(fechaDonacion)});
-                        }
-                    } catch (ParseException e) {
-                        System.err.println("Error al parsear fecha de artículo: " + fechaStr + " - " + e.getMessage());
-                    }
-                }
+        if (avance.cancelada()) {
+            return donacionesFiltradas;
+        }
+
+        // Obtener artículos especiales
+        avance.informar("Consultando artículos especiales...");
+        DtArticuloEspecial[] articulos = controlador.listarArticulosEspecialesDto();
+        for (DtArticuloEspecial articulo : articulos) {
+            if (estaEnRango(articulo.getFechaRegistro(), fechaDesde, fechaHasta)) {
+                donacionesFiltradas.add(new Object[]{articulo.getId(), articulo.getDescripcion(), sdf.format(articulo.getFechaRegistro())});
             }
         }
 
-        // Añadir las donaciones filtradas a la tabla
-        for (Object[] rowData : donacionesFiltradas) {
-            modeloTabla.addRow(rowData);
+        return donacionesFiltradas;
+    }
+
+    /**
+     * Compara solo el día de la donación (sin la hora) contra el rango, ambos extremos incluidos
+     */
+    private static boolean estaEnRango(Date fecha, Date fechaDesde, Date fechaHasta) {
+        if (fecha == null) {
+            return false;
         }
+        Calendar dia = Calendar.getInstance();
+        dia.setTime(fecha);
+        dia.set(Calendar.HOUR_OF_DAY, 0);
+        dia.set(Calendar.MINUTE, 0);
+        dia.set(Calendar.SECOND, 0);
+        dia.set(Calendar.MILLISECOND, 0);
+        Date fechaDonacion = dia.getTime();
+        return (fechaDesde == null || !fechaDonacion.before(fechaDesde)) &&
+               (fechaHasta == null || !fechaDonacion.after(fechaHasta));
     }
 
     private void limpiarFiltro() {
@@ -1,16 +1,20 @@
 package presentacion;
 
+import interfaces.Fabrica;
 import interfaces.IControlador;
+import interfaces.IPrestamoReporte;
+import datatypes.DtBibliotecario;
+import datatypes.DtFiltroPrestamos;
 import datatypes.DtPrestamo;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -19,7 +23,15 @@ import java.util.concurrent.TimeUnit;
  */
 public class HistorialPrestamos extends JInternalFrame {
 
+    // Columna del reporte por la que ordena cada columna de la tabla (null: no se ordena por ella)
+    private static final String[] ORDEN_COLUMNAS = {
+        IPrestamoReporte.ORDEN_ID, IPrestamoReporte.ORDEN_LECTOR, IPrestamoReporte.ORDEN_MATERIAL, null,
+        IPrestamoReporte.ORDEN_FECHA_SOLICITUD, IPrestamoReporte.ORDEN_FECHA_DEVOLUCION,
+        IPrestamoReporte.ORDEN_ESTADO, null
+    };
+
     private IControlador controlador;
+    private IPrestamoReporte prestamoReporte;
     
     // Componentes de la interfaz
     private JComboBox<String> comboBibliotecarios;
@@ -30,14 +42,19 @@ public class HistorialPrestamos extends JInternalFrame {
     private JButton btnLimpiar;
     private JButton btnExportar;
     private JTable tablaResultados;
-    private DefaultTableModel modeloTabla;
+    private ModeloTablaPaginada modeloTabla;
     private JLabel lblResultado;
     private JLabel lblEstadisticas;
-    private TableRowSorter<DefaultTableModel> sorter;
+    private CargadorEnSegundoPlano cargador;
+    private DtBibliotecario[] bibliotecarios = new DtBibliotecario[0];
+    // Filtro de la búsqueda que muestra la tabla; la exportación lo recorre completo
+    private DtFiltroPrestamos filtroMostrado;
 
     public HistorialPrestamos(IControlador controlador) {
         super("Historial de Préstamos por Bibliotecario", true, true, true, true);
         this.controlador = controlador;
+        this.prestamoReporte = Fabrica.getInstancia().getIPrestamoReporte();
+        this.cargador = new CargadorEnSegundoPlano(this);
         inicializarComponentes();
         cargarDatos();
     }
@@ -168,15 +185,14 @@ public class HistorialPrestamos extends JInternalFrame {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBorder(BorderFactory.createTitledBorder("Historial de Préstamos"));
 
-        // Crear modelo de tabla
+        // Crear modelo de tabla: las filas se piden por páginas a medida que se muestran
         String[] columnas = {"ID Préstamo", "Lector", "Material", "Tipo", 
                            "Fecha Solicitud", "Fecha Devolución", "Estado", "Días"};
-        modeloTabla = new DefaultTableModel(columnas, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Tabla de solo lectura
-            }
-        };
+        boolean[] ordenables = new boolean[columnas.length];
+        for (int i = 0; i < columnas.length; i++) {
+            ordenables[i] = ORDEN_COLUMNAS[i] != null;
+        }
+        modeloTabla = new ModeloTablaPaginada(columnas, ordenables);
 
         // Crear tabla
         tablaResultados = new JTable(modeloTabla);
@@ -194,9 +210,8 @@ public class HistorialPrestamos extends JInternalFrame {
         tablaResultados.getColumnModel().getColumn(6).setPreferredWidth(100); // Estado
         tablaResultados.getColumnModel().getColumn(7).setPreferredWidth(60);  // Días
 
-        // Agregar capacidad de ordenamiento
-        sorter = new TableRowSorter<>(modeloTabla);
-        tablaResultados.setRowSorter(sorter);
+        // Ordenamiento en la base de datos con un clic en el encabezado
+        modeloTabla.instalarOrdenEnEncabezado(tablaResultados);
 
         JScrollPane scrollPane = new JScrollPane(tablaResultados);
         panel.add(scrollPane, BorderLayout.CENTER);
@@ -244,134 +259,105 @@ public class HistorialPrestamos extends JInternalFrame {
     }
 
     private void cargarDatos() {
-        try {
-            // Cargar bibliotecarios
-            String[] bibliotecarios = controlador.listarBibliotecarios();
+        btnBuscar.setEnabled(false);
+        cargador.cargar("Cargando bibliotecarios...", avance -> controlador.listarBibliotecariosDto(), bibliotecarios -> {
+            this.bibliotecarios = bibliotecarios;
             comboBibliotecarios.removeAllItems();
             comboBibliotecarios.addItem("-- Seleccionar Bibliotecario --");
             
-            for (String bibliotecario : bibliotecarios) {
-                // Formato: "ID - Nombre (Email)"
-                String[] partes = bibliotecario.split(" - ", 2);
-                if (partes.length >= 2) {
-                    String nombreEmail = partes[1]; // "Nombre (Email)"
-                    comboBibliotecarios.addItem(nombreEmail);
-                }
+            for (DtBibliotecario bibliotecario : bibliotecarios) {
+                // Formato: "Nombre (Email)"
+                comboBibliotecarios.addItem(bibliotecario.getNombre() + " (" + bibliotecario.getEmail() + ")");
             }
-            
-        } catch (Exception e) {
-            mostrarError("Error al cargar bibliotecarios: " + e.getMessage());
-        }
+            btnBuscar.setEnabled(true);
+        }, error -> mostrarError("Error al cargar bibliotecarios: " + error.getMessage()));
     }
 
     private void buscarPrestamos() {
-        try {
-            if (comboBibliotecarios.getSelectedIndex() == 0) {
-                mostrarError("⚠️ Debe seleccionar un bibliotecario");
-                return;
-            }
-
-            String bibliotecarioSeleccionado = comboBibliotecarios.getSelectedItem().toString();
-            
-            // Extraer ID del bibliotecario
-            String bibliotecarioId = obtenerIdDeSeleccion(bibliotecarioSeleccionado, controlador.listarBibliotecarios());
-            
-            // Obtener todos los préstamos
-            String[] todosLosPrestamos = controlador.listarPrestamos();
-            
-            // Filtrar por bibliotecario y otros criterios
-            java.util.List<Object[]> prestamosFiltrados = filtrarPrestamos(todosLosPrestamos, bibliotecarioId);
-            
-            // Limpiar tabla
-            modeloTabla.setRowCount(0);
-            
-            if (prestamosFiltrados.isEmpty()) {
-                mostrarInfo("No se encontraron préstamos para el bibliotecario seleccionado");
-                btnExportar.setEnabled(false);
-                return;
-            }
-            
-            // Agregar préstamos a la tabla
-            for (Object[] prestamo : prestamosFiltrados) {
-                modeloTabla.addRow(prestamo);
-            }
-            
-            // Mostrar estadísticas
-            mostrarEstadisticas(prestamosFiltrados, bibliotecarioSeleccionado);
-            btnExportar.setEnabled(true);
-            
-        } catch (Exception e) {
-            mostrarError("Error al buscar préstamos: " + e.getMessage());
+        if (comboBibliotecarios.getSelectedIndex() <= 0) {
+            mostrarError("⚠️ Debe seleccionar un bibliotecario");
+            return;
         }
-    }
 
-    private java.util.List<Object[]> filtrarPrestamos(String[] todosLosPrestamos, String bibliotecarioId) {
-        java.util.List<Object[]> resultado = new java.util.ArrayList<>();
-        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
+        String bibliotecarioSeleccionado = comboBibliotecarios.getSelectedItem().toString();
+        // El combo sigue el orden de la lista ya cargada (la posición 0 es "-- Seleccionar --")
+        String bibliotecarioId = bibliotecarios[comboBibliotecarios.getSelectedIndex() - 1].getNumeroEmpleado();
         
-        // Obtener filtros
-        String estadoFiltro = null;
+        // Los filtros se leen en el EDT; la consulta corre en segundo plano
+        DtFiltroPrestamos filtro = new DtFiltroPrestamos();
+        filtro.setBibliotecarioId(bibliotecarioId);
         if (comboEstados.getSelectedIndex() > 0) {
-            estadoFiltro = comboEstados.getSelectedItem().toString();
+            filtro.setEstados(comboEstados.getSelectedItem().toString());
         }
-        
-        Date fechaDesde = null;
-        Date fechaHasta = null;
-        
         try {
-            if (!txtFechaDesde.getText().trim().isEmpty()) {
-                fechaDesde = sdf.parse(txtFechaDesde.getText().trim());
-            }
-            if (!txtFechaHasta.getText().trim().isEmpty()) {
-                fechaHasta = sdf.parse(txtFechaHasta.getText().trim());
-            }
-        } catch (Exception e) {
+            filtro.setFechaDesde(convertirFechaAFormatoISO(txtFechaDesde.getText()));
+            filtro.setFechaHasta(convertirFechaAFormatoISO(txtFechaHasta.getText()));
+        } catch (ParseException e) {
             mostrarError("Formato de fecha inválido. Use dd/MM/yyyy");
-            return resultado;
+            return;
         }
         
-        for (String prestamoStr : todosLosPrestamos) {
-            try {
-                // Extraer solo el ID del préstamo del string
-                String prestamoId = prestamoStr.split(" - ")[0];
-                
-                // Obtener detalles completos del préstamo
-                DtPrestamo dtPrestamo = controlador.obtenerPrestamo(prestamoId);
-                
-                // Verificar si el préstamo pertenece al bibliotecario seleccionado
-                if (!dtPrestamo.getBibliotecarioId().equals(bibliotecarioId)) {
-                    continue;
-                }
-                
-                // Aplicar filtros usando los datos del DtPrestamo
-                if (estadoFiltro != null && !dtPrestamo.getEstado().equals(estadoFiltro)) {
-                    continue;
-                }
-                
-                if (fechaDesde != null && dtPrestamo.getFechaSolicitud() != null) {
-                    if (dtPrestamo.getFechaSolicitud().before(fechaDesde)) {
-                        continue;
-                    }
-                }
-                
-                if (fechaHasta != null && dtPrestamo.getFechaSolicitud() != null) {
-                    if (dtPrestamo.getFechaSolicitud().after(fechaHasta)) {
-                        continue;
-                    }
+        // Limpiar tabla
+        modeloTabla.limpiar();
+        btnExportar.setEnabled(false);
+        btnBuscar.setEnabled(false);
+        
+        // Solo se cuenta en segundo plano; las filas las pide la tabla por páginas
+        cargador.cargar("Buscando préstamos...",
+            avance -> prestamoReporte.contarPrestamosPorEstado(filtro),
+            conteos -> {
+                btnBuscar.setEnabled(true);
+                int total = (int) Math.min(Integer.MAX_VALUE,
+                    conteos.values().stream().mapToLong(Long::longValue).sum());
+                if (total == 0) {
+                    mostrarInfo("No se encontraron préstamos para el bibliotecario seleccionado");
+                    return;
                 }
                 
-                // Crear fila para la tabla
-                Object[] fila = crearFilaPrestamo(dtPrestamo);
-                resultado.add(fila);
+                modeloTabla.mostrar((primera, cantidad, columna, ascendente) ->
+                    obtenerFilas(filtro, primera, cantidad, columna, ascendente), total);
+                filtroMostrado = filtro;
                 
-            } catch (Exception e) {
-                System.err.println("Error procesando préstamo: " + prestamoStr + " - " + e.getMessage());
-            }
+                // Mostrar estadísticas
+                mostrarEstadisticas(conteos, total, bibliotecarioSeleccionado);
+                btnExportar.setEnabled(true);
+            },
+            error -> {
+                btnBuscar.setEnabled(true);
+                mostrarError("Error al buscar préstamos: " + error.getMessage());
+            });
+    }
+
+    /**
+     * Pide al reporte una página del historial ya ordenada; se ejecuta fuera del EDT
+     */
+    private java.util.List<Object[]> obtenerFilas(DtFiltroPrestamos filtro, int primera, int cantidad,
+                                                  int columna, boolean ascendente) throws Exception {
+        DtPrestamo[] prestamos = prestamoReporte.obtenerRangoPrestamos(
+            filtro, columna >= 0 ? ORDEN_COLUMNAS[columna] : null, ascendente, primera, cantidad);
+        
+        java.util.List<Object[]> resultado = new java.util.ArrayList<>(prestamos.length);
+        for (DtPrestamo dtPrestamo : prestamos) {
+            // Crear fila para la tabla
+            resultado.add(crearFilaPrestamo(dtPrestamo));
         }
         
         return resultado;
     }
 
+    /**
+     * Convierte una fecha de pantalla (dd/MM/yyyy) al formato yyyy-MM-dd del reporte
+     * @return la fecha convertida, o null si el campo está vacío
+     */
+    private String convertirFechaAFormatoISO(String fecha) throws ParseException {
+        if (fecha == null || fecha.trim().isEmpty()) {
+            return null;
+        }
+        SimpleDateFormat formatoEntrada = new SimpleDateFormat("dd/MM/yyyy");
+        formatoEntrada.setLenient(false);
+        return new SimpleDateFormat("yyyy-MM-dd").format(formatoEntrada.parse(fecha.trim()));
+    }
+
     private Object[] crearFilaPrestamo(DtPrestamo dtPrestamo) {
         try {
             String tipoMaterial = "Material";
@@ -409,9 +395,15 @@ public class HistorialPrestamos extends JInternalFrame {
                 fechaDevolucionStr = sdf.format(dtPrestamo.getFechaDevolucion());
             }
 
+            // El reporte agrega la zona al nombre del lector: "Nombre [Zona]"
+            String nombreLector = dtPrestamo.getLectorNombre();
+            if (nombreLector != null && nombreLector.contains(" [")) {
+                nombreLector = nombreLector.substring(0, nombreLector.indexOf(" ["));
+            }
+
             return new Object[]{
                 dtPrestamo.getId(),
-                dtPrestamo.getLectorNombre(),
+                nombreLector,
                 descripcionMaterial,
                 tipoMaterial,
                 fechaSolicitudStr,
@@ -426,29 +418,9 @@ public class HistorialPrestamos extends JInternalFrame {
         }
     }
 
-    private String obtenerIdDeSeleccion(String seleccion, String[] lista) {
-        for (String item : lista) {
-            String[] partes = item.split(" - ", 2);
-            if (partes.length >= 2 && partes[1].equals(seleccion)) {
-                return partes[0];
-            }
-        }
-        throw new IllegalArgumentException("No se encontró el ID para: " + seleccion);
-    }
-
-    private void mostrarEstadisticas(java.util.List<Object[]> prestamos, String bibliotecario) {
-        int totalPrestamos = prestamos.size();
-        int prestamosActivos = 0;
-        int prestamosDevueltos = 0;
-        
-        for (Object[] prestamo : prestamos) {
-            String estado = (String) prestamo[6]; // Columna estado
-            if (estado.equals("PENDIENTE") || estado.equals("EN_CURSO")) {
-                prestamosActivos++;
-            } else if (estado.equals("DEVUELTO")) {
-                prestamosDevueltos++;
-            }
-        }
+    private void mostrarEstadisticas(Map<String, Long> conteos, int totalPrestamos, String bibliotecario) {
+        long prestamosActivos = conteos.getOrDefault("PENDIENTE", 0L) + conteos.getOrDefault("EN_CURSO", 0L);
+        long prestamosDevueltos = conteos.getOrDefault("DEVUELTO", 0L);
         
         lblEstadisticas.setText(String.format(
             "Total: %d | Activos: %d | Devueltos: %d", 
@@ -463,7 +435,9 @@ public class HistorialPrestamos extends JInternalFrame {
         comboEstados.setSelectedIndex(0);
         txtFechaDesde.setText("");
         txtFechaHasta.setText("");
-        modeloTabla.setRowCount(0);
+        cargador.cancelar();
+        btnBuscar.setEnabled(true);
+        modeloTabla.limpiar();
         lblResultado.setText("Seleccione un bibliotecario para ver su historial de préstamos");
         lblEstadisticas.setText("Total de préstamos: 0");
         btnExportar.setEnabled(false);
@@ -493,23 +467,47 @@ public class HistorialPrestamos extends JInternalFrame {
             }
             contenido.append("\n");
             
-            // Datos
-            for (int i = 0; i < modeloTabla.getRowCount(); i++) {
-                for (int j = 0; j < modeloTabla.getColumnCount(); j++) {
-                    contenido.append(modeloTabla.getValueAt(i, j)).append("\t");
-                }
-                contenido.append("\n");
-            }
-            
-            // Mostrar en ventana
-            JTextArea areaTexto = new JTextArea(contenido.toString());
-            areaTexto.setEditable(false);
-            areaTexto.setFont(new Font("Monospaced", Font.PLAIN, 12));
-            
-            JScrollPane scroll = new JScrollPane(areaTexto);
-            scroll.setPreferredSize(new Dimension(800, 500));
-            
-            JOptionPane.showMessageDialog(this, scroll, "Reporte de Auditoría", JOptionPane.INFORMATION_MESSAGE);
+            // Datos: la tabla solo tiene las páginas visitadas, así que se recorren todas en una
+            // sola consulta en segundo plano, con el mismo filtro y orden que la tabla
+            DtFiltroPrestamos filtro = filtroMostrado;
+            int total = modeloTabla.getRowCount();
+            int columnaOrden = modeloTabla.getColumnaOrden();
+            String ordenarPor = columnaOrden >= 0 ? ORDEN_COLUMNAS[columnaOrden] : null;
+            boolean ascendente = modeloTabla.isAscendente();
+            btnExportar.setEnabled(false);
+            cargador.cargar("Preparando reporte...", avance -> {
+                StringBuilder filas = new StringBuilder();
+                long[] leidas = {0};
+                prestamoReporte.recorrerPrestamos(filtro, ordenarPor, ascendente, dtPrestamo -> {
+                    for (Object valor : crearFilaPrestamo(dtPrestamo)) {
+                        filas.append(valor).append("\t");
+                    }
+                    filas.append("\n");
+                    if (++leidas[0] % ModeloTablaPaginada.TAMANO_PAGINA == 0) {
+                        avance.informar("Leídas " + leidas[0] + " de " + total + " filas...");
+                    }
+                    return !avance.cancelada();
+                });
+                return filas;
+            },
+                filas -> {
+                    btnExportar.setEnabled(true);
+                    contenido.append(filas);
+                    
+                    // Mostrar en ventana
+                    JTextArea areaTexto = new JTextArea(contenido.toString());
+                    areaTexto.setEditable(false);
+                    areaTexto.setFont(new Font("Monospaced", Font.PLAIN, 12));
+                    
+                    JScrollPane scroll = new JScrollPane(areaTexto);
+                    scroll.setPreferredSize(new Dimension(800, 500));
+                    
+                    JOptionPane.showMessageDialog(this, scroll, "Reporte de Auditoría", JOptionPane.INFORMATION_MESSAGE);
+                },
+                error -> {
+                    btnExportar.setEnabled(true);
+                    mostrarError("Error al exportar: " + error.getMessage());
+                });
             
         } catch (Exception e) {
             mostrarError("Error al exportar: " + e.getMessage());
@@ -1,20 +1,30 @@
 package presentacion;
 
+import interfaces.Fabrica;
 import interfaces.IControlador;
+import interfaces.IPrestamoReporte;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.concurrent.TimeUnit;
+import datatypes.DtFiltroPrestamos;
+import datatypes.DtLector;
 import datatypes.DtPrestamo;
 
 public class ListarPrestamos extends JInternalFrame {
 
+    // Columna del reporte por la que ordena cada columna de la tabla (null: no se ordena por ella)
+    private static final String[] ORDEN_COLUMNAS = {
+        IPrestamoReporte.ORDEN_ID, IPrestamoReporte.ORDEN_MATERIAL, null, IPrestamoReporte.ORDEN_FECHA_SOLICITUD,
+        IPrestamoReporte.ORDEN_FECHA_DEVOLUCION, IPrestamoReporte.ORDEN_ESTADO, null
+    };
+
     private IControlador controlador;
+    private IPrestamoReporte prestamoReporte;
     private JComboBox<String> comboLectores;
     private JRadioButton rbSoloActivos;
     private JRadioButton rbHistorialCompleto;
@@ -23,13 +33,19 @@ public class ListarPrestamos extends JInternalFrame {
     private JButton btnLimpiar;
     private JButton btnExportar;
     private JTable tablaResultados;
-    private DefaultTableModel modeloTabla;
+    private ModeloTablaPaginada modeloTabla;
     private JLabel lblResultado;
     private JLabel lblLectorSeleccionado;
+    private CargadorEnSegundoPlano cargador;
+    private DtLector[] lectores = new DtLector[0];
+    // Filtro de la búsqueda que muestra la tabla; la exportación lo recorre completo
+    private DtFiltroPrestamos filtroMostrado;
 
     public ListarPrestamos(IControlador controlador) {
         super("Listar Préstamos por Lector", true, true, true, true);
         this.controlador = controlador;
+        this.prestamoReporte = Fabrica.getInstancia().getIPrestamoReporte();
+        this.cargador = new CargadorEnSegundoPlano(this);
         inicializarComponentes();
         cargarLectores();
     }
@@ -145,16 +161,17 @@ public class ListarPrestamos extends JInternalFrame {
 
         // Panel central - Tabla de resultados
         String[] columnas = {"ID Préstamo", "Material", "Tipo", "Fecha Solicitud", "Fecha Devolución", "Estado", "Días"};
-        modeloTabla = new DefaultTableModel(columnas, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Tabla solo lectura
-            }
-        };
+        boolean[] ordenables = new boolean[columnas.length];
+        for (int i = 0; i < columnas.length; i++) {
+            ordenables[i] = ORDEN_COLUMNAS[i] != null;
+        }
+        // Las filas se piden por páginas a medida que se muestran
+        modeloTabla = new ModeloTablaPaginada(columnas, ordenables);
         
         tablaResultados = new JTable(modeloTabla);
         tablaResultados.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        tablaResultados.getTableHeader().setReorderingAllowed(false);
+        // Ordenamiento en la base de datos con un clic en el encabezado
+        modeloTabla.instalarOrdenEnEncabezado(tablaResultados);
         
         // Configurar anchos de columnas
         tablaResultados.getColumnModel().getColumn(0).setPreferredWidth(80);  // ID
@@ -182,101 +199,84 @@ public class ListarPrestamos extends JInternalFrame {
     }
 
     private void cargarLectores() {
-        try {
-            // Reutilizar la lógica de ModificarPrestamo
-            String[] lectores = controlador.listarLectores();
+        btnBuscar.setEnabled(false);
+        cargador.cargar("Cargando lectores...", avance -> controlador.listarLectoresDto(), lectores -> {
+            this.lectores = lectores;
             comboLectores.removeAllItems();
             comboLectores.addItem("-- Seleccionar Lector --");
             
-            for (String lector : lectores) {
-                comboLectores.addItem(lector); // Formato: "ID - Nombre (email)"
+            for (DtLector lector : lectores) {
+                // Formato: "ID - Nombre (email) - Estado - Zona"
+                comboLectores.addItem(lector.getId() + " - " + lector.getNombre() + " (" + lector.getEmail() + ") - "
+                    + lector.getEstado().getDescripcion() + " - " + lector.getZona().getDescripcion());
             }
-            
-        } catch (Exception e) {
-            mostrarError("Error al cargar lectores: " + e.getMessage());
-        }
+            btnBuscar.setEnabled(true);
+        }, error -> mostrarError("Error al cargar lectores: " + error.getMessage()));
     }
 
     private void buscarPrestamos() {
-        try {
-            if (comboLectores.getSelectedIndex() == 0) {
-                mostrarError("⚠️ Debe seleccionar un lector");
-                return;
-            }
-
-            String lectorSeleccionado = comboLectores.getSelectedItem().toString();
-            
-            // Extraer ID del lector (reutilizar lógica de ModificarPrestamo)
-            String lectorId = obtenerIdDeSeleccion(lectorSeleccionado, controlador.listarLectores());
-            
-            // Mostrar lector seleccionado
-            lblLectorSeleccionado.setText("Consultando: " + lectorSeleccionado);
-            
-            // Obtener préstamos del lector
-            String[] prestamos = controlador.listarPrestamosPorLector(lectorId);
-            
-            // Debug: mostrar qué préstamos encontramos
-            System.out.println("DEBUG: Préstamos encontrados para lector " + lectorId + ":");
-            for (String prestamo : prestamos) {
-                System.out.println("  - " + prestamo);
-            }
-            
-            // Limpiar tabla
-            modeloTabla.setRowCount(0);
-            
-            if (prestamos.length == 0) {
-                mostrarInfo("No se encontraron préstamos para el lector seleccionado");
-                btnExportar.setEnabled(false);
-                return;
-            }
-            
-            // Procesar y filtrar préstamos
-            int prestamosAñadidos = 0;
-            for (String prestamo : prestamos) {
-                try {
-                    // Formato esperado: "ID - Lector (email) - Material - Estado"
-                    String[] partes = prestamo.split(" - ", 2);
-                    if (partes.length >= 2) {
-                        String prestamoId = partes[0];
-                        // partes[1] contiene "Lector (email) - Material - Estado"
-                        // Necesitamos extraer el estado que está al final
-                        String resto = partes[1];
-                        String[] restoPartes = resto.split(" - ");
-                        String estado = restoPartes.length > 0 ? restoPartes[restoPartes.length - 1] : "N/A";
-                        
-                        // Obtener el DtPrestamo completo
-                        DtPrestamo dtPrestamo = controlador.obtenerPrestamo(prestamoId);
+        if (comboLectores.getSelectedIndex() <= 0) {
+            mostrarError("⚠️ Debe seleccionar un lector");
+            return;
+        }
 
-                        // Filtrar según tipo de consulta
-                        if (rbSoloActivos.isSelected()) {
-                            // Los préstamos activos son: PENDIENTE y EN_CURSO (o "En Curso")
-                            String estadoLimpio = estado.trim().toUpperCase().replace(" ", "_");
-                            System.out.println("DEBUG: Evaluando préstamo " + prestamoId + " con estado: '" + estadoLimpio + "'");
-                            
-                            if (!estadoLimpio.equals("PENDIENTE") && !estadoLimpio.equals("EN_CURSO")) {
-                                System.out.println("DEBUG: Préstamo " + prestamoId + " filtrado (no activo)");
-                                continue; // Saltar préstamos no activos
-                            }
-                            System.out.println("DEBUG: Préstamo " + prestamoId + " incluido (activo)");
-                        }
-                        
-                        // Obtener información detallada del préstamo
-                        String[] datosPrestamo = obtenerDatosPrestamo(dtPrestamo);
-                        modeloTabla.addRow(datosPrestamo);
-                        prestamosAñadidos++;
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error procesando préstamo: " + prestamo + " - " + e.getMessage());
+        String lectorSeleccionado = comboLectores.getSelectedItem().toString();
+        // El combo sigue el orden de la lista ya cargada (la posición 0 es "-- Seleccionar --")
+        String lectorId = lectores[comboLectores.getSelectedIndex() - 1].getId();
+        boolean soloActivos = rbSoloActivos.isSelected();
+        
+        // Mostrar lector seleccionado
+        lblLectorSeleccionado.setText("Consultando: " + lectorSeleccionado);
+        
+        DtFiltroPrestamos filtro = new DtFiltroPrestamos();
+        filtro.setLectorId(lectorId);
+        if (soloActivos) {
+            // Los préstamos activos son: PENDIENTE y EN_CURSO
+            filtro.setEstados("PENDIENTE", "EN_CURSO");
+        }
+        
+        // Limpiar tabla
+        modeloTabla.limpiar();
+        btnExportar.setEnabled(false);
+        btnBuscar.setEnabled(false);
+        
+        // Solo se cuenta en segundo plano; las filas las pide la tabla por páginas
+        cargador.cargar("Buscando préstamos...",
+            avance -> prestamoReporte.contarPrestamosPorEstado(filtro),
+            conteos -> {
+                btnBuscar.setEnabled(true);
+                int total = (int) Math.min(Integer.MAX_VALUE,
+                    conteos.values().stream().mapToLong(Long::longValue).sum());
+                if (total == 0) {
+                    mostrarInfo("No se encontraron préstamos para el lector seleccionado");
+                    return;
                 }
-            }
-            
-            String tipoConsulta = rbSoloActivos.isSelected() ? "activos" : "total";
-            mostrarExito("Se encontraron " + prestamosAñadidos + " préstamos " + tipoConsulta);
-            btnExportar.setEnabled(prestamosAñadidos > 0);
-            
-        } catch (Exception e) {
-            mostrarError("Error al buscar préstamos: " + e.getMessage());
+                modeloTabla.mostrar((primera, cantidad, columna, ascendente) ->
+                    obtenerFilas(filtro, primera, cantidad, columna, ascendente), total);
+                filtroMostrado = filtro;
+                String tipoConsulta = soloActivos ? "activos" : "total";
+                mostrarExito("Se encontraron " + total + " préstamos " + tipoConsulta);
+                btnExportar.setEnabled(true);
+            },
+            error -> {
+                btnBuscar.setEnabled(true);
+                mostrarError("Error al buscar préstamos: " + error.getMessage());
+            });
+    }
+
+    /**
+     * Pide al reporte una página de préstamos del lector ya ordenada; se ejecuta fuera del EDT
+     */
+    private java.util.List<Object[]> obtenerFilas(DtFiltroPrestamos filtro, int primera, int cantidad,
+                                                  int columna, boolean ascendente) throws Exception {
+        DtPrestamo[] prestamos = prestamoReporte.obtenerRangoPrestamos(
+            filtro, columna >= 0 ? ORDEN_COLUMNAS[columna] : null, ascendente, primera, cantidad);
+        
+        java.util.List<Object[]> filas = new java.util.ArrayList<>(prestamos.length);
+        for (DtPrestamo dtPrestamo : prestamos) {
+            filas.add(obtenerDatosPrestamo(dtPrestamo));
         }
+        return filas;
     }
 
     private String[] obtenerDatosPrestamo(DtPrestamo dtPrestamo) {
@@ -330,23 +330,12 @@ public class ListarPrestamos extends JInternalFrame {
         }
     }
 
-    private String obtenerIdDeSeleccion(String seleccion, String[] lista) {
-        // Reutilizar la lógica exacta de ModificarPrestamo
-        for (String item : lista) {
-            if (item.equals(seleccion)) {
-                String[] partes = item.split(" - ", 2);
-                if (partes.length >= 1) {
-                    return partes[0]; // Retornar el ID (primera parte)
-                }
-            }
-        }
-        throw new IllegalArgumentException("No se encontró el ID para: " + seleccion);
-    }
-
     private void limpiarFormulario() {
         comboLectores.setSelectedIndex(0);
         rbSoloActivos.setSelected(true);
-        modeloTabla.setRowCount(0);
+        cargador.cancelar();
+        btnBuscar.setEnabled(true);
+        modeloTabla.limpiar();
         lblResultado.setText(" ");
         lblLectorSeleccionado.setText(" ");
         btnExportar.setEnabled(false);
@@ -373,23 +362,47 @@ public class ListarPrestamos extends JInternalFrame {
             }
             contenido.append("\n");
             
-            // Datos
-            for (int i = 0; i < modeloTabla.getRowCount(); i++) {
-                for (int j = 0; j < modeloTabla.getColumnCount(); j++) {
-                    contenido.append(modeloTabla.getValueAt(i, j)).append("\t");
-                }
-                contenido.append("\n");
-            }
-            
-            // Mostrar en ventana (en una versión completa se guardaría en archivo)
-            JTextArea areaTexto = new JTextArea(contenido.toString());
-            areaTexto.setEditable(false);
-            areaTexto.setFont(new Font("Monospaced", Font.PLAIN, 12));
-            
-            JScrollPane scroll = new JScrollPane(areaTexto);
-            scroll.setPreferredSize(new Dimension(600, 400));
-            
-            JOptionPane.showMessageDialog(this, scroll, "Exportar Resultados", JOptionPane.INFORMATION_MESSAGE);
+            // Datos: la tabla solo tiene las páginas visitadas, así que se recorren todas en una
+            // sola consulta en segundo plano, con el mismo filtro y orden que la tabla
+            DtFiltroPrestamos filtro = filtroMostrado;
+            int total = modeloTabla.getRowCount();
+            int columnaOrden = modeloTabla.getColumnaOrden();
+            String ordenarPor = columnaOrden >= 0 ? ORDEN_COLUMNAS[columnaOrden] : null;
+            boolean ascendente = modeloTabla.isAscendente();
+            btnExportar.setEnabled(false);
+            cargador.cargar("Preparando exportación...", avance -> {
+                StringBuilder filas = new StringBuilder();
+                long[] leidas = {0};
+                prestamoReporte.recorrerPrestamos(filtro, ordenarPor, ascendente, dtPrestamo -> {
+                    for (Object valor : obtenerDatosPrestamo(dtPrestamo)) {
+                        filas.append(valor).append("\t");
+                    }
+                    filas.append("\n");
+                    if (++leidas[0] % ModeloTablaPaginada.TAMANO_PAGINA == 0) {
+                        avance.informar("Leídas " + leidas[0] + " de " + total + " filas...");
+                    }
+                    return !avance.cancelada();
+                });
+                return filas;
+            },
+                filas -> {
+                    btnExportar.setEnabled(true);
+                    contenido.append(filas);
+                    
+                    // Mostrar en ventana (en una versión completa se guardaría en archivo)
+                    JTextArea areaTexto = new JTextArea(contenido.toString());
+                    areaTexto.setEditable(false);
+                    areaTexto.setFont(new Font("Monospaced", Font.PLAIN, 12));
+                    
+                    JScrollPane scroll = new JScrollPane(areaTexto);
+                    scroll.setPreferredSize(new Dimension(600, 400));
+                    
+                    JOptionPane.showMessageDialog(this, scroll, "Exportar Resultados", JOptionPane.INFORMATION_MESSAGE);
+                },
+                error -> {
+                    btnExportar.setEnabled(true);
+                    mostrarError("Error al exportar: " + error.getMessage());
+                });
             
         } catch (Exception e) {
             mostrarError("Error al exportar: " + e.getMessage());
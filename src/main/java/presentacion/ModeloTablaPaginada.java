@@ -0,0 +1,249 @@
+package presentacion;
+
+import javax.swing.JTable;
+import javax.swing.SwingWorker;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.JTableHeader;
+import javax.swing.table.TableColumn;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Modelo de tabla virtual: conoce la cantidad total de filas pero solo pide al controlador
+ * las páginas que la tabla muestra, a medida que el usuario se desplaza
+ *
+ * Uso:
+ *   modelo.mostrar(fuente, total);           // total contado en segundo plano por la pantalla
+ *   modelo.instalarOrdenEnEncabezado(tabla); // clic en el encabezado: orden en el servidor
+ *
+ * Las páginas se piden en segundo plano; mientras llegan, sus filas muestran "Cargando...".
+ * Se guardan hasta MAXIMO_PAGINAS páginas y al superar ese número se descarta la usada
+ * hace más tiempo (LRU). Cambiar la fuente o el orden descarta todo y los resultados
+ * que lleguen de consultas anteriores se ignoran.
+ * Todos los métodos deben llamarse desde el EDT.
+ */
+public class ModeloTablaPaginada extends AbstractTableModel {
+
+    public static final int TAMANO_PAGINA = 100;
+    private static final int MAXIMO_PAGINAS = 20;
+
+    private static final String TEXTO_CARGANDO = "Cargando...";
+    private static final String TEXTO_ERROR = "Error al cargar";
+
+    /**
+     * Origen de las filas; se ejecuta fuera del EDT y no debe tocar componentes Swing
+     */
+    public interface Fuente {
+        /**
+         * Devuelve las filas [primera, primera + cantidad) en el orden pedido
+         * @param columnaOrden columna del modelo por la que ordenar, o -1 para el orden por defecto
+         */
+        List<Object[]> obtenerFilas(int primera, int cantidad, int columnaOrden, boolean ascendente)
+                throws Exception;
+    }
+
+    private final String[] columnas;
+    private final boolean[] ordenables;
+    private final Map<Integer, List<Object[]>> paginas =
+        new LinkedHashMap<Integer, List<Object[]>>(MAXIMO_PAGINAS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Object[]>> mayor) {
+                return size() > MAXIMO_PAGINAS;
+            }
+        };
+    private final Set<Integer> pedidas = new HashSet<>();
+    private final Set<Integer> fallidas = new HashSet<>();
+
+    private Fuente fuente;
+    private int filas;
+    private int columnaOrden = -1;
+    private boolean ascendente = true;
+    // Cambia con cada fuente u orden nuevo; una página pedida con otra generación se descarta
+    private int generacion;
+
+    /**
+     * @param columnas nombres de las columnas
+     * @param ordenables indica por cuáles columnas puede ordenar la fuente
+     */
+    public ModeloTablaPaginada(String[] columnas, boolean[] ordenables) {
+        this.columnas = columnas.clone();
+        this.ordenables = ordenables.clone();
+    }
+
+    /**
+     * Muestra las filas de una fuente nueva conservando el orden elegido
+     * @param total cantidad de filas que tiene la fuente
+     */
+    public void mostrar(Fuente fuente, int total) {
+        this.fuente = fuente;
+        this.filas = Math.max(0, total);
+        descartarPaginas();
+        fireTableDataChanged();
+    }
+
+    /**
+     * Deja la tabla vacía
+     */
+    public void limpiar() {
+        mostrar(null, 0);
+    }
+
+    /**
+     * Ordena por la columna dada; si ya estaba ordenada por ella invierte la dirección
+     * Las filas se vuelven a pedir a la fuente con el orden nuevo
+     */
+    public void ordenarPor(int columna) {
+        if (columna < 0 || columna >= columnas.length || !ordenables[columna]) {
+            return;
+        }
+        ascendente = columna != columnaOrden || !ascendente;
+        columnaOrden = columna;
+        descartarPaginas();
+        if (filas > 0) {
+            fireTableRowsUpdated(0, filas - 1);
+        }
+    }
+
+    public int getColumnaOrden() {
+        return columnaOrden;
+    }
+
+    public boolean isAscendente() {
+        return ascendente;
+    }
+
+    /**
+     * Ordena con un clic en el encabezado de la tabla y muestra la dirección junto al nombre
+     */
+    public void instalarOrdenEnEncabezado(JTable tabla) {
+        JTableHeader encabezado = tabla.getTableHeader();
+        encabezado.setReorderingAllowed(false);
+        encabezado.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int columnaVista = encabezado.columnAtPoint(e.getPoint());
+                if (columnaVista < 0) {
+                    return;
+                }
+                ordenarPor(tabla.convertColumnIndexToModel(columnaVista));
+                for (int i = 0; i < tabla.getColumnCount(); i++) {
+                    TableColumn columna = tabla.getColumnModel().getColumn(i);
+                    int indice = columna.getModelIndex();
+                    String marca = indice == columnaOrden ? (ascendente ? " ▲" : " ▼") : "";
+                    columna.setHeaderValue(columnas[indice] + marca);
+                }
+                encabezado.repaint();
+            }
+        });
+    }
+
+    /**
+     * Fila ya cargada, o null si su página todavía no llegó
+     */
+    public Object[] obtenerFila(int fila) {
+        List<Object[]> pagina = paginas.get(fila / TAMANO_PAGINA);
+        int posicion = fila % TAMANO_PAGINA;
+        return pagina != null && posicion < pagina.size() ? pagina.get(posicion) : null;
+    }
+
+    @Override
+    public int getRowCount() {
+        return filas;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnas.length;
+    }
+
+    @Override
+    public String getColumnName(int columna) {
+        return columnas[columna];
+    }
+
+    @Override
+    public boolean isCellEditable(int fila, int columna) {
+        return false; // Tabla de solo lectura
+    }
+
+    @Override
+    public Object getValueAt(int fila, int columna) {
+        Object[] datos = obtenerFila(fila);
+        if (datos != null) {
+            return columna < datos.length ? datos[columna] : null;
+        }
+        int numeroPagina = fila / TAMANO_PAGINA;
+        if (fallidas.contains(numeroPagina)) {
+            return columna == 0 ? TEXTO_ERROR : "";
+        }
+        pedirPagina(numeroPagina);
+        return columna == 0 ? TEXTO_CARGANDO : "";
+    }
+
+    private void descartarPaginas() {
+        generacion++;
+        paginas.clear();
+        pedidas.clear();
+        fallidas.clear();
+    }
+
+    private void pedirPagina(int numeroPagina) {
+        if (fuente == null || !pedidas.add(numeroPagina)) {
+            return;
+        }
+        new CargaPagina(numeroPagina).execute();
+    }
+
+    /**
+     * Consulta de una página; al terminar la guarda en el cache y repinta solo sus filas
+     */
+    private final class CargaPagina extends SwingWorker<List<Object[]>, Void> {
+        private final int numeroPagina;
+        private final int generacionPedida;
+        private final Fuente fuentePedida;
+        private final int columnaPedida;
+        private final boolean ascendentePedido;
+
+        private CargaPagina(int numeroPagina) {
+            this.numeroPagina = numeroPagina;
+            this.generacionPedida = generacion;
+            this.fuentePedida = fuente;
+            this.columnaPedida = columnaOrden;
+            this.ascendentePedido = ascendente;
+        }
+
+        @Override
+        protected List<Object[]> doInBackground() throws Exception {
+            return fuentePedida.obtenerFilas(numeroPagina * TAMANO_PAGINA, TAMANO_PAGINA,
+                columnaPedida, ascendentePedido);
+        }
+
+        @Override
+        protected void done() {
+            if (generacionPedida != generacion) {
+                return;
+            }
+            pedidas.remove(numeroPagina);
+            try {
+                paginas.put(numeroPagina, get());
+            } catch (ExecutionException e) {
+                Throwable causa = e.getCause() != null ? e.getCause() : e;
+                System.err.println("Error al cargar la página " + numeroPagina + ": " + causa.getMessage());
+                fallidas.add(numeroPagina);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            int primera = numeroPagina * TAMANO_PAGINA;
+            if (primera < filas) {
+                fireTableRowsUpdated(primera, Math.min(filas, primera + TAMANO_PAGINA) - 1);
+            }
+        }
+    }
+}
@@ -2,6 +2,10 @@ package presentacion;
 
 import interfaces.IControlador;
 import logica.EstadoPrestamo;
+import datatypes.DtArticuloEspecial;
+import datatypes.DtBibliotecario;
+import datatypes.DtLector;
+import datatypes.DtLibro;
 import datatypes.DtPrestamo;
 
 import javax.swing.*;
@@ -9,7 +13,10 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.function.IntFunction;
 
 public class ModificarPrestamo extends JInternalFrame {
 
@@ -26,10 +33,15 @@ public class ModificarPrestamo extends JInternalFrame {
     private JButton btnLimpiar;
     private JLabel lblResultado;
     private String prestamoSeleccionadoId = null;
+    // Versión del préstamo mostrado; se envía al guardar para no pisar cambios de otro usuario
+    private long prestamoSeleccionadoVersion;
+    private CargadorEnSegundoPlano cargador;
+    private DatosFormulario datos = new DatosFormulario();
 
     public ModificarPrestamo(IControlador controlador) {
         super("Modificar Préstamo", true, true, true, true);
         this.controlador = controlador;
+        this.cargador = new CargadorEnSegundoPlano(this);
         inicializarComponentes();
         cargarDatos();
     }
@@ -221,135 +233,135 @@ public class ModificarPrestamo extends JInternalFrame {
     }
 
     private void cargarDatos() {
-        try {
-            // Cargar préstamos de forma segura (solo IDs por ahora)
-            comboPrestamos.removeAllItems();
-            comboPrestamos.addItem("-- Seleccionar Préstamo --");
-            
-            // Agregar IDs de préstamos de forma simple
+        btnCargar.setEnabled(false);
+        cargador.cargar("Cargando datos...", avance -> {
+            DatosFormulario datos = new DatosFormulario();
+            avance.informar("Cargando préstamos...");
             try {
-                String[] prestamos = controlador.listarPrestamos();
-                for (String prestamo : prestamos) {
-                    String[] partes = prestamo.split(" - ", 2);
-                    if (partes.length >= 1) {
-                        String prestamoId = partes[0];
-                        comboPrestamos.addItem(prestamoId);
-                    }
-                }
+                datos.prestamos = controlador.listarPrestamosDto();
             } catch (Exception e) {
-                // Si falla, cargar IDs manualmente basándose en lo que sabemos
+                // Si falla, se cargan IDs básicos en el combo
                 System.err.println("Error cargando préstamos, usando IDs básicos: " + e.getMessage());
-                comboPrestamos.addItem("P1");
-                comboPrestamos.addItem("P2");
-            }
-            
-            // Cargar lectores
-            String[] lectores = controlador.listarLectores();
-            comboLectores.removeAllItems();
-            comboLectores.addItem("-- Seleccionar Lector --");
-            
-            for (String lector : lectores) {
-                String[] partes = lector.split(" - ", 2);
-                if (partes.length >= 2) {
-                    String nombreEmail = partes[1];
-                    comboLectores.addItem(nombreEmail);
-                }
-            }
-            
-            // Cargar bibliotecarios
-            String[] bibliotecarios = controlador.listarBibliotecarios();
-            comboBibliotecarios.removeAllItems();
-            comboBibliotecarios.addItem("-- Seleccionar Bibliotecario --");
-            
-            for (String bibliotecario : bibliotecarios) {
-                String[] partes = bibliotecario.split(" - ", 2);
-                if (partes.length >= 2) {
-                    String nombreEmail = partes[1];
-                    comboBibliotecarios.addItem(nombreEmail);
-                }
-            }
-            
-            // Cargar materiales
-            comboMateriales.removeAllItems();
-            comboMateriales.addItem("-- Seleccionar Material --");
-
-            // Cargar libros
-            String[] libros = controlador.listarLibros();
-            for (String libro : libros) {
-                // Formato: "ID | Título | Páginas | Fecha"
-                String[] partes = libro.split(" \\| ", 4);
-                if (partes.length >= 4) {
-                    String titulo = partes[1];
-                    String paginas = partes[2];
-                    comboMateriales.addItem("Libro: " + titulo + " | " + paginas + " páginas");
-                }
+                datos.prestamos = null;
             }
+            CacheDatosReferencia.Datos referencia = CacheDatosReferencia.getInstancia().obtener(controlador, avance);
+            datos.lectores = referencia.getLectores();
+            datos.bibliotecarios = referencia.getBibliotecarios();
+            datos.libros = referencia.getLibros();
+            datos.articulos = referencia.getArticulos();
+            return datos;
+        }, datos -> {
+            mostrarDatos(datos);
+            btnCargar.setEnabled(true);
+        }, error -> mostrarError("Error al cargar datos: " + error.getMessage()));
+    }
 
-            // Cargar artículos especiales
-            String[] articulos = controlador.listarArticulosEspeciales();
-            for (String articulo : articulos) {
-                // Formato: "ID | Descripción | Peso | Dimensiones"
-                String[] partes = articulo.split(" \\| ", 4);
-                if (partes.length >= 4) {
-                    String descripcion = partes[1];
-                    String peso = partes[2];
-                    comboMateriales.addItem("Artículo: " + descripcion + " | " + peso + "kg");
-                }
+    /**
+     * Listas obtenidas al abrir la pantalla (de CacheDatosReferencia); cada combo se llena en el mismo orden,
+     * así el ID de la selección sale de la posición sin volver a consultar
+     */
+    private static final class DatosFormulario {
+        private DtPrestamo[] prestamos = new DtPrestamo[0];
+        private DtLector[] lectores = new DtLector[0];
+        private DtBibliotecario[] bibliotecarios = new DtBibliotecario[0];
+        private DtLibro[] libros = new DtLibro[0];
+        private DtArticuloEspecial[] articulos = new DtArticuloEspecial[0];
+        // IDs de comboMateriales (libros y después artículos), sin la opción inicial
+        private List<String> materiales = new ArrayList<>();
+    }
+
+    private void mostrarDatos(DatosFormulario datos) {
+        this.datos = datos;
+
+        // Cargar préstamos (solo IDs)
+        comboPrestamos.removeAllItems();
+        comboPrestamos.addItem("-- Seleccionar Préstamo --");
+        
+        if (datos.prestamos != null) {
+            for (DtPrestamo prestamo : datos.prestamos) {
+                comboPrestamos.addItem(prestamo.getId());
             }
-            
-        } catch (Exception e) {
-            mostrarError("Error al cargar datos: " + e.getMessage());
+        } else {
+            // Si falló la consulta, cargar IDs manualmente basándose en lo que sabemos
+            comboPrestamos.addItem("P1");
+            comboPrestamos.addItem("P2");
+        }
+        
+        // Cargar lectores
+        comboLectores.removeAllItems();
+        comboLectores.addItem("-- Seleccionar Lector --");
+        
+        for (DtLector lector : datos.lectores) {
+            comboLectores.addItem(lector.getNombre() + " (" + lector.getEmail() + ") - "
+                + lector.getEstado().getDescripcion() + " - " + lector.getZona().getDescripcion());
+        }
+        
+        // Cargar bibliotecarios
+        comboBibliotecarios.removeAllItems();
+        comboBibliotecarios.addItem("-- Seleccionar Bibliotecario --");
+        
+        for (DtBibliotecario bibliotecario : datos.bibliotecarios) {
+            comboBibliotecarios.addItem(bibliotecario.getNombre() + " (" + bibliotecario.getEmail() + ")");
+        }
+        
+        // Cargar materiales
+        comboMateriales.removeAllItems();
+        comboMateriales.addItem("-- Seleccionar Material --");
+        datos.materiales.clear();
+
+        // Cargar libros
+        for (DtLibro libro : datos.libros) {
+            comboMateriales.addItem("Libro: " + libro.getTitulo() + " | " + libro.getCantidadPaginas() + " páginas");
+            datos.materiales.add(libro.getId());
+        }
+
+        // Cargar artículos especiales
+        for (DtArticuloEspecial articulo : datos.articulos) {
+            comboMateriales.addItem("Artículo: " + articulo.getDescripcion() + " | " + articulo.getPesoKg() + "kg");
+            datos.materiales.add(articulo.getId());
         }
     }
 
     private void cargarPrestamoSeleccionado() {
+        if (comboPrestamos.getSelectedIndex() <= 0) {
+            mostrarError("⚠️ Debe seleccionar un préstamo");
+            return;
+        }
+        
+        String prestamoId = comboPrestamos.getSelectedItem().toString();
+        prestamoSeleccionadoId = prestamoId;
+        btnCargar.setEnabled(false);
+        // Hasta tener la versión del préstamo nuevo no se puede guardar
+        btnGuardar.setEnabled(false);
+        
+        // Obtener información del préstamo en segundo plano, con manejo robusto de errores
+        cargador.cargar("Cargando préstamo " + prestamoId + "...",
+            avance -> controlador.obtenerPrestamo(prestamoId),
+            prestamo -> {
+                btnCargar.setEnabled(true);
+                llenarFormulario(prestamoId, prestamo);
+            },
+            error -> {
+                btnCargar.setEnabled(true);
+                System.err.println("Error obteniendo préstamo " + prestamoId + ": " + error.getMessage());
+                // Sin la versión actual no se puede guardar sin riesgo de pisar otro cambio
+                prestamoSeleccionadoId = null;
+                mostrarError("Error al obtener datos del préstamo. Vuelva a cargarlo.");
+            });
+    }
+
+    private void llenarFormulario(String prestamoId, DtPrestamo prestamo) {
         try {
-            if (comboPrestamos.getSelectedIndex() == 0) {
-                mostrarError("⚠️ Debe seleccionar un préstamo");
-                return;
-            }
-            
-            String prestamoId = comboPrestamos.getSelectedItem().toString();
-            prestamoSeleccionadoId = prestamoId;
-            
-            // Obtener información del préstamo con manejo robusto de errores
-            DtPrestamo prestamo = null;
-            try {
-                prestamo = controlador.obtenerPrestamo(prestamoId);
-            } catch (Exception e) {
-                System.err.println("Error obteniendo préstamo " + prestamoId + ": " + e.getMessage());
-                mostrarError("Error al obtener datos del préstamo. Puede modificar solo el estado por ahora.");
-                
-                // Habilitar solo el cambio de estado si hay error cargando datos completos
-                comboEstados.setEnabled(true);
-                btnGuardar.setEnabled(true);
-                return;
-            }
+            prestamoSeleccionadoVersion = prestamo.getVersion();
             
             // Llenar formulario con datos del préstamo
-            try {
-                if (prestamo.getLectorNombre() != null) {
-                    seleccionarEnCombo(comboLectores, prestamo.getLectorNombre());
-                }
-            } catch (Exception e) {
-                System.err.println("Error cargando lector: " + e.getMessage());
-            }
-            
-            try {
-                if (prestamo.getBibliotecarioNombre() != null) {
-                    seleccionarEnCombo(comboBibliotecarios, prestamo.getBibliotecarioNombre());
-                }
-            } catch (Exception e) {
-                System.err.println("Error cargando bibliotecario: " + e.getMessage());
-            }
-            
-            try {
-                if (prestamo.getMaterialTipo() != null && prestamo.getMaterialDescripcion() != null) {
-                    seleccionarMaterialEnCombo(prestamo.getMaterialTipo(), prestamo.getMaterialDescripcion());
-                }
-            } catch (Exception e) {
-                System.err.println("Error cargando material: " + e.getMessage());
-            }
+            // Seleccionar por ID en las listas ya cargadas (la posición 0 es "-- Seleccionar --")
+            seleccionarPorId(comboLectores, prestamo.getLectorId(), datos.lectores.length,
+                i -> datos.lectores[i].getId());
+            seleccionarPorId(comboBibliotecarios, prestamo.getBibliotecarioId(), datos.bibliotecarios.length,
+                i -> datos.bibliotecarios[i].getNumeroEmpleado());
+            seleccionarPorId(comboMateriales, prestamo.getMaterialId(), datos.materiales.size(),
+                datos.materiales::get);
             
             try {
                 if (prestamo.getEstado() != null) {
@@ -392,38 +404,17 @@ public class ModificarPrestamo extends JInternalFrame {
         }
     }
 
-    private void seleccionarEnCombo(JComboBox<String> combo, String nombre) {
-        for (int i = 0; i < combo.getItemCount(); i++) {
-            String item = combo.getItemAt(i);
-            if (item.contains(nombre)) {
-                combo.setSelectedIndex(i);
-                break;
-            }
+    private void seleccionarPorId(JComboBox<String> combo, String id, int cantidad, IntFunction<String> idEn) {
+        if (id == null) {
+            return;
         }
-    }
-
-    private void seleccionarMaterialEnCombo(String tipo, String descripcion) {
-        try {
-            String buscar = tipo + ": " + descripcion;
-            for (int i = 0; i < comboMateriales.getItemCount(); i++) {
-                String item = comboMateriales.getItemAt(i);
-                if (item != null && item.equals(buscar)) {
-                    comboMateriales.setSelectedIndex(i);
-                    return;
-                }
-            }
-            // Si no se encuentra, buscar solo por descripción
-            for (int i = 0; i < comboMateriales.getItemCount(); i++) {
-                String item = comboMateriales.getItemAt(i);
-                if (item != null && item.contains(descripcion)) {
-                    comboMateriales.setSelectedIndex(i);
-                    return;
-                }
+        for (int i = 0; i < cantidad; i++) {
+            if (id.equals(idEn.apply(i))) {
+                combo.setSelectedIndex(i + 1);
+                return;
             }
-        } catch (Exception e) {
-            System.err.println("Error seleccionando material en combo: " + e.getMessage());
-            // Dejar en posición por defecto si hay error
         }
+        System.err.println("No se encontró en la lista el ID: " + id);
     }
 
     private void guardarCambios() {
@@ -434,25 +425,25 @@ public class ModificarPrestamo extends JInternalFrame {
             }
 
             // Validar selecciones
-            if (comboLectores.getSelectedIndex() == 0) {
+            if (comboLectores.getSelectedIndex() <= 0) {
                 mostrarError("⚠️ Debe seleccionar un lector");
                 return;
             }
             
-            if (comboBibliotecarios.getSelectedIndex() == 0) {
+            if (comboBibliotecarios.getSelectedIndex() <= 0) {
                 mostrarError("⚠️ Debe seleccionar un bibliotecario");
                 return;
             }
             
-            if (comboMateriales.getSelectedIndex() == 0) {
+            if (comboMateriales.getSelectedIndex() <= 0) {
                 mostrarError("⚠️ Debe seleccionar un material");
                 return;
             }
 
-            // Obtener datos del formulario
-            String lectorId = obtenerIdDeSeleccion(comboLectores.getSelectedItem().toString(), controlador.listarLectores());
-            String bibliotecarioId = obtenerIdDeSeleccion(comboBibliotecarios.getSelectedItem().toString(), controlador.listarBibliotecarios());
-            String materialId = obtenerIdDeMaterial(comboMateriales.getSelectedItem().toString());
+            // Obtener datos del formulario (IDs según la posición en las listas ya cargadas)
+            String lectorId = datos.lectores[comboLectores.getSelectedIndex() - 1].getId();
+            String bibliotecarioId = datos.bibliotecarios[comboBibliotecarios.getSelectedIndex() - 1].getNumeroEmpleado();
+            String materialId = datos.materiales.get(comboMateriales.getSelectedIndex() - 1);
             EstadoPrestamo estado = (EstadoPrestamo) comboEstados.getSelectedItem();
             String fechaSolicitud = txtFechaSolicitud.getText().trim();
             String fechaDevolucion = txtFechaDevolucion.getText().trim();
@@ -472,69 +463,42 @@ public class ModificarPrestamo extends JInternalFrame {
             }
 
             // Usar el nuevo método modificarPrestamo que actualiza TODA la información
-            controlador.modificarPrestamo(
-                prestamoSeleccionadoId,
-                lectorId,
-                bibliotecarioId,
-                materialId,
-                fechaSolicitud,
-                estado.name(),
-                fechaDevolucion.isEmpty() ? null : fechaDevolucion
-            );
-            
-            mostrarExito("✅ Cambios guardados correctamente en préstamo " + prestamoSeleccionadoId);
+            String prestamoId = prestamoSeleccionadoId;
+            long version = prestamoSeleccionadoVersion;
+            // Mientras se guarda no se puede cargar otro préstamo ni limpiar el formulario
+            habilitarSeleccion(false);
+            cargador.escribir("Guardando cambios...", avance -> {
+                controlador.modificarPrestamoConVersion(
+                    prestamoId,
+                    lectorId,
+                    bibliotecarioId,
+                    materialId,
+                    fechaSolicitud,
+                    estado.name(),
+                    fechaDevolucion.isEmpty() ? null : fechaDevolucion,
+                    version
+                );
+                // Se relee para quedarse con la versión nueva y poder seguir editando
+                return controlador.obtenerPrestamo(prestamoId);
+            }, guardado -> {
+                habilitarSeleccion(true);
+                prestamoSeleccionadoVersion = guardado.getVersion();
+                mostrarExito("✅ Cambios guardados correctamente en préstamo " + prestamoId);
+            }, error -> {
+                habilitarSeleccion(true);
+                mostrarError("Error al guardar cambios: " + error.getMessage());
+            });
             
         } catch (Exception e) {
             mostrarError("Error al guardar cambios: " + e.getMessage());
         }
     }
 
-    private String obtenerIdDeSeleccion(String seleccion, String[] lista) {
-        for (String item : lista) {
-            String[] partes = item.split(" - ", 2);
-            if (partes.length >= 2 && partes[1].equals(seleccion)) {
-                return partes[0];
-            }
-        }
-        throw new IllegalArgumentException("No se encontró el ID para: " + seleccion);
-    }
-    
-    private String obtenerIdDeMaterial(String seleccion) {
-        // Formato: "Libro: Título | Páginas páginas" o "Artículo: Descripción | Peso kg"
-        String tipo = seleccion.startsWith("Libro:") ? "Libro" : "Artículo";
-        String descripcion = seleccion.substring(seleccion.indexOf(":") + 1).trim();
-        
-        if (tipo.equals("Libro")) {
-            String[] libros = controlador.listarLibros();
-            for (String libro : libros) {
-                // Formato: "ID | Título | Páginas | Fecha"
-                String[] partes = libro.split(" \\| ", 4);
-                if (partes.length >= 4) {
-                    String titulo = partes[1];
-                    String paginas = partes[2];
-                    String tituloConPaginas = titulo + " | " + paginas + " páginas";
-                    if (tituloConPaginas.equals(descripcion)) {
-                        return partes[0]; // Retornar el ID
-                    }
-                }
-            }
-        } else {
-            String[] articulos = controlador.listarArticulosEspeciales();
-            for (String articulo : articulos) {
-                // Formato: "ID | Descripción | Peso | Dimensiones"
-                String[] partes = articulo.split(" \\| ", 4);
-                if (partes.length >= 4) {
-                    String descripcionArticulo = partes[1];
-                    String peso = partes[2];
-                    String descripcionCompleta = descripcionArticulo + " | " + peso + "kg";
-                    if (descripcionCompleta.equals(descripcion)) {
-                        return partes[0]; // Retornar el ID
-                    }
-                }
-            }
-        }
-        
-        throw new IllegalArgumentException("No se encontró el ID para el material: " + seleccion);
+    private void habilitarSeleccion(boolean habilitar) {
+        comboPrestamos.setEnabled(habilitar);
+        btnCargar.setEnabled(habilitar);
+        btnGuardar.setEnabled(habilitar);
+        btnLimpiar.setEnabled(habilitar);
     }
 
     private void limpiarFormulario() {
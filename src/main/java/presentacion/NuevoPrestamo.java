@@ -1,6 +1,10 @@
 package presentacion;
 
 import interfaces.IControlador;
+import datatypes.DtArticuloEspecial;
+import datatypes.DtBibliotecario;
+import datatypes.DtLector;
+import datatypes.DtLibro;
 import logica.EstadoPrestamo;
 
 import javax.swing.*;
@@ -8,7 +12,9 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 public class NuevoPrestamo extends JInternalFrame {
 
@@ -21,10 +27,13 @@ public class NuevoPrestamo extends JInternalFrame {
     private JButton btnRegistrar;
     private JButton btnLimpiar;
     private JLabel lblResultado;
+    private CargadorEnSegundoPlano cargador;
+    private DatosFormulario datos = new DatosFormulario();
 
     public NuevoPrestamo(IControlador controlador) {
         super("Nuevo Préstamo", true, true, true, true);
         this.controlador = controlador;
+        this.cargador = new CargadorEnSegundoPlano(this);
         inicializarComponentes();
         cargarDatos();
     }
@@ -155,105 +164,125 @@ public class NuevoPrestamo extends JInternalFrame {
     }
 
     private void cargarDatos() {
-        try {
-            // Cargar lectores
-            String[] lectores = controlador.listarLectores();
-            comboLectores.removeAllItems();
-            comboLectores.addItem("-- Seleccionar Lector --");
-            
-            for (String lector : lectores) {
-                // Formato: "ID - Nombre (Email) - Estado"
-                String[] partes = lector.split(" - ", 2);
-                if (partes.length >= 2) {
-                    String nombreEmail = partes[1]; // "Nombre (Email) - Estado"
-                    comboLectores.addItem(nombreEmail);
-                }
-            }
-            
-            // Cargar bibliotecarios
-            String[] bibliotecarios = controlador.listarBibliotecarios();
-            comboBibliotecarios.removeAllItems();
-            comboBibliotecarios.addItem("-- Seleccionar Bibliotecario --");
-            
-            for (String bibliotecario : bibliotecarios) {
-                // Formato: "ID - Nombre (Email)"
-                String[] partes = bibliotecario.split(" - ", 2);
-                if (partes.length >= 2) {
-                    String nombreEmail = partes[1]; // "Nombre (Email)"
-                    comboBibliotecarios.addItem(nombreEmail);
-                }
-            }
-            
-            // Cargar materiales (libros y artículos especiales)
-            comboMateriales.removeAllItems();
-            comboMateriales.addItem("-- Seleccionar Material --");
-            
-            // Cargar libros
-            String[] libros = controlador.listarLibros();
-            for (String libro : libros) {
-                // Formato: "ID | Título | Páginas | Fecha"
-                String[] partes = libro.split(" \\| ", 4);
-                if (partes.length >= 4) {
-                    String titulo = partes[1];
-                    String paginas = partes[2];
-                    comboMateriales.addItem("Libro: " + titulo + " | " + paginas + " páginas");
-                }
-            }
+        btnRegistrar.setEnabled(false);
+        cargador.cargar("Cargando datos...", avance -> {
+            DatosFormulario datos = new DatosFormulario();
+            CacheDatosReferencia.Datos referencia = CacheDatosReferencia.getInstancia().obtener(controlador, avance);
+            datos.lectores = referencia.getLectores();
+            datos.bibliotecarios = referencia.getBibliotecarios();
+            datos.libros = referencia.getLibros();
+            datos.articulos = referencia.getArticulos();
+            return datos;
+        }, datos -> {
+            mostrarDatos(datos);
+            btnRegistrar.setEnabled(true);
+        }, error -> JOptionPane.showMessageDialog(this, 
+                "Error al cargar datos: " + error.getMessage(), 
+                "Error", JOptionPane.ERROR_MESSAGE));
+    }
 
-            // Cargar artículos especiales
-            String[] articulos = controlador.listarArticulosEspeciales();
-            for (String articulo : articulos) {
-                // Formato: "ID | Descripción | Peso | Dimensiones"
-                String[] partes = articulo.split(" \\| ", 4);
-                if (partes.length >= 4) {
-                    String descripcion = partes[1];
-                    String peso = partes[2];
-                    comboMateriales.addItem("Artículo: " + descripcion + " | " + peso + "kg");
-                }
-            }
-            
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this, 
-                "Error al cargar datos: " + e.getMessage(), 
-                "Error", JOptionPane.ERROR_MESSAGE);
+    /**
+     * Listas obtenidas al abrir la pantalla (de CacheDatosReferencia); cada combo se llena en el mismo orden,
+     * así el ID de la selección sale de la posición sin volver a consultar
+     */
+    private static final class DatosFormulario {
+        private DtLector[] lectores = new DtLector[0];
+        private DtBibliotecario[] bibliotecarios = new DtBibliotecario[0];
+        private DtLibro[] libros = new DtLibro[0];
+        private DtArticuloEspecial[] articulos = new DtArticuloEspecial[0];
+        // IDs de comboMateriales (libros y después artículos), sin la opción inicial
+        private List<String> materiales = new ArrayList<>();
+    }
+
+    private void mostrarDatos(DatosFormulario datos) {
+        this.datos = datos;
+
+        // Cargar lectores
+        comboLectores.removeAllItems();
+        comboLectores.addItem("-- Seleccionar Lector --");
+        
+        for (DtLector lector : datos.lectores) {
+            // Formato: "Nombre (Email) - Estado - Zona"
+            comboLectores.addItem(lector.getNombre() + " (" + lector.getEmail() + ") - "
+                + lector.getEstado().getDescripcion() + " - " + lector.getZona().getDescripcion());
+        }
+        
+        // Cargar bibliotecarios
+        comboBibliotecarios.removeAllItems();
+        comboBibliotecarios.addItem("-- Seleccionar Bibliotecario --");
+        
+        for (DtBibliotecario bibliotecario : datos.bibliotecarios) {
+            // Formato: "Nombre (Email)"
+            comboBibliotecarios.addItem(bibliotecario.getNombre() + " (" + bibliotecario.getEmail() + ")");
+        }
+        
+        // Cargar materiales (libros y artículos especiales)
+        comboMateriales.removeAllItems();
+        comboMateriales.addItem("-- Seleccionar Material --");
+        datos.materiales.clear();
+        
+        // Cargar libros
+        for (DtLibro libro : datos.libros) {
+            comboMateriales.addItem("Libro: " + libro.getTitulo() + " | " + libro.getCantidadPaginas() + " páginas");
+            datos.materiales.add(libro.getId());
+        }
+
+        // Cargar artículos especiales
+        for (DtArticuloEspecial articulo : datos.articulos) {
+            comboMateriales.addItem("Artículo: " + articulo.getDescripcion() + " | " + articulo.getPesoKg() + "kg");
+            datos.materiales.add(articulo.getId());
         }
     }
 
     private void registrarPrestamo() {
+        final String lectorId;
+        final String bibliotecarioId;
+        final String materialId;
+        final String fechaSolicitud;
+        final EstadoPrestamo estado;
         try {
             // Validar selecciones
-            if (comboLectores.getSelectedIndex() == 0) {
+            if (comboLectores.getSelectedIndex() <= 0) {
                 mostrarError("⚠️ Debe seleccionar un lector del combo desplegable");
                 return;
             }
             
-            if (comboBibliotecarios.getSelectedIndex() == 0) {
+            if (comboBibliotecarios.getSelectedIndex() <= 0) {
                 mostrarError("⚠️ Debe seleccionar un bibliotecario del combo desplegable");
                 return;
             }
             
-            if (comboMateriales.getSelectedIndex() == 0) {
+            if (comboMateriales.getSelectedIndex() <= 0) {
                 mostrarError("⚠️ Debe seleccionar un material (libro o artículo) del combo desplegable");
                 return;
             }
             
-            // Obtener IDs de las selecciones
-            String lectorId = obtenerIdDeSeleccion(comboLectores.getSelectedItem().toString(), controlador.listarLectores());
-            String bibliotecarioId = obtenerIdDeSeleccion(comboBibliotecarios.getSelectedItem().toString(), controlador.listarBibliotecarios());
-            String materialId = obtenerIdDeMaterial(comboMateriales.getSelectedItem().toString());
+            // Obtener IDs de las selecciones: la posición 0 es la opción "-- Seleccionar --"
+            lectorId = datos.lectores[comboLectores.getSelectedIndex() - 1].getId();
+            bibliotecarioId = datos.bibliotecarios[comboBibliotecarios.getSelectedIndex() - 1].getNumeroEmpleado();
+            materialId = datos.materiales.get(comboMateriales.getSelectedIndex() - 1);
             
             // Validar fecha
-            String fechaSolicitud = txtFechaSolicitud.getText().trim();
+            fechaSolicitud = txtFechaSolicitud.getText().trim();
             if (fechaSolicitud.isEmpty()) {
                 mostrarError("⚠️ La fecha de solicitud es obligatoria. Use el formato dd/MM/yyyy");
                 return;
             }
             
             // Obtener estado
-            EstadoPrestamo estado = (EstadoPrestamo) comboEstados.getSelectedItem();
-            
-            // Registrar préstamo
+            estado = (EstadoPrestamo) comboEstados.getSelectedItem();
+        } catch (Exception e) {
+            mostrarError("Error al registrar préstamo: " + e.getMessage());
+            return;
+        }
+        
+        // Registrar préstamo
+        btnRegistrar.setEnabled(false);
+        cargador.escribir("Registrando préstamo...", avance -> {
             controlador.registrarPrestamo(lectorId, bibliotecarioId, materialId, fechaSolicitud, estado.name());
+            return Boolean.TRUE;
+        }, registrado -> {
+            btnRegistrar.setEnabled(true);
             
             // Mostrar éxito
             mostrarExito("Préstamo agregado exitosamente");
@@ -262,58 +291,10 @@ public class NuevoPrestamo extends JInternalFrame {
             Timer timer = new Timer(3000, e -> limpiarFormulario());
             timer.setRepeats(false);
             timer.start();
-            
-        } catch (Exception e) {
-            mostrarError("Error al registrar préstamo: " + e.getMessage());
-        }
-    }
-    
-    private String obtenerIdDeSeleccion(String seleccion, String[] lista) {
-        for (String item : lista) {
-            String[] partes = item.split(" - ", 2);
-            if (partes.length >= 2 && partes[1].equals(seleccion)) {
-                return partes[0]; // Retornar el ID
-            }
-        }
-        throw new IllegalArgumentException("No se encontró el ID para: " + seleccion);
-    }
-    
-    private String obtenerIdDeMaterial(String seleccion) {
-        // Formato: "Libro: Título | Páginas páginas" o "Artículo: Descripción | Peso kg"
-        String tipo = seleccion.startsWith("Libro:") ? "Libro" : "Artículo";
-        String descripcion = seleccion.substring(seleccion.indexOf(":") + 1).trim();
-        
-        if (tipo.equals("Libro")) {
-            String[] libros = controlador.listarLibros();
-            for (String libro : libros) {
-                // Formato: "ID | Título | Páginas | Fecha"
-                String[] partes = libro.split(" \\| ", 4);
-                if (partes.length >= 4) {
-                    String titulo = partes[1];
-                    String paginas = partes[2];
-                    String tituloConPaginas = titulo + " | " + paginas + " páginas";
-                    if (tituloConPaginas.equals(descripcion)) {
-                        return partes[0]; // Retornar el ID
-                    }
-                }
-            }
-        } else {
-            String[] articulos = controlador.listarArticulosEspeciales();
-            for (String articulo : articulos) {
-                // Formato: "ID | Descripción | Peso | Dimensiones"
-                String[] partes = articulo.split(" \\| ", 4);
-                if (partes.length >= 4) {
-                    String descripcionArticulo = partes[1];
-                    String peso = partes[2];
-                    String descripcionCompleta = descripcionArticulo + " | " + peso + "kg";
-                    if (descripcionCompleta.equals(descripcion)) {
-                        return partes[0]; // Retornar el ID
-                    }
-                }
-            }
-        }
-        
-        throw new IllegalArgumentException("No se encontró el ID para el material: " + seleccion);
+        }, error -> {
+            btnRegistrar.setEnabled(true);
+            mostrarError("Error al registrar préstamo: " + error.getMessage());
+        });
     }
     
     private void limpiarFormulario() {
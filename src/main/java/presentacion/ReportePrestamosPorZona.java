@@ -2,15 +2,22 @@ package presentacion;
 
 import interfaces.IPrestamoReporte;
 import logica.PrestamoReporte;
+import datatypes.DtFiltroPrestamos;
 import datatypes.DtPrestamo;
 import excepciones.DatosInvalidosException;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import java.text.SimpleDateFormat;
 import javax.swing.text.AbstractDocument;
@@ -20,24 +27,33 @@ import javax.swing.text.DocumentFilter;
 
 public class ReportePrestamosPorZona extends JInternalFrame {
 
+    // Columna del reporte por la que ordena cada columna de la tabla
+    private static final String[] ORDEN_COLUMNAS = {
+        IPrestamoReporte.ORDEN_LECTOR, IPrestamoReporte.ORDEN_BIBLIOTECARIO, IPrestamoReporte.ORDEN_MATERIAL,
+        IPrestamoReporte.ORDEN_FECHA_SOLICITUD, IPrestamoReporte.ORDEN_FECHA_DEVOLUCION, IPrestamoReporte.ORDEN_ESTADO
+    };
+
     private IPrestamoReporte prestamoReporte;
     private JTable tablaPrestamos;
-    private DefaultTableModel modeloTabla;
+    private ModeloTablaPaginada modeloTabla;
     private JComboBox<String> comboZona;
     private JComboBox<String> comboEstado;
     private JTextField txtFechaDesde;
     private JTextField txtFechaHasta;
     private JButton btnFiltrar;
     private JButton btnLimpiar;
+    private JButton btnExportar;
     private JButton btnEstadisticas;
     private JTextArea areaEstadisticas;
     private JComboBox<String> comboZonaEstadisticas;
-    private SimpleDateFormat dateFormat;
+    private CargadorEnSegundoPlano cargador;
+    private CargadorEnSegundoPlano cargadorEstadisticas;
 
     public ReportePrestamosPorZona() {
         super("Reporte de Préstamos por Zona", true, true, true, true);
         this.prestamoReporte = new PrestamoReporte();
-        this.dateFormat = new SimpleDateFormat("dd/MM/yyyy");
+        this.cargador = new CargadorEnSegundoPlano(this);
+        this.cargadorEstadisticas = new CargadorEnSegundoPlano(this);
         inicializarComponentes();
         cargarDatos();
     }
@@ -136,6 +152,17 @@ public class ReportePrestamosPorZona extends JInternalFrame {
         });
         panelFiltros.add(btnLimpiar, gbc);
 
+        gbc.gridx = 5; gbc.gridy = 0;
+        btnExportar = new JButton("Exportar CSV");
+        btnExportar.setToolTipText("Exporta los préstamos filtrados; use extensión .gz para comprimir");
+        btnExportar.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                exportarCsv();
+            }
+        });
+        panelFiltros.add(btnExportar, gbc);
+
         panel.add(panelFiltros, BorderLayout.CENTER);
         return panel;
     }
@@ -144,15 +171,12 @@ public class ReportePrestamosPorZona extends JInternalFrame {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBorder(BorderFactory.createTitledBorder("Préstamos"));
 
-        // Crear modelo de tabla
+        // Crear modelo de tabla: las filas se piden por páginas a medida que se muestran
         String[] columnas = {"Lector", "Bibliotecario", "Material", 
                            "Fecha Solicitud", "Fecha Devolución", "Estado"};
-        modeloTabla = new DefaultTableModel(columnas, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Tabla de solo lectura
-            }
-        };
+        boolean[] ordenables = new boolean[columnas.length];
+        Arrays.fill(ordenables, true);
+        modeloTabla = new ModeloTablaPaginada(columnas, ordenables);
 
         // Crear tabla
         tablaPrestamos = new JTable(modeloTabla);
@@ -167,9 +191,8 @@ public class ReportePrestamosPorZona extends JInternalFrame {
         tablaPrestamos.getColumnModel().getColumn(4).setPreferredWidth(100); // Fecha Dev
         tablaPrestamos.getColumnModel().getColumn(5).setPreferredWidth(80);  // Estado
 
-        // Agregar capacidad de ordenamiento
-        TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(modeloTabla);
-        tablaPrestamos.setRowSorter(sorter);
+        // Ordenamiento en la base de datos con un clic en el encabezado
+        modeloTabla.instalarOrdenEnEncabezado(tablaPrestamos);
 
         JScrollPane scrollPane = new JScrollPane(tablaPrestamos);
         panel.add(scrollPane, BorderLayout.CENTER);
@@ -227,42 +250,152 @@ public class ReportePrestamosPorZona extends JInternalFrame {
     }
 
     private void aplicarFiltros() {
+        String[] filtros;
         try {
-            String zona = null;
-            String estado = null;
-            String fechaDesde = null;
-            String fechaHasta = null;
-
-            // Obtener valores de filtros
-            if (comboZona.getSelectedIndex() > 0) {
-                zona = (String) comboZona.getSelectedItem();
-                // Convertir descripción a nombre de enum
-                zona = zona.toUpperCase().replace(" ", "_");
-            }
+            filtros = leerFiltros();
+        } catch (DatosInvalidosException e) {
+            mostrarError("Error en filtros: " + e.getMessage());
+            return;
+        }
 
-            if (comboEstado.getSelectedIndex() > 0) {
-                estado = (String) comboEstado.getSelectedItem();
-            }
+        // Solo se cuenta en segundo plano; las filas las pide la tabla por páginas
+        DtFiltroPrestamos filtro = crearFiltro(filtros);
+        btnFiltrar.setEnabled(false);
+        cargador.cargar("Consultando préstamos...",
+            avance -> contarPrestamos(filtro),
+            total -> {
+                btnFiltrar.setEnabled(true);
+                modeloTabla.mostrar((primera, cantidad, columna, ascendente) ->
+                    obtenerFilas(filtro, primera, cantidad, columna, ascendente), total);
+            },
+            error -> {
+                btnFiltrar.setEnabled(true);
+                if (error instanceof DatosInvalidosException) {
+                    mostrarError("Error en filtros: " + error.getMessage());
+                } else {
+                    mostrarError("Error al aplicar filtros: " + error.getMessage());
+                }
+            });
+    }
 
-            if (!txtFechaDesde.getText().trim().isEmpty()) {
-                fechaDesde = convertirFechaAFormatoISO(txtFechaDesde.getText().trim());
-            }
+    /**
+     * Lee los filtros de pantalla en el formato que espera el reporte
+     * @return [zona, estado, fechaDesde, fechaHasta], con null en los filtros vacíos
+     */
+    private String[] leerFiltros() throws DatosInvalidosException {
+        String zona = null;
+        String estado = null;
+        String fechaDesde = null;
+        String fechaHasta = null;
+
+        // Obtener valores de filtros
+        if (comboZona.getSelectedIndex() > 0) {
+            zona = (String) comboZona.getSelectedItem();
+            // Convertir descripción a nombre de enum
+            zona = zona.toUpperCase().replace(" ", "_");
+        }
 
-            if (!txtFechaHasta.getText().trim().isEmpty()) {
-                fechaHasta = convertirFechaAFormatoISO(txtFechaHasta.getText().trim());
-            }
+        if (comboEstado.getSelectedIndex() > 0) {
+            estado = (String) comboEstado.getSelectedItem();
+        }
 
-            // Aplicar filtros
-            DtPrestamo[] prestamos = prestamoReporte.obtenerPrestamosFiltrados(
-                zona, estado, fechaDesde, fechaHasta);
-            
-            actualizarTabla(prestamos);
+        if (!txtFechaDesde.getText().trim().isEmpty()) {
+            fechaDesde = convertirFechaAFormatoISO(txtFechaDesde.getText().trim());
+        }
 
+        if (!txtFechaHasta.getText().trim().isEmpty()) {
+            fechaHasta = convertirFechaAFormatoISO(txtFechaHasta.getText().trim());
+        }
+
+        return new String[]{zona, estado, fechaDesde, fechaHasta};
+    }
+
+    private DtFiltroPrestamos crearFiltro(String[] filtros) {
+        DtFiltroPrestamos filtro = new DtFiltroPrestamos();
+        filtro.setZona(filtros[0]);
+        if (filtros[1] != null) {
+            filtro.setEstados(filtros[1]);
+        }
+        filtro.setFechaDesde(filtros[2]);
+        filtro.setFechaHasta(filtros[3]);
+        return filtro;
+    }
+
+    private int contarPrestamos(DtFiltroPrestamos filtro) throws DatosInvalidosException {
+        long total = 0;
+        for (long cantidad : prestamoReporte.contarPrestamosPorEstado(filtro).values()) {
+            total += cantidad;
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Pide al reporte una página de préstamos ya ordenada; se ejecuta fuera del EDT
+     */
+    private List<Object[]> obtenerFilas(DtFiltroPrestamos filtro, int primera, int cantidad,
+                                        int columna, boolean ascendente) throws DatosInvalidosException {
+        DtPrestamo[] prestamos = prestamoReporte.obtenerRangoPrestamos(
+            filtro, columna >= 0 ? ORDEN_COLUMNAS[columna] : null, ascendente, primera, cantidad);
+        List<Object[]> filas = new ArrayList<>(prestamos.length);
+        for (DtPrestamo prestamo : prestamos) {
+            filas.add(crearFila(prestamo));
+        }
+        return filas;
+    }
+
+    /**
+     * Exporta a CSV los préstamos que cumplen los filtros actuales
+     * Las filas se escriben directo al archivo, sin cargarlas en la tabla;
+     * si el archivo termina en .gz se escribe comprimido
+     */
+    private void exportarCsv() {
+        final String[] filtros;
+        try {
+            filtros = leerFiltros();
         } catch (DatosInvalidosException e) {
             mostrarError("Error en filtros: " + e.getMessage());
-        } catch (Exception e) {
-            mostrarError("Error al aplicar filtros: " + e.getMessage());
+            return;
+        }
+
+        JFileChooser selector = new JFileChooser();
+        selector.setDialogTitle("Exportar préstamos a CSV");
+        selector.setSelectedFile(new File("prestamos.csv"));
+        if (selector.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
         }
+
+        final File archivo = selector.getSelectedFile();
+        final boolean comprimir = archivo.getName().toLowerCase().endsWith(".gz");
+        btnExportar.setEnabled(false);
+
+        SwingWorker<Long, Void> worker = new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws Exception {
+                try (OutputStream salida = new BufferedOutputStream(new FileOutputStream(archivo))) {
+                    return prestamoReporte.exportarPrestamosCsv(
+                        filtros[0], filtros[1], filtros[2], filtros[3], comprimir, salida);
+                }
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    long cantidad = get();
+                    JOptionPane.showMessageDialog(ReportePrestamosPorZona.this,
+                        "Se exportaron " + cantidad + " préstamos a " + archivo.getAbsolutePath(),
+                        "Exportación completada", JOptionPane.INFORMATION_MESSAGE);
+                } catch (ExecutionException e) {
+                    Throwable causa = e.getCause() != null ? e.getCause() : e;
+                    mostrarError("Error al exportar préstamos: " + causa.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    btnExportar.setEnabled(true);
+                }
+            }
+        };
+
+        worker.execute();
     }
 
     private void limpiarFiltros() {
@@ -279,8 +412,11 @@ public class ReportePrestamosPorZona extends JInternalFrame {
             // Limpiar salidas (outputs) - Dejar pantalla vacía
             System.out.println("DEBUG: Limpiando tabla y estadísticas...");
             
-            // Limpiar tabla completamente
-            modeloTabla.setRowCount(0);
+            // Cancelar consultas en curso y limpiar tabla completamente
+            cargador.cancelar();
+            cargadorEstadisticas.cancelar();
+            btnFiltrar.setEnabled(true);
+            modeloTabla.limpiar();
             
             // Limpiar estadísticas
             areaEstadisticas.setText("Seleccione una zona específica para ver las estadísticas.");
@@ -294,33 +430,32 @@ public class ReportePrestamosPorZona extends JInternalFrame {
         }
     }
 
-    private void actualizarTabla(DtPrestamo[] prestamos) {
-        // Limpiar tabla
-        modeloTabla.setRowCount(0);
-
-        // Agregar filas
-        for (DtPrestamo prestamo : prestamos) {
-            Object[] fila = new Object[6];
-            
-            // Extraer solo el nombre del lector (sin la zona)
-            String nombreLector = prestamo.getLectorNombre();
-            if (nombreLector != null && nombreLector.contains(" [")) {
-                nombreLector = nombreLector.substring(0, nombreLector.indexOf(" ["));
-            }
-            
-            fila[0] = nombreLector;
-            fila[1] = prestamo.getBibliotecarioNombre();
-            // Unificar Material y Tipo
-            String materialInfo = prestamo.getMaterialDescripcion() + " (" + prestamo.getMaterialTipo() + ")";
-            fila[2] = materialInfo;
-            fila[3] = prestamo.getFechaSolicitud() != null ? 
-                     dateFormat.format(prestamo.getFechaSolicitud()) : "";
-            fila[4] = prestamo.getFechaDevolucion() != null ? 
-                     dateFormat.format(prestamo.getFechaDevolucion()) : "";
-            fila[5] = prestamo.getEstado();
-            
-            modeloTabla.addRow(fila);
+    /**
+     * Arma la fila de la tabla; se ejecuta en los hilos que cargan las páginas,
+     * por eso usa su propio SimpleDateFormat (no es seguro compartirlo entre hilos)
+     */
+    private Object[] crearFila(DtPrestamo prestamo) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy");
+        Object[] fila = new Object[6];
+        
+        // Extraer solo el nombre del lector (sin la zona)
+        String nombreLector = prestamo.getLectorNombre();
+        if (nombreLector != null && nombreLector.contains(" [")) {
+            nombreLector = nombreLector.substring(0, nombreLector.indexOf(" ["));
         }
+        
+        fila[0] = nombreLector;
+        fila[1] = prestamo.getBibliotecarioNombre();
+        // Unificar Material y Tipo
+        String materialInfo = prestamo.getMaterialDescripcion() + " (" + prestamo.getMaterialTipo() + ")";
+        fila[2] = materialInfo;
+        fila[3] = prestamo.getFechaSolicitud() != null ? 
+                 dateFormat.format(prestamo.getFechaSolicitud()) : "";
+        fila[4] = prestamo.getFechaDevolucion() != null ? 
+                 dateFormat.format(prestamo.getFechaDevolucion()) : "";
+        fila[5] = prestamo.getEstado();
+        
+        return fila;
     }
 
     private void actualizarEstadisticas() {
@@ -329,26 +464,31 @@ public class ReportePrestamosPorZona extends JInternalFrame {
     }
     
     private void actualizarEstadisticasFiltradas() {
-        try {
-            String zonaSeleccionada = null;
-            if (comboZonaEstadisticas.getSelectedIndex() > 0) {
-                zonaSeleccionada = (String) comboZonaEstadisticas.getSelectedItem();
-            }
-            
-            StringBuilder texto = new StringBuilder();
-            
-            if (zonaSeleccionada == null) {
-                // No mostrar nada si no hay zona seleccionada
-                texto.append("Seleccione una zona específica para ver las estadísticas.");
-            } else {
-                // Mostrar solo la zona seleccionada
-                String[] todasEstadisticas = prestamoReporte.obtenerEstadisticasPorZona();
-                texto.append("ESTADÍSTICAS DE: ").append(zonaSeleccionada.toUpperCase()).append("\n");
+        String zonaSeleccionada = null;
+        if (comboZonaEstadisticas.getSelectedIndex() > 0) {
+            zonaSeleccionada = (String) comboZonaEstadisticas.getSelectedItem();
+        }
+        
+        if (zonaSeleccionada == null) {
+            // No mostrar nada si no hay zona seleccionada
+            cargadorEstadisticas.cancelar();
+            areaEstadisticas.setText("Seleccione una zona específica para ver las estadísticas.");
+            return;
+        }
+        
+        // Mostrar solo la zona seleccionada
+        String zona = zonaSeleccionada;
+        areaEstadisticas.setText("Cargando estadísticas...");
+        cargadorEstadisticas.cargar("Cargando estadísticas...",
+            avance -> prestamoReporte.obtenerEstadisticasPorZona(),
+            todasEstadisticas -> {
+                StringBuilder texto = new StringBuilder();
+                texto.append("ESTADÍSTICAS DE: ").append(zona.toUpperCase()).append("\n");
                 texto.append("=" .repeat(50)).append("\n\n");
                 
                 boolean encontrada = false;
                 for (String estadistica : todasEstadisticas) {
-                    if (estadistica.startsWith(zonaSeleccionada + ":")) {
+                    if (estadistica.startsWith(zona + ":")) {
                         texto.append(estadistica).append("\n");
                         encontrada = true;
                         break;
@@ -358,13 +498,10 @@ public class ReportePrestamosPorZona extends JInternalFrame {
                 if (!encontrada) {
                     texto.append("No se encontraron datos para la zona seleccionada.\n");
                 }
-            }
-            
-            areaEstadisticas.setText(texto.toString());
-            
-        } catch (Exception e) {
-            areaEstadisticas.setText("Error al cargar estadísticas: " + e.getMessage());
-        }
+                
+                areaEstadisticas.setText(texto.toString());
+            },
+            error -> areaEstadisticas.setText("Error al cargar estadísticas: " + error.getMessage()));
     }
 
     private void mostrarError(String mensaje) {
@@ -9,6 +9,7 @@ import jakarta.xml.ws.Endpoint;
 
 import configuraciones.WebServiceConfiguracion;
 import datatypes.DtArticuloEspecial;
+import datatypes.DtCambiosArticulosEspeciales;
 import excepciones.ArticuloEspecialRepetidoException;
 import excepciones.ArticuloEspecialNoExisteException;
 import excepciones.DatosInvalidosException;
@@ -40,7 +41,8 @@ public class ArticuloEspecialPublicador {
     @WebMethod(exclude = true)
     public void publicar() {
         String url = configuracion.getBaseUrl() + "/articuloEspecial";
-        endpoint = Endpoint.publish(url, this);
+        endpoint = Endpoint.create(this);
+        ServidorServicios.getInstancia().publicar(endpoint, "/articuloEspecial");
         System.out.println("Servicio ArticuloEspecial publicado en: " + url);
         System.out.println("WSDL disponible en: " + url + "?wsdl");
     }
@@ -78,6 +80,11 @@ public class ArticuloEspecialPublicador {
         return controlador.listarArticulosEspeciales();
     }
     
+    @WebMethod
+    public DtArticuloEspecial[] listarArticulosEspecialesDto() {
+        return controlador.listarArticulosEspecialesDto();
+    }
+    
     @WebMethod
     public String[] listarArticulosEspecialesPorPeso(float pesoMin, float pesoMax) {
         return controlador.listarArticulosEspecialesPorPeso(pesoMin, pesoMax);
@@ -93,4 +100,9 @@ public class ArticuloEspecialPublicador {
         throws ArticuloEspecialNoExisteException, DatosInvalidosException {
         controlador.actualizarArticuloEspecial(id, descripcion, pesoKg, dimensiones);
     }
+    
+    @WebMethod
+    public DtCambiosArticulosEspeciales obtenerCambiosArticulosEspeciales(long desdeVersion) throws DatosInvalidosException {
+        return controlador.obtenerCambiosArticulosEspeciales(desdeVersion);
+    }
 }
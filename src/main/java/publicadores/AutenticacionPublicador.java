@@ -39,7 +39,8 @@ public class AutenticacionPublicador {
     @WebMethod(exclude = true)
     public void publicar() {
         String url = configuracion.getBaseUrl() + "/autenticacion";
-        endpoint = Endpoint.publish(url, this);
+        endpoint = Endpoint.create(this);
+        ServidorServicios.getInstancia().publicar(endpoint, "/autenticacion");
         System.out.println("Servicio Autenticacion publicado en: " + url);
         System.out.println("WSDL disponible en: " + url + "?wsdl");
     }
@@ -40,7 +40,8 @@ public class BibliotecarioPublicador {
     @WebMethod(exclude = true)
     public void publicar() {
         String url = configuracion.getBaseUrl() + "/bibliotecario";
-        endpoint = Endpoint.publish(url, this);
+        endpoint = Endpoint.create(this);
+        ServidorServicios.getInstancia().publicar(endpoint, "/bibliotecario");
         System.out.println("Servicio Bibliotecario publicado en: " + url);
         System.out.println("WSDL disponible en: " + url + "?wsdl");
     }
@@ -79,4 +80,9 @@ public class BibliotecarioPublicador {
     public String[] listarBibliotecarios() {
         return controlador.listarBibliotecarios();
     }
+    
+    @WebMethod
+    public DtBibliotecario[] listarBibliotecariosDto() {
+        return controlador.listarBibliotecariosDto();
+    }
 }
@@ -8,6 +8,7 @@ import jakarta.jws.soap.SOAPBinding.Style;
 import jakarta.xml.ws.Endpoint;
 
 import configuraciones.WebServiceConfiguracion;
+import datatypes.DtCambiosLectores;
 import datatypes.DtLector;
 import excepciones.LectorRepetidoException;
 import excepciones.LectorNoExisteException;
@@ -40,7 +41,8 @@ public class LectorPublicador {
     @WebMethod(exclude = true)
     public void publicar() {
         String url = configuracion.getBaseUrl() + "/lector";
-        endpoint = Endpoint.publish(url, this);
+        endpoint = Endpoint.create(this);
+        ServidorServicios.getInstancia().publicar(endpoint, "/lector");
         System.out.println("Servicio Lector publicado en: " + url);
         System.out.println("WSDL disponible en: " + url + "?wsdl");
     }
@@ -86,6 +88,11 @@ public class LectorPublicador {
         return controlador.listarLectores();
     }
     
+    @WebMethod
+    public DtLector[] listarLectoresDto() {
+        return controlador.listarLectoresDto();
+    }
+    
     @WebMethod
     public String[] listarLectoresPorEstado(String estado) {
         return controlador.listarLectoresPorEstado(estado);
@@ -112,4 +119,9 @@ public class LectorPublicador {
             throws LectorNoExisteException, DatosInvalidosException {
         controlador.cambiarZonaLector(idLector, nuevaZona);
     }
+    
+    @WebMethod
+    public DtCambiosLectores obtenerCambiosLectores(long desdeVersion) throws DatosInvalidosException {
+        return controlador.obtenerCambiosLectores(desdeVersion);
+    }
 }
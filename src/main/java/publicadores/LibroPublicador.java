@@ -8,6 +8,7 @@ import jakarta.jws.soap.SOAPBinding.Style;
 import jakarta.xml.ws.Endpoint;
 
 import configuraciones.WebServiceConfiguracion;
+import datatypes.DtCambiosLibros;
 import datatypes.DtLibro;
 import excepciones.LibroRepetidoException;
 import excepciones.LibroNoExisteException;
@@ -40,7 +41,8 @@ public class LibroPublicador {
     @WebMethod(exclude = true)
     public void publicar() {
         String url = configuracion.getBaseUrl() + "/libro";
-        endpoint = Endpoint.publish(url, this);
+        endpoint = Endpoint.create(this);
+        ServidorServicios.getInstancia().publicar(endpoint, "/libro");
         System.out.println("Servicio Libro publicado en: " + url);
         System.out.println("WSDL disponible en: " + url + "?wsdl");
     }
@@ -78,6 +80,11 @@ public class LibroPublicador {
         return controlador.listarLibros();
     }
     
+    @WebMethod
+    public DtLibro[] listarLibrosDto() {
+        return controlador.listarLibrosDto();
+    }
+    
     @WebMethod
     public String[] listarLibrosPorPaginas(int paginasMin, int paginasMax) {
         return controlador.listarLibrosPorPaginas(paginasMin, paginasMax);
@@ -93,4 +100,9 @@ public class LibroPublicador {
             throws LibroNoExisteException, DatosInvalidosException {
         controlador.actualizarLibro(id, titulo, cantidadPaginas);
     }
+    
+    @WebMethod
+    public DtCambiosLibros obtenerCambiosLibros(long desdeVersion) throws DatosInvalidosException {
+        return controlador.obtenerCambiosLibros(desdeVersion);
+    }
 }
@@ -8,7 +8,11 @@ import jakarta.jws.soap.SOAPBinding.Style;
 import jakarta.xml.ws.Endpoint;
 
 import configuraciones.WebServiceConfiguracion;
+import datatypes.DtCambiosPrestamos;
+import datatypes.DtPaginaPrestamos;
 import datatypes.DtPrestamo;
+import datatypes.DtResultadoLote;
+import datatypes.DtSolicitudPrestamo;
 import excepciones.PrestamoNoExisteException;
 import excepciones.DatosInvalidosException;
 import interfaces.Fabrica;
@@ -39,7 +43,8 @@ public class PrestamoPublicador {
     @WebMethod(exclude = true)
     public void publicar() {
         String url = configuracion.getBaseUrl() + "/prestamo";
-        endpoint = Endpoint.publish(url, this);
+        endpoint = Endpoint.create(this);
+        ServidorServicios.getInstancia().publicar(endpoint, "/prestamo");
         System.out.println("Servicio Prestamo publicado en: " + url);
         System.out.println("WSDL disponible en: " + url + "?wsdl");
     }
@@ -87,18 +92,80 @@ public class PrestamoPublicador {
         return controlador.listarPrestamosPorMaterial(materialId);
     }
     
+    @WebMethod
+    public DtPrestamo[] listarPrestamosDto() {
+        return controlador.listarPrestamosDto();
+    }
+    
+    @WebMethod
+    public DtPrestamo[] listarPrestamosDtoPorEstado(String estado) throws DatosInvalidosException {
+        return controlador.listarPrestamosDtoPorEstado(estado);
+    }
+    
+    @WebMethod
+    public DtPrestamo[] listarPrestamosDtoPorLector(String lectorId) throws DatosInvalidosException {
+        return controlador.listarPrestamosDtoPorLector(lectorId);
+    }
+    
+    @WebMethod
+    public DtPrestamo[] listarPrestamosDtoPorMaterial(String materialId) throws DatosInvalidosException {
+        return controlador.listarPrestamosDtoPorMaterial(materialId);
+    }
+    
+    @WebMethod
+    public DtPrestamo[] listarPrestamosPorBibliotecario(String bibliotecarioId, String estado, 
+                                                        String fechaDesde, String fechaHasta) 
+            throws DatosInvalidosException {
+        return controlador.listarPrestamosPorBibliotecario(bibliotecarioId, estado, fechaDesde, fechaHasta);
+    }
+    
+    @WebMethod
+    public DtPaginaPrestamos listarPrestamosPaginado(String token, int tamano) throws DatosInvalidosException {
+        return controlador.listarPrestamosPaginado(token, tamano);
+    }
+    
+    @WebMethod
+    public DtPaginaPrestamos listarPrestamosPorEstadoPaginado(String estado, String token, int tamano) 
+            throws DatosInvalidosException {
+        return controlador.listarPrestamosPorEstadoPaginado(estado, token, tamano);
+    }
+    
+    @WebMethod
+    public DtPaginaPrestamos listarPrestamosPorLectorPaginado(String lectorId, String token, int tamano) 
+            throws DatosInvalidosException {
+        return controlador.listarPrestamosPorLectorPaginado(lectorId, token, tamano);
+    }
+    
+    @WebMethod
+    public DtPaginaPrestamos listarPrestamosPorMaterialPaginado(String materialId, String token, int tamano) 
+            throws DatosInvalidosException {
+        return controlador.listarPrestamosPorMaterialPaginado(materialId, token, tamano);
+    }
+    
     @WebMethod
     public void cambiarEstadoPrestamo(String idPrestamo, String nuevoEstado) 
             throws PrestamoNoExisteException, DatosInvalidosException {
         controlador.cambiarEstadoPrestamo(idPrestamo, nuevoEstado);
     }
     
+    @WebMethod
+    public void cambiarEstadoPrestamoConVersion(String idPrestamo, String nuevoEstado, long version) 
+            throws PrestamoNoExisteException, DatosInvalidosException {
+        controlador.cambiarEstadoPrestamoConVersion(idPrestamo, nuevoEstado, version);
+    }
+    
     @WebMethod
     public void devolverPrestamo(String idPrestamo, String fechaDevolucion) 
             throws PrestamoNoExisteException, DatosInvalidosException {
         controlador.devolverPrestamo(idPrestamo, fechaDevolucion);
     }
     
+    @WebMethod
+    public void devolverPrestamoConVersion(String idPrestamo, String fechaDevolucion, long version) 
+            throws PrestamoNoExisteException, DatosInvalidosException {
+        controlador.devolverPrestamoConVersion(idPrestamo, fechaDevolucion, version);
+    }
+    
     @WebMethod
     public void modificarPrestamo(String idPrestamo, String lectorId, String bibliotecarioId, 
                                  String materialId, String fechaSolicitud, String estado, 
@@ -107,4 +174,33 @@ public class PrestamoPublicador {
         controlador.modificarPrestamo(idPrestamo, lectorId, bibliotecarioId, 
                                      materialId, fechaSolicitud, estado, fechaDevolucion);
     }
+    
+    @WebMethod
+    public void modificarPrestamoConVersion(String idPrestamo, String lectorId, String bibliotecarioId, 
+                                           String materialId, String fechaSolicitud, String estado, 
+                                           String fechaDevolucion, long version) 
+            throws PrestamoNoExisteException, DatosInvalidosException {
+        controlador.modificarPrestamoConVersion(idPrestamo, lectorId, bibliotecarioId, 
+                                               materialId, fechaSolicitud, estado, fechaDevolucion, version);
+    }
+    
+    @WebMethod
+    public DtCambiosPrestamos obtenerCambiosPrestamos(long desdeVersion) throws DatosInvalidosException {
+        return controlador.obtenerCambiosPrestamos(desdeVersion);
+    }
+    
+    @WebMethod
+    public DtResultadoLote[] registrarPrestamosLote(DtSolicitudPrestamo[] solicitudes) throws DatosInvalidosException {
+        return controlador.registrarPrestamosLote(solicitudes);
+    }
+    
+    @WebMethod
+    public DtResultadoLote[] obtenerPrestamosLote(String[] ids) throws DatosInvalidosException {
+        return controlador.obtenerPrestamosLote(ids);
+    }
+    
+    @WebMethod
+    public DtResultadoLote[] devolverPrestamosLote(String[] ids, String fechaDevolucion) throws DatosInvalidosException {
+        return controlador.devolverPrestamosLote(ids, fechaDevolucion);
+    }
 }
@@ -0,0 +1,215 @@
+package publicadores;
+
+import jakarta.activation.DataHandler;
+import jakarta.activation.DataSource;
+import jakarta.jws.WebMethod;
+import jakarta.jws.WebService;
+import jakarta.jws.soap.SOAPBinding;
+import jakarta.jws.soap.SOAPBinding.ParameterStyle;
+import jakarta.jws.soap.SOAPBinding.Style;
+import jakarta.xml.ws.Endpoint;
+import jakarta.xml.ws.soap.MTOM;
+
+import configuraciones.WebServiceConfiguracion;
+import excepciones.DatosInvalidosException;
+import interfaces.Fabrica;
+import interfaces.IPrestamoReporte;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publicador de Web Service para los reportes de préstamos
+ * La exportación CSV viaja como adjunto MTOM, así que el archivo no se codifica en base64 dentro del XML
+ */
+@MTOM
+@WebService
+@SOAPBinding(style = Style.RPC, parameterStyle = ParameterStyle.WRAPPED)
+public class ReportePublicador {
+    
+    // Los CSV exportados se conservan hasta su vencimiento, lean o no la respuesta: el runtime
+    // puede abrir el adjunto más de una vez, o no abrirlo nunca si el cliente se desconecta
+    private static final long VIDA_ARCHIVO_MS = 10 * 60 * 1000L;
+    // Una vez leído completo, el archivo solo se conserva por si el runtime lo vuelve a leer
+    private static final long VIDA_ARCHIVO_ENVIADO_MS = 60 * 1000L;
+    private static final long INTERVALO_LIMPIEZA_SEGUNDOS = 30;
+    
+    // Archivo temporal -> momento (ms) a partir del cual se borra
+    private static final Map<File, Long> ARCHIVOS_TEMPORALES = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService LIMPIEZA = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread hilo = new Thread(r, "limpieza-exportaciones-csv");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+    static {
+        LIMPIEZA.scheduleWithFixedDelay(() -> borrarVencidos(System.currentTimeMillis()),
+            INTERVALO_LIMPIEZA_SEGUNDOS, INTERVALO_LIMPIEZA_SEGUNDOS, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> borrarVencidos(Long.MAX_VALUE),
+            "limpieza-exportaciones-csv-cierre"));
+    }
+    
+    private Fabrica fabrica;
+    private IPrestamoReporte reporte;
+    private WebServiceConfiguracion configuracion;
+    private Endpoint endpoint;
+    
+    public ReportePublicador() {
+        fabrica = Fabrica.getInstancia();
+        reporte = fabrica.getIPrestamoReporte();
+        try {
+            configuracion = new WebServiceConfiguracion();
+        } catch (Exception ex) {
+            System.err.println("Error al cargar configuración WS: " + ex.getMessage());
+        }
+    }
+    
+    @WebMethod(exclude = true)
+    public void publicar() {
+        String url = configuracion.getBaseUrl() + "/reporte";
+        endpoint = Endpoint.create(this);
+        ServidorServicios.getInstancia().publicar(endpoint, "/reporte");
+        System.out.println("Servicio Reporte publicado en: " + url);
+        System.out.println("WSDL disponible en: " + url + "?wsdl");
+    }
+    
+    @WebMethod(exclude = true)
+    public Endpoint getEndpoint() {
+        return endpoint;
+    }
+    
+    @WebMethod(exclude = true)
+    public String getServiceUrl() {
+        return configuracion.getBaseUrl() + "/reporte";
+    }
+    
+    // ============= MÉTODOS WEB SERVICE =============
+    
+    @WebMethod
+    public String[] obtenerEstadisticasPorZona() {
+        return reporte.obtenerEstadisticasPorZona();
+    }
+    
+    @WebMethod
+    public String[] obtenerZonasDisponibles() {
+        return reporte.obtenerZonasDisponibles();
+    }
+    
+    /**
+     * Exporta los préstamos filtrados en CSV (fechas en formato yyyy-MM-dd)
+     * El CSV se escribe primero en un archivo temporal; la limpieza periódica lo borra poco
+     * después de enviarse, o al vencer si la respuesta nunca llega a enviarse
+     */
+    @WebMethod
+    public DataHandler exportarPrestamosCsv(String zona, String estado, String fechaDesde,
+                                            String fechaHasta, boolean comprimir)
+            throws DatosInvalidosException {
+        File archivo = null;
+        try {
+            archivo = File.createTempFile("prestamos-", comprimir ? ".csv.gz" : ".csv");
+            ARCHIVOS_TEMPORALES.put(archivo, System.currentTimeMillis() + VIDA_ARCHIVO_MS);
+            try (OutputStream salida = new BufferedOutputStream(Files.newOutputStream(archivo.toPath()))) {
+                reporte.exportarPrestamosCsv(zona, estado, fechaDesde, fechaHasta, comprimir, salida);
+            }
+            return new DataHandler(new ArchivoTemporal(archivo, comprimir ? "application/gzip" : "text/csv"));
+        } catch (IOException e) {
+            borrar(archivo);
+            throw new RuntimeException("Error al exportar préstamos: " + e.getMessage(), e);
+        } catch (DatosInvalidosException | RuntimeException e) {
+            borrar(archivo);
+            throw e;
+        }
+    }
+    
+    private static void borrar(File archivo) {
+        if (archivo != null) {
+            ARCHIVOS_TEMPORALES.remove(archivo);
+            archivo.delete();
+        }
+    }
+    
+    /**
+     * Borra los archivos temporales vencidos en el momento dado
+     * Si uno no se puede borrar (por ejemplo, sigue abierto en Windows) se reintenta en la próxima pasada
+     */
+    private static void borrarVencidos(long ahora) {
+        for (Map.Entry<File, Long> entrada : ARCHIVOS_TEMPORALES.entrySet()) {
+            File archivo = entrada.getKey();
+            if (entrada.getValue() <= ahora && (archivo.delete() || !archivo.exists())) {
+                ARCHIVOS_TEMPORALES.remove(archivo, entrada.getValue());
+            }
+        }
+    }
+    
+    /**
+     * Origen de datos de un archivo temporal exportado
+     * Se puede leer varias veces mientras no venza; leerlo completo adelanta el vencimiento
+     */
+    private static final class ArchivoTemporal implements DataSource {
+        private final File archivo;
+        private final String tipoContenido;
+        
+        private ArchivoTemporal(File archivo, String tipoContenido) {
+            this.archivo = archivo;
+            this.tipoContenido = tipoContenido;
+        }
+        
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (!ARCHIVOS_TEMPORALES.containsKey(archivo)) {
+                throw new IOException("El archivo exportado ya venció: " + archivo.getName());
+            }
+            return new FilterInputStream(new FileInputStream(archivo)) {
+                private boolean completo;
+                
+                @Override
+                public int read() throws IOException {
+                    int leido = super.read();
+                    completo |= leido < 0;
+                    return leido;
+                }
+                
+                @Override
+                public int read(byte[] b, int desde, int cantidad) throws IOException {
+                    int leidos = super.read(b, desde, cantidad);
+                    completo |= leidos < 0;
+                    return leidos;
+                }
+                
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    if (completo) {
+                        long vence = System.currentTimeMillis() + VIDA_ARCHIVO_ENVIADO_MS;
+                        ARCHIVOS_TEMPORALES.computeIfPresent(archivo, (a, actual) -> Math.min(actual, vence));
+                    }
+                }
+            };
+        }
+        
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            throw new IOException("El archivo exportado es de solo lectura");
+        }
+        
+        @Override
+        public String getContentType() {
+            return tipoContenido;
+        }
+        
+        @Override
+        public String getName() {
+            return archivo.getName();
+        }
+    }
+}
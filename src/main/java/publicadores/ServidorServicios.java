@@ -0,0 +1,230 @@
+package publicadores;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.xml.ws.Endpoint;
+
+import configuraciones.WebServiceConfiguracion;
+import persistencia.HibernateUtil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servidor HTTP único donde se publican todos los servicios, con control de admisión
+ *
+ * Uso (en el publicar() de cada publicador):
+ *   endpoint = Endpoint.create(this);
+ *   ServidorServicios.getInstancia().publicar(endpoint, "/libro");
+ *
+ * Cada pedido SOAP debe obtener un lugar del límite global (WS_MAX_CONCURRENTES, por defecto
+ * una conexión menos que el pool de Hibernate) y otro del límite de su servicio
+ * (WS_MAX_POR_SERVICIO, o WS_MAX_POR_SERVICIO_<NOMBRE> para uno en particular). Si no hay lugar espera como máximo WS_ESPERA_MAXIMA_MS, y si ya esperan
+ * WS_MAX_EN_COLA pedidos se rechaza enseguida. El rechazo es un SOAP Fault, así la demora
+ * de los pedidos admitidos no crece sin límite cuando llegan más de los que el pool de
+ * conexiones de la base de datos puede atender
+ *
+ * Los GET (WSDL y esquemas) no consultan la base de datos y no pasan por los límites
+ */
+public class ServidorServicios {
+
+    // Si no se puede saber el tamaño del pool de conexiones (proveedor sin pool propio)
+    private static final int MAX_CONCURRENTES_SIN_POOL = 16;
+    // Conexiones del pool que no se reparten entre los pedidos admitidos: quedan para las
+    // tareas que toman una conexión propia (preparar secuencias, recargas en segundo plano)
+    private static final int CONEXIONES_RESERVADAS = 1;
+    private static final int MAX_POR_SERVICIO_POR_DEFECTO = 8;
+    private static final int MAX_EN_COLA_POR_DEFECTO = 64;
+    private static final int ESPERA_MAXIMA_MS_POR_DEFECTO = 2000;
+
+    // Cada cuántos rechazos se informa en la consola, para no llenarla durante una sobrecarga
+    private static final int INFORMAR_CADA_RECHAZOS = 100;
+
+    private static final String FALTA_SATURADO =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+        "<S:Envelope xmlns:S=\"http://schemas.xmlsoap.org/soap/envelope/\">" +
+        "<S:Body><S:Fault>" +
+        "<faultcode>S:Server</faultcode>" +
+        "<faultstring>Servicio saturado, intente nuevamente en unos segundos</faultstring>" +
+        "</S:Fault></S:Body></S:Envelope>";
+
+    private static ServidorServicios instancia;
+
+    private final WebServiceConfiguracion configuracion;
+    private final HttpServer servidor;
+    private final Semaphore global;
+    private final AtomicInteger enCola = new AtomicInteger();
+    private final AtomicLong rechazados = new AtomicLong();
+    private final int maximoEnCola;
+    private final long esperaMaximaMs;
+
+    private ServidorServicios() throws Exception {
+        configuracion = new WebServiceConfiguracion();
+        global = new Semaphore(limiteGlobal());
+        maximoEnCola = leerEntero("WS_MAX_EN_COLA", MAX_EN_COLA_POR_DEFECTO);
+        esperaMaximaMs = leerEntero("WS_ESPERA_MAXIMA_MS", ESPERA_MAXIMA_MS_POR_DEFECTO);
+
+        int puerto = Integer.parseInt(configuracion.getConfigOf("WS_PORT"));
+        servidor = HttpServer.create(new InetSocketAddress(configuracion.getConfigOf("WS_IP"), puerto), 0);
+        servidor.setExecutor(configuracion.crearEjecutor("http"));
+        servidor.start();
+        System.out.println("Servidor de servicios iniciado en: " + configuracion.getBaseUrl()
+            + " (concurrentes: " + global.availablePermits() + ", en cola: " + maximoEnCola + ")");
+    }
+
+    public static synchronized ServidorServicios getInstancia() {
+        if (instancia == null) {
+            try {
+                instancia = new ServidorServicios();
+            } catch (Exception e) {
+                throw new RuntimeException("Error al iniciar el servidor de servicios: " + e.getMessage(), e);
+            }
+        }
+        return instancia;
+    }
+
+    /**
+     * Publica el endpoint en la ruta dada del servidor compartido
+     * @param ruta ruta del servicio (ej: "/libro"); su nombre se usa para el límite propio
+     */
+    public synchronized void publicar(Endpoint endpoint, String ruta) {
+        String nombre = ruta.startsWith("/") ? ruta.substring(1) : ruta;
+        String clavePropia = "WS_MAX_POR_SERVICIO_" + nombre.toUpperCase();
+        int limite = leerEntero(configuracion.getConfigOf(clavePropia) != null ? clavePropia : "WS_MAX_POR_SERVICIO",
+            MAX_POR_SERVICIO_POR_DEFECTO);
+
+        HttpContext contexto = servidor.createContext(ruta);
+        contexto.getFilters().add(new ControlDeAdmision(nombre, new Semaphore(limite)));
+        endpoint.publish(contexto);
+    }
+
+    /**
+     * WS_MAX_CONCURRENTES o, si no está configurado, el tamaño del pool de conexiones menos
+     * CONEXIONES_RESERVADAS: admitir más pedidos que conexiones solo los haría esperar el
+     * timeout del pool todos juntos
+     */
+    private int limiteGlobal() {
+        int tamanoPool = HibernateUtil.getEstadisticasPool().getTamanoMaximo();
+        int porDefecto = tamanoPool > 0
+            ? Math.max(1, tamanoPool - CONEXIONES_RESERVADAS)
+            : MAX_CONCURRENTES_SIN_POOL;
+        int limite = leerEntero("WS_MAX_CONCURRENTES", porDefecto);
+        if (tamanoPool > 0 && limite >= tamanoPool) {
+            System.err.println("Aviso: WS_MAX_CONCURRENTES (" + limite + ") no es menor que el pool de conexiones ("
+                + tamanoPool + "); con carga alta los pedidos admitidos esperarán conexión y pueden fallar por timeout");
+        }
+        return limite;
+    }
+
+    private int leerEntero(String nombre, int porDefecto) {
+        String valor = configuracion.getConfigOf(nombre);
+        if (valor == null) {
+            return porDefecto;
+        }
+        try {
+            int numero = Integer.parseInt(valor);
+            if (numero > 0) {
+                return numero;
+            }
+        } catch (NumberFormatException e) {
+            // Se informa abajo y se usa el valor por defecto
+        }
+        System.err.println(nombre + " inválido: " + valor + ". Se usa " + porDefecto);
+        return porDefecto;
+    }
+
+    /**
+     * Filtro de un servicio: admite el pedido si consigue lugar en su servicio y en el global
+     */
+    private final class ControlDeAdmision extends Filter {
+        private final String servicio;
+        private final Semaphore propio;
+
+        private ControlDeAdmision(String servicio, Semaphore propio) {
+            this.servicio = servicio;
+            this.propio = propio;
+        }
+
+        @Override
+        public String description() {
+            return "Control de admisión del servicio " + servicio;
+        }
+
+        @Override
+        public void doFilter(HttpExchange intercambio, Chain cadena) throws IOException {
+            if (!"POST".equalsIgnoreCase(intercambio.getRequestMethod())) {
+                cadena.doFilter(intercambio);
+                return;
+            }
+
+            if (!admitir()) {
+                rechazar(intercambio);
+                return;
+            }
+            try {
+                cadena.doFilter(intercambio);
+            } finally {
+                global.release();
+                propio.release();
+            }
+        }
+
+        /**
+         * Toma un lugar del servicio y otro del global esperando entre ambos como máximo
+         * esperaMaximaMs; mientras espera el pedido ocupa un lugar de la cola
+         */
+        private boolean admitir() {
+            if (propio.tryAcquire()) {
+                if (global.tryAcquire()) {
+                    return true;
+                }
+                propio.release();
+            }
+
+            if (enCola.incrementAndGet() > maximoEnCola) {
+                enCola.decrementAndGet();
+                return false;
+            }
+            try {
+                long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(esperaMaximaMs);
+                if (!propio.tryAcquire(esperaMaximaMs, TimeUnit.MILLISECONDS)) {
+                    return false;
+                }
+                if (!global.tryAcquire(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    propio.release();
+                    return false;
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                enCola.decrementAndGet();
+            }
+        }
+
+        private void rechazar(HttpExchange intercambio) throws IOException {
+            long total = rechazados.incrementAndGet();
+            if (total % INFORMAR_CADA_RECHAZOS == 1) {
+                System.err.println("Servicio " + servicio + " saturado: " + total + " pedidos rechazados en total");
+            }
+
+            byte[] cuerpo = FALTA_SATURADO.getBytes(StandardCharsets.UTF_8);
+            intercambio.getResponseHeaders().set("Content-Type", "text/xml; charset=utf-8");
+            intercambio.getResponseHeaders().set("Retry-After", "1");
+            // SOAP 1.1 envía los Fault con estado 500; así el cliente JAX-WS los lee como SOAPFaultException
+            intercambio.sendResponseHeaders(500, cuerpo.length);
+            try (OutputStream salida = intercambio.getResponseBody()) {
+                salida.write(cuerpo);
+            }
+        }
+    }
+}